@@ -0,0 +1,1726 @@
+/*
+    Object-Oriented Programming
+        CIA - 2 Assignment
+
+    Team Members:
+    - Nighil Natarajan - 23011101085
+    - Prashanth Samkumar - 23011100100
+    - Yashawanth Krishna Devendran - 23011101166
+
+    Project: Expense Tracker & To-Do List Application
+    This Java application serves as a personal productivity tool, combining an expense tracker with a to-do list.
+    It allows users to record their expenses, categorize them, and maintain a list of tasks with priority levels.
+    All data is saved locally and loaded on startup, so user information persists across sessions.
+*/
+
+package expenses.app;
+
+import expenses.core.BackupRepository;
+import expenses.core.Budget;
+import expenses.core.BudgetAlert;
+import expenses.core.ColumnarExpenseList;
+import expenses.core.CommandHistory;
+import expenses.core.Expense;
+import expenses.core.ExpenseStore;
+import expenses.core.Exporter;
+import expenses.core.Importer;
+import expenses.core.LedgerManager;
+import expenses.core.Metrics;
+import expenses.core.Money;
+import expenses.core.RecurrenceRule;
+import expenses.core.RollupCube;
+import expenses.core.RowFormatter;
+import expenses.core.Task;
+import expenses.core.Tombstones;
+import expenses.server.ApiServer;
+
+import java.awt.*;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.MenuEvent;
+import javax.swing.event.MenuListener;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.event.PopupMenuListener;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+
+public class OOPS_CIA2 extends JFrame {
+    private ExpenseStore store;      // Expenses and tasks, shared with the HTTP API
+    private ApiServer api;           // Started when the expenses.api.port property is set
+    private ExpenseTableModel expenseTableModel;  // Rows shown in the expenses table
+    private TaskTableModel taskTableModel;        // Rows shown in the tasks table
+    private NextUpTableModel nextUpTableModel;    // Most urgent open tasks
+    private SearchBox expenseSearch;              // Search over the expenses table
+    private SearchBox taskSearch;                 // Search over the tasks table
+    private RollupTableModel reportTableModel;    // Cells shown in the reports table
+    private JComboBox<String> reportCurrencyField;  // Currency the report is shown in
+    private JLabel summaryLabel;     // Label for showing summary at the bottom
+    private JProgressBar loadProgress;   // Shown while data loads in the background
+    private JButton addExpenseButton;    // Enabled once loading has finished
+    private JButton addTaskButton;       // Enabled once loading has finished
+    private JButton importButton;        // Enabled once loading has finished, off while importing
+    private JMenu fileMenu;              // Export actions, enabled once loading has finished
+    private JMenu editMenu;              // Undo, redo, edit and delete, enabled once loading has finished
+    private CommandHistory history;      // Changes made from the window, for undo and redo
+    private JTabbedPane tabbedPane;      // Expenses, tasks and reports
+    private JTable expenseTable;
+    private JTable taskTable;
+    private JTable nextUpTable;
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();  // Collapses bursts of store changes
+    private static final Metrics.Histogram SUMMARY_TIME = Metrics.REGISTRY.timer("ui_summary_seconds");
+    private static final Metrics.Histogram REFRESH_TIME = Metrics.REGISTRY.timer("ui_refresh_seconds");
+
+    // Constructor for initializing the main application
+    public OOPS_CIA2() {
+        store = new ExpenseStore(dataDirectory());  // Journal and snapshots of the chosen ledger
+        store.addListener(this::queueRefresh);    // Changes can come from the API as well as the form
+        store.recurrences().addReminderListener((task, n) -> SwingUtilities.invokeLater(() -> showReminder(task, n)));
+        store.budgets().addListener(alert -> SwingUtilities.invokeLater(() -> showBudgetAlert(alert)));
+        store.publishGauges();
+        history = new CommandHistory(store);
+        Metrics.REGISTRY.registerMBean();         // Visible in JConsole and JMC
+
+        setTitle("Expense Tracker & To-Do List");  // Set window title
+        setSize(700, 600);           // Set window size
+        setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);  // Exit once saving finishes, see windowClosing
+        setLocationRelativeTo(null); // Center the window on screen
+
+        // Tabbed Pane for managing separate views for Expenses and Tasks
+        tabbedPane = new JTabbedPane();
+        tabbedPane.addTab("Expenses", createExpensePanel());  // Add expense panel as a tab
+        tabbedPane.addTab("Tasks", createTaskPanel());        // Add task panel as a tab
+        tabbedPane.addTab("Reports", createReportsPanel());   // Add reports panel as a tab
+        tabbedPane.addTab("Next Up", createNextUpPanel());    // Open tasks, most urgent first
+        add(tabbedPane, BorderLayout.CENTER);  // Add tabbedPane to the center of the frame
+        setJMenuBar(createMenuBar());
+
+        loadProgress = new JProgressBar();
+        loadProgress.setStringPainted(true);  // Show how much has been loaded
+        add(loadProgress, BorderLayout.NORTH);
+
+        displaySummary();  // Show initial summary
+        loadData();        // Load saved expenses and tasks without blocking the first paint
+
+        // Add window listener to save data on window close
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                setVisible(false);  // Close the window right away
+                dispose();
+                Thread shutdown = new Thread(() -> {
+                    saveData();  // Save data off the EDT
+                    System.exit(0);
+                }, "shutdown");
+                shutdown.start();
+            }
+        });
+    }
+
+
+
+/*
+        Yashawanth Krishna Devendran : Developed the user interface in this application.
+*/
+
+    // Method to create the Expense panel
+    private JPanel createExpensePanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));  // Panel with BorderLayout and padding
+        panel.setBorder(new EmptyBorder(10, 10, 10, 10));  // Adds a border for spacing
+
+        // Form panel with grid layout for organizing input fields
+        JPanel formPanel = new JPanel(new GridLayout(7, 2, 5, 5));
+        JTextField titleField = new JTextField();        // Field for expense title
+        JTextField descriptionField = new JTextField();  // Field for expense description
+        JTextField amountField = new JTextField();       // Field for expense amount
+
+        JComboBox<String> categoryField = namesField(() -> store.names().categories());  // A new name becomes a category when first used
+        Set<String> currencyCodes = new LinkedHashSet<>(Arrays.asList(Money.DEFAULT_CURRENCY, "INR", "USD", "EUR", "GBP"));
+        JComboBox<String> currencyField = new JComboBox<>(currencyCodes.toArray(new String[0]));
+        currencyField.setEditable(true);  // Allow any two-decimal ISO currency code
+        formPanel.add(new JLabel("Title:"));         // Label for title
+        formPanel.add(titleField);                   // Add title input field to form
+        formPanel.add(new JLabel("Description:"));   // Label for description
+        formPanel.add(descriptionField);             // Add description input field
+        formPanel.add(new JLabel("Amount:"));        // Label for amount
+        formPanel.add(amountField);                  // Add amount input field
+        formPanel.add(new JLabel("Currency:"));      // Label for currency
+        formPanel.add(currencyField);                // Add currency dropdown
+        formPanel.add(new JLabel("Category:"));      // Label for category
+        formPanel.add(categoryField);                // Add category dropdown
+        JComboBox<String> expenseRepeatField = repeatField();
+        formPanel.add(new JLabel("Repeat:"));        // Label for recurrence
+        formPanel.add(expenseRepeatField);           // Add recurrence dropdown
+
+        // Button to add expense
+        addExpenseButton = new JButton("Add Expense");
+        addExpenseButton.setEnabled(false);  // Until saved data has loaded
+        addExpenseButton.setBackground(new Color(70, 130, 180));  // Set button color
+        addExpenseButton.setForeground(Color.WHITE);  // Set button text color
+        formPanel.add(addExpenseButton);  // Add button to form panel
+        importButton = new JButton("Import CSV/JSON...");
+        importButton.setEnabled(false);  // Until saved data has loaded
+        importButton.addActionListener(e -> chooseImport());
+        formPanel.add(importButton);
+        panel.add(formPanel, BorderLayout.NORTH);  // Place form panel at top of the main panel
+
+        // Table for displaying expenses; rows are read from the store only when they are painted
+        expenseTableModel = new ExpenseTableModel(store);
+        expenseTable = expenseTableModel.createTable();
+        DefaultTableCellRenderer rightAligned = new DefaultTableCellRenderer();
+        rightAligned.setHorizontalAlignment(SwingConstants.RIGHT);  // Line up the decimal points
+        expenseTable.getColumnModel().getColumn(ExpenseTableModel.AMOUNT).setCellRenderer(rightAligned);
+        setPreferredWidths(expenseTable, 140, 220, 90, 60, 100, 90);
+        JScrollPane expenseScroll = new JScrollPane(expenseTable);
+        expenseScroll.setBorder(BorderFactory.createTitledBorder("Expenses List"));  // Add title border
+        expenseSearch = new SearchBox(expenseTableModel, store::searchExpenses);  // Titles and descriptions
+        JPanel listPanel = new JPanel(new BorderLayout(5, 5));
+        listPanel.add(expenseSearch, BorderLayout.NORTH);  // Search box above the list
+        listPanel.add(expenseScroll, BorderLayout.CENTER);
+        panel.add(listPanel, BorderLayout.CENTER);  // Add scrollable table
+
+        // Action listener for adding an expense
+        addExpenseButton.addActionListener(e -> {
+            String title = titleField.getText();  // Get title from input
+            String description = descriptionField.getText();  // Get description
+            String category = (String) categoryField.getSelectedItem();  // Get category
+            String currency = String.valueOf(currencyField.getSelectedItem());
+
+            try {
+                // Validate and add; the same rules apply to imports and the HTTP API
+                RecurrenceRule rule = repeatRule(expenseRepeatField);
+                Expense expense = ExpenseStore.newExpense(title, description, amountField.getText().trim(), currency,
+                        category, new Date());
+                store.addExpense(expense);
+                if (rule != null) {
+                    store.recurrences().addExpense(rule, expense.getTime(), expense, true);  // Added just now
+                }
+            } catch (IllegalArgumentException | IOException ex) {
+                JOptionPane.showMessageDialog(this, ex.getMessage());  // Show error for invalid input
+                return;
+            }
+
+            refreshViews();  // Show in the table and update summary
+            titleField.setText("");  // Clear input fields
+            descriptionField.setText("");
+            amountField.setText("");
+        });
+
+        return panel;  // Return the constructed expense panel
+    }
+
+    // Method to create the Task panel
+    private JPanel createTaskPanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));  // Panel with padding
+        panel.setBorder(new EmptyBorder(10, 10, 10, 10));  // Add border padding
+
+        // Form panel for task input fields
+        JPanel formPanel = new JPanel(new GridLayout(6, 2, 5, 5));
+        JTextField titleField = new JTextField();         // Field for task title
+        JTextField descriptionField = new JTextField();   // Field for task description
+
+        JComboBox<String> priorityField = namesField(() -> store.names().priorities());  // A new name is registered on add
+        formPanel.add(new JLabel("Title:"));             // Label for title
+        formPanel.add(titleField);                       // Add title input field
+        formPanel.add(new JLabel("Description:"));       // Label for description
+        formPanel.add(descriptionField);                 // Add description input field
+        formPanel.add(new JLabel("Priority:"));          // Label for priority
+        formPanel.add(priorityField);                    // Add priority dropdown
+        JTextField dueField = new JTextField();           // Optional due date
+        formPanel.add(new JLabel("Due (yyyy-MM-dd):"));  // Label for due date
+        formPanel.add(dueField);                         // Add due date input field
+        JComboBox<String> taskRepeatField = repeatField();
+        formPanel.add(new JLabel("Repeat:"));            // Label for recurrence
+        formPanel.add(taskRepeatField);                  // Add recurrence dropdown
+
+        addTaskButton = new JButton("Add Task");  // Button for adding task
+        addTaskButton.setEnabled(false);  // Until saved data has loaded
+        addTaskButton.setBackground(new Color(60, 179, 113));  // Set button color
+        addTaskButton.setForeground(Color.WHITE);  // Set button text color
+        formPanel.add(addTaskButton);  // Add button to form panel
+        panel.add(formPanel, BorderLayout.NORTH);  // Place form panel at top of the main panel
+
+        // Table for displaying tasks
+        taskTableModel = new TaskTableModel(store);
+        taskTable = taskTableModel.createTable();
+        setPreferredWidths(taskTable, 160, 260, 70, 90, 90, 40);
+        JScrollPane taskScroll = new JScrollPane(taskTable);
+        taskScroll.setBorder(BorderFactory.createTitledBorder("Tasks List"));  // Add border with title
+        taskSearch = new SearchBox(taskTableModel, store::searchTasks);
+        JPanel listPanel = new JPanel(new BorderLayout(5, 5));
+        listPanel.add(taskSearch, BorderLayout.NORTH);  // Search box above the list
+        listPanel.add(taskScroll, BorderLayout.CENTER);
+        panel.add(listPanel, BorderLayout.CENTER);  // Add scroll pane
+
+        // Action listener for adding a task
+        addTaskButton.addActionListener(e -> {
+            String title = titleField.getText();  // Get title
+            String description = descriptionField.getText();  // Get description
+            Object priority = priorityField.getSelectedItem();  // Get priority, perhaps a new one typed in
+
+            try {
+                RecurrenceRule rule = repeatRule(taskRepeatField);
+                Task task = ExpenseStore.draftTask(title, description, priority == null ? null : priority.toString(),
+                        new Date(), dueDate(dueField));  // Validate everything but whether the priority is registered
+                if (!store.names().isPriority(task.getPriority())) {
+                    String message = "\"" + task.getPriority() + "\" is a new priority. It will rank above all the others"
+                            + " and cannot be removed later. Add it?";
+                    if (JOptionPane.showConfirmDialog(this, message, "New priority", JOptionPane.YES_NO_OPTION)
+                            != JOptionPane.YES_OPTION) {
+                        return;
+                    }
+                    store.names().addPriority(task.getPriority());
+                }
+                store.addTask(task);  // Add
+                if (rule != null) {
+                    store.recurrences().addTask(rule, task.getTime(), task, true);
+                }
+            } catch (IllegalArgumentException | IOException ex) {
+                JOptionPane.showMessageDialog(this, ex.getMessage());
+                return;
+            }
+            refreshViews();  // Show in the table
+
+            titleField.setText("");  // Clear input fields
+            descriptionField.setText("");
+            dueField.setText("");
+        });
+
+        return panel;  // Return the constructed task panel
+    }
+
+    // Method to create the Reports panel: spend per category per month or day from the rollup cube
+    private JPanel createReportsPanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));  // Panel with padding
+        panel.setBorder(new EmptyBorder(10, 10, 10, 10));  // Add border padding
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        JComboBox<String> grainField = new JComboBox<>(new String[]{"Monthly", "Daily"});
+        reportCurrencyField = new JComboBox<>(new String[]{Money.DEFAULT_CURRENCY});
+        controls.add(new JLabel("Period:"));
+        controls.add(grainField);
+        controls.add(new JLabel("Currency:"));
+        controls.add(reportCurrencyField);
+        panel.add(controls, BorderLayout.NORTH);
+
+        reportTableModel = new RollupTableModel(store);
+        JTable reportTable = new JTable(reportTableModel);
+        DefaultTableCellRenderer rightAligned = new DefaultTableCellRenderer();
+        rightAligned.setHorizontalAlignment(SwingConstants.RIGHT);  // Line up the decimal points
+        reportTable.setDefaultRenderer(String.class, rightAligned);  // Kept when new categories add columns
+        JScrollPane reportScroll = new JScrollPane(reportTable);
+        reportScroll.setBorder(BorderFactory.createTitledBorder("Spend by Category"));
+        panel.add(reportScroll, BorderLayout.CENTER);
+
+        grainField.addActionListener(e -> reportTableModel.setMonthly(grainField.getSelectedIndex() == 0));
+        reportCurrencyField.addActionListener(e -> {
+            Object currency = reportCurrencyField.getSelectedItem();
+            if (currency != null) {
+                reportTableModel.setCurrency(currency.toString());
+            }
+        });
+
+        return panel;  // Return the constructed reports panel
+    }
+
+    // Method to create the Next Up panel: the most urgent open tasks, read from the store's task queue
+    private JPanel createNextUpPanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));  // Panel with padding
+        panel.setBorder(new EmptyBorder(10, 10, 10, 10));  // Add border padding
+
+        nextUpTableModel = new NextUpTableModel(store);
+        nextUpTable = new JTable(nextUpTableModel);
+        setPreferredWidths(nextUpTable, 200, 70, 90, 90);
+        JScrollPane nextUpScroll = new JScrollPane(nextUpTable);
+        nextUpScroll.setBorder(BorderFactory.createTitledBorder("By priority, then due date, then age"));
+        panel.add(nextUpScroll, BorderLayout.CENTER);
+
+        JButton doneButton = new JButton("Mark Done");
+        doneButton.addActionListener(e -> toggleSelectedDone());
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        buttons.add(doneButton);
+        panel.add(buttons, BorderLayout.SOUTH);
+
+        return panel;  // Return the constructed next up panel
+    }
+
+    // Optional date typed as yyyy-MM-dd; null when the field is blank
+    private static LocalDate dueDate(JTextField field) {
+        String text = field.getText().trim();
+        try {
+            return text.isEmpty() ? null : LocalDate.parse(text);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Bad due date, expected yyyy-MM-dd: " + text);
+        }
+    }
+
+    // Update the report and offer every currency that has expenses
+    private void refreshReports() {
+        RollupCube.Shape shape = reportTableModel.refresh();
+        for (String currency : shape.currencies) {
+            if (((DefaultComboBoxModel<String>) reportCurrencyField.getModel()).getIndexOf(currency) < 0) {
+                reportCurrencyField.addItem(currency);
+            }
+        }
+    }
+
+    // Editable choice of one of the ledger's names; the list is append-only, so names loaded, imported
+    // or registered since are added at the end each time it opens
+    private static JComboBox<String> namesField(Supplier<List<String>> names) {
+        JComboBox<String> field = new JComboBox<>(names.get().toArray(new String[0]));
+        field.setEditable(true);
+        field.addPopupMenuListener(new PopupMenuListener() {
+            @Override
+            public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
+                List<String> current = names.get();
+                for (int i = field.getItemCount(); i < current.size(); i++) {
+                    field.addItem(current.get(i));
+                }
+            }
+
+            @Override
+            public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {
+            }
+
+            @Override
+            public void popupMenuCanceled(PopupMenuEvent e) {
+            }
+        });
+        return field;
+    }
+
+    // Recurrence choices; editable for "every 2 weeks" or a cron rule
+    private static JComboBox<String> repeatField() {
+        JComboBox<String> field = new JComboBox<>(new String[]{"Never", "Daily", "Weekly", "Monthly", "Yearly"});
+        field.setEditable(true);
+        return field;
+    }
+
+    // Rule picked in a repeat field, or null for a one-off entry
+    private static RecurrenceRule repeatRule(JComboBox<String> field) {
+        String text = String.valueOf(field.getSelectedItem()).trim();
+        return text.isEmpty() || text.equalsIgnoreCase("Never") ? null : RecurrenceRule.parse(text);
+    }
+
+    // Tell the user about a task occurrence without blocking the window
+    private void showReminder(Task task, int occurrences) {
+        String message = task.getTitle() + ": " + task.getDescription()
+                + (occurrences > 1 ? String.format("%n(%d occurrences while the app was closed)", occurrences) : "");
+        JDialog dialog = new JOptionPane(message, JOptionPane.INFORMATION_MESSAGE).createDialog(this, "Reminder");
+        dialog.setModal(false);
+        dialog.setVisible(true);
+    }
+
+    // Tell the user a budget threshold was reached without blocking the window
+    private void showBudgetAlert(BudgetAlert alert) {
+        String message = alert + String.format("%n(after %s)", alert.expense.getTitle());
+        JDialog dialog = new JOptionPane(message, JOptionPane.WARNING_MESSAGE).createDialog(this, "Budget");
+        dialog.setModal(false);
+        dialog.setVisible(true);
+    }
+
+    // List the budgets with this period's spend, add new ones and remove the selected one
+    private void manageBudgets() {
+        DefaultListModel<String> shown = new DefaultListModel<>();
+        JList<String> list = new JList<>(shown);
+        List<String> categories = new ArrayList<>();
+        categories.add("All");
+        categories.addAll(store.names().categories());
+        JComboBox<String> categoryField = new JComboBox<>(categories.toArray(new String[0]));
+        categoryField.setEditable(true);
+        JTextField currencyField = new JTextField(Money.DEFAULT_CURRENCY);
+        JComboBox<String> periodField = new JComboBox<>(Budget.PERIODS.toArray(new String[0]));
+        periodField.setSelectedItem("month");
+        JTextField limitField = new JTextField();
+        JTextField thresholdsField = new JTextField("80, 100");
+        JPanel form = new JPanel(new GridLayout(5, 2, 5, 5));
+        form.add(new JLabel("Category:"));
+        form.add(categoryField);
+        form.add(new JLabel("Currency:"));
+        form.add(currencyField);
+        form.add(new JLabel("Period:"));
+        form.add(periodField);
+        form.add(new JLabel("Limit:"));
+        form.add(limitField);
+        form.add(new JLabel("Alert at (%):"));
+        form.add(thresholdsField);
+        JScrollPane scroll = new JScrollPane(list);
+        scroll.setPreferredSize(new Dimension(480, 160));
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.add(scroll, BorderLayout.CENTER);
+        panel.add(form, BorderLayout.SOUTH);
+
+        Object[] options = {"Add", "Remove selected", "Close"};
+        while (true) {
+            List<Budget> budgets = store.budgets().list();
+            int today = ColumnarExpenseList.epochDay(new Date());
+            shown.clear();
+            for (Budget b : budgets) {
+                shown.addElement(b + " (spent " + Money.format(store.spent(b, today)) + " this " + b.period + ")");
+            }
+            int choice = JOptionPane.showOptionDialog(this, panel, "Budgets", JOptionPane.DEFAULT_OPTION,
+                    JOptionPane.PLAIN_MESSAGE, null, options, options[2]);
+            try {
+                if (choice == 0) {
+                    String category = String.valueOf(categoryField.getSelectedItem()).trim();
+                    long limit;
+                    try {
+                        limit = Money.parseMinor(limitField.getText().trim());
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid limit. Please enter a number with at most two decimals.");
+                    }
+                    store.budgets().add(category.equals("All") ? null : category, currencyField.getText(),
+                            String.valueOf(periodField.getSelectedItem()), limit, percents(thresholdsField.getText()));
+                    limitField.setText("");
+                } else if (choice == 1 && list.getSelectedIndex() >= 0) {
+                    store.budgets().remove(budgets.get(list.getSelectedIndex()).id);
+                } else if (choice != 1) {
+                    return;
+                }
+            } catch (IllegalArgumentException | IOException e) {
+                JOptionPane.showMessageDialog(this, e.getMessage());
+            }
+        }
+    }
+
+    // Whole percentages separated by commas or spaces
+    private static int[] percents(String text) {
+        String[] parts = text.trim().split("[,\\s]+");
+        int[] percents = new int[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                percents[i] = Integer.parseInt(parts[i]);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Alert thresholds must be whole percentages, such as 80, 100");
+        }
+        return percents;
+    }
+
+    // Set the starting width of each column
+    private static void setPreferredWidths(JTable table, int... widths) {
+        for (int i = 0; i < widths.length; i++) {
+            table.getColumnModel().getColumn(i).setPreferredWidth(widths[i]);
+        }
+    }
+
+    // Table model that reads rows from a list on demand, so only the rows JTable paints are ever
+    // materialized. Sorting builds an index permutation in the background instead of copying rows.
+    // The list may grow on other threads; the table only sees rows once refresh() announces them.
+    // While a search is shown the table holds just its matches, in rank order until a header is clicked.
+    // Hidden rows (deleted or replaced by an edit) are skipped by rank and select over the tombstones,
+    // so a delete costs no copy of the view; a sorted view is sorted again without them
+    abstract static class ListTableModel<T> extends AbstractTableModel {
+        private final String[] columns;
+        private final List<T> rows;
+        private final Tombstones hidden;
+        private int visibleRows;      // Rows the table has been told about
+        private int shownRows;        // Of those, the ones not hidden, as announced to the table
+        private long hiddenVersion;   // Tombstones version the view reflects
+        private int[] order;          // View row -> list index; rows past orderSize keep insertion order
+        private int orderSize;        // List size the order was sorted at
+        private int orderColumn = -1; // Column and direction order was sorted by
+        private boolean orderAscending;
+        private int[] matches;        // View row -> list index of a search result, or null to show all rows
+        private boolean ranked;       // Matches are still in rank order, so no column shows an arrow
+        private int sortColumn = -1;
+        private boolean ascending;
+        private int cachedIndex = -1; // JTable asks for every cell of a row in turn
+        private T cachedRow;
+        private JTable table;
+
+        ListTableModel(List<T> rows, Tombstones hidden, String... columns) {
+            this.rows = rows;
+            this.hidden = hidden;
+            this.columns = columns;
+        }
+
+        // Cell value for one column of a row
+        abstract Object value(T row, int column);
+
+        // Comparator over list indexes of the snapshot for one column
+        abstract IntComparator comparator(List<T> snapshot, int column, int size);
+
+        // Stable copy of the rows that a background sort can read while the EDT keeps appending
+        List<T> sortSnapshot() {
+            return new ArrayList<>(rows);
+        }
+
+        @Override
+        public int getRowCount() {
+            return matches != null ? matches.length : shownRows;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            if (column != sortColumn || ranked) {
+                return columns[column];
+            }
+            return columns[column] + (ascending ? " \u25B2" : " \u25BC");
+        }
+
+        @Override
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            return value(rowAt(rowIndex), columnIndex);
+        }
+
+        // List index of the row at a view position
+        int indexAt(int viewRow) {
+            if (matches != null) {
+                return matches[viewRow];
+            }
+            if (order != null && viewRow < order.length) {
+                return order[viewRow];
+            }
+            int position = order == null ? viewRow : viewRow - order.length + unhidden(orderSize);
+            return hidden.select(position);
+        }
+
+        // Row shown at a view position
+        T rowAt(int viewRow) {
+            int index = indexAt(viewRow);
+            if (index != cachedIndex) {
+                cachedRow = rows.get(index);
+                cachedIndex = index;
+            }
+            return cachedRow;
+        }
+
+        // Tell the table about rows appended to the list and rows hidden or shown again; search results
+        // stay as they are until the next query
+        void refresh() {
+            if (matches != null) {
+                return;
+            }
+            int size = rows.size();
+            long version = hidden.version();
+            if (version != hiddenVersion) {
+                hiddenVersion = version;
+                visibleRows = size;
+                if (order != null) {
+                    sort(sortColumn, ascending);  // The old order still shows until the new one is ready
+                }
+                shownRows = countShown();
+                cachedIndex = -1;
+                fireTableDataChanged();
+            } else if (size > visibleRows) {
+                int first = shownRows;
+                visibleRows = size;
+                shownRows = countShown();
+                if (shownRows > first) {
+                    fireTableRowsInserted(first, shownRows - 1);
+                }
+            }
+        }
+
+        // Rows not hidden among the first size rows
+        private int unhidden(int size) {
+            return size - hidden.rank(size);
+        }
+
+        // Rows the view shows: the sorted ones plus visible rows appended since the sort
+        private int countShown() {
+            if (order == null) {
+                return unhidden(visibleRows);
+            }
+            return order.length + Math.max(0, unhidden(visibleRows) - unhidden(orderSize));
+        }
+
+        // Start over after the list was replaced underneath
+        void reload() {
+            visibleRows = rows.size();
+            hiddenVersion = hidden.version();
+            shownRows = unhidden(visibleRows);
+            order = null;
+            orderColumn = -1;
+            matches = null;
+            ranked = false;
+            sortColumn = -1;
+            cachedIndex = -1;
+            fireTableDataChanged();
+            updateHeader();
+        }
+
+        // Show only these list indexes, best first, or every row again for null
+        void showMatches(int[] found) {
+            matches = found;
+            ranked = found != null;
+            cachedIndex = -1;
+            if (found == null) {
+                visibleRows = rows.size();  // Catch up on rows added while the search was shown
+                boolean changed = hidden.version() != hiddenVersion;
+                hiddenVersion = hidden.version();
+                if (sortColumn >= 0 && (sortColumn != orderColumn || ascending != orderAscending || changed)) {
+                    sort(sortColumn, ascending);  // The matches were sorted by another column meanwhile
+                }
+                shownRows = countShown();
+            }
+            fireTableDataChanged();
+            updateHeader();
+        }
+
+        // Sort by a column, toggling the direction on repeated clicks
+        void toggleSort(int column) {
+            sort(column, column != sortColumn || ranked || !ascending);
+        }
+
+        // Sort the search matches if shown, otherwise every row, on a worker thread
+        private void sort(int column, boolean up) {
+            List<T> snapshot = sortSnapshot();
+            int size = snapshot.size();
+            int[] sorting = matches;
+            new SwingWorker<int[], Void>() {
+                @Override
+                protected int[] doInBackground() {
+                    int[] permutation;
+                    if (sorting != null) {
+                        permutation = sorting.clone();  // Every match is below size: it was found before the snapshot
+                    } else {
+                        permutation = hidden.visible(size);
+                    }
+                    IntComparator byColumn = comparator(snapshot, column, size);
+                    IntSort.sort(permutation, up ? byColumn : (a, b) -> byColumn.compare(b, a));
+                    return permutation;
+                }
+
+                @Override
+                protected void done() {
+                    try {
+                        int[] sorted = get();
+                        if (sorting == null) {
+                            order = sorted;
+                            orderSize = size;
+                            orderColumn = column;
+                            orderAscending = up;
+                            if (matches == null) {
+                                shownRows = countShown();
+                            }
+                        } else if (sorting == matches) {
+                            matches = sorted;
+                            ranked = false;
+                        } else {
+                            return;  // A newer search replaced the matches
+                        }
+                        sortColumn = column;
+                        ascending = up;
+                        cachedIndex = -1;
+                        fireTableDataChanged();
+                        updateHeader();
+                    } catch (InterruptedException | ExecutionException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }.execute();
+        }
+
+        private void updateHeader() {
+            if (table == null) {
+                return;
+            }
+            for (int c = 0; c < columns.length; c++) {
+                table.getColumnModel().getColumn(table.convertColumnIndexToView(c)).setHeaderValue(getColumnName(c));
+            }
+            table.getTableHeader().repaint();
+        }
+
+        // Build a JTable over the model with header-click sorting
+        JTable createTable() {
+            table = new JTable(this);
+            table.setFillsViewportHeight(true);
+            table.setAutoCreateRowSorter(false);  // DefaultRowSorter keeps per-row objects; we sort an int[] instead
+            table.getTableHeader().addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    int column = table.columnAtPoint(e.getPoint());
+                    if (column >= 0) {
+                        toggleSort(table.convertColumnIndexToModel(column));
+                    }
+                }
+            });
+            return table;
+        }
+    }
+
+    // Search field over a table. The query runs on a worker thread once typing pauses, and the table
+    // shows the ranked matches; clearing the field shows every row again
+    static class SearchBox extends JPanel {
+        private static final int DELAY_MILLIS = 150;  // Quiet time after the last keystroke
+        private static final int LIMIT = 1000;        // Matches shown for one query
+
+        private final JTextField field = new JTextField();
+        private final JLabel status = new JLabel();
+        private final ListTableModel<?> model;
+        private final BiFunction<String, Integer, int[]> search;  // Query and limit to list indexes, best first
+        private final Timer timer;
+        private int sequence;  // Latest query started; results of older ones are dropped
+
+        SearchBox(ListTableModel<?> model, BiFunction<String, Integer, int[]> search) {
+            super(new BorderLayout(5, 0));
+            this.model = model;
+            this.search = search;
+            timer = new Timer(DELAY_MILLIS, e -> run());
+            timer.setRepeats(false);
+            add(new JLabel("Search:"), BorderLayout.WEST);
+            add(field, BorderLayout.CENTER);
+            add(status, BorderLayout.EAST);
+            field.getDocument().addDocumentListener(new DocumentListener() {
+                @Override
+                public void insertUpdate(DocumentEvent e) {
+                    timer.restart();
+                }
+
+                @Override
+                public void removeUpdate(DocumentEvent e) {
+                    timer.restart();
+                }
+
+                @Override
+                public void changedUpdate(DocumentEvent e) {
+                }
+            });
+        }
+
+        // Rows were added: run the current query again so new matches show up. A steady stream of
+        // changes must not keep pushing the query back, so a pending run is left alone
+        void refresh() {
+            if (!field.getText().trim().isEmpty() && !timer.isRunning()) {
+                timer.start();
+            }
+        }
+
+        private void run() {
+            String query = field.getText();
+            int id = ++sequence;
+            if (query.trim().isEmpty()) {
+                status.setText("");
+                model.showMatches(null);
+                return;
+            }
+            new SwingWorker<int[], Void>() {
+                private long nanos;
+
+                @Override
+                protected int[] doInBackground() {
+                    long start = System.nanoTime();
+                    int[] found = search.apply(query, LIMIT);
+                    nanos = System.nanoTime() - start;
+                    return found;
+                }
+
+                @Override
+                protected void done() {
+                    if (id != sequence) {
+                        return;  // The field changed while this ran
+                    }
+                    try {
+                        int[] found = get();
+                        status.setText(String.format("%s%,d matches, %.1f ms", found.length == LIMIT ? "first " : "",
+                                found.length, nanos / 1e6));
+                        model.showMatches(found);
+                    } catch (InterruptedException | ExecutionException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }.execute();
+        }
+    }
+
+    // Expense rows read lazily from the columnar list
+    static class ExpenseTableModel extends ListTableModel<Expense> {
+        static final int TITLE = 0, DESCRIPTION = 1, AMOUNT = 2, CURRENCY = 3, CATEGORY = 4, DATE = 5;
+
+        private final ExpenseStore store;
+
+        ExpenseTableModel(ExpenseStore store) {
+            super(store.expenseView(), store.hiddenExpenses(), "Title", "Description", "Amount", "Currency", "Category",
+                    "Date");
+            this.store = store;
+        }
+
+        @Override
+        Object value(Expense e, int column) {
+            switch (column) {
+                case TITLE: return e.getTitle();
+                case DESCRIPTION: return e.getDescription();
+                case AMOUNT: return Money.format(e.getAmountMinor());
+                case CURRENCY: return e.getCurrency();
+                case CATEGORY: return e.getCategory();
+                default: return formatDate(e.getDate());
+            }
+        }
+
+        @Override
+        List<Expense> sortSnapshot() {
+            return store.expenseSnapshot();
+        }
+
+        @Override
+        IntComparator comparator(List<Expense> snapshot, int column, int size) {
+            ColumnarExpenseList rows = (ColumnarExpenseList) snapshot;
+            switch (column) {
+                case AMOUNT: {
+                    long[] keys = new long[size];
+                    for (int i = 0; i < size; i++) {
+                        keys[i] = rows.amountMinorAt(i);
+                    }
+                    return (a, b) -> Long.compare(keys[a], keys[b]);
+                }
+                case DATE: {
+                    int[] keys = new int[size];
+                    for (int i = 0; i < size; i++) {
+                        keys[i] = rows.epochDayAt(i);
+                    }
+                    return (a, b) -> Integer.compare(keys[a], keys[b]);
+                }
+                default: {
+                    String[] keys = new String[size];
+                    for (int i = 0; i < size; i++) {
+                        keys[i] = column == TITLE ? rows.titleAt(i) : column == DESCRIPTION ? rows.descriptionAt(i)
+                                : column == CURRENCY ? rows.currencyCodeAt(i) : rows.categoryAt(i);
+                    }
+                    return (a, b) -> String.CASE_INSENSITIVE_ORDER.compare(keys[a], keys[b]);
+                }
+            }
+        }
+    }
+
+    // Task rows read from the task list
+    static class TaskTableModel extends ListTableModel<Task> {
+        static final int TITLE = 0, DESCRIPTION = 1, PRIORITY = 2, DATE = 3, DUE = 4, DONE = 5;
+
+        private final ExpenseStore store;
+
+        TaskTableModel(ExpenseStore store) {
+            super(store.taskView(), store.hiddenTasks(), "Title", "Description", "Priority", "Date", "Due", "Done");
+            this.store = store;
+        }
+
+        @Override
+        List<Task> sortSnapshot() {
+            return store.taskSnapshot();
+        }
+
+        @Override
+        Object value(Task t, int column) {
+            switch (column) {
+                case TITLE: return t.getTitle();
+                case DESCRIPTION: return t.getDescription();
+                case PRIORITY: return t.getPriority();
+                case DUE: return formatDue(t);
+                case DONE: return t.isDone() ? "\u2713" : "";
+                default: return formatDate(t.getDate());
+            }
+        }
+
+        @Override
+        IntComparator comparator(List<Task> rows, int column, int size) {
+            switch (column) {
+                case PRIORITY:
+                    List<String> priorities = store.names().priorities();  // Least urgent first
+                    return (a, b) -> Integer.compare(priorities.indexOf(rows.get(a).getPriority()),
+                            priorities.indexOf(rows.get(b).getPriority()));
+                case DATE:
+                    return (a, b) -> Long.compare(rows.get(a).getTime(), rows.get(b).getTime());
+                case DUE:
+                    return (a, b) -> Integer.compare(rows.get(a).getDueDay(), rows.get(b).getDueDay());
+                case DONE:
+                    return (a, b) -> Boolean.compare(rows.get(a).isDone(), rows.get(b).isDone());
+                default:
+                    return (a, b) -> String.CASE_INSENSITIVE_ORDER.compare(
+                            column == TITLE ? rows.get(a).getTitle() : rows.get(a).getDescription(),
+                            column == TITLE ? rows.get(b).getTitle() : rows.get(b).getDescription());
+            }
+        }
+    }
+
+    // The most urgent open tasks, read from the store's task queue on each refresh. Only the shown rows
+    // are taken from the heap, so a refresh costs the same with a hundred open tasks or a million
+    static class NextUpTableModel extends AbstractTableModel {
+        static final int LIMIT = 50;  // Rows shown
+        private static final String[] COLUMNS = {"Title", "Priority", "Due", "Created"};
+
+        private final ExpenseStore store;
+        private int[] rows = new int[0];
+        private Task[] tasks = new Task[0];
+
+        NextUpTableModel(ExpenseStore store) {
+            this.store = store;
+        }
+
+        void refresh() {
+            rows = store.nextTasks(LIMIT);
+            tasks = new Task[rows.length];
+            for (int i = 0; i < rows.length; i++) {
+                tasks[i] = store.task(rows[i]);
+            }
+            fireTableDataChanged();
+        }
+
+        // Store row of a table row
+        int rowAt(int viewRow) {
+            return rows[viewRow];
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.length;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            Task t = tasks[row];
+            switch (column) {
+                case 0: return t.getTitle();
+                case 1: return t.getPriority();
+                case 2: return formatDue(t);
+                default: return formatDate(t.getDate());
+            }
+        }
+    }
+
+    // Spend per period and category read from the store's rollup cube, newest period first. Each
+    // painted cell is one lookup in the cube, so the report costs the same at any number of expenses
+    static class RollupTableModel extends AbstractTableModel {
+        private final ExpenseStore store;
+        private boolean monthly = true;
+        private String currency = Money.DEFAULT_CURRENCY;
+        private List<String> categories = Collections.emptyList();  // One column each, between period and total
+        private int firstPeriod;
+        private int lastPeriod = -1;  // Below firstPeriod while there are no expenses
+
+        RollupTableModel(ExpenseStore store) {
+            this.store = store;
+        }
+
+        void setMonthly(boolean monthly) {
+            this.monthly = monthly;
+            refresh();
+        }
+
+        void setCurrency(String currency) {
+            this.currency = currency;
+            refresh();
+        }
+
+        // Pick up new periods and categories; returns the shape so the caller can offer its currencies
+        RollupCube.Shape refresh() {
+            RollupCube.Shape shape = store.rollupShape();
+            List<String> sorted = new ArrayList<>(shape.categories);
+            Collections.sort(sorted);
+            if (shape.firstDay <= shape.lastDay) {
+                firstPeriod = monthly ? RollupCube.epochMonth(shape.firstDay) : shape.firstDay;
+                lastPeriod = monthly ? RollupCube.epochMonth(shape.lastDay) : shape.lastDay;
+            }
+            if (!sorted.equals(categories)) {
+                categories = sorted;
+                fireTableStructureChanged();
+            } else {
+                fireTableDataChanged();
+            }
+            return shape;
+        }
+
+        @Override
+        public int getRowCount() {
+            return Math.max(0, lastPeriod - firstPeriod + 1);
+        }
+
+        @Override
+        public int getColumnCount() {
+            return categories.size() + 2;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return column == 0 ? (monthly ? "Month" : "Day") : column <= categories.size() ? categories.get(column - 1) : "Total";
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == 0 ? Object.class : String.class;  // Amounts get the right-aligned renderer
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            int period = lastPeriod - row;
+            if (column == 0) {
+                StringBuilder label = RowFormatter.appendDate(new StringBuilder(10),
+                        monthly ? RollupCube.firstDayOfMonth(period) : period);
+                return monthly ? label.substring(3) : label.toString();  // MM/yyyy for months
+            }
+            String category = column <= categories.size() ? categories.get(column - 1) : null;
+            if (store.rollupCount(monthly, currency, category, period) == 0) {
+                return "";
+            }
+            return Money.format(store.rollupTotal(monthly, currency, category, period));
+        }
+    }
+
+    static String formatDate(Date date) {
+        RowFormatter formatter = RowFormatter.forThread();
+        return RowFormatter.appendDate(new StringBuilder(10), formatter.localEpochDay(date.getTime())).toString();
+    }
+
+    // Due date of a task, blank if it has none
+    static String formatDue(Task task) {
+        return task.hasDue() ? RowFormatter.appendDate(new StringBuilder(10), task.getDueDay()).toString() : "";
+    }
+
+    // Comparison of two int values without boxing
+    interface IntComparator {
+        int compare(int a, int b);
+    }
+
+    // Stable merge sort of an int array with a primitive comparator
+    static final class IntSort {
+        private IntSort() {
+        }
+
+        static void sort(int[] values, IntComparator comparator) {
+            int[] buffer = values.clone();
+            mergeSort(buffer, values, 0, values.length, comparator);
+        }
+
+        // Sort src[from, to) into dst; both arrays start with the same contents
+        private static void mergeSort(int[] src, int[] dst, int from, int to, IntComparator comparator) {
+            if (to - from < 16) {
+                for (int i = from + 1; i < to; i++) {  // Insertion sort for short runs
+                    int v = dst[i];
+                    int j = i - 1;
+                    while (j >= from && comparator.compare(dst[j], v) > 0) {
+                        dst[j + 1] = dst[j];
+                        j--;
+                    }
+                    dst[j + 1] = v;
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            mergeSort(dst, src, from, mid, comparator);
+            mergeSort(dst, src, mid, to, comparator);
+            if (comparator.compare(src[mid - 1], src[mid]) <= 0) {
+                System.arraycopy(src, from, dst, from, to - from);  // Already in order
+                return;
+            }
+            for (int i = from, p = from, q = mid; i < to; i++) {
+                if (q >= to || (p < mid && comparator.compare(src[p], src[q]) <= 0)) {
+                    dst[i] = src[p++];
+                } else {
+                    dst[i] = src[q++];
+                }
+            }
+        }
+    }
+
+
+
+
+
+/*
+        Prashanth Samkumar : Created the function to retrive and store data in files.
+*/
+
+    // Method to display a summary at the bottom of the frame
+    private void displaySummary() {
+        SummaryEvent event = new SummaryEvent();
+        event.begin();
+        long start = System.nanoTime();
+        ExpenseStore.Summary summary = store.summary();  // Running totals per currency, no scan
+        StringJoiner totalAmount = new StringJoiner(", ");
+        for (Map.Entry<String, Long> total : summary.totals.entrySet()) {
+            totalAmount.add(Money.format(total.getValue()) + " " + total.getKey());
+        }
+        long expenseCount = summary.expenses;  // Count of expenses
+        long taskCount = summary.tasks;  // Count of tasks
+
+        if (summaryLabel == null) {
+            summaryLabel = new JLabel();  // Initialize summary label
+            summaryLabel.setBorder(new EmptyBorder(10, 0, 10, 0));  // Add padding
+            summaryLabel.setFont(new Font("SansSerif", Font.BOLD, 14));  // Set font style
+            add(summaryLabel, BorderLayout.SOUTH);  // Add label to frame bottom
+        }
+
+        // Update summary label text
+        Exception saveFailure = store.saveFailure();
+        summaryLabel.setText(String.format("Total Expenses: %d | Total Amount: %s | Total Tasks: %d%s",
+                expenseCount, expenseCount == 0 ? "0.00" : totalAmount, taskCount,
+                saveFailure == null ? "" : " | Autosave failed: " + saveFailure));
+        SUMMARY_TIME.recordSince(start);
+        event.expenses = summary.expenses;
+        event.tasks = summary.tasks;
+        event.commit();
+    }
+
+    // Called on any thread after the store changes; bursts collapse into one refresh on the EDT
+    private void queueRefresh() {
+        if (refreshQueued.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::refreshViews);
+        }
+    }
+
+    // Show rows added since the last refresh and update the summary
+    private void refreshViews() {
+        RenderEvent event = new RenderEvent();
+        event.begin();
+        long start = System.nanoTime();
+        refreshQueued.set(false);
+        expenseTableModel.refresh();
+        taskTableModel.refresh();
+        expenseSearch.refresh();
+        taskSearch.refresh();
+        nextUpTableModel.refresh();
+        refreshReports();
+        displaySummary();
+        REFRESH_TIME.recordSince(start);  // Time on the EDT; painting the new rows follows separately
+        event.expenseRows = expenseTableModel.getRowCount();
+        event.taskRows = taskTableModel.getRowCount();
+        event.commit();
+    }
+
+    // Stop taking API requests and flush the journal so every entry from this session is durable
+    private void saveData() {
+        if (api != null) {
+            api.stop();
+        }
+        try {
+            store.close();  // Flush pending records
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        Metrics.REGISTRY.dumpToConfiguredFile();
+    }
+
+    // Load expenses and tasks on a background thread; the views and summary fill in batch by batch
+    private void loadData() {
+        loadProgress.setIndeterminate(true);
+        loadProgress.setString("Loading...");
+        new SwingWorker<Void, LoadChunk>() {
+            @Override
+            protected Void doInBackground() throws IOException {
+                store.load(new ExpenseStore.LoadListener() {
+                    @Override
+                    public void expenseFileMapped() {
+                        publish(LoadChunk.mapped());
+                    }
+
+                    @Override
+                    public void totalsLoaded(int done, int total) {
+                        publish(LoadChunk.totals(done, total));
+                    }
+                });
+                return null;
+            }
+
+            @Override
+            protected void process(List<LoadChunk> chunks) {
+                for (LoadChunk chunk : chunks) {
+                    applyLoadChunk(chunk);
+                }
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+                } catch (InterruptedException | ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(OOPS_CIA2.this, "Could not open data files: " + cause.getMessage());
+                    System.exit(1);  // Refuse to run without a writable journal
+                }
+                remove(loadProgress);
+                revalidate();
+                addExpenseButton.setEnabled(true);
+                addTaskButton.setEnabled(true);
+                importButton.setEnabled(true);
+                fileMenu.setEnabled(true);
+                editMenu.setEnabled(true);
+                refreshViews();
+                startApi();
+            }
+        }.execute();
+    }
+
+    // Apply one step of load progress on the EDT; rows themselves arrive through refreshViews
+    private void applyLoadChunk(LoadChunk chunk) {
+        if (chunk.mapped) {
+            expenseTableModel.reload();  // All mapped rows are visible at once
+        }
+        if (chunk.total > 0) {
+            loadProgress.setIndeterminate(false);
+            loadProgress.setMaximum(chunk.total);
+            loadProgress.setValue(chunk.done);
+            loadProgress.setString(String.format("Loading totals: %,d of %,d expenses", chunk.done, chunk.total));
+        }
+    }
+
+    // One unit of progress from the background load
+    static class LoadChunk {
+        boolean mapped;
+        int done;
+        int total;
+
+        static LoadChunk mapped() {
+            LoadChunk chunk = new LoadChunk();
+            chunk.mapped = true;
+            return chunk;
+        }
+
+        static LoadChunk totals(int done, int total) {
+            LoadChunk chunk = new LoadChunk();
+            chunk.done = done;
+            chunk.total = total;
+            return chunk;
+        }
+    }
+
+    // Ask for a file and import it in the background; rows appear batch by batch
+    private void chooseImport() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = chooser.getSelectedFile().toPath();
+        importButton.setEnabled(false);
+        loadProgress.setIndeterminate(false);
+        loadProgress.setValue(0);
+        loadProgress.setString("Importing " + file.getFileName());
+        add(loadProgress, BorderLayout.NORTH);
+        revalidate();
+        new SwingWorker<Importer.Report, long[]>() {
+            @Override
+            protected Importer.Report doInBackground() throws IOException {
+                return new Importer(store).importFile(file, (read, total, report) ->
+                        publish(new long[]{read, total, report.imported, report.rejected}));
+            }
+
+            @Override
+            protected void process(List<long[]> updates) {
+                long[] last = updates.get(updates.size() - 1);
+                loadProgress.setMaximum(1000);
+                loadProgress.setValue(last[1] == 0 ? 1000 : (int) (last[0] * 1000 / last[1]));
+                loadProgress.setString(String.format("Importing: %,d rows, %,d rejected", last[2], last[3]));
+            }
+
+            @Override
+            protected void done() {
+                remove(loadProgress);
+                revalidate();
+                importButton.setEnabled(true);
+                try {
+                    Importer.Report report = get();
+                    StringBuilder message = new StringBuilder(report.summary());
+                    for (int i = 0; i < Math.min(10, report.messages.size()); i++) {
+                        message.append('\n').append(report.messages.get(i));
+                    }
+                    JOptionPane.showMessageDialog(OOPS_CIA2.this, message.toString());
+                } catch (InterruptedException | ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(OOPS_CIA2.this, "Import failed: " + cause.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    // File menu with the export and backup actions and budgets
+    private JMenuBar createMenuBar() {
+        fileMenu = new JMenu("File");
+        fileMenu.setEnabled(false);  // Until saved data has loaded
+        JMenuItem exportExpenses = new JMenuItem("Export expenses...");
+        exportExpenses.addActionListener(e -> chooseExport(false));
+        fileMenu.add(exportExpenses);
+        JMenuItem exportTasks = new JMenuItem("Export tasks...");
+        exportTasks.addActionListener(e -> chooseExport(true));
+        fileMenu.add(exportTasks);
+        JMenuItem backup = new JMenuItem("Back up...");
+        backup.addActionListener(e -> chooseBackup());
+        fileMenu.add(backup);
+        fileMenu.addSeparator();
+        JMenuItem budgets = new JMenuItem("Budgets...");
+        budgets.addActionListener(e -> manageBudgets());
+        fileMenu.add(budgets);
+        JMenuBar menuBar = new JMenuBar();
+        menuBar.add(fileMenu);
+        menuBar.add(createEditMenu());
+        return menuBar;
+    }
+
+    // Undo and redo, plus edit, delete and done for the rows selected in the current tab
+    private JMenu createEditMenu() {
+        editMenu = new JMenu("Edit");
+        editMenu.setEnabled(false);  // Until saved data has loaded
+        JMenuItem undo = new JMenuItem("Undo");
+        undo.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK));
+        undo.addActionListener(e -> {
+            if (history.undo()) {
+                refreshViews();
+            }
+        });
+        editMenu.add(undo);
+        JMenuItem redo = new JMenuItem("Redo");
+        redo.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK));
+        redo.addActionListener(e -> {
+            if (history.redo()) {
+                refreshViews();
+            }
+        });
+        editMenu.add(redo);
+        editMenu.addSeparator();
+        JMenuItem edit = new JMenuItem("Edit selected...");
+        edit.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_E, InputEvent.CTRL_DOWN_MASK));
+        edit.addActionListener(e -> editSelected());
+        editMenu.add(edit);
+        JMenuItem delete = new JMenuItem("Delete selected");
+        delete.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_DELETE, 0));
+        delete.addActionListener(e -> deleteSelected());
+        editMenu.add(delete);
+        JMenuItem done = new JMenuItem("Mark task done/not done");
+        done.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_D, InputEvent.CTRL_DOWN_MASK));
+        done.addActionListener(e -> toggleSelectedDone());
+        editMenu.add(done);
+        editMenu.addMenuListener(new MenuListener() {
+            @Override
+            public void menuSelected(MenuEvent e) {
+                String undoLabel = history.undoLabel();  // Items stay enabled so their shortcuts keep working
+                String redoLabel = history.redoLabel();
+                undo.setText(undoLabel == null ? "Undo" : "Undo " + undoLabel);
+                redo.setText(redoLabel == null ? "Redo" : "Redo " + redoLabel);
+            }
+
+            @Override
+            public void menuDeselected(MenuEvent e) {
+            }
+
+            @Override
+            public void menuCanceled(MenuEvent e) {
+            }
+        });
+        return editMenu;
+    }
+
+    // Whether the current tab lists tasks rather than expenses or reports
+    private boolean onTaskTab() {
+        int tab = tabbedPane.getSelectedIndex();
+        return tab == 1 || tab == 3;
+    }
+
+    // Store rows selected in the current tab; none on the reports tab
+    private int[] selectedRows() {
+        int tab = tabbedPane.getSelectedIndex();
+        if (tab == 2) {
+            return new int[0];
+        }
+        JTable table = tab == 0 ? expenseTable : tab == 1 ? taskTable : nextUpTable;
+        int[] selected = table.getSelectedRows();
+        int[] rows = new int[selected.length];
+        for (int i = 0; i < selected.length; i++) {
+            rows[i] = tab == 0 ? expenseTableModel.indexAt(selected[i])
+                    : tab == 1 ? taskTableModel.indexAt(selected[i]) : nextUpTableModel.rowAt(selected[i]);
+        }
+        return rows;
+    }
+
+    // Delete the selected expenses or tasks as one command
+    private void deleteSelected() {
+        int[] rows = selectedRows();
+        if (rows.length == 0) {
+            JOptionPane.showMessageDialog(this, "Select the rows to delete first.");
+            return;
+        }
+        history.delete(onTaskTab(), rows);
+        refreshViews();
+    }
+
+    // Flip the done mark of the selected tasks
+    private void toggleSelectedDone() {
+        int[] rows = onTaskTab() ? selectedRows() : new int[0];
+        if (rows.length == 0) {
+            JOptionPane.showMessageDialog(this, "Select the tasks to mark first.");
+            return;
+        }
+        for (int row : rows) {
+            history.complete(row, !store.task(row).isDone());  // Each is its own command
+        }
+        refreshViews();
+    }
+
+    // Edit the first selected expense or task in a form; the store appends the new version and hides the old
+    private void editSelected() {
+        int[] rows = selectedRows();
+        if (rows.length == 0) {
+            JOptionPane.showMessageDialog(this, "Select a row to edit first.");
+            return;
+        }
+        boolean edited = onTaskTab() ? editTask(rows[0]) : editExpense(rows[0]);
+        if (edited) {
+            refreshViews();
+        }
+    }
+
+    private boolean editExpense(int row) {
+        Expense expense = store.expense(row);
+        JTextField titleField = new JTextField(expense.getTitle());
+        JTextField descriptionField = new JTextField(expense.getDescription());
+        JTextField amountField = new JTextField(Money.format(expense.getAmountMinor()));
+        JTextField currencyField = new JTextField(expense.getCurrency());
+        JComboBox<String> categoryField = new JComboBox<>(store.names().categories().toArray(new String[0]));
+        categoryField.setEditable(true);
+        categoryField.setSelectedItem(expense.getCategory());
+        LocalDate day = LocalDate.ofEpochDay(ColumnarExpenseList.epochDay(expense.getDate()));
+        JTextField dateField = new JTextField(day.toString());
+        JPanel form = new JPanel(new GridLayout(6, 2, 5, 5));
+        form.add(new JLabel("Title:"));
+        form.add(titleField);
+        form.add(new JLabel("Description:"));
+        form.add(descriptionField);
+        form.add(new JLabel("Amount:"));
+        form.add(amountField);
+        form.add(new JLabel("Currency:"));
+        form.add(currencyField);
+        form.add(new JLabel("Category:"));
+        form.add(categoryField);
+        form.add(new JLabel("Date (yyyy-MM-dd):"));
+        form.add(dateField);
+        while (JOptionPane.showConfirmDialog(this, form, "Edit expense", JOptionPane.OK_CANCEL_OPTION) == JOptionPane.OK_OPTION) {
+            try {
+                LocalDate date = LocalDate.parse(dateField.getText().trim());
+                Expense next = ExpenseStore.newExpense(titleField.getText(), descriptionField.getText(),
+                        amountField.getText().trim(), currencyField.getText(), String.valueOf(categoryField.getSelectedItem()),
+                        date.equals(day) ? expense.getDate() : ColumnarExpenseList.dateOf((int) date.toEpochDay()));
+                if (!history.editExpense(row, next)) {
+                    JOptionPane.showMessageDialog(this, "That expense was deleted or changed meanwhile.");
+                }
+                return true;
+            } catch (IllegalArgumentException e) {
+                JOptionPane.showMessageDialog(this, e.getMessage());
+            } catch (DateTimeParseException e) {
+                JOptionPane.showMessageDialog(this, "Bad date, expected yyyy-MM-dd: " + e.getParsedString());
+            }
+        }
+        return false;
+    }
+
+    private boolean editTask(int row) {
+        Task task = store.task(row);
+        JTextField titleField = new JTextField(task.getTitle());
+        JTextField descriptionField = new JTextField(task.getDescription());
+        JComboBox<String> priorityField = new JComboBox<>(store.names().priorities().toArray(new String[0]));
+        priorityField.setSelectedItem(task.getPriority());
+        LocalDate day = LocalDate.ofEpochDay(ColumnarExpenseList.epochDay(task.getDate()));
+        JTextField dateField = new JTextField(day.toString());
+        JTextField dueField = new JTextField(task.hasDue() ? LocalDate.ofEpochDay(task.getDueDay()).toString() : "");
+        JCheckBox doneField = new JCheckBox("Done", task.isDone());
+        JPanel form = new JPanel(new GridLayout(6, 2, 5, 5));
+        form.add(new JLabel("Title:"));
+        form.add(titleField);
+        form.add(new JLabel("Description:"));
+        form.add(descriptionField);
+        form.add(new JLabel("Priority:"));
+        form.add(priorityField);
+        form.add(new JLabel("Date (yyyy-MM-dd):"));
+        form.add(dateField);
+        form.add(new JLabel("Due (yyyy-MM-dd):"));
+        form.add(dueField);
+        form.add(new JLabel());
+        form.add(doneField);
+        while (JOptionPane.showConfirmDialog(this, form, "Edit task", JOptionPane.OK_CANCEL_OPTION) == JOptionPane.OK_OPTION) {
+            try {
+                LocalDate date = LocalDate.parse(dateField.getText().trim());
+                Task next = store.newTask(titleField.getText(), descriptionField.getText(),
+                        (String) priorityField.getSelectedItem(),
+                        date.equals(day) ? task.getDate() : ColumnarExpenseList.dateOf((int) date.toEpochDay()),
+                        dueDate(dueField)).withDone(doneField.isSelected());
+                if (!history.editTask(row, next)) {
+                    JOptionPane.showMessageDialog(this, "That task was deleted or changed meanwhile.");
+                }
+                return true;
+            } catch (IllegalArgumentException e) {
+                JOptionPane.showMessageDialog(this, e.getMessage());
+            } catch (DateTimeParseException e) {
+                JOptionPane.showMessageDialog(this, "Bad date, expected yyyy-MM-dd: " + e.getParsedString());
+            }
+        }
+        return false;
+    }
+
+    // Back up into a chosen repository directory in the background; restores are done from the command line
+    // (see BackupRepository.main) while the app is closed
+    private void chooseBackup() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Backup repository");
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path repository = chooser.getSelectedFile().toPath();
+        new SwingWorker<BackupRepository.Result, Void>() {
+            @Override
+            protected BackupRepository.Result doInBackground() throws IOException {
+                return store.backup(new BackupRepository(repository));
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    JOptionPane.showMessageDialog(OOPS_CIA2.this, get().summary());
+                } catch (InterruptedException | ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(OOPS_CIA2.this, "Backup failed: " + cause.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    // Ask for filters and a file (.csv for CSV, anything else columnar), then export in the background
+    private void chooseExport(boolean tasks) {
+        List<String> keys = new ArrayList<>();
+        keys.add("Any");
+        keys.addAll(tasks ? store.names().priorities() : store.names().categories());
+        JComboBox<String> keyField = new JComboBox<>(keys.toArray(new String[0]));
+        JTextField fromField = new JTextField();
+        JTextField toField = new JTextField();
+        JPanel filters = new JPanel(new GridLayout(3, 2, 5, 5));
+        filters.add(new JLabel(tasks ? "Priority:" : "Category:"));
+        filters.add(keyField);
+        filters.add(new JLabel("From (yyyy-MM-dd):"));
+        filters.add(fromField);
+        filters.add(new JLabel("To (yyyy-MM-dd):"));
+        filters.add(toField);
+        if (JOptionPane.showConfirmDialog(this, filters, "Export filters", JOptionPane.OK_CANCEL_OPTION)
+                != JOptionPane.OK_OPTION) {
+            return;
+        }
+        Exporter.Filter filter;
+        try {
+            String key = keyField.getSelectedIndex() == 0 ? null : (String) keyField.getSelectedItem();
+            filter = new Exporter.Filter(key, optionalDate(fromField.getText()), optionalDate(toField.getText()));
+        } catch (DateTimeParseException ex) {
+            JOptionPane.showMessageDialog(this, "Bad date, expected yyyy-MM-dd: " + ex.getParsedString());
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File(tasks ? "tasks.csv" : "expenses.csv"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path out = chooser.getSelectedFile().toPath();
+        fileMenu.setEnabled(false);
+        new SwingWorker<Long, Void>() {
+            @Override
+            protected Long doInBackground() throws IOException {
+                return Exporter.export(store, tasks, filter, out);
+            }
+
+            @Override
+            protected void done() {
+                fileMenu.setEnabled(true);
+                try {
+                    JOptionPane.showMessageDialog(OOPS_CIA2.this, String.format("Exported %,d rows to %s", get(), out));
+                } catch (InterruptedException | ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(OOPS_CIA2.this, "Export failed: " + cause.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    private static LocalDate optionalDate(String text) {
+        return text.trim().isEmpty() ? null : LocalDate.parse(text.trim());
+    }
+
+    // The working directory, or with -Dexpenses.ledger=<name> that ledger of the current user (or of
+    // -Dexpenses.user) under ./ledgers, laid out as the API's ledger manager expects
+    private static Path dataDirectory() {
+        String ledger = System.getProperty("expenses.ledger");
+        if (ledger == null) {
+            return Paths.get("");
+        }
+        return LedgerManager.directory(Paths.get("ledgers"), System.getProperty("expenses.user",
+                System.getProperty("user.name")), ledger);
+    }
+
+    // Serve the HTTP API alongside the window when started with -Dexpenses.api.port=<port>
+    private void startApi() {
+        Integer port = Integer.getInteger("expenses.api.port");
+        if (port == null) {
+            return;
+        }
+        try {
+            api = ApiServer.start(store, port);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Could not start the API on port " + port + ": " + e.getMessage());
+        }
+    }
+
+    // JFR events for the window, next to the store's in the "Expense Tracker" category of a recording
+    @Name("expenses.Summary")
+    @Label("Summary")
+    @Category("Expense Tracker")
+    static class SummaryEvent extends Event {
+        @Label("Expenses")
+        long expenses;
+        @Label("Tasks")
+        int tasks;
+    }
+
+    @Name("expenses.Render")
+    @Label("Refresh Views")
+    @Category("Expense Tracker")
+    static class RenderEvent extends Event {
+        @Label("Expense Rows")
+        int expenseRows;
+        @Label("Task Rows")
+        int taskRows;
+    }
+
+    public static void main(String[] args) {
+        SwingUtilities.invokeLater(() -> {
+            new OOPS_CIA2().setVisible(true);  
+        });
+    }
+}
+
@@ -0,0 +1,53 @@
+package expenses.core;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Rows and scratch directories shared by the benchmarks
+final class BenchmarkData {
+    static final String[] CATEGORIES = {"Food", "Travel", "Entertainment", "Other"};
+
+    private BenchmarkData() {
+    }
+
+    // Deterministic rows generated on demand, so large sizes do not need the heap to hold them
+    static List<Expense> expenses(int rows) {
+        long start = System.currentTimeMillis();
+        return new AbstractList<Expense>() {
+            @Override
+            public Expense get(int i) {
+                return new Expense("Expense " + i, "Generated row " + (i % 977), 100L + (i * 7919L) % 100_000,
+                        Money.DEFAULT_CURRENCY, CATEGORIES[i & 3], new Date(start - (i % 3650) * 86_400_000L));
+            }
+
+            @Override
+            public int size() {
+                return rows;
+            }
+        };
+    }
+
+    // Remove a directory and everything under it
+    static void delete(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    // Empty a directory, keeping it
+    static void clear(Path dir) throws IOException {
+        delete(dir);
+        Files.createDirectories(dir);
+    }
+}
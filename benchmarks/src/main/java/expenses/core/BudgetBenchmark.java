@@ -0,0 +1,76 @@
+package expenses.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Publishing 100k expenses in batches of 1000 into a fresh store with no budgets, or with thousands: a
+// budget for every period of each of a thousand categories, the four the rows use among them, and
+// overall ones
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BudgetBenchmark {
+    private static final int ROWS = 100_000;
+
+    @Param({"0", "4004"})
+    int budgets;
+
+    private List<Expense> generated;
+    private Path dir;
+    private ExpenseStore store;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        generated = BenchmarkData.expenses(ROWS);
+    }
+
+    @Setup(Level.Invocation)
+    public void open(Blackhole blackhole) throws IOException {
+        dir = Files.createTempDirectory("expense-bench");
+        store = new ExpenseStore(dir);
+        store.load();
+        for (int i = 0; i < budgets / Budget.PERIODS.size(); i++) {
+            for (String period : Budget.PERIODS) {
+                String category = i < BenchmarkData.CATEGORIES.length ? BenchmarkData.CATEGORIES[i]
+                        : i == 1_000 ? null : "Category " + i;
+                store.budgets().add(category, Money.DEFAULT_CURRENCY, period, 1_000_000_000L, Budget.DEFAULT_PERCENTS);
+            }
+        }
+        store.budgets().addListener(alert -> blackhole.consume(alert.percent));  // Delivery is part of the cost
+    }
+
+    @TearDown(Level.Invocation)
+    public void close() throws IOException {
+        store.close();
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    public int addExpenses() {
+        for (int i = 0; i < ROWS; i += 1_000) {
+            store.addExpenses(generated.subList(i, Math.min(ROWS, i + 1_000)));
+        }
+        return ROWS;
+    }
+}
@@ -0,0 +1,128 @@
+package expenses.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// The record codec against the Java serialization it replaced, writing and reading a whole list of
+// expenses or tasks. Loading a serialized file goes through RecordCodec.read too, which converts the
+// old classes as it does for files from earlier versions. One operation covers all rows
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CodecBenchmark {
+    @Param({"10000", "1000000"})
+    int rows;
+
+    private List<Expense> expenses;
+    private List<Task> tasks;
+    private ArrayList<RecordCodec.LegacyExpense> legacyExpenses;
+    private ArrayList<RecordCodec.LegacyTask> legacyTasks;
+    private Path dir;
+    private Path expenseCodec;
+    private Path taskCodec;
+    private Path expenseSer;
+    private Path taskSer;
+    private Path scratch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        expenses = new ArrayList<>(BenchmarkData.expenses(rows));
+        tasks = new ArrayList<>(rows);
+        legacyExpenses = new ArrayList<>(rows);
+        legacyTasks = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            Expense e = expenses.get(i);
+            Task t = new Task("Task " + i, e.getDescription(), e.getDate(), CodeRegistry.PRIORITIES.get(i % 3));
+            tasks.add(t);
+            legacyExpenses.add(new RecordCodec.LegacyExpense(e));
+            legacyTasks.add(new RecordCodec.LegacyTask(t));
+        }
+        dir = Files.createTempDirectory("expense-bench");
+        expenseCodec = dir.resolve("expenses.snap");
+        taskCodec = dir.resolve("tasks.snap");
+        expenseSer = dir.resolve("expenses.ser");
+        taskSer = dir.resolve("tasks.ser");
+        scratch = dir.resolve("scratch");
+        RecordCodec.writeExpenses(expenseCodec, 1, expenses);
+        RecordCodec.writeTasks(taskCodec, 1, tasks);
+        serialize(expenseSer, legacyExpenses);
+        serialize(taskSer, legacyTasks);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(dir);
+    }
+
+    private static long serialize(Path file, Object rows) throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeObject(rows);
+        }
+        return Files.size(file);
+    }
+
+    @Benchmark
+    public long codecSaveExpenses() throws IOException {
+        RecordCodec.writeExpenses(scratch, 1, expenses);
+        return Files.size(scratch);
+    }
+
+    @Benchmark
+    public long codecLoadExpenses() throws IOException {
+        return RecordCodec.read(expenseCodec, new ArrayList<Expense>(rows));
+    }
+
+    @Benchmark
+    public long codecSaveTasks() throws IOException {
+        RecordCodec.writeTasks(scratch, 1, tasks);
+        return Files.size(scratch);
+    }
+
+    @Benchmark
+    public long codecLoadTasks() throws IOException {
+        return RecordCodec.read(taskCodec, new ArrayList<Task>(rows));
+    }
+
+    @Benchmark
+    public long serializationSaveExpenses() throws IOException {
+        return serialize(scratch, legacyExpenses);
+    }
+
+    @Benchmark
+    public long serializationLoadExpenses() throws IOException {
+        return RecordCodec.read(expenseSer, new ArrayList<Expense>(rows));
+    }
+
+    @Benchmark
+    public long serializationSaveTasks() throws IOException {
+        return serialize(scratch, legacyTasks);
+    }
+
+    @Benchmark
+    public long serializationLoadTasks() throws IOException {
+        return RecordCodec.read(taskSer, new ArrayList<Task>(rows));
+    }
+}
@@ -0,0 +1,108 @@
+package expenses.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Exact minor units against the doubles they replaced: parsing amount text as the form, the import
+// and the API do, formatting it back, and summing a column as the totals do. Per amount
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+    private static final int SAMPLE = 1024;
+    private static final int COLUMN = 1 << 20;
+
+    private String[] inputs;
+    private long[] minor;
+    private double[] doubles;
+
+    @Setup
+    public void setUp() {
+        inputs = new String[SAMPLE];
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLE; i++) {
+            inputs[i] = random.nextInt(100_000) + "." + (10 + random.nextInt(90));
+        }
+        minor = new long[COLUMN];
+        doubles = new double[COLUMN];
+        for (int i = 0; i < COLUMN; i++) {
+            minor[i] = Money.parseMinor(inputs[i & SAMPLE - 1]);
+            doubles[i] = Double.parseDouble(inputs[i & SAMPLE - 1]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLE)
+    public long parseMinor() {
+        long sum = 0;
+        for (String input : inputs) {
+            sum += Money.parseMinor(input);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLE)
+    public double parseDouble() {
+        double sum = 0;
+        for (String input : inputs) {
+            sum += Double.parseDouble(input);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLE)
+    public int formatMinor() {
+        int length = 0;
+        for (int i = 0; i < SAMPLE; i++) {
+            length += Money.format(minor[i]).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLE)
+    public int formatDouble() {
+        int length = 0;
+        for (int i = 0; i < SAMPLE; i++) {
+            length += String.format("%.2f", doubles[i]).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COLUMN)
+    public long sumLong() {
+        long sum = 0;
+        for (long v : minor) {
+            sum = Math.addExact(sum, v);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COLUMN)
+    public double sumDouble() {
+        double sum = 0;
+        for (double v : doubles) {
+            sum += v;
+        }
+        return sum;
+    }
+}
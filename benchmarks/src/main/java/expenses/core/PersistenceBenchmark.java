@@ -0,0 +1,120 @@
+package expenses.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Saving and loading a whole ledger, the work the original saveData() and loadExpenses() did on every
+// change and start: appending every row to the journal, replaying it, writing and mapping the columnar
+// snapshot, and loading a store from its snapshot files. One operation covers all rows
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PersistenceBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    int rows;
+
+    private List<Expense> generated;
+    private Path dir;
+    private Path journalDir;  // All rows in one journal segment
+    private Path scratch;     // Emptied before each save
+    private Path columns;
+    private Path storeDir;    // A snapshot as autosave leaves it
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        generated = BenchmarkData.expenses(rows);
+        dir = Files.createTempDirectory("expense-bench");
+        journalDir = Files.createDirectory(dir.resolve("journal"));
+        scratch = Files.createDirectory(dir.resolve("scratch"));
+        storeDir = Files.createDirectory(dir.resolve("store"));
+        columns = dir.resolve("expenses.col");
+        appendAll(journalDir);
+        ColumnarExpenseList.of(generated).writeTo(columns, 1);
+        ExpenseStore store = new ExpenseStore(storeDir);
+        store.load();
+        for (int i = 0; i < rows; i += 10_000) {
+            store.addExpenses(generated.subList(i, Math.min(rows, i + 10_000)));
+        }
+        store.checkpoint();
+        store.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(dir);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearScratch() throws IOException {
+        BenchmarkData.clear(scratch);
+    }
+
+    @Benchmark
+    public long saveJournal() throws IOException {
+        return appendAll(scratch);
+    }
+
+    @Benchmark
+    public int loadJournal() throws IOException {
+        Journal journal = new Journal(journalDir);
+        int size = journal.recover().expenses.size();
+        journal.close();
+        Files.deleteIfExists(journalDir.resolve(String.format("journal-%010d.log", 2)));  // Opened by recover
+        return size;
+    }
+
+    @Benchmark
+    public long saveColumns() throws IOException {
+        Path file = scratch.resolve("expenses.col");
+        ColumnarExpenseList.of(generated).writeTo(file, 1);
+        return Files.size(file);
+    }
+
+    @Benchmark
+    public int openColumns() throws IOException {
+        return ColumnarExpenseList.open(columns).size();
+    }
+
+    @Benchmark
+    public long loadStore() throws IOException {
+        ExpenseStore store = new ExpenseStore(storeDir);
+        store.load();
+        long count = store.summary().expenses;
+        store.close();
+        return count;
+    }
+
+    // Append every row with a group commit every 64k rows, as the background flusher would
+    private long appendAll(Path into) throws IOException {
+        Journal journal = new Journal(into);
+        journal.recover();
+        for (int i = 0; i < rows; i++) {
+            journal.append(generated.get(i));
+            if ((i & 0xFFFF) == 0) {
+                journal.flush();
+            }
+        }
+        journal.close();
+        return Files.size(into.resolve(String.format("journal-%010d.log", 1)));
+    }
+}
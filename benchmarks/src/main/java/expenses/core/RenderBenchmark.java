@@ -0,0 +1,46 @@
+package expenses.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Formatting one row, as the tables and the text exports do for every visible row: getDetails()
+// builds a new String per call, the shared RowFormatter reuses one buffer
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+    private static final int SAMPLE = 1 << 16;
+
+    private Expense[] sample;
+    private RowFormatter formatter;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        sample = BenchmarkData.expenses(SAMPLE).toArray(new Expense[0]);
+        formatter = RowFormatter.forThread();
+    }
+
+    @Benchmark
+    public int getDetails() {
+        return sample[next++ & SAMPLE - 1].getDetails().length();
+    }
+
+    @Benchmark
+    public int rowFormatter() {
+        return formatter.expense(sample[next++ & SAMPLE - 1]).length();
+    }
+}
@@ -0,0 +1,83 @@
+package expenses.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Building, reading and querying the full-text index of expense titles and descriptions
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    @Param({"10000", "1000000"})
+    int rows;
+
+    private Path dir;
+    private ColumnarExpenseList mapped;
+    private TextIndex text;
+    private Path textFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("expense-bench");
+        Path columns = dir.resolve("expenses.col");
+        ColumnarExpenseList.of(BenchmarkData.expenses(rows)).writeTo(columns, 1);
+        mapped = ColumnarExpenseList.open(columns);
+        text = TextIndex.build(mapped);
+        textFile = dir.resolve("expenses.txi");
+        text.image().write(textFile, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    public int build() {
+        return TextIndex.build(mapped).termCount();
+    }
+
+    @Benchmark
+    public int indexRead() {
+        return TextIndex.read(textFile, 1, rows).termCount();
+    }
+
+    @Benchmark
+    public int rareWord() {
+        return text.search(rows / 2 + " ", 100).length;
+    }
+
+    @Benchmark
+    public int twoWords() {
+        return text.search("row 42 ", 100).length;
+    }
+
+    @Benchmark
+    public int prefix() {
+        return text.search("generated ro", 100).length;
+    }
+
+    @Benchmark
+    public int everyRow() {
+        return text.search("expense ", 100).length;  // Worst case: all rows match
+    }
+}
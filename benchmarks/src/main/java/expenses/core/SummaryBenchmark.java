@@ -0,0 +1,98 @@
+package expenses.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// What displaySummary() and the Reports tab cost: reading the running aggregates against rebuilding
+// them or rescanning every row as the original summary did, and one rollup cell against scanning
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SummaryBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    int rows;
+
+    private Path dir;
+    private ColumnarExpenseList mapped;
+    private ExpenseAggregates aggregates;
+    private RollupCube cube;
+    private int lastMonth;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("expense-bench");
+        Path columns = dir.resolve("expenses.col");
+        ColumnarExpenseList.of(BenchmarkData.expenses(rows)).writeTo(columns, 1);
+        mapped = ColumnarExpenseList.open(columns);
+        aggregates = new ExpenseAggregates();
+        mapped.aggregateInto(aggregates);
+        cube = RollupCube.build(mapped, new Tombstones());
+        lastMonth = RollupCube.epochMonth(cube.shape().lastDay);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    public long aggregateRead() {
+        return aggregates.total(Money.DEFAULT_CURRENCY) + aggregates.count();
+    }
+
+    @Benchmark
+    public long aggregateBuild() {
+        ExpenseAggregates built = new ExpenseAggregates();
+        mapped.aggregateInto(built);
+        return built.count();
+    }
+
+    @Benchmark
+    public long fullRescan() {
+        long sum = 0;
+        for (int i = 0; i < rows; i++) {
+            sum += mapped.get(i).getAmountMinor();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long rollupBuild() {
+        return RollupCube.build(mapped, new Tombstones()).rows();
+    }
+
+    @Benchmark
+    public long rollupMonthCategory() {
+        return cube.total(true, Money.DEFAULT_CURRENCY, "Food", lastMonth);
+    }
+
+    @Benchmark
+    public long rollupMonthCategoryScan() {
+        long sum = 0;
+        for (int i = 0; i < rows; i++) {
+            if (RollupCube.epochMonth(mapped.epochDayAt(i)) == lastMonth && mapped.categoryAt(i).equals("Food")) {
+                sum += mapped.amountMinorAt(i);
+            }
+        }
+        return sum;
+    }
+}
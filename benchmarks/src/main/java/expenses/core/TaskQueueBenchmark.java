@@ -0,0 +1,82 @@
+package expenses.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// The next-up queue against sorting every open task on each change, as a plain list view would
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskQueueBenchmark {
+    @Param({"10000", "1000000"})
+    int rows;
+
+    private List<Task> tasks;
+    private final Tombstones none = new Tombstones();
+    private final CodeRegistry names = new CodeRegistry();
+    private final TaskQueue queue = new TaskQueue(names);
+    private int next;
+
+    @Setup
+    public void setUp() {
+        tasks = new ArrayList<>(rows);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < rows; i++) {
+            tasks.add(new Task("Task " + i, "Generated row", new Date(start - (i % 3650) * 86_400_000L),
+                    CodeRegistry.PRIORITIES.get(i % 3), false, i % 5 == 0 ? Task.NO_DUE : 20_000 + (i * 7919) % 365));
+        }
+        queue.build(tasks, none);
+    }
+
+    @Benchmark
+    public int build() {
+        TaskQueue built = new TaskQueue(names);
+        built.build(tasks, none);
+        return built.size();
+    }
+
+    // Complete one task and reopen it: a removal and an insert
+    @Benchmark
+    public int completeReopen() {
+        int row = next;
+        next = (int) ((next + 7919L) % rows);
+        queue.remove(row);
+        queue.add(row, tasks.get(row));
+        return queue.size();
+    }
+
+    @Benchmark
+    public int next50() {
+        return queue.top(50)[0];
+    }
+
+    @Benchmark
+    public int next50FullSort() {
+        Integer[] order = new Integer[rows];
+        for (int i = 0; i < rows; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingLong(i -> queue.key(tasks.get(i)))
+                .thenComparingLong(i -> tasks.get(i).getTime()));
+        return order[0];
+    }
+}
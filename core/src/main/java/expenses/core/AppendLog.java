@@ -0,0 +1,91 @@
+package expenses.core;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+// Append-only list for one writer at a time and any number of lock-free readers. Elements live in
+// fixed-size chunks that never move, and the size is published with a volatile write after the
+// elements, so a reader that sees a size also sees every element below it. snapshot() is O(1):
+// it shares the chunks with a fixed size, and later appends only ever write past that size
+final class AppendLog<T> extends AbstractList<T> implements RandomAccess {
+    private static final int CHUNK_BITS = 12;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private volatile Object[][] chunks;  // Replaced by a longer copy when full; slots below size never change
+    private volatile int size;
+    private final boolean frozen;
+
+    AppendLog() {
+        this(8);
+    }
+
+    // Room for the given number of chunks before the directory first grows
+    AppendLog(int directory) {
+        this(new Object[directory][], 0, false);
+    }
+
+    private AppendLog(Object[][] chunks, int size, boolean frozen) {
+        this.chunks = chunks;
+        this.size = size;
+        this.frozen = frozen;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        Objects.checkIndex(index, size);  // Read size before chunks, see add
+        return (T) chunks[index >>> CHUNK_BITS][index & (CHUNK_SIZE - 1)];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // Callers serialize writers; readers see the element once this returns
+    @Override
+    public boolean add(T element) {
+        int at = size;
+        slotFor(at)[at & (CHUNK_SIZE - 1)] = element;
+        size = at + 1;  // Publishes the element and any new chunk
+        return true;
+    }
+
+    // Append a batch that readers see all at once
+    @Override
+    public boolean addAll(Collection<? extends T> batch) {
+        int at = size;
+        for (T element : batch) {
+            slotFor(at)[at & (CHUNK_SIZE - 1)] = element;
+            at++;
+        }
+        size = at;
+        return !batch.isEmpty();
+    }
+
+    // Chunk that will hold the given index, allocated (and the directory grown) on first use
+    private Object[] slotFor(int index) {
+        if (frozen) {
+            throw new UnsupportedOperationException("Snapshot is read-only");
+        }
+        int chunk = index >>> CHUNK_BITS;
+        Object[][] directory = chunks;
+        if (chunk == directory.length) {
+            directory = Arrays.copyOf(directory, directory.length * 2);
+            chunks = directory;
+        }
+        if (directory[chunk] == null) {
+            directory[chunk] = new Object[CHUNK_SIZE];
+        }
+        return directory[chunk];
+    }
+
+    // The current contents, unaffected by later appends
+    AppendLog<T> snapshot() {
+        int fixed = size;
+        return new AppendLog<>(chunks, fixed, true);
+    }
+}
@@ -0,0 +1,170 @@
+package expenses.core;
+
+import java.io.*;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Single writer thread that turns dirty notifications into coalesced snapshots. A save seals the
+// journal and captures the rows under the store lock (cheap, see captureSnapshot), then writes the snapshot
+// on the writer thread with temp file + atomic rename. The journal already makes every entry
+// durable, so a save only waits for the user to go idle or for enough unsnapshotted data
+class AutosaveScheduler {
+    private static final long DEBOUNCE_MILLIS = 2_000;     // Quiet time before checking for a save
+    private static final long IDLE_SAVE_MILLIS = 30_000;   // Save small changes after this long without edits
+    private static final long SIZE_THRESHOLD = 4L << 20;   // Save right away past this much journal data
+    private static final Metrics.Histogram SAVE_TIME = Metrics.REGISTRY.timer("autosave_save_seconds");
+    private static final Metrics.Histogram SNAPSHOT_BYTES = Metrics.REGISTRY.histogram("autosave_snapshot_bytes");
+    private static final Metrics.Counter FAILURES = Metrics.REGISTRY.counter("autosave_failures");
+
+    // Rows and journal position captured together under the store lock
+    static class Snapshot {
+        final long sealedGeneration;
+        final ColumnarExpenseList expenses;
+        final List<Task> tasks;
+        final RowIndex expenseIndex;  // Same rows as expenses
+        final RollupCube rollups;     // Same rows as expenses
+        final TextIndex.Image expenseText;  // Same rows as expenses
+        final RowIndex taskIndex;     // Same rows as tasks
+        final TextIndex.Image taskText;     // Same rows as tasks
+        final Tombstones hiddenExpenses;    // Copies, as of the same moment
+        final Tombstones hiddenTasks;
+        final CodeRegistry names;           // Live, and append-only, so it covers at least these rows
+
+        Snapshot(long sealedGeneration, ColumnarExpenseList expenses, List<Task> tasks, RowIndex expenseIndex,
+                 RollupCube rollups, TextIndex.Image expenseText, RowIndex taskIndex, TextIndex.Image taskText,
+                 Tombstones hiddenExpenses, Tombstones hiddenTasks, CodeRegistry names) {
+            this.sealedGeneration = sealedGeneration;
+            this.expenses = expenses;
+            this.tasks = tasks;
+            this.expenseIndex = expenseIndex;
+            this.rollups = rollups;
+            this.expenseText = expenseText;
+            this.taskIndex = taskIndex;
+            this.taskText = taskText;
+            this.hiddenExpenses = hiddenExpenses;
+            this.hiddenTasks = hiddenTasks;
+            this.names = names;
+        }
+    }
+
+    private final Journal journal;
+    private final Supplier<Snapshot> capture;  // Called on the writer thread
+    private final Runnable failed;             // Called on the writer thread after a background save fails
+    private final ScheduledThreadPoolExecutor writer = new ScheduledThreadPoolExecutor(1, Journal.daemon("autosave"));
+    private final AtomicLong version = new AtomicLong();  // Bumped on every change
+    private volatile long savedVersion;
+    private volatile long lastDirtyMillis;
+    private volatile Exception lastFailure;  // Of the latest save, null once one succeeds
+    private ScheduledFuture<?> scheduled;  // Guarded by this
+
+    AutosaveScheduler(Journal journal, Supplier<Snapshot> capture, Runnable failed) {
+        this.journal = journal;
+        this.capture = capture;
+        this.failed = failed;
+        writer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);  // Don't wait for a future save on close
+    }
+
+    // Note a change; any number of calls before the next save collapse into one save
+    void markDirty() {
+        version.incrementAndGet();
+        lastDirtyMillis = System.currentTimeMillis();
+        schedule(DEBOUNCE_MILLIS);
+    }
+
+    private synchronized void schedule(long delayMillis) {
+        if (scheduled == null && !writer.isShutdown()) {
+            scheduled = writer.schedule(this::run, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void run() {
+        synchronized (this) {
+            scheduled = null;
+        }
+        long target = version.get();
+        if (target == savedVersion) {
+            return;
+        }
+        long idle = System.currentTimeMillis() - lastDirtyMillis;
+        if (journal.unsealedBytes() < SIZE_THRESHOLD && idle < IDLE_SAVE_MILLIS) {
+            schedule(DEBOUNCE_MILLIS);  // Still busy and little to save; look again shortly
+            return;
+        }
+        try {
+            save();
+        } catch (IOException | RuntimeException e) {
+            // Anything escaping here would vanish into the scheduled future. Segments are only deleted
+            // after a complete save, so nothing is lost; the store stays dirty and the save is retried
+            lastFailure = e;
+            FAILURES.add(1);
+            e.printStackTrace();
+            failed.run();
+            schedule(IDLE_SAVE_MILLIS);
+            return;
+        }
+        if (version.get() != savedVersion) {
+            schedule(DEBOUNCE_MILLIS);  // Changes arrived while saving
+        }
+    }
+
+    // Why the latest save failed, or null if it succeeded
+    Exception lastFailure() {
+        return lastFailure;
+    }
+
+    private void save() throws IOException {
+        SaveEvent event = new SaveEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long capturedVersion = version.get();  // markDirty follows each change, so all of these are in the copy
+        Snapshot snapshot = capture.get();
+        journal.flush();  // Puts the sealed segment on disk and opens the next one
+        long bytes = journal.writeSnapshots(snapshot);
+        savedVersion = capturedVersion;
+        lastFailure = null;
+        SAVE_TIME.recordSince(start);
+        SNAPSHOT_BYTES.record(bytes);
+        event.generation = snapshot.sealedGeneration;
+        event.expenses = snapshot.expenses.size();
+        event.tasks = snapshot.tasks.size();
+        event.bytes = bytes;
+        event.commit();
+    }
+
+    // Save right away if anything changed since the last save, waiting for it on the calling thread
+    void saveNow() throws IOException {
+        onWriter(() -> {
+            if (version.get() != savedVersion) {
+                save();
+            }
+            return null;
+        });
+    }
+
+    // Run a task on the writer thread and wait for it; no save runs at the same time, so journal
+    // segments stay put until it returns
+    <T> T onWriter(Callable<T> task) throws IOException {
+        Future<T> done = writer.submit(task);
+        try {
+            return done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the autosave writer");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    // Stop scheduling saves and wait up to the timeout for a running one to finish
+    boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        writer.shutdown();
+        return writer.awaitTermination(timeout, unit);
+    }
+}
@@ -0,0 +1,478 @@
+package expenses.core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Content-addressed backups of a store directory. Files are cut into chunks where a rolling hash of
+// the last 64 bytes hits a pattern, so an insert or an append only changes the chunks around it. Each
+// distinct chunk is stored once, deflated, as segments/<2 hex>/<SHA-256 hex> and never rewritten. A
+// backup is a manifest in manifests/ naming every file with its chunks; it is written last, so an
+// interrupted backup leaves only unreferenced segments behind. A file whose size, modification time
+// and identity match the previous manifest reuses its chunk list without being read, so sealed
+// journal segments and unchanged snapshots cost nothing after their first backup. Indexes and rollups
+// are left out: a snapshot rewrites most of their bytes, and a restored store rebuilds them on load
+public final class BackupRepository {
+    private static final int MAGIC = 0x424B4D46;  // "BKMF"
+    private static final int VERSION = 1;
+    private static final int MIN_CHUNK = 16 << 10;
+    private static final int MAX_CHUNK = 256 << 10;
+    private static final long CUT_MASK = 0xFFFFL << 48;  // Top bits, which depend on the last 64 bytes: 64 KiB average
+    private static final long[] GEAR = gear();
+    private static final int HASH_BYTES = 32;
+
+    private final Path root;
+
+    public BackupRepository(Path root) {
+        this.root = root;
+    }
+
+    // One file of a backup and the chunks it is made of, in order
+    static final class Entry {
+        final String name;
+        final long size;
+        final long modifiedMillis;  // With identity, what a later backup compares to skip reading the file
+        final String identity;      // File key (device and inode) where the file system has one
+        final byte[][] hashes;
+        final int[] lengths;
+
+        Entry(String name, long size, long modifiedMillis, String identity, byte[][] hashes, int[] lengths) {
+            this.name = name;
+            this.size = size;
+            this.modifiedMillis = modifiedMillis;
+            this.identity = identity;
+            this.hashes = hashes;
+            this.lengths = lengths;
+        }
+    }
+
+    static final class Manifest {
+        final String name;
+        final long createdMillis;
+        final List<Entry> files;
+
+        Manifest(String name, long createdMillis, List<Entry> files) {
+            this.name = name;
+            this.createdMillis = createdMillis;
+            this.files = files;
+        }
+    }
+
+    // What one backup read and stored
+    public static final class Result {
+        final Manifest manifest;
+        final int filesRead;      // The others matched the previous manifest
+        final long bytesRead;
+        final int segmentsWritten;
+        final long bytesWritten;  // Compressed
+
+        Result(Manifest manifest, int filesRead, long bytesRead, int segmentsWritten, long bytesWritten) {
+            this.manifest = manifest;
+            this.filesRead = filesRead;
+            this.bytesRead = bytesRead;
+            this.segmentsWritten = segmentsWritten;
+            this.bytesWritten = bytesWritten;
+        }
+
+        public String summary() {
+            return String.format("Backup %s: %d files, %d read (%,d bytes), %d new segments (%,d bytes)",
+                    manifest.name, manifest.files.size(), filesRead, bytesRead, segmentsWritten, bytesWritten);
+        }
+    }
+
+    // Back up or restore a store directory that no running app has open:
+    //   java -cp core/target/classes expenses.core.BackupRepository backup <repository> [--dir data]
+    //   java -cp core/target/classes expenses.core.BackupRepository list <repository>
+    //   java -cp core/target/classes expenses.core.BackupRepository restore <repository> latest|<manifest>|<yyyy-MM-ddTHH:mm[:ss]> <empty directory>
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 2 && args[0].equals("backup")) {
+            ExpenseStore store = new ExpenseStore(Paths.get(args.length == 4 && args[2].equals("--dir") ? args[3] : ""));
+            try {
+                store.load();
+                System.out.println(store.backup(new BackupRepository(Paths.get(args[1]))).summary());
+            } finally {
+                store.close();
+            }
+        } else if (args.length == 2 && args[0].equals("list")) {
+            for (Manifest m : new BackupRepository(Paths.get(args[1])).manifests()) {
+                System.out.printf("%s  %s  %d files%n", m.name, Instant.ofEpochMilli(m.createdMillis), m.files.size());
+            }
+        } else if (args.length == 4 && args[0].equals("restore")) {
+            BackupRepository repository = new BackupRepository(Paths.get(args[1]));
+            Manifest manifest = repository.find(args[2]);
+            repository.restore(manifest, Paths.get(args[3]));
+            System.out.println("Restored " + manifest.name + " to " + args[3]);
+        } else {
+            System.err.println("Usage: backup <repository> [--dir data] | list <repository> | restore <repository> "
+                    + "latest|<manifest>|<yyyy-MM-ddTHH:mm[:ss]> <directory>");
+            System.exit(2);
+        }
+    }
+
+    // Back up every file of dir; the caller keeps files from being deleted meanwhile (see ExpenseStore.backup).
+    // A file still being appended to is backed up as far as it has been written
+    Result backup(Path dir) throws IOException {
+        Manifest previous = latest();
+        Map<String, Entry> before = new HashMap<>();
+        if (previous != null) {
+            previous.files.forEach(e -> before.put(e.name, e));
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path p : stream) {
+                String name = p.getFileName().toString();
+                if (Files.isRegularFile(p) && !name.endsWith(".tmp") && !Journal.derived(name)) {
+                    files.add(p);
+                }
+            }
+        }
+        files.sort(Comparator.naturalOrder());
+        MessageDigest sha = sha256();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        byte[] buffer = new byte[MAX_CHUNK];
+        List<Entry> entries = new ArrayList<>();
+        int filesRead = 0;
+        long bytesRead = 0;
+        int segmentsWritten = 0;
+        long bytesWritten = 0;
+        try {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    continue;  // Replaced by a rename since the listing
+                }
+                long modified = attributes.lastModifiedTime().toMillis();
+                String identity = String.valueOf(attributes.fileKey());
+                Entry old = before.get(name);
+                if (old != null && old.size == attributes.size() && old.modifiedMillis == modified
+                        && old.identity.equals(identity)) {
+                    entries.add(old);  // Unchanged since the last backup
+                    continue;
+                }
+                List<byte[]> hashes = new ArrayList<>();
+                IntList lengths = new IntList();
+                long size = 0;
+                try (InputStream in = Files.newInputStream(file)) {
+                    int filled = 0;
+                    boolean eof = false;
+                    while (!eof || filled > 0) {
+                        while (!eof && filled < buffer.length) {
+                            int n = in.read(buffer, filled, buffer.length - filled);
+                            if (n < 0) {
+                                eof = true;
+                            } else {
+                                filled += n;
+                            }
+                        }
+                        if (filled == 0) {
+                            break;
+                        }
+                        int cut = cut(buffer, filled, eof);
+                        sha.update(buffer, 0, cut);
+                        byte[] hash = sha.digest();
+                        long written = store(hash, buffer, cut, deflater);
+                        if (written > 0) {
+                            segmentsWritten++;
+                            bytesWritten += written;
+                        }
+                        hashes.add(hash);
+                        lengths.add(cut);
+                        size += cut;
+                        System.arraycopy(buffer, cut, buffer, 0, filled - cut);
+                        filled -= cut;
+                    }
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                filesRead++;
+                bytesRead += size;
+                entries.add(new Entry(name, size, modified, identity, hashes.toArray(new byte[0][]),
+                        lengths.toArray()));
+            }
+        } finally {
+            deflater.end();
+        }
+        return new Result(writeManifest(entries), filesRead, bytesRead, segmentsWritten, bytesWritten);
+    }
+
+    // End of the next chunk in buffer[0, filled): where the rolling hash hits the pattern, at least
+    // MIN_CHUNK in; a full buffer ends a chunk at MAX_CHUNK and the end of the file ends the last one
+    private static int cut(byte[] buffer, int filled, boolean eof) {
+        if (filled <= MIN_CHUNK) {
+            return filled;  // Only at the end of the file, the buffer is larger
+        }
+        long hash = 0;
+        int end = Math.min(filled, MAX_CHUNK);
+        for (int i = MIN_CHUNK - 64; i < end; i++) {  // Warm the hash up on the 64 bytes it covers
+            hash = (hash << 1) + GEAR[buffer[i] & 0xFF];
+            if (i >= MIN_CHUNK && (hash & CUT_MASK) == 0) {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+
+    // Write a chunk's segment unless the repository already has it; returns the bytes written
+    private long store(byte[] hash, byte[] data, int length, Deflater deflater) throws IOException {
+        Path segment = segmentPath(hash);
+        if (Files.exists(segment)) {
+            return 0;
+        }
+        deflater.reset();
+        deflater.setInput(data, 0, length);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2);
+        byte[] out = new byte[64 << 10];
+        while (!deflater.finished()) {
+            compressed.write(out, 0, deflater.deflate(out));
+        }
+        Files.createDirectories(segment.getParent());
+        writeAtomically(segment, compressed.toByteArray());
+        return compressed.size();
+    }
+
+    // Rebuild the files of a backup in an empty or new directory, checking every chunk against its hash
+    void restore(Manifest manifest, Path target) throws IOException {
+        Files.createDirectories(target);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(target)) {
+            if (stream.iterator().hasNext()) {
+                throw new IllegalArgumentException("Restore into an empty directory: " + target);
+            }
+        }
+        MessageDigest sha = sha256();
+        Inflater inflater = new Inflater();
+        try {
+            for (Entry entry : manifest.files) {
+                Path tmp = target.resolve(entry.name + ".tmp");
+                try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                    for (int i = 0; i < entry.hashes.length; i++) {
+                        byte[] chunk = read(entry.hashes[i], entry.lengths[i], inflater);
+                        if (!MessageDigest.isEqual(sha.digest(chunk), entry.hashes[i])) {
+                            throw new IOException("Damaged segment " + segmentPath(entry.hashes[i]));
+                        }
+                        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+                        while (buffer.hasRemaining()) {
+                            out.write(buffer);
+                        }
+                    }
+                    out.force(true);
+                }
+                Files.move(tmp, target.resolve(entry.name), StandardCopyOption.ATOMIC_MOVE);
+            }
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private byte[] read(byte[] hash, int length, Inflater inflater) throws IOException {
+        Path segment = segmentPath(hash);
+        byte[] chunk = new byte[length];
+        inflater.reset();
+        inflater.setInput(Files.readAllBytes(segment));
+        try {
+            int n = 0;
+            while (n < length && !inflater.finished()) {
+                int got = inflater.inflate(chunk, n, length - n);
+                if (got == 0 && inflater.needsInput()) {
+                    break;
+                }
+                n += got;
+            }
+            if (n != length || !inflater.finished()) {
+                throw new IOException("Damaged segment " + segment);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Damaged segment " + segment, e);
+        }
+        return chunk;
+    }
+
+    // Every backup, oldest first
+    List<Manifest> manifests() throws IOException {
+        List<Manifest> all = new ArrayList<>();
+        Path dir = root.resolve("manifests");
+        if (!Files.isDirectory(dir)) {
+            return all;
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.mf")) {
+            stream.forEach(files::add);
+        }
+        files.sort(Comparator.naturalOrder());  // Names are zero-padded creation times
+        for (Path file : files) {
+            all.add(readManifest(file));
+        }
+        return all;
+    }
+
+    Manifest latest() throws IOException {
+        List<Manifest> all = manifests();
+        return all.isEmpty() ? null : all.get(all.size() - 1);
+    }
+
+    // The last backup taken at or before a time, for point-in-time restore; null if there is none
+    Manifest at(long millis) throws IOException {
+        Manifest found = null;
+        for (Manifest m : manifests()) {
+            if (m.createdMillis <= millis) {
+                found = m;
+            }
+        }
+        return found;
+    }
+
+    // "latest", a manifest name, or a local date and time
+    Manifest find(String which) throws IOException {
+        Manifest found;
+        if (which.equals("latest")) {
+            found = latest();
+        } else if (Files.exists(root.resolve("manifests").resolve(which))) {
+            found = readManifest(root.resolve("manifests").resolve(which));
+        } else {
+            try {
+                found = at(LocalDateTime.parse(which).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("No backup named " + which);
+            }
+        }
+        if (found == null) {
+            throw new IllegalArgumentException("No backup at or before " + which);
+        }
+        return found;
+    }
+
+    // Layout: "BKMF", int version, long created millis, int file count, then per file its name, size,
+    // modification time, identity, chunk count and each chunk's SHA-256 and length; int CRC32 last
+    private Manifest writeManifest(List<Entry> entries) throws IOException {
+        long now = System.currentTimeMillis();
+        Path dir = root.resolve("manifests");
+        Files.createDirectories(dir);
+        String name = String.format("%015d.mf", now);
+        while (Files.exists(dir.resolve(name))) {
+            name = String.format("%015d.mf", ++now);  // Two backups in one millisecond
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(now);
+        out.writeInt(entries.size());
+        for (Entry e : entries) {
+            out.writeUTF(e.name);
+            out.writeLong(e.size);
+            out.writeLong(e.modifiedMillis);
+            out.writeUTF(e.identity);
+            out.writeInt(e.hashes.length);
+            for (int i = 0; i < e.hashes.length; i++) {
+                out.write(e.hashes[i]);
+                out.writeInt(e.lengths[i]);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+        writeAtomically(dir.resolve(name), bytes.toByteArray());
+        return new Manifest(name, now, entries);
+    }
+
+    private static Manifest readManifest(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, Math.max(0, bytes.length - 4));
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        if (bytes.length < 24 || in.getInt() != MAGIC || in.getInt() != VERSION
+                || in.getInt(bytes.length - 4) != (int) crc.getValue()) {
+            throw new IOException("Damaged or unsupported backup manifest: " + file);
+        }
+        try (DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes, 8, bytes.length - 12))) {
+            long created = data.readLong();
+            int count = data.readInt();
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String name = data.readUTF();
+                long size = data.readLong();
+                long modified = data.readLong();
+                String identity = data.readUTF();
+                byte[][] hashes = new byte[data.readInt()][HASH_BYTES];
+                int[] lengths = new int[hashes.length];
+                for (int j = 0; j < hashes.length; j++) {
+                    data.readFully(hashes[j]);
+                    lengths[j] = data.readInt();
+                }
+                entries.add(new Entry(name, size, modified, identity, hashes, lengths));
+            }
+            return new Manifest(file.getFileName().toString(), created, entries);
+        }
+    }
+
+    private Path segmentPath(byte[] hash) {
+        StringBuilder hex = new StringBuilder(HASH_BYTES * 2);
+        for (byte b : hash) {
+            hex.append(Character.forDigit(b >> 4 & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return root.resolve("segments").resolve(hex.substring(0, 2)).resolve(hex.toString());
+    }
+
+    // Temp file, fsync, atomic rename; the temp name is unique so concurrent backups don't collide
+    private static void writeAtomically(Path file, byte[] bytes) throws IOException {
+        Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    ch.write(buffer);
+                }
+                ch.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);  // Every JVM must provide it
+        }
+    }
+
+    // Random per-byte values of the rolling hash. Fixed forever: other values would cut existing
+    // files differently, and nothing already stored would be shared
+    private static long[] gear() {
+        SplittableRandom random = new SplittableRandom(0x42414B55505345EDL);
+        long[] gear = new long[256];
+        for (int i = 0; i < gear.length; i++) {
+            gear[i] = random.nextLong();
+        }
+        return gear;
+    }
+}
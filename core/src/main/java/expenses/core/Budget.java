@@ -0,0 +1,92 @@
+package expenses.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// A spending limit for one category, or all of them, in one currency over each calendar day, week
+// (Monday to Sunday), month or year, with alerts at percentages of the limit
+public final class Budget {
+    public static final List<String> PERIODS = Collections.unmodifiableList(Arrays.asList("day", "week", "month", "year"));
+    public static final int[] DEFAULT_PERCENTS = {80, 100};
+    private static final int MAX_PERCENT = 1_000;
+
+    public final long id;
+    public final String category;  // null for every category
+    public final String currency;
+    public final String period;    // One of PERIODS
+    public final long limitMinor;
+    final int[] percents;  // Ascending
+
+    Budget(long id, String category, String currency, String period, long limitMinor, int[] percents) {
+        if (!PERIODS.contains(period)) {
+            throw new IllegalArgumentException("Period must be one of " + PERIODS);
+        }
+        if (limitMinor <= 0 || limitMinor > Long.MAX_VALUE / MAX_PERCENT) {
+            throw new IllegalArgumentException("Budget limit must be positive");
+        }
+        percents = percents.clone();
+        Arrays.sort(percents);
+        if (percents.length == 0 || percents[0] <= 0 || percents[percents.length - 1] > MAX_PERCENT) {
+            throw new IllegalArgumentException("Alert thresholds must be between 1 and " + MAX_PERCENT + " percent");
+        }
+        this.id = id;
+        this.category = category;
+        this.currency = currency;
+        this.period = period;
+        this.limitMinor = limitMinor;
+        this.percents = percents;
+    }
+
+    public int[] percents() {
+        return percents.clone();
+    }
+
+    // Spend in the window holding epochDay, read from the cube's day and month cells: a week is seven
+    // cells and a year twelve, however many rows they hold
+    long spent(RollupCube rollups, int epochDay) {
+        switch (period) {
+            case "day":
+                return rollups.total(false, currency, category, epochDay);
+            case "week": {
+                int monday = epochDay - Math.floorMod(epochDay + 3, 7);  // Epoch day 0 was a Thursday
+                long sum = 0;
+                for (int day = monday; day < monday + 7; day++) {
+                    sum += rollups.total(false, currency, category, day);
+                }
+                return sum;
+            }
+            case "month":
+                return rollups.total(true, currency, category, RollupCube.epochMonth(epochDay));
+            default: {
+                int month = RollupCube.epochMonth(epochDay);
+                long sum = 0;
+                int january = month - Math.floorMod(month, 12);
+                for (int m = january; m < january + 12; m++) {
+                    sum += rollups.total(true, currency, category, m);
+                }
+                return sum;
+            }
+        }
+    }
+
+    // Alerts for the thresholds that spend crossed going from before to after
+    void crossed(long before, long after, Expense expense, int epochDay, List<BudgetAlert> into) {
+        for (int percent : percents) {
+            long threshold = limitMinor * percent / 100;
+            if (before < threshold && after >= threshold) {
+                into.add(new BudgetAlert(this, percent, after, expense, epochDay));
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder(category == null ? "All categories" : category).append(": ");
+        Money.appendTo(out, limitMinor).append(' ').append(currency).append(" per ").append(period).append(", alerts at ");
+        for (int i = 0; i < percents.length; i++) {
+            out.append(i == 0 ? "" : ", ").append(percents[i]).append('%');
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,27 @@
+package expenses.core;
+
+// A budget's spend reached one of its thresholds with this expense
+public final class BudgetAlert {
+    final Budget budget;
+    final int percent;
+    final long spentMinor;  // In the window, including the expense
+    public final Expense expense;
+    final int epochDay;     // Day of the expense, which picks the window
+
+    BudgetAlert(Budget budget, int percent, long spentMinor, Expense expense, int epochDay) {
+        this.budget = budget;
+        this.percent = percent;
+        this.spentMinor = spentMinor;
+        this.expense = expense;
+        this.epochDay = epochDay;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder(budget.category == null ? "Spending" : budget.category)
+                .append(percent >= 100 ? " is over budget: " : " has reached " + percent + "% of its budget: ");
+        Money.appendTo(out, spentMinor).append(" of ");
+        Money.appendTo(out, budget.limitMinor).append(' ').append(budget.currency).append(" this ").append(budget.period);
+        return out.toString();
+    }
+}
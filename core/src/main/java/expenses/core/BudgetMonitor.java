@@ -0,0 +1,194 @@
+package expenses.core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// The budgets of a store, checked as each expense is published. Budgets are indexed by currency and
+// category, and spend per window comes from the store's rollup cube, which already keeps running day
+// and month totals, so an insert costs a few cell lookups per budget it counts toward and nothing for
+// the others. Alerts are collected under the store lock and handed to listeners on one thread shared
+// by all stores, in order. Budgets are rewritten to budgets.dat on every change
+public class BudgetMonitor {
+    private static final int MAGIC = 0x42444754;  // "BDGT"
+    private static final int VERSION = 1;
+    private static final String FILE = "budgets.dat";
+    private static final ExecutorService ALERTS = Executors.newSingleThreadExecutor(Journal.daemon("budget-alerts"));
+
+    // Told about each threshold crossing on the alert thread
+    public interface BudgetListener {
+        void alert(BudgetAlert alert);
+    }
+
+    private final Path file;
+    private final Map<Long, Budget> budgets = new LinkedHashMap<>();  // Guarded by this
+    private final List<BudgetListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile Map<String, Map<String, Budget[]>> index = Collections.emptyMap();  // Currency, then category
+    private long nextId = 1;
+
+    BudgetMonitor(Path dir) {
+        file = dir.resolve(FILE);
+    }
+
+    public void addListener(BudgetListener listener) {
+        listeners.add(listener);
+    }
+
+    synchronized void load() throws IOException {
+        if (Files.exists(file)) {
+            read();
+            reindex();
+        }
+    }
+
+    // A budget from user input: a blank category means all of them, a missing currency the default
+    public synchronized Budget add(String category, String currency, String period, long limitMinor, int[] percents)
+            throws IOException {
+        category = category == null || category.trim().isEmpty() ? null : category.trim();
+        Budget budget = new Budget(nextId, category, ExpenseStore.currencyCode(currency),
+                period == null ? "" : period.trim().toLowerCase(Locale.ROOT), limitMinor, percents);
+        nextId++;
+        budgets.put(budget.id, budget);
+        reindex();
+        write();
+        return budget;
+    }
+
+    // False if there was no budget with this id
+    public synchronized boolean remove(long id) throws IOException {
+        if (budgets.remove(id) == null) {
+            return false;
+        }
+        reindex();
+        write();
+        return true;
+    }
+
+    public synchronized List<Budget> list() {
+        return new ArrayList<>(budgets.values());
+    }
+
+    // Called under the store lock right after the cube took the expense; lock-free
+    void check(RollupCube rollups, Expense expense, int epochDay, List<BudgetAlert> into) {
+        Map<String, Budget[]> byCategory = index.get(expense.getCurrency());
+        if (byCategory != null) {
+            check(byCategory.get(expense.getCategory()), rollups, expense, epochDay, into);
+            check(byCategory.get(null), rollups, expense, epochDay, into);
+        }
+    }
+
+    private static void check(Budget[] matching, RollupCube rollups, Expense expense, int epochDay, List<BudgetAlert> into) {
+        if (matching == null) {
+            return;
+        }
+        for (Budget budget : matching) {
+            long after = budget.spent(rollups, epochDay);
+            budget.crossed(after - expense.getAmountMinor(), after, expense, epochDay, into);
+        }
+    }
+
+    // Hand alerts to the listeners without making the publishing thread wait for them
+    void deliver(List<BudgetAlert> alerts) {
+        if (alerts.isEmpty() || listeners.isEmpty()) {
+            return;
+        }
+        ALERTS.execute(() -> {
+            for (BudgetAlert alert : alerts) {
+                for (BudgetListener listener : listeners) {
+                    try {
+                        listener.alert(alert);
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();  // One failing listener doesn't stop the others
+                    }
+                }
+            }
+        });
+    }
+
+    private void reindex() {
+        Map<String, Map<String, List<Budget>>> grouped = new HashMap<>();
+        for (Budget b : budgets.values()) {
+            grouped.computeIfAbsent(b.currency, c -> new HashMap<>())
+                    .computeIfAbsent(b.category, c -> new ArrayList<>()).add(b);
+        }
+        Map<String, Map<String, Budget[]>> built = new HashMap<>();
+        grouped.forEach((currency, byCategory) -> {
+            Map<String, Budget[]> arrays = new HashMap<>();
+            byCategory.forEach((category, list) -> arrays.put(category, list.toArray(new Budget[0])));
+            built.put(currency, arrays);
+        });
+        index = built;  // Published whole; checks in flight finish on the old one
+    }
+
+    // Temp file, fsync, atomic rename
+    private void write() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(nextId);
+        out.writeInt(budgets.size());
+        for (Budget b : budgets.values()) {
+            out.writeLong(b.id);
+            out.writeBoolean(b.category != null);
+            if (b.category != null) {
+                out.writeUTF(b.category);
+            }
+            out.writeUTF(b.currency);
+            out.writeUTF(b.period);
+            out.writeLong(b.limitMinor);
+            out.writeInt(b.percents.length);
+            for (int percent : b.percents) {
+                out.writeInt(percent);
+            }
+        }
+        Path tmp = file.resolveSibling(FILE + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                ch.write(buffer);
+            }
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void read() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unsupported budgets file: " + file);
+            }
+            nextId = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long id = in.readLong();
+                String category = in.readBoolean() ? in.readUTF() : null;
+                String currency = in.readUTF();
+                String period = in.readUTF();
+                long limit = in.readLong();
+                int[] percents = new int[in.readInt()];
+                for (int j = 0; j < percents.length; j++) {
+                    percents[j] = in.readInt();
+                }
+                budgets.put(id, new Budget(id, category, currency, period, limit, percents));
+            }
+        } catch (IllegalArgumentException | NegativeArraySizeException e) {
+            throw new IOException("Damaged budgets file: " + file, e);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package expenses.core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The names one ledger uses: its categories, currencies and priorities, each kind append-only and
+// in the order its names were registered or first used. These are what the ledger offers as choices
+// and what newTask checks priorities against; the limit on distinct names is per ledger, and a new
+// name may be at most MAX_NAME_BYTES long. Rows hold the names themselves, shared through the string
+// pool and the files' own dictionaries. Kept in names.dat beside the ledger's other files: rewritten
+// when a name is registered and with every snapshot; names first used by journaled rows are
+// recovered from the rows
+public final class CodeRegistry {
+    static final String FILE = "names.dat";
+    static final List<String> CATEGORIES = Collections.unmodifiableList(Arrays.asList("Food", "Travel", "Entertainment", "Other"));
+    static final List<String> PRIORITIES = Collections.unmodifiableList(Arrays.asList("Low", "Medium", "High"));  // Least urgent first
+    static final int MAX_NAME_BYTES = 255;  // UTF-8; a name is a label, not a description
+    private static final int MAGIC = 0x4E414D45;  // "NAME"
+    private static final int VERSION = 2;         // Version 1 stored names with writeUTF, at most 65535 modified UTF-8 bytes
+
+    private final Path file;  // Null for a registry with no ledger files
+    private static final int MAX_COLUMN_NAMES = Short.MAX_VALUE + 1;  // Column files store signed 16-bit codes
+    private final Names categories = new Names(MAX_COLUMN_NAMES, CATEGORIES);
+    private final Names currencies = new Names(MAX_COLUMN_NAMES, Collections.singletonList(Money.DEFAULT_CURRENCY));
+    private final Names priorities = new Names(Byte.MAX_VALUE, PRIORITIES);  // Ranks are packed into task queue keys
+
+    CodeRegistry(Path dir) {
+        file = dir.resolve(FILE);
+    }
+
+    // Only the default names, kept in memory, e.g. for a task queue outside any store
+    CodeRegistry() {
+        file = null;
+    }
+
+    public List<String> categories() {
+        return categories.names();
+    }
+
+    public List<String> currencies() {
+        return currencies.names();
+    }
+
+    // Least urgent first
+    public List<String> priorities() {
+        return priorities.names();
+    }
+
+    public boolean isPriority(String name) {
+        return name != null && priorities.rank(name) >= 0;
+    }
+
+    // Position among the priorities, least urgent first; -1 for a name not registered
+    int priorityRank(String name) {
+        return name == null ? -1 : priorities.rank(name);
+    }
+
+    // Offer a name before any row uses it; false if it already was one. A new priority ranks above
+    // every earlier one
+    public boolean addCategory(String name) throws IOException {
+        return register(categories, name);
+    }
+
+    public boolean addPriority(String name) throws IOException {
+        return register(priorities, name);
+    }
+
+    private synchronized boolean register(Names kind, String name) throws IOException {
+        name = name == null ? "" : name.trim();
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("Please enter a name.");
+        }
+        checkName(name);
+        if (!kind.add(name)) {
+            return false;
+        }
+        write();
+        return true;
+    }
+
+    // Refuse a name longer than MAX_NAME_BYTES, before it reaches a row or this registry
+    static void checkName(String name) {
+        if (name.length() > MAX_NAME_BYTES / 3 && name.getBytes(StandardCharsets.UTF_8).length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("Name is too long: at most " + MAX_NAME_BYTES + " bytes.");
+        }
+    }
+
+    // Take the names of rows as they are added; throws IllegalArgumentException for a name too long or
+    // past the ledger's limit, so the store can refuse the row before anything is journaled
+    void note(Expense expense) {
+        checkName(expense.getCurrency());
+        checkName(expense.getCategory());
+        noteRecovered(expense);
+    }
+
+    void note(Task task) {
+        checkName(task.getPriority());
+        noteRecovered(task);
+    }
+
+    // Names of rows already saved, which are taken whatever their length
+    void noteRecovered(Expense expense) {
+        currencies.add(expense.getCurrency());
+        categories.add(expense.getCategory());
+    }
+
+    void noteRecovered(Task task) {
+        priorities.add(task.getPriority());
+    }
+
+    void noteCategories(Collection<String> names) {
+        for (String name : names) {
+            categories.add(name);
+        }
+    }
+
+    void noteCurrencies(Collection<String> names) {
+        for (String name : names) {
+            currencies.add(name);
+        }
+    }
+
+    // Add the names of the saved file after the defaults, which it starts with
+    synchronized void load() throws IOException {
+        if (file == null || !Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int version = in.readInt() == MAGIC ? in.readInt() : -1;
+            if (version != 1 && version != VERSION) {
+                throw new IOException("Unsupported names file: " + file);
+            }
+            for (Names kind : new Names[]{categories, currencies, priorities}) {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    kind.add(version == 1 ? in.readUTF() : readName(in));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Damaged names file: " + file, e);
+        }
+    }
+
+    // Temp file, fsync, atomic rename. Always the current names, which include any written before
+    synchronized void write() throws IOException {
+        if (file == null) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        for (Names kind : new Names[]{categories, currencies, priorities}) {
+            List<String> names = kind.names();
+            out.writeInt(names.size());
+            for (String name : names) {
+                byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);  // Any length a saved row may hold
+                out.writeInt(utf8.length);
+                out.write(utf8);
+            }
+        }
+        Path tmp = file.resolveSibling(FILE + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                ch.write(buffer);
+            }
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Names of saved rows fit a journal record's 16-bit text length
+    private String readName(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > 0xFFFF) {
+            throw new IOException("Damaged names file: " + file);
+        }
+        byte[] utf8 = new byte[length];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    // One kind of name with its positions; lookups take no lock, additions are rare and copy
+    private static final class Names {
+        private final int limit;
+        private final ConcurrentHashMap<String, Integer> ranks = new ConcurrentHashMap<>();
+        private volatile String[] names = new String[0];
+
+        Names(int limit, List<String> seed) {
+            this.limit = limit;
+            for (String name : seed) {
+                add(name);
+            }
+        }
+
+        int rank(String name) {
+            return ranks.getOrDefault(name, -1);
+        }
+
+        List<String> names() {
+            return Collections.unmodifiableList(Arrays.asList(names));
+        }
+
+        // False if the name was already there, or is null
+        boolean add(String name) {
+            return name != null && !ranks.containsKey(name) && append(name);
+        }
+
+        private synchronized boolean append(String name) {
+            if (ranks.containsKey(name)) {
+                return false;
+            }
+            String[] current = names;
+            if (current.length == limit) {
+                throw new IllegalArgumentException("Too many distinct values: " + name);
+            }
+            String[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = name;
+            names = grown;  // Before the map, so a rank is never handed out without its name
+            ranks.put(name, current.length);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package expenses.core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+// Expense list backed by a memory-mapped columnar file. Rows added since the file was written
+// live in an in-memory tail, and Expense objects for file rows are only built when read
+public class ColumnarExpenseList extends AbstractList<Expense> implements RandomAccess {
+    private static final int MAGIC = 0x45585043;  // "EXPC"
+    private static final int VERSION = 2;          // Version 1 stored amounts as doubles and had no currency column
+    private static final int HEADER_BYTES = 64;
+
+    private final long generation;       // Journal segment covered by the file
+    private final int baseRows;          // Rows stored in the file
+    private final LongBuffer amounts;    // Amount column in minor units
+    private final DoubleBuffer legacyAmounts;  // Amount column of a version 1 file, otherwise null
+    private final IntBuffer days;        // Date column as local epoch days
+    private final ShortBuffer categoryCodes;  // Category column as dictionary codes
+    private final ShortBuffer currencyCodes;  // Currency column as dictionary codes, null in version 1
+    private final IntBuffer textOffsets; // Title/description boundaries in the blob
+    private final ByteBuffer blob;       // UTF-8 titles and descriptions
+    private final String[] dictionary;   // Category names by code
+    private final String[] currencies;   // Currency codes by code
+    private final List<Expense> tail;    // Rows added after the file was written; an AppendLog when live
+
+    private ColumnarExpenseList(long generation, int baseRows, LongBuffer amounts, DoubleBuffer legacyAmounts,
+                                IntBuffer days, ShortBuffer categoryCodes, ShortBuffer currencyCodes,
+                                IntBuffer textOffsets, ByteBuffer blob, String[] dictionary, String[] currencies,
+                                List<Expense> tail) {
+        this.generation = generation;
+        this.baseRows = baseRows;
+        this.amounts = amounts;
+        this.legacyAmounts = legacyAmounts;
+        this.days = days;
+        this.categoryCodes = categoryCodes;
+        this.currencyCodes = currencyCodes;
+        this.textOffsets = textOffsets;
+        this.blob = blob;
+        this.dictionary = dictionary;
+        this.currencies = currencies;
+        this.tail = tail;
+    }
+
+    // List with no file behind it
+    static ColumnarExpenseList empty() {
+        return of(new AppendLog<>());
+    }
+
+    // Unmapped list over the given rows, used to write them out as a columnar file
+    static ColumnarExpenseList of(List<Expense> rows) {
+        return new ColumnarExpenseList(0, 0, LongBuffer.allocate(0), null, IntBuffer.allocate(0), ShortBuffer.allocate(0),
+                ShortBuffer.allocate(0), IntBuffer.allocate(1), ByteBuffer.allocate(0), new String[0], new String[0], rows);
+    }
+
+    // Map a columnar file; only the header and category dictionary are read eagerly
+    static ColumnarExpenseList open(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && ch.read(header) >= 0) {
+                // Keep reading until the header is complete
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+                throw new IOException("Not an expense column file: " + file);
+            }
+            int version = header.getInt();
+            if (version != 1 && version != VERSION) {
+                throw new IOException("Unsupported expense column file version " + version);
+            }
+            long generation = header.getLong();
+            int rows = header.getInt();
+            int categories = header.getInt();
+            long blobBytes = header.getLong();
+            int currencyCount = version == 1 ? 0 : header.getInt();
+
+            Layout layout = new Layout(rows, version);
+            ByteBuffer amountBytes = ch.map(FileChannel.MapMode.READ_ONLY, layout.amounts, 8L * rows);
+            IntBuffer days = ch.map(FileChannel.MapMode.READ_ONLY, layout.days, 4L * rows).asIntBuffer();
+            ShortBuffer codes = ch.map(FileChannel.MapMode.READ_ONLY, layout.categories, 2L * rows).asShortBuffer();
+            ShortBuffer currencyCodes = version == 1 ? null
+                    : ch.map(FileChannel.MapMode.READ_ONLY, layout.currencies, 2L * rows).asShortBuffer();
+            IntBuffer offsets = ch.map(FileChannel.MapMode.READ_ONLY, layout.offsets, 4L * (2L * rows + 1)).asIntBuffer();
+            ByteBuffer blob = ch.map(FileChannel.MapMode.READ_ONLY, layout.blob, blobBytes);
+
+            ByteBuffer dict = ch.map(FileChannel.MapMode.READ_ONLY, layout.blob + blobBytes, ch.size() - layout.blob - blobBytes);
+            String[] dictionary = readNames(dict, categories);
+            String[] currencies = readNames(dict, currencyCount);
+            return new ColumnarExpenseList(generation, rows,
+                    version == 1 ? null : amountBytes.asLongBuffer(), version == 1 ? amountBytes.asDoubleBuffer() : null,
+                    days, codes, currencyCodes, offsets, blob, dictionary, currencies, new AppendLog<>());
+        }
+    }
+
+    private static String[] readNames(ByteBuffer dict, int count) {
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[dict.getShort() & 0xFFFF];
+            dict.get(name);
+            names[i] = new String(name, StandardCharsets.UTF_8);
+        }
+        return names;
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    // Names the file's rows use, from its dictionaries
+    List<String> categoryNames() {
+        return Arrays.asList(dictionary);
+    }
+
+    List<String> currencyNames() {
+        return Arrays.asList(currencies);
+    }
+
+    @Override
+    public Expense get(int index) {
+        if (index >= baseRows) {
+            return tail.get(index - baseRows);
+        }
+        Objects.checkIndex(index, baseRows);
+        return new Expense(text(2 * index), text(2 * index + 1), amountAt(index), currencyAt(index),
+                dictionary[categoryCodes.get(index)], dateOf(days.get(index)));
+    }
+
+    // Amount of a file row in minor units; version 1 doubles are rounded to the nearest cent
+    private long amountAt(int row) {
+        return amounts != null ? amounts.get(row) : Math.round(legacyAmounts.get(row) * Money.MINOR_PER_UNIT);
+    }
+
+    private String currencyAt(int row) {
+        return currencyCodes != null ? currencies[currencyCodes.get(row)] : Money.DEFAULT_CURRENCY;
+    }
+
+    @Override
+    public int size() {
+        return baseRows + tail.size();
+    }
+
+    @Override
+    public boolean add(Expense expense) {
+        return tail.add(expense);  // Appends never invalidate indexes, so modCount stays as it is
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Expense> batch) {
+        return tail.addAll(batch);
+    }
+
+    // Feed every row into the aggregates, reading file rows straight from the columns
+    void aggregateInto(ExpenseAggregates aggregates) {
+        aggregateRange(0, baseRows, aggregates);
+        for (Expense e : tail) {
+            aggregates.add(e);
+        }
+    }
+
+    // Feed the file rows in [from, to) into the aggregates
+    void aggregateRange(int from, int to, ExpenseAggregates aggregates) {
+        for (int i = from; i < Math.min(to, baseRows); i++) {
+            aggregates.add(currencyAt(i), amountAt(i));
+        }
+    }
+
+    // Read-only view sharing the mapped file and the rows added so far; O(1) for a live list
+    ColumnarExpenseList snapshot() {
+        List<Expense> rows = tail instanceof AppendLog ? ((AppendLog<Expense>) tail).snapshot()
+                : Collections.unmodifiableList(new ArrayList<>(tail));
+        return new ColumnarExpenseList(generation, baseRows, amounts, legacyAmounts, days, categoryCodes, currencyCodes,
+                textOffsets, blob, dictionary, currencies, rows);
+    }
+
+    // Write every row to a new columnar file; file rows are copied column by column
+    void writeTo(Path file, long coveredGeneration) throws IOException {
+        int rows = size();
+        Layout layout = new Layout(rows, VERSION);
+        List<String> names = new ArrayList<>(Arrays.asList(dictionary));  // Existing codes stay stable
+        Map<String, Integer> codes = new HashMap<>();
+        for (int i = 0; i < dictionary.length; i++) {
+            codes.put(dictionary[i], i);
+        }
+        List<String> currencyNames = new ArrayList<>();
+        Map<String, Integer> currencyIndex = new HashMap<>();
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            SectionWriter amountOut = new SectionWriter(ch, layout.amounts);
+            SectionWriter dayOut = new SectionWriter(ch, layout.days);
+            SectionWriter codeOut = new SectionWriter(ch, layout.categories);
+            SectionWriter currencyOut = new SectionWriter(ch, layout.currencies);
+            SectionWriter offsetOut = new SectionWriter(ch, layout.offsets);
+            SectionWriter blobOut = new SectionWriter(ch, layout.blob);
+
+            offsetOut.putInt(0);
+            for (int i = 0; i < rows; i++) {
+                if (i < baseRows) {
+                    amountOut.putLong(amountAt(i));
+                    dayOut.putInt(days.get(i));
+                    codeOut.putShort(categoryCodes.get(i));
+                    currencyOut.putShort(code(currencyAt(i), currencyNames, currencyIndex));
+                    for (int k = 2 * i; k < 2 * i + 2; k++) {
+                        ByteBuffer piece = blob.duplicate();
+                        piece.limit(textOffsets.get(k + 1)).position(textOffsets.get(k));
+                        blobOut.put(piece);
+                        offsetOut.putInt(blobOffset(blobOut));
+                    }
+                } else {
+                    Expense e = tail.get(i - baseRows);
+                    amountOut.putLong(e.getAmountMinor());
+                    dayOut.putInt(epochDay(e.getDate()));
+                    codeOut.putShort(code(e.getCategory(), names, codes));
+                    currencyOut.putShort(code(e.getCurrency(), currencyNames, currencyIndex));
+                    blobOut.put(ByteBuffer.wrap(e.getTitle().getBytes(StandardCharsets.UTF_8)));
+                    offsetOut.putInt(blobOffset(blobOut));
+                    blobOut.put(ByteBuffer.wrap(e.getDescription().getBytes(StandardCharsets.UTF_8)));
+                    offsetOut.putInt(blobOffset(blobOut));
+                }
+            }
+            amountOut.flush();
+            dayOut.flush();
+            codeOut.flush();
+            currencyOut.flush();
+            offsetOut.flush();
+            blobOut.flush();
+
+            long blobBytes = blobOut.written();
+            SectionWriter dictOut = new SectionWriter(ch, layout.blob + blobBytes);
+            writeNames(dictOut, names);
+            writeNames(dictOut, currencyNames);
+            dictOut.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putLong(coveredGeneration).putInt(rows).putInt(names.size())
+                    .putLong(blobBytes).putInt(currencyNames.size());
+            header.clear();
+            ch.write(header, 0);
+            ch.force(true);
+        }
+    }
+
+    // Dictionary code for a name, assigning the next free code to names not seen before
+    private static short code(String name, List<String> names, Map<String, Integer> codes) throws IOException {
+        Integer code = codes.get(name);
+        if (code == null) {
+            code = names.size();
+            if (code > Short.MAX_VALUE) {
+                throw new IOException("Too many distinct values for a dictionary column");
+            }
+            names.add(name);
+            codes.put(name, code);
+        }
+        return code.shortValue();
+    }
+
+    private static void writeNames(SectionWriter out, List<String> names) throws IOException {
+        for (String name : names) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            out.putShort((short) bytes.length);
+            out.put(ByteBuffer.wrap(bytes));
+        }
+    }
+
+    private static int blobOffset(SectionWriter blobOut) throws IOException {
+        long offset = blobOut.written();
+        if (offset > Integer.MAX_VALUE) {
+            throw new IOException("Expense text exceeds 2 GB");
+        }
+        return (int) offset;
+    }
+
+    // Column accessors that read file rows without building an Expense
+    public long amountMinorAt(int index) {
+        return index < baseRows ? amountAt(index) : tail.get(index - baseRows).getAmountMinor();
+    }
+
+    public int epochDayAt(int index) {
+        return index < baseRows ? days.get(index)
+                : RowFormatter.forThread().localEpochDay(tail.get(index - baseRows).getTime());
+    }
+
+    public String categoryAt(int index) {
+        return index < baseRows ? dictionary[categoryCodes.get(index)] : tail.get(index - baseRows).getCategory();
+    }
+
+    public String currencyCodeAt(int index) {
+        return index < baseRows ? currencyAt(index) : tail.get(index - baseRows).getCurrency();
+    }
+
+    public String titleAt(int index) {
+        return index < baseRows ? text(2 * index) : tail.get(index - baseRows).getTitle();
+    }
+
+    public String descriptionAt(int index) {
+        return index < baseRows ? text(2 * index + 1) : tail.get(index - baseRows).getDescription();
+    }
+
+    // UTF-8 bytes of a file row's title or description, sharing the mapping; null for added rows
+    ByteBuffer rawTitleAt(int index) {
+        return index < baseRows ? rawText(2 * index) : null;
+    }
+
+    ByteBuffer rawDescriptionAt(int index) {
+        return index < baseRows ? rawText(2 * index + 1) : null;
+    }
+
+    private ByteBuffer rawText(int slot) {
+        int start = textOffsets.get(slot);
+        return blob.slice(start, textOffsets.get(slot + 1) - start);
+    }
+
+    private String text(int slot) {
+        int start = textOffsets.get(slot);
+        byte[] bytes = new byte[textOffsets.get(slot + 1) - start];
+        blob.get(start, bytes);  // Absolute read, safe for concurrent readers
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static int epochDay(Date date) {
+        return (int) date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    public static Date dateOf(int epochDay) {
+        return Date.from(LocalDate.ofEpochDay(epochDay).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    // File offsets of each column for a given row count
+    private static class Layout {
+        final long amounts;
+        final long days;
+        final long categories;
+        final long currencies;
+        final long offsets;
+        final long blob;
+
+        Layout(int rows, int version) {
+            amounts = HEADER_BYTES;
+            days = amounts + 8L * rows;
+            categories = days + 4L * rows;
+            currencies = categories + 2L * rows;
+            long end = version == 1 ? currencies : currencies + 2L * rows;
+            offsets = (end + 7) & ~7L;  // Keep the int column aligned
+            blob = offsets + 4L * (2L * rows + 1);
+        }
+    }
+
+    // Buffered positional writer for one section of the file
+    private static class SectionWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        private long position;
+        private long written;
+
+        SectionWriter(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        void putLong(long v) throws IOException {
+            ensure(8);
+            buffer.putLong(v);
+            written += 8;
+        }
+
+        void putInt(int v) throws IOException {
+            ensure(4);
+            buffer.putInt(v);
+            written += 4;
+        }
+
+        void putShort(short v) throws IOException {
+            ensure(2);
+            buffer.putShort(v);
+            written += 2;
+        }
+
+        void put(ByteBuffer src) throws IOException {
+            written += src.remaining();
+            while (src.hasRemaining()) {
+                ensure(1);
+                int n = Math.min(buffer.remaining(), src.remaining());
+                ByteBuffer piece = src.duplicate();
+                piece.limit(piece.position() + n);
+                buffer.put(piece);
+                src.position(src.position() + n);
+            }
+        }
+
+        long written() {
+            return written;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package expenses.core;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+// Undo and redo of the window's edits, deletes and completions. Each command is the rows it showed
+// and the rows it hid; undoing it has the store swap the two, which is journaled like any other
+// change, so the state after an undo or redo survives a restart. The history lasts for the session
+public class CommandHistory {
+    private static final int LIMIT = 100;  // Commands kept for undo
+
+    // One change to a store's expenses or tasks
+    static final class Command {
+        final String label;  // Shown in the menu, e.g. "Undo Delete"
+        final boolean tasks;
+        final int[] shown;
+        final int[] hidden;
+
+        Command(String label, boolean tasks, int[] shown, int[] hidden) {
+            this.label = label;
+            this.tasks = tasks;
+            this.shown = shown;
+            this.hidden = hidden;
+        }
+    }
+
+    private final ExpenseStore store;
+    private final Deque<Command> undo = new ArrayDeque<>();
+    private final Deque<Command> redo = new ArrayDeque<>();
+
+    public CommandHistory(ExpenseStore store) {
+        this.store = store;
+    }
+
+    // Replace a row by a new version; false if it was deleted or replaced meanwhile
+    public boolean editExpense(int row, Expense next) {
+        int added = store.editExpense(row, next);
+        return added >= 0 && record(new Command("Edit", false, new int[]{added}, new int[]{row}));
+    }
+
+    public boolean editTask(int row, Task next) {
+        int added = store.editTask(row, next);
+        return added >= 0 && record(new Command("Edit", true, new int[]{added}, new int[]{row}));
+    }
+
+    public boolean complete(int row, boolean done) {
+        int now = store.completeTask(row, done);
+        return now >= 0 && (now == row || record(new Command(done ? "Complete" : "Reopen", true, new int[]{now},
+                new int[]{row})));
+    }
+
+    // Hide rows; those already gone are skipped. False if none was left to delete
+    public boolean delete(boolean tasks, int[] rows) {
+        IntList deleted = new IntList(rows.length);
+        for (int row : rows) {
+            if (tasks ? store.deleteTask(row) : store.deleteExpense(row)) {
+                deleted.add(row);
+            }
+        }
+        return deleted.size() > 0 && record(new Command("Delete", tasks, new int[0], deleted.toArray()));
+    }
+
+    private boolean record(Command command) {
+        undo.push(command);
+        if (undo.size() > LIMIT) {
+            undo.removeLast();
+        }
+        redo.clear();  // A new change ends the redo chain
+        return true;
+    }
+
+    // Label of the command undo() would revert, or null if there is none
+    public String undoLabel() {
+        return undo.isEmpty() ? null : undo.peek().label;
+    }
+
+    public String redoLabel() {
+        return redo.isEmpty() ? null : redo.peek().label;
+    }
+
+    // Revert the latest command; false if there is none
+    public boolean undo() {
+        Command command = undo.poll();
+        if (command == null) {
+            return false;
+        }
+        store.changeVisibility(command.tasks, command.hidden, command.shown);
+        redo.push(command);
+        return true;
+    }
+
+    public boolean redo() {
+        Command command = redo.poll();
+        if (command == null) {
+            return false;
+        }
+        store.changeVisibility(command.tasks, command.shown, command.hidden);
+        undo.push(command);
+        return true;
+    }
+}
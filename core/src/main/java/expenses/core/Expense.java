@@ -0,0 +1,58 @@
+package expenses.core;
+
+import java.util.Date;
+
+/*
+        Nighil Natarajan  : Created user defined data types to handle expenses and tasks.
+ */
+
+// Expense class to store expense data
+public class Expense {
+    private final String title;
+    private final String description;
+    private final long amountMinor;  // Amount in minor units (cents)
+    private final long time;         // Date as epoch milliseconds
+    private final String currency;   // ISO 4217 currency code
+    private final String category;   // One of the ledger's names, see CodeRegistry; shared, not a copy per row
+
+    public Expense(String title, String description, long amountMinor, String currency, String category, Date date) {
+        this.title = title;
+        this.description = description;
+        this.amountMinor = amountMinor;
+        this.time = date.getTime();
+        this.currency = currency;
+        this.category = category;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public long getAmountMinor() {
+        return amountMinor;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public Date getDate() {
+        return new Date(time);
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public String getDetails() {
+        return RowFormatter.forThread().expense(this).toString();
+    }
+}
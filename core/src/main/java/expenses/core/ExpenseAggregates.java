@@ -0,0 +1,64 @@
+package expenses.core;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Running totals for the summary, updated in O(1) per insert or delete; reports by category and
+// day read the RollupCube instead. Amounts are kept per currency in exact minor units, so totals
+// never drift
+class ExpenseAggregates {
+    private final Map<String, Bucket> byCurrency = new TreeMap<>();
+    private long count;
+
+    void add(Expense expense) {
+        add(expense.getCurrency(), expense.getAmountMinor(), 1);
+    }
+
+    void add(String currency, long amountMinor) {
+        add(currency, amountMinor, 1);
+    }
+
+    // Add count rows whose amounts sum to amountMinor, e.g. one cell of a rollup cube; a negative
+    // count takes rows away
+    void add(String currency, long amountMinor, long count) {
+        this.count += count;
+        byCurrency.computeIfAbsent(currency, k -> new Bucket()).apply(amountMinor, count);
+    }
+
+    // Fold totals computed elsewhere (e.g. by a loader thread) into these
+    void addAll(ExpenseAggregates other) {
+        count += other.count;
+        other.byCurrency.forEach((currency, theirs) -> byCurrency.computeIfAbsent(currency, k -> new Bucket()).merge(theirs));
+    }
+
+    long count() {
+        return count;
+    }
+
+    Set<String> currencies() {
+        return Collections.unmodifiableSet(byCurrency.keySet());
+    }
+
+    long total(String currency) {
+        Bucket totals = byCurrency.get(currency);
+        return totals == null ? 0 : totals.sum;
+    }
+
+    // Count and exact sum for one currency
+    private static class Bucket {
+        long count;
+        long sum;
+
+        void apply(long amountMinor, long delta) {
+            count += delta;
+            sum = Money.add(sum, amountMinor);  // Never throws, so replaying the journal always finishes
+        }
+
+        void merge(Bucket other) {
+            count += other.count;
+            sum = Money.add(sum, other.sum);
+        }
+    }
+}
@@ -0,0 +1,753 @@
+package expenses.core;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+// Expenses and tasks with their journal, autosave, running totals and indexes. Safe to use from
+// any thread. Writers encode journal records and work out dates before taking the store's lock, so
+// concurrent writers overlap everything but a short publish step: copying the records into the
+// journal buffer, appending the rows and updating totals and indexes in O(1) each. That step stays
+// serialized because row numbers, journal order and snapshot seals must all agree. Rows are read
+// without the lock through append-only lists, and snapshots of them are O(1). The Swing frame and
+// the HTTP API are both clients
+public class ExpenseStore implements Closeable {
+    private static final int MAX_TEXT_BYTES = 0xFFFF;  // Longest text a journal record can hold
+    private static final Metrics.Histogram LOAD_TIME = Metrics.REGISTRY.timer("store_load_seconds");
+    private static final Metrics.Histogram ADD_EXPENSES_TIME = Metrics.REGISTRY.timer("store_add_expenses_seconds");
+    private static final Metrics.Histogram ADD_TASKS_TIME = Metrics.REGISTRY.timer("store_add_tasks_seconds");
+    private static final Metrics.Histogram SEARCH_TIME = Metrics.REGISTRY.timer("store_search_seconds");
+    private static final Metrics.Counter EXPENSES_ADDED = Metrics.REGISTRY.counter("store_expenses_added");
+    private static final Metrics.Counter TASKS_ADDED = Metrics.REGISTRY.counter("store_tasks_added");
+
+    private final Path dir;
+    private final Journal journal;
+    private final AutosaveScheduler autosave;
+    private final RecurrenceScheduler recurrences;  // Started once loaded
+    private final BudgetMonitor budgets;             // Checked as each expense is published
+    private final CodeRegistry names;                // Categories, currencies and priorities of this ledger
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private volatile ColumnarExpenseList expenses = ColumnarExpenseList.empty();  // Written under this lock
+    private final AppendLog<Task> tasks = new AppendLog<>();                        // Written under this lock
+    private final ExpenseAggregates aggregates = new ExpenseAggregates();  // Guarded by this, as is everything below
+    private RowIndex expenseIndex = new RowIndex();  // Expense rows by category and day
+    private RollupCube rollups = new RollupCube();   // Spend by day or month, currency and category
+    private RowIndex taskIndex = new RowIndex();     // Task rows by priority and day
+    private TextIndex expenseText = new TextIndex(); // Words of expense titles and descriptions
+    private TextIndex taskText = new TextIndex();    // Words of task titles and descriptions
+    private final Tombstones hiddenExpenses = new Tombstones();  // Deleted and replaced rows, left out of the
+    private final Tombstones hiddenTasks = new Tombstones();     // totals and rollups but still indexed
+    private final TaskQueue openTasks;  // Visible tasks not done yet; built once loaded
+    private boolean loaded;
+
+    public ExpenseStore(Path dir) {
+        this.dir = dir;
+        journal = new Journal(dir);
+        autosave = new AutosaveScheduler(journal, this::captureSnapshot, this::changed);  // Views show the failure
+        recurrences = new RecurrenceScheduler(this, dir);
+        budgets = new BudgetMonitor(dir);
+        names = new CodeRegistry(dir);
+        openTasks = new TaskQueue(names);
+    }
+
+    // Progress of load(), reported on the loading thread
+    public interface LoadListener {
+        void expenseFileMapped();  // The mapped rows replaced the empty list
+
+        void totalsLoaded(int done, int total);
+    }
+
+    // Totals captured together under the lock
+    public static class Summary {
+        public final long expenses;
+        public final int tasks;
+        public final Map<String, Long> totals;  // Minor units by currency code
+
+        Summary(long expenses, int tasks, Map<String, Long> totals) {
+            this.expenses = expenses;
+            this.tasks = tasks;
+            this.totals = totals;
+        }
+    }
+
+    // Called after every change on the thread that made it, outside the lock
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    private void changed() {
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    // Recover saved data without reporting progress
+    public void load() throws IOException {
+        load(new LoadListener() {
+            @Override
+            public void expenseFileMapped() {
+            }
+
+            @Override
+            public void totalsLoaded(int done, int total) {
+            }
+        });
+    }
+
+    // Recover saved data batch by batch; adds are refused until this returns
+    public void load(LoadListener listener) throws IOException {
+        LoadEvent event = new LoadEvent();
+        event.begin();
+        long start = System.nanoTime();
+        budgets.load();  // Recovered rows are already spent; only new ones raise alerts
+        names.load();    // Registered names first, in their order; then those of recovered rows
+        journal.recover(new Journal.RecoveryListener() {
+            @Override
+            public void expenseFile(ColumnarExpenseList file, RowIndex index, RollupCube cube, TextIndex text,
+                                    Tombstones hidden) {
+                ExpenseAggregates part = new ExpenseAggregates();
+                cube.aggregateInto(part);  // From the cube's day cells, without reading the rows
+                names.noteCurrencies(file.currencyNames());
+                names.noteCategories(file.categoryNames());
+                synchronized (ExpenseStore.this) {
+                    expenses = file;
+                    expenseIndex = index;  // Both cover exactly the mapped rows
+                    rollups = cube;        // Hidden rows are already left out of its cells
+                    expenseText = text;
+                    hiddenExpenses.setAll(hidden);
+                    aggregates.addAll(part);
+                }
+                listener.expenseFileMapped();
+                listener.totalsLoaded(file.size(), file.size());
+                changed();
+            }
+
+            @Override
+            public void expenses(List<Expense> batch) {
+                synchronized (ExpenseStore.this) {
+                    for (Expense e : batch) {
+                        names.noteRecovered(e);
+                        aggregates.add(e);
+                        expenseIndex.add(e);
+                        rollups.add(e);
+                        expenseText.add(e);
+                    }
+                    expenses.addAll(batch);
+                }
+                changed();
+            }
+
+            @Override
+            public void taskSnapshot(List<Task> snapshot, RowIndex index, TextIndex text, Tombstones hidden) {
+                for (Task t : snapshot) {
+                    names.noteRecovered(t);
+                }
+                synchronized (ExpenseStore.this) {
+                    taskIndex = index;  // The snapshot came with its indexes
+                    taskText = text;
+                    hiddenTasks.setAll(hidden);
+                    tasks.addAll(snapshot);
+                }
+                changed();
+            }
+
+            @Override
+            public void tasks(List<Task> batch) {
+                synchronized (ExpenseStore.this) {
+                    for (Task t : batch) {
+                        names.noteRecovered(t);
+                        taskIndex.add(t);
+                        taskText.add(t);
+                    }
+                    tasks.addAll(batch);
+                }
+                changed();
+            }
+
+            @Override
+            public void visibility(boolean task, int row, boolean hidden) {
+                synchronized (ExpenseStore.this) {
+                    setHidden(task, row, hidden, null);
+                }
+                changed();
+            }
+        });
+        synchronized (this) {
+            openTasks.build(tasks, hiddenTasks);  // One pass over the recovered rows, kept up to date after
+            loaded = true;
+        }
+        recurrences.start();  // Adds what came due while closed
+        event.expenses = expenses.size();
+        event.tasks = tasks.size();
+        LOAD_TIME.recordSince(start);
+        event.commit();
+    }
+
+    // Build an expense from user input, with the rules shared by the form, the import and the API
+    public static Expense newExpense(String title, String description, CharSequence amount, String currency,
+                              String category, Date date) {
+        title = trim(title);
+        description = trim(description);
+        category = trim(category);
+        if (title.isEmpty() || description.isEmpty() || category.isEmpty() || amount == null || amount.length() == 0) {
+            throw new IllegalArgumentException("Please fill in all fields.");
+        }
+        long minor;
+        try {
+            minor = Money.parseMinor(amount);  // Exact minor units
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid amount. Please enter a number with at most two decimals.");
+        }
+        checkAmount(minor);
+        String code = currencyCode(currency);
+        checkLength(title, description);
+        CodeRegistry.checkName(category);
+        return new Expense(StringPool.TEXT.intern(title), StringPool.TEXT.intern(description), minor,
+                StringPool.TEXT.intern(code), StringPool.TEXT.intern(category), date);
+    }
+
+    // Build a task from user input, with the rules shared by the form and the API; the priority must
+    // be one this ledger has registered
+    public Task newTask(String title, String description, String priority, Date date) {
+        return newTask(title, description, priority, date, null);
+    }
+
+    // With a due date, or none if due is null
+    public Task newTask(String title, String description, String priority, Date date, LocalDate due) {
+        if (!names.isPriority(priority)) {
+            throw new IllegalArgumentException("Priority must be one of " + names.priorities());
+        }
+        return draftTask(title, description, priority, date, due);
+    }
+
+    // Checked as newTask, except that the priority may be one the ledger has not registered yet: for a
+    // form that offers to register it (names().addPriority) only once the rest of the task is valid
+    public static Task draftTask(String title, String description, String priority, Date date, LocalDate due) {
+        title = trim(title);
+        description = trim(description);
+        priority = trim(priority);
+        if (title.isEmpty() || description.isEmpty() || priority.isEmpty()) {
+            throw new IllegalArgumentException("Please fill in all fields.");
+        }
+        checkLength(title, description);
+        CodeRegistry.checkName(priority);
+        return new Task(StringPool.TEXT.intern(title), StringPool.TEXT.intern(description), date,
+                StringPool.TEXT.intern(priority), false,
+                due == null ? Task.NO_DUE : Math.toIntExact(due.toEpochDay()));
+    }
+
+    // Build an expense or a task from a JSON object, as posted to the API or imported; item, unless
+    // negative, is its index in a batch and prefixes the error message
+    public static Expense readExpense(Map<String, Object> json, int item) {
+        try {
+            return newExpense(Json.string(json, "title"), Json.string(json, "description"), Json.decimal(json, "amount"),
+                    Json.string(json, "currency"), Json.string(json, "category"), dateOf(json));
+        } catch (IllegalArgumentException e) {
+            throw item < 0 ? e : new IllegalArgumentException("Item " + item + ": " + e.getMessage());
+        }
+    }
+
+    public Task readTask(Map<String, Object> json, int item) {
+        try {
+            return newTask(Json.string(json, "title"), Json.string(json, "description"),
+                    Json.string(json, "priority"), dateOf(json), Json.date(Json.string(json, "due")));
+        } catch (IllegalArgumentException e) {
+            throw item < 0 ? e : new IllegalArgumentException("Item " + item + ": " + e.getMessage());
+        }
+    }
+
+    // Optional "date" as yyyy-MM-dd (start of that local day); now if absent
+    private static Date dateOf(Map<String, Object> json) {
+        LocalDate date = Json.date(Json.string(json, "date"));
+        return date == null ? new Date() : ColumnarExpenseList.dateOf((int) date.toEpochDay());
+    }
+
+    // ISO 4217 code from user input; the default currency if none was given. Only two-decimal
+    // currencies are accepted, see Money
+    static String currencyCode(String currency) {
+        String code = currency == null ? Money.DEFAULT_CURRENCY : currency.trim().toUpperCase(Locale.ROOT);
+        Currency instance;
+        try {
+            instance = Currency.getInstance(code);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown currency code: " + code);
+        }
+        if (!Money.supports(instance)) {
+            throw new IllegalArgumentException("Unsupported currency " + code + ": only currencies with two decimal places are supported");
+        }
+        return code;
+    }
+
+    private static String trim(String s) {
+        return s == null ? "" : s.trim();
+    }
+
+    private static void checkAmount(long minor) {
+        if (!Money.fits(minor)) {
+            throw new IllegalArgumentException("Amount too large. At most " + Money.format(Money.MAX_AMOUNT_MINOR) + " per expense.");
+        }
+    }
+
+    private static void checkLength(String... texts) {
+        for (String text : texts) {
+            if (text.length() > MAX_TEXT_BYTES / 3 && text.getBytes(StandardCharsets.UTF_8).length > MAX_TEXT_BYTES) {
+                throw new IllegalArgumentException("Text is too long.");
+            }
+        }
+    }
+
+    // Append one expense; returns its row
+    public int addExpense(Expense expense) {
+        return addExpenses(Collections.singletonList(expense));
+    }
+
+    // Append a batch under one lock acquisition and one autosave notification; returns the first row
+    public int addExpenses(List<Expense> batch) {
+        return addExpenses(batch, -1);
+    }
+
+    // Replace a visible row by a new version: the new row is appended and then the old one hidden, in
+    // the same journal batch. Returns the new row, or -1 if the old one is missing or already hidden
+    public int editExpense(int row, Expense next) {
+        return addExpenses(Collections.singletonList(next), row);
+    }
+
+    private int addExpenses(List<Expense> batch, int replaces) {
+        long start = System.nanoTime();
+        byte[][] records = new byte[batch.size()][];
+        int[] days = new int[batch.size()];
+        TextIndex.Document[] words = new TextIndex.Document[batch.size()];
+        for (int i = 0; i < records.length; i++) {  // Outside the lock, in parallel with other writers
+            Expense e = batch.get(i);
+            checkAmount(e.getAmountMinor());  // Rows built elsewhere too, e.g. legacy files; never journaled past the cap
+            records[i] = Journal.encode(e);
+            days[i] = ColumnarExpenseList.epochDay(e.getDate());
+            words[i] = TextIndex.analyze(e.getTitle(), e.getDescription());
+        }
+        int first;
+        List<BudgetAlert> alerts = new ArrayList<>(0);
+        synchronized (this) {
+            checkLoaded();
+            if (replaces >= 0 && !visible(false, replaces)) {
+                return -1;  // Deleted or edited meanwhile
+            }
+            for (Expense e : batch) {
+                names.note(e);  // Refused if too long or past the ledger's limit, before anything is journaled
+            }
+            first = expenses.size();
+            journal.append(records);
+            for (int i = 0; i < days.length; i++) {
+                Expense e = batch.get(i);
+                aggregates.add(e.getCurrency(), e.getAmountMinor());
+                expenseIndex.add(e.getCategory(), days[i]);
+                rollups.add(e.getCurrency(), e.getCategory(), days[i], e.getAmountMinor());
+                budgets.check(rollups, e, days[i], alerts);  // Row by row, so an alert names the row that crossed
+                expenseText.add(words[i]);
+            }
+            expenses.addAll(batch);  // Readers see the whole batch at once
+            if (replaces >= 0) {
+                hide(false, replaces);
+            }
+        }
+        budgets.deliver(alerts);
+        autosave.markDirty();
+        ADD_EXPENSES_TIME.recordSince(start);  // Listeners repaint on their own time, so not counted
+        EXPENSES_ADDED.add(batch.size());
+        changed();
+        return first;
+    }
+
+    // Append one task; returns its row
+    public int addTask(Task task) {
+        return addTasks(Collections.singletonList(task));
+    }
+
+    // Append a batch of tasks; returns the first row
+    public int addTasks(List<Task> batch) {
+        return addTasks(batch, -1);
+    }
+
+    // Replace a visible task by a new version, as editExpense
+    public int editTask(int row, Task next) {
+        return addTasks(Collections.singletonList(next), row);
+    }
+
+    // Mark a visible task done or not done, which is an edit; returns the task's row afterwards (the
+    // same one if it was already so), or -1 if it is missing or hidden
+    public int completeTask(int row, boolean done) {
+        Task task;
+        synchronized (this) {
+            checkLoaded();
+            if (!visible(true, row)) {
+                return -1;
+            }
+            task = tasks.get(row);
+        }
+        return task.isDone() == done ? row : editTask(row, task.withDone(done));
+    }
+
+    private int addTasks(List<Task> batch, int replaces) {
+        long start = System.nanoTime();
+        byte[][] records = new byte[batch.size()][];
+        int[] days = new int[batch.size()];
+        TextIndex.Document[] words = new TextIndex.Document[batch.size()];
+        RowFormatter formatter = RowFormatter.forThread();
+        for (int i = 0; i < records.length; i++) {
+            Task t = batch.get(i);
+            records[i] = Journal.encode(t);
+            days[i] = formatter.localEpochDay(t.getTime());
+            words[i] = TextIndex.analyze(t.getTitle(), t.getDescription());
+        }
+        int first;
+        synchronized (this) {
+            checkLoaded();
+            if (replaces >= 0 && !visible(true, replaces)) {
+                return -1;
+            }
+            for (Task t : batch) {
+                names.note(t);
+            }
+            first = tasks.size();
+            journal.append(records);
+            for (int i = 0; i < days.length; i++) {
+                taskIndex.add(batch.get(i).getPriority(), days[i]);
+                taskText.add(words[i]);
+            }
+            tasks.addAll(batch);
+            for (int i = 0; i < days.length; i++) {
+                if (!batch.get(i).isDone()) {
+                    openTasks.add(first + i, batch.get(i));
+                }
+            }
+            if (replaces >= 0) {
+                hide(true, replaces);
+            }
+        }
+        autosave.markDirty();
+        ADD_TASKS_TIME.recordSince(start);
+        TASKS_ADDED.add(batch.size());
+        changed();
+        return first;
+    }
+
+    // Hide a visible row; false if it is missing or already hidden
+    public boolean deleteExpense(int row) {
+        return delete(false, row);
+    }
+
+    public boolean deleteTask(int row) {
+        return delete(true, row);
+    }
+
+    private boolean delete(boolean task, int row) {
+        synchronized (this) {
+            checkLoaded();
+            if (!visible(task, row)) {
+                return false;
+            }
+            hide(task, row);
+        }
+        autosave.markDirty();
+        changed();
+        return true;
+    }
+
+    // Show some rows and hide others, as one journal batch. The rows in show become visible before any
+    // in hide goes, so a crash in between leaves both versions of an edit rather than neither. Undo
+    // and redo are this call with the two sets swapped; rows already in the wanted state are skipped
+    void changeVisibility(boolean task, int[] show, int[] hide) {
+        List<BudgetAlert> alerts = new ArrayList<>(0);
+        synchronized (this) {
+            checkLoaded();
+            int size = task ? tasks.size() : expenses.size();
+            for (int row : show) {
+                if (row < 0 || row >= size) {
+                    throw new IllegalArgumentException("No such row: " + row);
+                }
+            }
+            for (int row : hide) {
+                if (row < 0 || row >= size) {
+                    throw new IllegalArgumentException("No such row: " + row);
+                }
+            }
+            Tombstones hidden = task ? hiddenTasks : hiddenExpenses;
+            for (int row : show) {
+                if (hidden.hidden(row)) {
+                    journal.append(Journal.encodeVisibility(task, row, false));
+                    setHidden(task, row, false, alerts);  // Back in the totals, so it can cross a budget again
+                }
+            }
+            for (int row : hide) {
+                if (!hidden.hidden(row)) {
+                    hide(task, row);
+                }
+            }
+        }
+        budgets.deliver(alerts);
+        autosave.markDirty();
+        changed();
+    }
+
+    // Caller holds the lock
+    private boolean visible(boolean task, int row) {
+        return row >= 0 && row < (task ? tasks.size() : expenses.size())
+                && !(task ? hiddenTasks : hiddenExpenses).hidden(row);
+    }
+
+    // Caller holds the lock. Journal the event, then apply it
+    private void hide(boolean task, int row) {
+        journal.append(Journal.encodeVisibility(task, row, true));
+        setHidden(task, row, true, null);
+    }
+
+    // Caller holds the lock. Hide or show a row, keeping the totals, rollups and open task queue to the
+    // visible rows; a row shown again is checked against the budgets unless alerts is null (while loading)
+    private void setHidden(boolean task, int row, boolean hide, List<BudgetAlert> alerts) {
+        if (!(task ? hiddenTasks : hiddenExpenses).set(row, hide)) {
+            return;
+        }
+        if (task) {
+            if (hide) {
+                openTasks.remove(row);
+            } else if (loaded && !tasks.get(row).isDone()) {
+                openTasks.add(row, tasks.get(row));
+            }
+            return;
+        }
+        String currency = expenses.currencyCodeAt(row);
+        String category = expenses.categoryAt(row);
+        int day = expenses.epochDayAt(row);
+        long amount = hide ? Money.negate(expenses.amountMinorAt(row)) : expenses.amountMinorAt(row);
+        aggregates.add(currency, amount, hide ? -1 : 1);
+        rollups.adjust(currency, category, day, amount, hide ? -1 : 1);
+        if (!hide && alerts != null) {
+            budgets.check(rollups, expenses.get(row), day, alerts);
+        }
+    }
+
+    private void checkLoaded() {
+        if (!loaded) {
+            throw new IllegalStateException("Saved data is still loading");
+        }
+    }
+
+    // Rows of the most urgent open tasks, most urgent first
+    public synchronized int[] nextTasks(int limit) {
+        return openTasks.top(limit);
+    }
+
+    public synchronized Summary summary() {
+        Map<String, Long> totals = new TreeMap<>();
+        for (String currency : aggregates.currencies()) {
+            totals.put(currency, aggregates.total(currency));
+        }
+        return new Summary(aggregates.count(), tasks.size() - hiddenTasks.count(), totals);
+    }
+
+    // Visible expense rows with a category (null for any) dated within [from, to] (null for open), in
+    // row order. Without a filter the page is found from the tombstone counts alone; with one, the walk
+    // stops once the page is full
+    public synchronized int[] expenseRows(String category, LocalDate from, LocalDate to, int offset, int limit) {
+        if (category == null && from == null && to == null) {
+            return hiddenExpenses.page(expenses.size(), offset, limit);
+        }
+        return expenseIndex.query(category, fromDay(from), toDay(to), hiddenExpenses, offset, limit);
+    }
+
+    // Visible task rows with a priority (null for any) dated within [from, to] (null for open), in row order
+    public synchronized int[] taskRows(String priority, LocalDate from, LocalDate to, int offset, int limit) {
+        if (priority == null && from == null && to == null) {
+            return hiddenTasks.page(tasks.size(), offset, limit);
+        }
+        return taskIndex.query(priority, fromDay(from), toDay(to), hiddenTasks, offset, limit);
+    }
+
+    // Visible rows whose title or description holds every word of the query, best match first; the
+    // last word also matches as a prefix while it is still being typed
+    public synchronized int[] searchExpenses(String query, int limit) {
+        return timed(expenseText, query, limit, hiddenExpenses);
+    }
+
+    public synchronized int[] searchTasks(String query, int limit) {
+        return timed(taskText, query, limit, hiddenTasks);
+    }
+
+    public synchronized int[] expenseRowsMatching(String query, int offset, int limit) {
+        return page(timed(expenseText, query, (int) Math.min(Integer.MAX_VALUE, (long) offset + limit), hiddenExpenses),
+                offset, limit);
+    }
+
+    public synchronized int[] taskRowsMatching(String query, int offset, int limit) {
+        return page(timed(taskText, query, (int) Math.min(Integer.MAX_VALUE, (long) offset + limit), hiddenTasks),
+                offset, limit);
+    }
+
+    private static int[] timed(TextIndex index, String query, int limit, Tombstones hidden) {
+        long start = System.nanoTime();
+        int[] rows = index.search(query, limit, hidden);
+        SEARCH_TIME.recordSince(start);
+        return rows;
+    }
+
+    private static int[] page(int[] rows, int offset, int limit) {
+        int from = Math.min(rows.length, offset);
+        return Arrays.copyOfRange(rows, from, (int) Math.max(from, Math.min(rows.length, (long) offset + limit)));
+    }
+
+    // One row, hidden or not; reads take no lock
+    public Expense expense(int row) {
+        return expenses.get(row);
+    }
+
+    public Task task(int row) {
+        return tasks.get(row);
+    }
+
+    private static int fromDay(LocalDate from) {
+        return from == null ? Integer.MIN_VALUE : (int) from.toEpochDay();
+    }
+
+    private static int toDay(LocalDate to) {
+        return to == null ? Integer.MAX_VALUE : (int) to.toEpochDay();
+    }
+
+    // One cell of the rollup cube: spend in minor units for a currency and category (null for all) on
+    // an epoch day or in an epoch month (see RollupCube.epochMonth)
+    public synchronized long rollupTotal(boolean monthly, String currency, String category, int period) {
+        return rollups.total(monthly, currency, category, period);
+    }
+
+    public synchronized long rollupCount(boolean monthly, String currency, String category, int period) {
+        return rollups.count(monthly, currency, category, period);
+    }
+
+    public synchronized RollupCube.Shape rollupShape() {
+        return rollups.shape();
+    }
+
+    // Stable views for a background sort or export; O(1), later appends don't show in them
+    public ColumnarExpenseList expenseSnapshot() {
+        return expenses.snapshot();
+    }
+
+    public List<Task> taskSnapshot() {
+        return tasks.snapshot();
+    }
+
+    // Live read-only views for the tables; reads take no lock
+    public List<Expense> expenseView() {
+        return new AbstractList<Expense>() {
+            @Override
+            public Expense get(int index) {
+                return expenses.get(index);
+            }
+
+            @Override
+            public int size() {
+                return expenses.size();
+            }
+        };
+    }
+
+    public List<Task> taskView() {
+        return Collections.unmodifiableList(tasks);
+    }
+
+    // Rows of the views that are deleted or replaced; for reading only
+    public Tombstones hiddenExpenses() {
+        return hiddenExpenses;
+    }
+
+    public Tombstones hiddenTasks() {
+        return hiddenTasks;
+    }
+
+    // Runs on the autosave writer: seal the journal and take the rows it covers. Row snapshots are
+    // O(1); the indexes and rollups are copied, sharing posting bytes with the live text indexes
+    private synchronized AutosaveScheduler.Snapshot captureSnapshot() {
+        return new AutosaveScheduler.Snapshot(journal.seal(), expenses.snapshot(), tasks.snapshot(),
+                expenseIndex.frozen(), rollups.copy(), expenseText.image(), taskIndex.frozen(), taskText.image(),
+                hiddenExpenses.copy(), hiddenTasks.copy(), names);
+    }
+
+    // Recurring expenses and tasks of this store
+    public RecurrenceScheduler recurrences() {
+        return recurrences;
+    }
+
+    // Spending limits of this store and their alert listeners
+    public BudgetMonitor budgets() {
+        return budgets;
+    }
+
+    // Categories, currencies and priorities this ledger offers
+    public CodeRegistry names() {
+        return names;
+    }
+
+    // Spend counted toward a budget in the window holding an epoch day
+    public synchronized long spent(Budget budget, int epochDay) {
+        return budget.spent(rollups, epochDay);
+    }
+
+    // Back up this store's files: everything journaled so far is flushed first, and no snapshot may
+    // delete a journal segment until the backup has read it
+    public BackupRepository.Result backup(BackupRepository repository) throws IOException {
+        synchronized (this) {
+            checkLoaded();
+        }
+        return autosave.onWriter(() -> {
+            journal.flush();
+            return repository.backup(dir);
+        });
+    }
+
+    // Why the latest background snapshot failed, or null if it succeeded; the journal still holds
+    // every change, so a failure only means the journal is not compacted yet
+    public Exception saveFailure() {
+        return autosave.lastFailure();
+    }
+
+    // Write a snapshot now if anything changed since the last one, e.g. before closing an idle ledger
+    void checkpoint() throws IOException {
+        autosave.saveNow();
+    }
+
+    // Report this store's sizes as gauges, for the one store of the window or of a single-store API
+    public void publishGauges() {
+        Metrics.REGISTRY.gauge("store_expenses", () -> expenses.size());
+        Metrics.REGISTRY.gauge("store_tasks", tasks::size);
+        Metrics.REGISTRY.gauge("journal_unsealed_bytes", journal::unsealedBytes);
+    }
+
+    // Journal segments on disk that no snapshot covers yet
+    int journalSegments() throws IOException {
+        return journal.segmentCount();
+    }
+
+    // Flush the journal so every entry is durable; a snapshot still running after a few seconds is
+    // abandoned, which is safe because its segments are only deleted once it completes
+    @Override
+    public void close() throws IOException {
+        recurrences.close();
+        try {
+            autosave.shutdown(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        journal.close();
+    }
+}
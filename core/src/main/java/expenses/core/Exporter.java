@@ -0,0 +1,504 @@
+package expenses.core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Streaming export of expenses or tasks to CSV or to a columnar file. Rows are read from a snapshot;
+// the category/priority and date filters are checked on the primitive columns before any text is
+// touched, and file rows' text is copied as raw UTF-8 from the mapping without decoding. Output goes
+// through fixed-size direct buffers, so memory stays bounded whatever the row count
+public class Exporter {
+    static final List<String> EXPENSE_COLUMNS = Importer.COLUMNS;  // CSV header the importer reads back
+    static final List<String> TASK_COLUMNS = Collections.unmodifiableList(
+            Arrays.asList("title", "description", "priority", "date"));
+
+    // Rows to keep: a category or priority (null for any) and an inclusive range of local days
+    public static final class Filter {
+        final String key;
+        final int fromDay;
+        final int toDay;
+
+        public Filter(String key, LocalDate from, LocalDate to) {
+            this.key = key;
+            this.fromDay = from == null ? Integer.MIN_VALUE : (int) from.toEpochDay();
+            this.toDay = to == null ? Integer.MAX_VALUE : (int) to.toEpochDay();
+        }
+
+        static Filter all() {
+            return new Filter(null, null, null);
+        }
+
+        boolean days(int day) {
+            return day >= fromDay && day <= toDay;
+        }
+
+        boolean key(String value) {
+            return key == null || key.equals(value);
+        }
+    }
+
+    // Export without the window:
+    // java -cp core/target/classes expenses.core.Exporter [--dir data] [--tasks] [--key K] [--from yyyy-MM-dd] [--to yyyy-MM-dd] out.csv|out.expx
+    public static void main(String[] args) throws IOException {
+        Path dir = Paths.get("");
+        boolean tasks = false;
+        String key = null;
+        LocalDate from = null;
+        LocalDate to = null;
+        Path out = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--dir": dir = Paths.get(args[++i]); break;
+                case "--tasks": tasks = true; break;
+                case "--key": key = args[++i]; break;
+                case "--from": from = LocalDate.parse(args[++i]); break;
+                case "--to": to = LocalDate.parse(args[++i]); break;
+                default: out = Paths.get(args[i]);
+            }
+        }
+        if (out == null) {
+            System.err.println("No output file given");
+            System.exit(2);
+        }
+        ExpenseStore store = new ExpenseStore(dir);
+        try {
+            store.load();
+            long start = System.nanoTime();
+            long rows = export(store, tasks, new Filter(key, from, to), out);
+            System.out.printf("Exported %,d rows to %s in %.1f s%n", rows, out, (System.nanoTime() - start) / 1e9);
+        } finally {
+            store.close();
+        }
+    }
+
+    // Export a snapshot of the store's visible rows; the format follows the file name (.csv, anything
+    // else columnar)
+    public static long export(ExpenseStore store, boolean tasks, Filter filter, Path out) throws IOException {
+        boolean csv = out.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv");
+        return tasks ? exportTasks(store.taskSnapshot(), store.hiddenTasks().copy(), filter, out, csv)
+                : exportExpenses(store.expenseSnapshot(), store.hiddenExpenses().copy(), filter, out, csv);
+    }
+
+    static long exportExpenses(ColumnarExpenseList rows, Tombstones hidden, Filter filter, Path out, boolean csv)
+            throws IOException {
+        long written = 0;
+        try (FileChannel channel = create(out)) {
+            RowSink sink = csv ? new CsvSink(channel, EXPENSE_COLUMNS)
+                    : new ColumnarSink(channel, "expenses", EXPENSE_COLUMNS, "TTLDDI");
+            StringBuilder scratch = new StringBuilder(32);
+            int size = rows.size();
+            for (int i = 0; i < size; i++) {
+                int day = rows.epochDayAt(i);
+                if (!filter.days(day) || hidden.hidden(i)) {
+                    continue;
+                }
+                String category = rows.categoryAt(i);
+                if (!filter.key(category)) {
+                    continue;
+                }
+                sink.beginRow();
+                ByteBuffer raw = rows.rawTitleAt(i);
+                if (raw != null) {
+                    sink.text(raw);
+                } else {
+                    sink.text(rows.titleAt(i));
+                }
+                raw = rows.rawDescriptionAt(i);
+                if (raw != null) {
+                    sink.text(raw);
+                } else {
+                    sink.text(rows.descriptionAt(i));
+                }
+                sink.amount(rows.amountMinorAt(i), scratch);
+                sink.code(rows.currencyCodeAt(i));
+                sink.code(category);
+                sink.day(day, scratch);
+                written++;
+            }
+            sink.finish();
+            channel.force(false);
+        }
+        return written;
+    }
+
+    static long exportTasks(List<Task> rows, Tombstones hidden, Filter filter, Path out, boolean csv) throws IOException {
+        long written = 0;
+        RowFormatter formatter = RowFormatter.forThread();
+        try (FileChannel channel = create(out)) {
+            RowSink sink = csv ? new CsvSink(channel, TASK_COLUMNS)
+                    : new ColumnarSink(channel, "tasks", TASK_COLUMNS, "TTDI");
+            StringBuilder scratch = new StringBuilder(32);
+            for (int i = 0; i < rows.size(); i++) {
+                Task t = rows.get(i);
+                int day = formatter.localEpochDay(t.getTime());
+                if (!filter.days(day) || !filter.key(t.getPriority()) || hidden.hidden(i)) {
+                    continue;
+                }
+                sink.beginRow();
+                sink.text(t.getTitle());
+                sink.text(t.getDescription());
+                sink.code(t.getPriority());
+                sink.day(day, scratch);
+                written++;
+            }
+            sink.finish();
+            channel.force(false);
+        }
+        return written;
+    }
+
+    private static FileChannel create(Path out) throws IOException {
+        return FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+    }
+
+    // Receives one row's fields in column order
+    interface RowSink {
+        void beginRow() throws IOException;
+
+        void text(String value) throws IOException;
+
+        void text(ByteBuffer utf8) throws IOException;  // Raw UTF-8, consumed
+
+        void amount(long minor, StringBuilder scratch) throws IOException;
+
+        void code(String value) throws IOException;
+
+        void day(int epochDay, StringBuilder scratch) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    // RFC 4180 CSV with a header row, dates as dd/MM/yyyy and amounts with two decimals, as the
+    // importer reads them. Text is UTF-8 encoded by hand straight into the direct buffer
+    static final class CsvSink implements RowSink {
+        private static final int BUFFER_BYTES = 1 << 20;
+        private static final int ROW_RESERVE = 3 * 0xFFFF * 2 + 256;  // Worst case for one row, quoted
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        private boolean firstField = true;
+
+        CsvSink(FileChannel channel, List<String> columns) {
+            this.channel = channel;
+            for (String column : columns) {
+                text(column);
+            }
+        }
+
+        @Override
+        public void beginRow() throws IOException {
+            buffer.put((byte) '\r').put((byte) '\n');  // Ends the previous row, or the header
+            if (buffer.remaining() < ROW_RESERVE) {
+                drain();
+            }
+            firstField = true;
+        }
+
+        private void separator() {
+            if (!firstField) {
+                buffer.put((byte) ',');
+            }
+            firstField = false;
+        }
+
+        @Override
+        public void text(String value) {
+            separator();
+            boolean quote = needsQuotes(value);
+            if (quote) {
+                buffer.put((byte) '"');
+            }
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    if (c == '"') {
+                        buffer.put((byte) '"');
+                    }
+                    buffer.put((byte) c);
+                } else if (c < 0x800) {
+                    buffer.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, value.charAt(++i));
+                    buffer.put((byte) (0xF0 | cp >> 18)).put((byte) (0x80 | cp >> 12 & 0x3F))
+                            .put((byte) (0x80 | cp >> 6 & 0x3F)).put((byte) (0x80 | cp & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    buffer.put((byte) '?');  // Unpaired surrogate, as String.getBytes would
+                } else {
+                    buffer.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+                }
+            }
+            if (quote) {
+                buffer.put((byte) '"');
+            }
+        }
+
+        @Override
+        public void text(ByteBuffer utf8) {
+            for (int i = utf8.position(); i < utf8.limit(); i++) {
+                byte b = utf8.get(i);
+                if (b == ',' || b == '"' || b == '\n' || b == '\r') {
+                    // Rare; ASCII bytes never occur inside a multi-byte sequence, so this check is exact
+                    byte[] bytes = new byte[utf8.remaining()];
+                    utf8.get(bytes);
+                    text(new String(bytes, StandardCharsets.UTF_8));
+                    return;
+                }
+            }
+            separator();
+            buffer.put(utf8);  // Bulk copy from the mapping, no decoding
+        }
+
+        private static boolean needsQuotes(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void amount(long minor, StringBuilder scratch) {
+            scratch.setLength(0);
+            ascii(Money.appendTo(scratch, minor));
+        }
+
+        @Override
+        public void code(String value) {
+            text(value);
+        }
+
+        @Override
+        public void day(int epochDay, StringBuilder scratch) {
+            scratch.setLength(0);
+            ascii(RowFormatter.appendDate(scratch, epochDay));
+        }
+
+        private void ascii(CharSequence value) {
+            separator();
+            for (int i = 0; i < value.length(); i++) {
+                buffer.put((byte) value.charAt(i));
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            buffer.put((byte) '\r').put((byte) '\n');
+            drain();
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    // Self-describing columnar file in row groups, like a much simplified Parquet. Layout:
+    //   "EXPX" int version
+    //   row group*: int rows, then per column int dataBytes + int blobBytes, then per column its
+    //               data (int64 / int32 epoch day / int16 dictionary code / int32 text end offset)
+    //               followed by its UTF-8 blob for text columns
+    //   footer:     kind, int columns, per column (name, byte type T/L/D/I), per dictionary column
+    //               int count + values, int groups, per group long offset + int rows, long total rows
+    //   trailer:    long footer offset, "EXPX"
+    // Footer strings are DataOutput.writeUTF, numbers big-endian. Each group goes out in one gathering
+    // write, so memory is a few MB of direct buffers regardless of the row count
+    static final class ColumnarSink implements RowSink {
+        static final int MAGIC = 0x45585058;  // "EXPX"
+        private static final int VERSION = 1;
+        private static final int GROUP_ROWS = 1 << 16;
+        private static final int BLOB_BYTES = 4 << 20;   // Per text column and group
+        private static final int TEXT_RESERVE = 0xFFFF;  // Longest text a row can add
+
+        private final FileChannel channel;
+        private final String kind;
+        private final List<String> names;
+        private final String types;
+        private final ByteBuffer[] data;
+        private final ByteBuffer[] blobs;  // Text columns only
+        private final List<Map<String, Integer>> dictionaries = new ArrayList<>();
+        private final List<long[]> groups = new ArrayList<>();  // Offset and rows of each group
+        private final ByteBuffer[] gather;
+        private long position;
+        private int rows;
+        private long totalRows;
+        private int column;
+
+        ColumnarSink(FileChannel channel, String kind, List<String> names, String types) throws IOException {
+            this.channel = channel;
+            this.kind = kind;
+            this.names = names;
+            this.types = types;
+            data = new ByteBuffer[types.length()];
+            blobs = new ByteBuffer[types.length()];
+            int buffers = 1;
+            for (int c = 0; c < types.length(); c++) {
+                char type = types.charAt(c);
+                data[c] = ByteBuffer.allocateDirect(GROUP_ROWS * (type == 'L' ? 8 : type == 'D' ? 2 : 4));
+                if (type == 'T') {
+                    blobs[c] = ByteBuffer.allocateDirect(BLOB_BYTES);
+                    buffers++;
+                }
+                dictionaries.add(type == 'D' ? new LinkedHashMap<>() : null);
+                buffers++;
+            }
+            gather = new ByteBuffer[buffers];
+            ByteBuffer head = ByteBuffer.allocate(8);
+            head.putInt(MAGIC).putInt(VERSION).flip();
+            write(head);
+        }
+
+        @Override
+        public void beginRow() throws IOException {
+            if (rows == GROUP_ROWS || blobsLow()) {
+                flushGroup();
+            }
+            column = 0;
+        }
+
+        private boolean blobsLow() {
+            for (ByteBuffer blob : blobs) {
+                if (blob != null && blob.remaining() < TEXT_RESERVE) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void text(String value) {
+            int c = column++;
+            blobs[c].put(value.getBytes(StandardCharsets.UTF_8));
+            data[c].putInt(blobs[c].position());
+        }
+
+        @Override
+        public void text(ByteBuffer utf8) {
+            int c = column++;
+            blobs[c].put(utf8);  // Bulk copy from the mapping, no decoding
+            data[c].putInt(blobs[c].position());
+        }
+
+        @Override
+        public void amount(long minor, StringBuilder scratch) {
+            data[column++].putLong(minor);
+        }
+
+        @Override
+        public void code(String value) {
+            int c = column++;
+            Map<String, Integer> dictionary = dictionaries.get(c);
+            Integer code = dictionary.get(value);
+            if (code == null) {
+                if (dictionary.size() > Short.MAX_VALUE) {
+                    throw new IllegalStateException("Too many distinct values in column " + names.get(c));
+                }
+                code = dictionary.size();
+                dictionary.put(value, code);
+            }
+            data[c].putShort(code.shortValue());
+        }
+
+        @Override
+        public void day(int epochDay, StringBuilder scratch) {
+            data[column++].putInt(epochDay);
+            rows++;  // Every schema ends with the date
+        }
+
+        // Write the buffered group: header plus every column in one gathering write
+        private void flushGroup() throws IOException {
+            if (rows == 0) {
+                return;
+            }
+            ByteBuffer header = ByteBuffer.allocate(4 + 8 * data.length);
+            header.putInt(rows);
+            int n = 0;
+            gather[n++] = header;
+            for (int c = 0; c < data.length; c++) {
+                data[c].flip();
+                header.putInt(data[c].remaining());
+                gather[n++] = data[c];
+                if (blobs[c] != null) {
+                    blobs[c].flip();
+                    header.putInt(blobs[c].remaining());
+                    gather[n++] = blobs[c];
+                } else {
+                    header.putInt(0);
+                }
+            }
+            header.flip();
+            groups.add(new long[]{position, rows});
+            long length = 0;
+            for (ByteBuffer b : gather) {
+                length += b.remaining();
+            }
+            long end = position + length;
+            while (position < end) {
+                position += channel.write(gather);
+            }
+            for (int c = 0; c < data.length; c++) {
+                data[c].clear();
+                if (blobs[c] != null) {
+                    blobs[c].clear();
+                }
+            }
+            totalRows += rows;
+            rows = 0;
+        }
+
+        @Override
+        public void finish() throws IOException {
+            flushGroup();
+            ByteArrayOutputStream footer = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(footer);
+            out.writeUTF(kind);
+            out.writeInt(names.size());
+            for (int c = 0; c < names.size(); c++) {
+                out.writeUTF(names.get(c));
+                out.writeByte(types.charAt(c));
+            }
+            for (Map<String, Integer> dictionary : dictionaries) {
+                if (dictionary != null) {
+                    out.writeInt(dictionary.size());
+                    for (String value : dictionary.keySet()) {
+                        out.writeUTF(value);
+                    }
+                }
+            }
+            out.writeInt(groups.size());
+            for (long[] group : groups) {
+                out.writeLong(group[0]);
+                out.writeInt((int) group[1]);
+            }
+            out.writeLong(totalRows);
+            out.writeLong(position);  // Trailer
+            out.writeInt(MAGIC);
+            write(ByteBuffer.wrap(footer.toByteArray()));
+        }
+
+        private void write(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package expenses.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("expenses.JournalFlush")
+@Label("Journal Flush")
+@Category("Expense Tracker")
+class FlushEvent extends Event {
+    @Label("Bytes Written")
+    @DataAmount
+    long bytes;
+}
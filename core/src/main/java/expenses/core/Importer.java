@@ -0,0 +1,480 @@
+package expenses.core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+// Bulk import of CSV or JSON Lines files. The file is read in large chunks through a FileChannel;
+// while the next chunk is read, the lines of the current one are parsed and validated in parallel
+// on the fork-join pool, and each chunk's valid rows go to the store as one batch, so the journal,
+// totals, indexes and the window's summary are updated once per batch rather than once per row
+public class Importer {
+    private static final int CHUNK_BYTES = 8 << 20;    // Bytes read and committed per batch
+    private static final int SPLIT_CHARS = 64 << 10;   // Parse leaves no larger than this
+    private static final int MAX_RECORD_BYTES = 256 << 20;  // Longer means an unbalanced quote, most likely
+    private static final int MAX_MESSAGES = 100;       // Rejections reported with their reason
+    static final List<String> COLUMNS = Collections.unmodifiableList(
+            Arrays.asList("title", "description", "amount", "currency", "category", "date"));
+
+    // Called on the importing thread after each committed batch
+    public interface Progress {
+        void update(long bytesRead, long bytesTotal, Report report);
+    }
+
+    // Counts for a finished (or running) import
+    public static class Report {
+        long lines;
+        public long imported;
+        public long rejected;
+        long bytes;
+        long nanos;
+        public final List<String> messages = new ArrayList<>();  // First rejections, with line numbers
+
+        public String summary() {
+            double seconds = nanos / 1e9;
+            return String.format("Imported %,d rows, rejected %,d, in %.1f s (%,.0f rows/s, %.1f MB/s)",
+                    imported, rejected, seconds, (imported + rejected) / seconds, bytes / seconds / (1 << 20));
+        }
+    }
+
+    private final ExpenseStore store;
+    private final ForkJoinPool pool;
+
+    public Importer(ExpenseStore store) {
+        this(store, ForkJoinPool.commonPool());
+    }
+
+    public Importer(ExpenseStore store, ForkJoinPool pool) {
+        this.store = store;
+        this.pool = pool;
+    }
+
+    // Import without the window: java -cp core/target/classes expenses.core.Importer [--dir data directory] file...
+    public static void main(String[] args) throws IOException {
+        int first = args.length > 1 && args[0].equals("--dir") ? 2 : 0;
+        ExpenseStore store = new ExpenseStore(Paths.get(first == 2 ? args[1] : ""));
+        store.load();
+        try {
+            Importer importer = new Importer(store);
+            for (int i = first; i < args.length; i++) {
+                Report report = importer.importFile(Paths.get(args[i]), (read, total, r) -> { });
+                System.out.println(args[i] + ": " + report.summary());
+                for (String message : report.messages) {
+                    System.out.println("  " + message);
+                }
+            }
+        } finally {
+            store.close();
+        }
+    }
+
+    // Import one file. CSV files may start with a header naming the columns in any order (unknown
+    // columns are ignored); without one the columns are title, description, amount, currency,
+    // category, date. JSON files hold one object per line, as JSON Lines or as an array laid out
+    // one element per line. Dates are yyyy-MM-dd or dd/MM/yyyy; rows without one get today's date
+    public Report importFile(Path file, Progress progress) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        boolean json = name.endsWith(".json") || name.endsWith(".jsonl") || name.endsWith(".ndjson");
+        Report report = new Report();
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long total = channel.size();
+            byte[] bytes = new byte[CHUNK_BYTES];
+            int filled = 0;
+            long read = 0;
+            int[] columns = json ? null : identity();
+            boolean first = true;
+            ForkJoinTask<Parsed> parsing = null;
+            boolean eof = false;
+            while (!eof) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes, filled, bytes.length - filled);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        eof = true;
+                        break;
+                    }
+                }
+                read += buffer.position() - filled;
+                filled = buffer.position();
+                int end = eof ? filled : lastRecordEnd(bytes, filled, json) + 1;
+                if (end == 0 && !eof) {
+                    if (bytes.length >= MAX_RECORD_BYTES) {
+                        throw new IOException("Record longer than " + (MAX_RECORD_BYTES >> 20) + " MB at byte "
+                                + (read - filled) + "; is a quote left open?");
+                    }
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);  // A record longer than a chunk
+                    continue;
+                }
+                String text = new String(bytes, 0, end, StandardCharsets.UTF_8);
+                System.arraycopy(bytes, end, bytes, 0, filled - end);  // Carry the partial last record
+                filled -= end;
+
+                int from = 0;
+                if (first) {
+                    first = false;
+                    if (text.startsWith("\uFEFF")) {
+                        from = 1;  // Byte order mark
+                    }
+                    if (!json) {
+                        int headerEnd = recordEnd(text, from, text.length(), false);
+                        int[] header = header(text, from, headerEnd);
+                        if (header != null) {
+                            columns = header;
+                            from = Math.min(text.length(), headerEnd + 1);
+                            report.lines++;
+                        }
+                    }
+                }
+                int[] splits = splitPoints(text, from, text.length(), json);
+                ForkJoinTask<Parsed> next = pool.submit(new ParseTask(text, from, text.length(), json, columns, splits));
+                if (parsing != null) {
+                    commit(parsing.join(), report);
+                    progress.update(read - filled - end, total, report);
+                }
+                parsing = next;
+            }
+            if (parsing != null) {
+                commit(parsing.join(), report);
+            }
+            report.bytes = read;
+            report.nanos = System.nanoTime() - start;
+            progress.update(read, total, report);
+        }
+        return report;
+    }
+
+    // Hand one chunk's rows to the store and fold its rejections into the report
+    private void commit(Parsed parsed, Report report) {
+        if (!parsed.rows.isEmpty()) {
+            store.addExpenses(parsed.rows);
+        }
+        for (int i = 0; i < parsed.messageLines.size() && report.messages.size() < MAX_MESSAGES; i++) {
+            report.messages.add("Line " + (report.lines + parsed.messageLines.get(i) + 1) + ": " + parsed.messages.get(i));
+        }
+        report.lines += parsed.lines;
+        report.imported += parsed.rows.size();
+        report.rejected += parsed.rejected;
+    }
+
+    // The newline ending the last complete record in bytes[0, length), or -1. A JSON record is a
+    // line; a CSV record may hold newlines inside quoted fields, as RFC 4180 allows and the exporter
+    // writes, so quotes are tracked from the start, which is always a record boundary. Quotes and
+    // newlines are ASCII and never occur inside a UTF-8 multi-byte sequence, so bytes need no decoding
+    private static int lastRecordEnd(byte[] bytes, int length, boolean json) {
+        if (json) {
+            for (int i = length - 1; i >= 0; i--) {
+                if (bytes[i] == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        int last = -1;
+        boolean quoted = false;
+        boolean fieldStart = true;
+        for (int i = 0; i < length; i++) {
+            byte b = bytes[i];
+            if (quoted) {
+                if (b == '"') {
+                    if (i + 1 < length && bytes[i + 1] == '"') {
+                        i++;  // "" escape
+                    } else {
+                        quoted = false;
+                    }
+                }
+            } else if (b == '"' && fieldStart) {
+                quoted = true;
+                fieldStart = false;
+            } else {
+                fieldStart = b == ',' || b == '\n';
+                if (b == '\n') {
+                    last = i;
+                }
+            }
+        }
+        return last;
+    }
+
+    // Index of the newline ending the record that starts at from, or to if there is none before it.
+    // Follows the same quote rules as splitCsv: a quote opens a field only as its first character
+    static int recordEnd(String text, int from, int to, boolean json) {
+        if (json) {
+            int newline = text.indexOf('\n', from);
+            return newline < 0 || newline > to ? to : newline;
+        }
+        boolean quoted = false;
+        boolean fieldStart = true;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < to && text.charAt(i + 1) == '"') {
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                }
+            } else if (c == '\n') {
+                return i;
+            } else if (c == '"' && fieldStart) {
+                quoted = true;
+                fieldStart = false;
+            } else {
+                fieldStart = c == ',';
+            }
+        }
+        return to;
+    }
+
+    // Record starts in text(from, to) at least SPLIT_CHARS apart, where parse tasks may split. Found
+    // here in one pass, since a newline near the middle of a run may be inside a quoted field
+    private static int[] splitPoints(String text, int from, int to, boolean json) {
+        IntList splits = new IntList();
+        int last = from;
+        for (int start = from; start < to; ) {
+            start = recordEnd(text, start, to, json) + 1;
+            if (start - last >= SPLIT_CHARS && start < to) {
+                splits.add(start);
+                last = start;
+            }
+        }
+        return splits.toArray();
+    }
+
+    private static int newlines(String text, int from, int to) {
+        int count = 0;
+        for (int i = text.indexOf('\n', from); i >= 0 && i < to; i = text.indexOf('\n', i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static int[] identity() {
+        int[] columns = new int[COLUMNS.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = i;
+        }
+        return columns;
+    }
+
+    // Column mapping from a header line, or null if the line is data
+    private static int[] header(String text, int from, int to) {
+        String[] fields = new String[64];
+        int count = Math.min(fields.length, splitCsv(text, from, trimCr(text, from, to), fields));
+        int[] columns = new int[count];
+        boolean amount = false;
+        boolean title = false;
+        for (int i = 0; i < count; i++) {
+            columns[i] = COLUMNS.indexOf(fields[i].trim().toLowerCase(Locale.ROOT));
+            amount |= columns[i] == 2;
+            title |= columns[i] == 0;
+        }
+        return amount && title ? columns : null;
+    }
+
+    private static int trimCr(String text, int from, int to) {
+        return to > from && text.charAt(to - 1) == '\r' ? to - 1 : to;
+    }
+
+    // Split one CSV record into fields, honouring double quotes and "" escapes; returns the field
+    // count, which may exceed fields.length (the extra fields are dropped)
+    static int splitCsv(String text, int from, int to, String[] fields) {
+        int count = 0;
+        int i = from;
+        while (true) {
+            String field;
+            if (i < to && text.charAt(i) == '"') {
+                StringBuilder quoted = new StringBuilder();
+                for (i++; i < to; i++) {
+                    char c = text.charAt(i);
+                    if (c == '"') {
+                        if (i + 1 < to && text.charAt(i + 1) == '"') {
+                            quoted.append('"');
+                            i++;
+                        } else {
+                            i++;
+                            break;
+                        }
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+                while (i < to && text.charAt(i) != ',') {
+                    i++;  // Ignore anything between the closing quote and the comma
+                }
+                field = quoted.toString();
+            } else {
+                int comma = text.indexOf(',', i);
+                if (comma < 0 || comma > to) {
+                    comma = to;
+                }
+                field = text.substring(i, comma);
+                i = comma;
+            }
+            if (count < fields.length) {
+                fields[count] = field;
+            }
+            count++;
+            if (i >= to) {
+                return count;
+            }
+            i++;  // Past the comma; a trailing comma leaves one empty field
+        }
+    }
+
+    // Local date from yyyy-MM-dd or dd/MM/yyyy (the format the tables show)
+    static Date parseDate(String text) {
+        String s = text.trim();
+        try {
+            if (s.length() == 10 && s.charAt(4) == '-' && s.charAt(7) == '-') {
+                return ColumnarExpenseList.dateOf((int) LocalDate.of(Integer.parseInt(s.substring(0, 4)),
+                        Integer.parseInt(s.substring(5, 7)), Integer.parseInt(s.substring(8))).toEpochDay());
+            }
+            if (s.length() == 10 && s.charAt(2) == '/' && s.charAt(5) == '/') {
+                return ColumnarExpenseList.dateOf((int) LocalDate.of(Integer.parseInt(s.substring(6)),
+                        Integer.parseInt(s.substring(3, 5)), Integer.parseInt(s.substring(0, 2))).toEpochDay());
+            }
+        } catch (NumberFormatException | DateTimeException e) {
+            // Fall through to the error below
+        }
+        throw new IllegalArgumentException("Bad date, expected yyyy-MM-dd or dd/MM/yyyy: " + text);
+    }
+
+    // Rows and rejections of a run of records; lines counts every line, blank ones and those inside
+    // quoted fields included, so messages give the line a record starts on
+    private static class Parsed {
+        final ArrayList<Expense> rows = new ArrayList<>();
+        final IntList messageLines = new IntList();  // Line within the run of each kept message
+        final List<String> messages = new ArrayList<>();
+        int lines;
+        int rejected;
+
+        void reject(int line, String message) {
+            rejected++;
+            if (messages.size() < MAX_MESSAGES) {
+                messageLines.add(line);
+                messages.add(message);
+            }
+        }
+
+        // Append the run that follows this one
+        Parsed append(Parsed next) {
+            rows.addAll(next.rows);
+            for (int i = 0; i < next.messages.size() && messages.size() < MAX_MESSAGES; i++) {
+                messageLines.add(lines + next.messageLines.get(i));
+                messages.add(next.messages.get(i));
+            }
+            lines += next.lines;
+            rejected += next.rejected;
+            return this;
+        }
+    }
+
+    // Parse text[from, to), which starts at a record boundary, splitting at the split point nearest
+    // the middle
+    private static class ParseTask extends RecursiveTask<Parsed> {
+        private final String text;
+        private final int from;
+        private final int to;
+        private final boolean json;
+        private final int[] columns;
+        private final int[] splits;  // Record starts, ascending
+
+        ParseTask(String text, int from, int to, boolean json, int[] columns, int[] splits) {
+            this.text = text;
+            this.from = from;
+            this.to = to;
+            this.json = json;
+            this.columns = columns;
+            this.splits = splits;
+        }
+
+        @Override
+        protected Parsed compute() {
+            if (to - from > SPLIT_CHARS) {
+                int i = Arrays.binarySearch(splits, from + (to - from) / 2);
+                int split = splits.length == 0 ? -1 : splits[Math.min(i < 0 ? -i - 1 : i, splits.length - 1)];
+                if (split > from && split < to) {
+                    ParseTask left = new ParseTask(text, from, split, json, columns, splits);
+                    left.fork();
+                    Parsed right = new ParseTask(text, split, to, json, columns, splits).compute();
+                    return left.join().append(right);
+                }
+            }
+            Parsed parsed = new Parsed();
+            String[] fields = new String[Math.max(1, columns == null ? 0 : columns.length)];
+            String[] values = new String[COLUMNS.size()];
+            Date now = new Date();
+            int line = from;
+            while (line < to) {
+                int end = recordEnd(text, line, to, json);
+                int last = trimCr(text, line, end);
+                if (!isBlank(text, line, last)) {
+                    try {
+                        parsed.rows.add(json ? parseJson(text, line, last) : parseCsv(text, line, last, fields, values, now));
+                    } catch (RuntimeException e) {  // Any bad row is counted; it must not abort the whole import
+                        parsed.reject(parsed.lines, e instanceof IllegalArgumentException ? e.getMessage() : e.toString());
+                    }
+                }
+                parsed.lines += 1 + newlines(text, line, end);
+                line = end + 1;
+            }
+            return parsed;
+        }
+
+        private Expense parseCsv(String text, int from, int to, String[] fields, String[] values, Date now) {
+            int count = splitCsv(text, from, to, fields);
+            Arrays.fill(values, null);
+            for (int i = 0; i < Math.min(count, columns.length); i++) {
+                if (columns[i] >= 0) {
+                    values[columns[i]] = fields[i];
+                }
+            }
+            String currency = values[3] == null || values[3].trim().isEmpty() ? null : values[3];
+            Date date = values[5] == null || values[5].trim().isEmpty() ? new Date(now.getTime()) : parseDate(values[5]);
+            return ExpenseStore.newExpense(values[0], values[1], values[2] == null ? null : values[2].trim(),
+                    currency, values[4], date);
+        }
+
+        // One object per line; the brackets and commas of an array laid out that way are ignored
+        private static Expense parseJson(String text, int from, int to) {
+            String line = text.substring(from, to).trim();
+            if (line.startsWith("[")) {
+                line = line.substring(1).trim();
+            }
+            if (line.endsWith("]")) {
+                line = line.substring(0, line.length() - 1).trim();
+            }
+            if (line.endsWith(",")) {
+                line = line.substring(0, line.length() - 1);
+            }
+            return ExpenseStore.readExpense(Json.asObject(Json.parse(line), -1), -1);
+        }
+
+        // Blank lines, and the bracket-only lines of a JSON array
+        private boolean isBlank(String text, int from, int to) {
+            for (int i = from; i < to; i++) {
+                char c = text.charAt(i);
+                if (!Character.isWhitespace(c) && !(json && (c == '[' || c == ']'))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
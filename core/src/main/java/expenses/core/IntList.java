@@ -0,0 +1,47 @@
+package expenses.core;
+
+import java.util.Arrays;
+
+// Growable array of ints, used for posting lists. Appends never modify existing elements, so a
+// (values, size) pair read on the EDT stays valid for a background reader
+final class IntList {
+    int[] values;
+    private int size;
+
+    IntList() {
+        this(8);
+    }
+
+    IntList(int capacity) {
+        values = new int[capacity];
+    }
+
+    IntList(int[] values, int size) {
+        this.values = values;
+        this.size = size;
+    }
+
+    void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(8, values.length * 2));
+        }
+        values[size++] = value;
+    }
+
+    int get(int index) {
+        return values[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    // Fixed view of the current contents that later appends don't affect
+    IntList frozen() {
+        return new IntList(values, size);
+    }
+}
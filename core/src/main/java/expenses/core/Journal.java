@@ -0,0 +1,643 @@
+package expenses.core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// Write-ahead journal: records are appended to numbered segment files and group-committed
+// by a background flusher. seal() starts a new segment so a snapshot can cover the old ones,
+// which are deleted once the snapshot is safely on disk
+public class Journal implements Closeable {
+    private static final byte LEGACY_EXPENSE_RECORD = 1;  // Amount stored as a double, no currency
+    private static final byte TASK_RECORD = 2;      // Flags in the amount slot
+    private static final byte EXPENSE_RECORD = 3;   // Amount in minor units followed by the currency code
+    private static final byte EXPENSE_HIDDEN = 4;   // Row in the amount slot, no text: deleted or replaced
+    private static final byte EXPENSE_SHOWN = 5;    // Row in the amount slot: visible again after an undo
+    private static final byte TASK_HIDDEN = 6;
+    private static final byte TASK_SHOWN = 7;
+    private static final long TASK_DONE = 1;        // Task record flags; with TASK_DUE the due day is in
+    private static final long TASK_DUE = 2;         // the high 32 bits of the amount slot
+    private static final int RECORD_PREFIX = 8;   // Payload length + CRC32 of the payload
+    private static final int FIXED_PAYLOAD = 23;  // Type + time + amount + three string lengths
+    private static final int CURRENCY_BYTES = 3;  // ISO 4217 code, expense records only
+    private static final long COMMIT_INTERVAL_MILLIS = 200;     // Bound on what a crash can lose
+    private static final String EXPENSE_COLUMNS = "expenses.col";
+    private static final String EXPENSE_SNAPSHOT = "expenses.snap";  // Written before the column file existed
+    private static final String TASK_SNAPSHOT = "tasks.snap";
+    private static final String EXPENSE_INDEX = "expenses.idx";
+    private static final String EXPENSE_ROLLUPS = "expenses.cube";
+    private static final String EXPENSE_TEXT = "expenses.txi";
+    private static final String TASK_INDEX = "tasks.idx";
+    private static final String TASK_TEXT = "tasks.txi";
+    private static final String EXPENSE_TOMBSTONES = "expenses.del";  // Hidden rows; not derived, the rows alone can't tell
+    private static final String TASK_TOMBSTONES = "tasks.del";
+    private static final Set<String> DERIVED = new HashSet<>(Arrays.asList(EXPENSE_INDEX, EXPENSE_ROLLUPS, EXPENSE_TEXT,
+            TASK_INDEX, TASK_TEXT));
+    private static final int RECOVERY_BATCH = 10_000;  // Rows per batch handed to a RecoveryListener
+    private static final Metrics.Histogram FLUSH_TIME = Metrics.REGISTRY.timer("journal_flush_seconds");
+    private static final Metrics.Counter BYTES_WRITTEN = Metrics.REGISTRY.counter("journal_bytes_written");
+
+    private final Path dir;  // Directory holding the snapshots and segments
+    private final Object bufferLock = new Object();   // Guards pending, sealed, spare, segmentBytes and generation
+    private final Object channelLock = new Object();  // Guards channel, channelGeneration and closed
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(daemon("journal-flusher"));
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);  // Records not yet written
+    private ByteBuffer sealed;        // Records of the segment sealed but not yet written
+    private ByteBuffer spare;         // Buffer handed back after a flush
+    private long segmentBytes;        // Bytes appended since the last seal
+    private long generation;          // Segment that new records belong to
+    private FileChannel channel;      // Open segment file
+    private long channelGeneration;   // Segment the open file belongs to; trails generation until the next flush
+    private boolean closed;
+
+    Journal(Path dir) {
+        this.dir = dir;
+    }
+
+    // Result of recovery: the lists rebuilt from snapshot and journal
+    static class Recovered {
+        final ColumnarExpenseList expenses;
+        final List<Task> tasks;
+        final RowIndex expenseIndex;
+        final RollupCube rollups;
+        final TextIndex expenseText;
+        final RowIndex taskIndex;
+        final TextIndex taskText;
+        final Tombstones hiddenExpenses;
+        final Tombstones hiddenTasks;
+
+        Recovered(ColumnarExpenseList expenses, List<Task> tasks, RowIndex expenseIndex, RollupCube rollups,
+                  TextIndex expenseText, RowIndex taskIndex, TextIndex taskText, Tombstones hiddenExpenses,
+                  Tombstones hiddenTasks) {
+            this.expenses = expenses;
+            this.tasks = tasks;
+            this.expenseIndex = expenseIndex;
+            this.rollups = rollups;
+            this.expenseText = expenseText;
+            this.taskIndex = taskIndex;
+            this.taskText = taskText;
+            this.hiddenExpenses = hiddenExpenses;
+            this.hiddenTasks = hiddenTasks;
+        }
+    }
+
+    // Receives recovered data in order: the mapped expense file with its indexes, rollups and hidden
+    // rows first, then the task snapshot with its own, then batches of rows and hide or show events
+    // from the journal segments
+    interface RecoveryListener {
+        void expenseFile(ColumnarExpenseList expenses, RowIndex index, RollupCube rollups, TextIndex text,
+                         Tombstones hidden);
+
+        void expenses(List<Expense> batch);
+
+        void taskSnapshot(List<Task> tasks, RowIndex index, TextIndex text, Tombstones hidden);
+
+        void tasks(List<Task> batch);
+
+        // A row hidden or shown again; every row before it has been delivered
+        void visibility(boolean task, int row, boolean hidden);
+    }
+
+    // Recover everything into memory at once
+    Recovered recover() throws IOException {
+        List<ColumnarExpenseList> file = new ArrayList<>(1);
+        List<Task> tasks = new ArrayList<>();
+        RowIndex[] indexes = new RowIndex[2];
+        RollupCube[] rollups = new RollupCube[1];
+        TextIndex[] texts = new TextIndex[2];
+        Tombstones[] hidden = new Tombstones[2];
+        recover(new RecoveryListener() {
+            @Override
+            public void expenseFile(ColumnarExpenseList expenses, RowIndex index, RollupCube cube, TextIndex text,
+                                    Tombstones rows) {
+                file.add(expenses);
+                indexes[0] = index;
+                rollups[0] = cube;
+                texts[0] = text;
+                hidden[0] = rows;
+            }
+
+            @Override
+            public void expenses(List<Expense> batch) {
+                file.get(0).addAll(batch);
+                for (Expense e : batch) {
+                    indexes[0].add(e);
+                    rollups[0].add(e);
+                    texts[0].add(e);
+                }
+            }
+
+            @Override
+            public void taskSnapshot(List<Task> snapshot, RowIndex index, TextIndex text, Tombstones rows) {
+                tasks.addAll(snapshot);
+                indexes[1] = index;
+                texts[1] = text;
+                hidden[1] = rows;
+            }
+
+            @Override
+            public void tasks(List<Task> batch) {
+                tasks.addAll(batch);
+                for (Task t : batch) {
+                    indexes[1].add(t);
+                    texts[1].add(t);
+                }
+            }
+
+            @Override
+            public void visibility(boolean task, int row, boolean hide) {
+                if (hidden[task ? 1 : 0].set(row, hide) && !task) {
+                    ColumnarExpenseList expenses = file.get(0);
+                    long amount = expenses.amountMinorAt(row);
+                    rollups[0].adjust(expenses.currencyCodeAt(row), expenses.categoryAt(row), expenses.epochDayAt(row),
+                            hide ? Money.negate(amount) : amount, hide ? -1 : 1);
+                }
+            }
+        });
+        return new Recovered(file.get(0), tasks, indexes[0], rollups[0], texts[0], indexes[1], texts[1], hidden[0],
+                hidden[1]);
+    }
+
+    // Read the snapshots, stream newer segments to the listener in batches and open a fresh
+    // segment for appends. Rows and hidden-row sets each come with the generation they cover, and
+    // a segment replays only what is newer than that: the hidden rows are written after their
+    // snapshot, so a crash between the two leaves them older, and their events replay from segments
+    // the snapshot had not yet deleted
+    void recover(RecoveryListener listener) throws IOException {
+        Files.createDirectories(dir);  // A new ledger starts empty
+        long expenseGeneration;
+        Tombstones hiddenExpenses = readTombstones(EXPENSE_TOMBSTONES);
+        if (Files.exists(dir.resolve(EXPENSE_COLUMNS))) {
+            ColumnarExpenseList file = ColumnarExpenseList.open(dir.resolve(EXPENSE_COLUMNS));  // Mapped, not read
+            expenseGeneration = file.generation();
+            RowIndex index = RowIndex.read(dir.resolve(EXPENSE_INDEX), expenseGeneration, file.size());
+            RollupCube rollups = hiddenExpenses.generation() != expenseGeneration ? null  // Cells left out other rows
+                    : RollupCube.read(dir.resolve(EXPENSE_ROLLUPS), expenseGeneration, file.size());
+            TextIndex text = TextIndex.read(dir.resolve(EXPENSE_TEXT), expenseGeneration, file.size());
+            listener.expenseFile(file, index != null ? index : RowIndex.build(file),  // Rebuild if stale
+                    rollups != null ? rollups : RollupCube.build(file, hiddenExpenses),
+                    text != null ? text : TextIndex.build(file), hiddenExpenses);
+        } else {
+            List<Expense> legacy = new ArrayList<>();
+            expenseGeneration = readSnapshot(EXPENSE_SNAPSHOT, "expenses.ser", legacy);
+            listener.expenseFile(ColumnarExpenseList.empty(), new RowIndex(), new RollupCube(), new TextIndex(),
+                    hiddenExpenses);
+            listener.expenses(legacy);
+        }
+        List<Task> tasks = new ArrayList<>();
+        long taskGeneration = readSnapshot(TASK_SNAPSHOT, "tasks.ser", tasks);
+        RowIndex taskIndex = RowIndex.read(dir.resolve(TASK_INDEX), taskGeneration, tasks.size());
+        TextIndex taskText = TextIndex.read(dir.resolve(TASK_TEXT), taskGeneration, tasks.size());
+        Tombstones hiddenTasks = readTombstones(TASK_TOMBSTONES);
+        listener.taskSnapshot(tasks, taskIndex != null ? taskIndex : RowIndex.build(tasks),
+                taskText != null ? taskText : TextIndex.build(tasks), hiddenTasks);
+
+        long last = Math.max(expenseGeneration, taskGeneration);
+        for (long segment : listSegments()) {
+            replay(segmentPath(segment), segment > expenseGeneration, segment > taskGeneration,
+                    segment > hiddenExpenses.generation(), segment > hiddenTasks.generation(), listener);
+            last = Math.max(last, segment);
+        }
+
+        synchronized (channelLock) {
+            if (closed) {
+                throw new IOException("Journal closed during recovery");
+            }
+            channelGeneration = last + 1;  // Never append behind a possibly torn tail
+            channel = openSegment(channelGeneration);
+            synchronized (bufferLock) {
+                generation = channelGeneration;
+            }
+        }
+        flusher.scheduleWithFixedDelay(this::flushQuietly, COMMIT_INTERVAL_MILLIS, COMMIT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // Queue an expense record for the next group commit
+    void append(Expense expense) {
+        append(encode(expense));
+    }
+
+    // Queue a task record for the next group commit
+    void append(Task task) {
+        append(encode(task));
+    }
+
+    // Queue encoded records, in order, for the next group commit. Only the copy happens under the
+    // buffer lock, so callers can encode in parallel and append in the order they assign rows
+    void append(byte[]... records) {
+        int bytes = 0;
+        for (byte[] record : records) {
+            bytes += record.length;
+        }
+        synchronized (bufferLock) {
+            if (pending.remaining() < bytes) {
+                pending = grow(pending, bytes);
+            }
+            for (byte[] record : records) {
+                pending.put(record);
+            }
+            segmentBytes += bytes;
+        }
+    }
+
+    // Complete record for an expense, checksum included; needs no lock
+    static byte[] encode(Expense expense) {
+        return encode(EXPENSE_RECORD, expense.getTime(), expense.getAmountMinor(), expense.getCurrency(),
+                expense.getTitle(), expense.getDescription(), expense.getCategory());
+    }
+
+    static byte[] encode(Task task) {
+        long flags = (task.isDone() ? TASK_DONE : 0) | (task.hasDue() ? TASK_DUE | (long) task.getDueDay() << 32 : 0);
+        return encode(TASK_RECORD, task.getTime(), flags, null, task.getTitle(), task.getDescription(),
+                task.getPriority());
+    }
+
+    // Record hiding a row or showing it again
+    static byte[] encodeVisibility(boolean task, int row, boolean hidden) {
+        byte type = task ? (hidden ? TASK_HIDDEN : TASK_SHOWN) : (hidden ? EXPENSE_HIDDEN : EXPENSE_SHOWN);
+        return encode(type, 0, row, null, "", "", "");
+    }
+
+    private static byte[] encode(byte type, long time, long amount, String currency, String first, String second,
+                                 String third) {
+        byte[] a = utf8(first);
+        byte[] b = utf8(second);
+        byte[] c = utf8(third);
+        byte[] code = currency == null ? new byte[0] : currency.getBytes(StandardCharsets.US_ASCII);
+        int payload = FIXED_PAYLOAD + code.length + a.length + b.length + c.length;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_PREFIX + payload);
+        record.putInt(payload).putInt(0).put(type).putLong(time).putLong(amount)
+                .putShort((short) a.length).putShort((short) b.length).putShort((short) c.length)
+                .put(code).put(a).put(b).put(c);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_PREFIX, payload);
+        record.putInt(4, (int) crc.getValue());  // Fill in the checksum slot
+        return record.array();
+    }
+
+    // Write and fsync everything appended so far
+    void flush() throws IOException {
+        FlushEvent event = new FlushEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long bytes;
+        synchronized (channelLock) {
+            if (channel == null) {
+                return;
+            }
+            bytes = writePending();
+            channel.force(false);
+        }
+        if (bytes > 0) {  // The flusher runs whether or not anything was appended
+            FLUSH_TIME.recordSince(start);
+            BYTES_WRITTEN.add(bytes);
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Move buffered records to their segments without forcing the newest one (caller holds channelLock);
+    // returns the bytes written
+    private long writePending() throws IOException {
+        ByteBuffer sealedBatch;
+        ByteBuffer batch = null;
+        long target;
+        synchronized (bufferLock) {
+            sealedBatch = sealed;
+            sealed = null;
+            target = generation;
+            if (pending.position() > 0) {
+                batch = pending;
+                pending = spare != null ? spare : ByteBuffer.allocate(batch.capacity());
+                spare = null;
+            }
+        }
+        long bytes = (sealedBatch != null ? sealedBatch.position() : 0) + (batch != null ? batch.position() : 0);
+        if (sealedBatch != null) {
+            writeFully(sealedBatch);  // Tail of the sealed segment
+            channel.force(false);
+            channel.close();
+            channel = openSegment(target);
+            channelGeneration = target;
+        }
+        if (batch != null) {
+            writeFully(batch);
+            synchronized (bufferLock) {
+                spare = batch;
+            }
+        }
+        return bytes;
+    }
+
+    private void writeFully(ByteBuffer batch) throws IOException {
+        batch.flip();
+        while (batch.hasRemaining()) {
+            channel.write(batch);
+        }
+        batch.clear();
+    }
+
+    // Bytes appended since the last seal, i.e. what a snapshot taken now would absorb
+    long unsealedBytes() {
+        synchronized (bufferLock) {
+            return segmentBytes;
+        }
+    }
+
+    // Start a new segment and return the number of the sealed one. No I/O happens here, so the
+    // autosave writer thread can call it from captureSnapshot while holding the store lock, together
+    // with freezing the rows that the seal covers; the sealed records reach their file on the next flush
+    long seal() {
+        synchronized (bufferLock) {
+            if (sealed != null) {
+                throw new IllegalStateException("Previous seal has not been flushed");
+            }
+            sealed = pending;
+            pending = spare != null ? spare : ByteBuffer.allocate(sealed.capacity());
+            spare = null;
+            segmentBytes = 0;
+            return generation++;
+        }
+    }
+
+    // Write snapshots covering every segment up to and including the sealed one, then delete those
+    // segments. Call flush() first so the sealed segment is complete on disk. An index left behind
+    // by a crash between files no longer matches its snapshot's generation and is rebuilt on load.
+    // Returns the bytes written
+    long writeSnapshots(AutosaveScheduler.Snapshot snapshot) throws IOException {
+        long sealedGeneration = snapshot.sealedGeneration;
+        Path columns = dir.resolve(EXPENSE_COLUMNS + ".tmp");
+        snapshot.expenses.writeTo(columns, sealedGeneration);
+        Files.move(columns, dir.resolve(EXPENSE_COLUMNS), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        snapshot.hiddenExpenses.write(dir.resolve(EXPENSE_TOMBSTONES), sealedGeneration);  // After the rows they refer to
+        snapshot.expenseIndex.write(dir.resolve(EXPENSE_INDEX), sealedGeneration);
+        snapshot.rollups.write(dir.resolve(EXPENSE_ROLLUPS), sealedGeneration);
+        snapshot.expenseText.write(dir.resolve(EXPENSE_TEXT), sealedGeneration);
+        writeTaskSnapshot(sealedGeneration, snapshot.tasks);
+        snapshot.hiddenTasks.write(dir.resolve(TASK_TOMBSTONES), sealedGeneration);
+        snapshot.taskIndex.write(dir.resolve(TASK_INDEX), sealedGeneration);
+        snapshot.taskText.write(dir.resolve(TASK_TEXT), sealedGeneration);
+        snapshot.names.write();
+        for (long segment : listSegments()) {
+            if (segment <= sealedGeneration) {
+                Files.deleteIfExists(segmentPath(segment));  // Covered by the snapshots
+            }
+        }
+        long bytes = 0;
+        for (String file : new String[]{EXPENSE_COLUMNS, EXPENSE_TOMBSTONES, EXPENSE_INDEX, EXPENSE_ROLLUPS, EXPENSE_TEXT,
+                TASK_SNAPSHOT, TASK_TOMBSTONES, TASK_INDEX, TASK_TEXT, CodeRegistry.FILE}) {
+            bytes += Files.size(dir.resolve(file));
+        }
+        return bytes;
+    }
+
+    // Flush, fsync and release the journal
+    @Override
+    public void close() throws IOException {
+        synchronized (channelLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (channelLock) {
+            if (channel != null) {
+                writePending();
+                channel.force(false);
+                boolean empty = channel.size() == 0;
+                channel.close();
+                channel = null;
+                if (empty) {
+                    Files.deleteIfExists(segmentPath(channelGeneration));  // Nothing appended this session
+                }
+            }
+        }
+    }
+
+    // Replay one segment, stopping at (and cutting off) a torn or corrupt tail
+    private void replay(Path segment, boolean wantExpenses, boolean wantTasks, boolean wantExpenseVisibility,
+                        boolean wantTaskVisibility, RecoveryListener listener) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(segment));
+        CRC32 crc = new CRC32();
+        List<Expense> expenses = new ArrayList<>();
+        List<Task> tasks = new ArrayList<>();
+        try {
+            replayRecords(segment, in, crc, wantExpenses ? expenses : null, wantTasks ? tasks : null,
+                    wantExpenseVisibility, wantTaskVisibility, listener);
+        } finally {
+            listener.expenses(expenses);  // Whatever is left of the last batch
+            listener.tasks(tasks);
+        }
+    }
+
+    private void replayRecords(Path segment, ByteBuffer in, CRC32 crc, List<Expense> expenses, List<Task> tasks,
+                               boolean wantExpenseVisibility, boolean wantTaskVisibility, RecoveryListener listener)
+            throws IOException {
+        while (in.remaining() >= RECORD_PREFIX) {
+            int start = in.position();
+            int payload = in.getInt();
+            int checksum = in.getInt();
+            if (payload < FIXED_PAYLOAD || payload > in.remaining()) {
+                truncate(segment, start);
+                return;
+            }
+            crc.reset();
+            crc.update(in.array(), in.position(), payload);
+            if ((int) crc.getValue() != checksum) {
+                truncate(segment, start);
+                return;
+            }
+
+            byte type = in.get();
+            long time = in.getLong();
+            long amount = in.getLong();
+            int a = in.getShort() & 0xFFFF;
+            int b = in.getShort() & 0xFFFF;
+            int c = in.getShort() & 0xFFFF;
+            String currency = type == EXPENSE_RECORD ? StringPool.TEXT.intern(readAscii(in, CURRENCY_BYTES)) : null;
+            String first = StringPool.TEXT.intern(readUtf8(in, a));  // Repeated titles share one copy
+            String second = StringPool.TEXT.intern(readUtf8(in, b));
+            String third = StringPool.TEXT.intern(readUtf8(in, c));  // Category or priority
+            if (type == EXPENSE_RECORD && expenses != null) {
+                expenses.add(new Expense(first, second, amount, currency, third, new Date(time)));
+            } else if (type == LEGACY_EXPENSE_RECORD && expenses != null) {
+                long minor = Math.round(Double.longBitsToDouble(amount) * Money.MINOR_PER_UNIT);
+                expenses.add(new Expense(first, second, minor, Money.DEFAULT_CURRENCY, third, new Date(time)));
+            } else if (type == TASK_RECORD && tasks != null) {
+                tasks.add(new Task(first, second, new Date(time), third, (amount & TASK_DONE) != 0,
+                        (amount & TASK_DUE) != 0 ? (int) (amount >> 32) : Task.NO_DUE));
+            } else if ((type == EXPENSE_HIDDEN || type == EXPENSE_SHOWN) && wantExpenseVisibility) {
+                if (expenses != null && !expenses.isEmpty()) {
+                    listener.expenses(new ArrayList<>(expenses));  // The row may be in this batch
+                    expenses.clear();
+                }
+                listener.visibility(false, (int) amount, type == EXPENSE_HIDDEN);
+            } else if ((type == TASK_HIDDEN || type == TASK_SHOWN) && wantTaskVisibility) {
+                if (tasks != null && !tasks.isEmpty()) {
+                    listener.tasks(new ArrayList<>(tasks));
+                    tasks.clear();
+                }
+                listener.visibility(true, (int) amount, type == TASK_HIDDEN);
+            }
+            if (expenses != null && expenses.size() == RECOVERY_BATCH) {
+                listener.expenses(new ArrayList<>(expenses));
+                expenses.clear();
+            }
+            if (tasks != null && tasks.size() == RECOVERY_BATCH) {
+                listener.tasks(new ArrayList<>(tasks));
+                tasks.clear();
+            }
+        }
+        if (in.hasRemaining()) {
+            truncate(segment, in.position());  // Partial record prefix
+        }
+    }
+
+    private static void truncate(Path segment, long size) throws IOException {
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            ch.truncate(size);
+        }
+    }
+
+    // Read a snapshot (or, only when there is none, the legacy whole-list file) and return the
+    // generation it covers. Either may be in the binary codec or in the Java serialization format of
+    // older builds. A damaged file fails the load: the segments it covered are gone, so carrying on
+    // without it would lose its rows for good at the next snapshot
+    private <T> long readSnapshot(String name, String legacyName, List<T> into) throws IOException {
+        for (String file : new String[]{name, legacyName}) {
+            Path path = dir.resolve(file);
+            if (Files.exists(path)) {
+                try {
+                    return RecordCodec.read(path, into);
+                } catch (RuntimeException e) {
+                    throw new IOException("Damaged snapshot: " + path, e);
+                }
+            }
+        }
+        return 0;  // No saved data yet
+    }
+
+    // Rows hidden as of some generation, or none from generation 0 if the file is missing or damaged:
+    // the journal segments still on disk are then all that can say which rows were deleted
+    private Tombstones readTombstones(String name) {
+        try {
+            Tombstones read = Tombstones.read(dir.resolve(name));
+            if (read != null) {
+                return read;
+            }
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+        }
+        return new Tombstones();
+    }
+
+    // Write the task snapshot to a temporary file and atomically move it into place
+    private void writeTaskSnapshot(long covered, List<Task> tasks) throws IOException {
+        Path tmp = dir.resolve(TASK_SNAPSHOT + ".tmp");
+        RecordCodec.writeTasks(tmp, covered, tasks);
+        Files.move(tmp, dir.resolve(TASK_SNAPSHOT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    int segmentCount() throws IOException {
+        return listSegments().size();
+    }
+
+    private List<Long> listSegments() throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "journal-*.log")) {
+            for (Path p : stream) {
+                String name = p.getFileName().toString();
+                try {
+                    segments.add(Long.parseLong(name.substring(8, name.length() - 4)));
+                } catch (NumberFormatException e) {
+                    // Not one of ours
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private Path segmentPath(long segment) {
+        return dir.resolve(String.format("journal-%010d.log", segment));
+    }
+
+    private FileChannel openSegment(long segment) throws IOException {
+        return FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int needed) {
+        int capacity = Math.max(buffer.capacity() * 2, buffer.position() + needed);
+        ByteBuffer bigger = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        bigger.put(buffer);
+        return bigger;
+    }
+
+    private static byte[] utf8(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Text too long for a journal record");
+        }
+        return bytes;
+    }
+
+    private static String readAscii(ByteBuffer in, int length) {
+        String s = new String(in.array(), in.position(), length, StandardCharsets.US_ASCII);
+        in.position(in.position() + length);
+        return s;
+    }
+
+    private static String readUtf8(ByteBuffer in, int length) {
+        String s = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return s;
+    }
+
+    // Index and rollup files, rebuilt from the rows when missing or stale
+    static boolean derived(String fileName) {
+        return DERIVED.contains(fileName);
+    }
+
+    public static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);  // Never keep the JVM alive on its own
+            return t;
+        };
+    }
+}
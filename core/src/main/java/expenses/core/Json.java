@@ -0,0 +1,262 @@
+package expenses.core;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Minimal JSON reader and writer for the API: objects become LinkedHashMaps, arrays ArrayLists and
+// numbers BigDecimals, so amounts keep their exact decimal text
+public final class Json {
+    private static final int MAX_DIGITS = 18;  // Integer or fraction digits a decimal field may have; a long holds 18
+    private final CharSequence in;
+    private int pos;
+
+    private Json(CharSequence in) {
+        this.in = in;
+    }
+
+    public static Object parse(CharSequence text) {
+        Json json = new Json(text);
+        Object value = json.value();
+        json.skipSpace();
+        if (json.pos != text.length()) {
+            throw json.error("Unexpected trailing data");
+        }
+        return value;
+    }
+
+    private Object value() {
+        skipSpace();
+        if (pos >= in.length()) {
+            throw error("Unexpected end of input");
+        }
+        char c = in.charAt(pos);
+        switch (c) {
+            case '{': return object();
+            case '[': return array();
+            case '"': return string();
+            case 't': return literal("true", Boolean.TRUE);
+            case 'f': return literal("false", Boolean.FALSE);
+            case 'n': return literal("null", null);
+            default: return number();
+        }
+    }
+
+    private Map<String, Object> object() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        pos++;
+        skipSpace();
+        if (peek() == '}') {
+            pos++;
+            return map;
+        }
+        while (true) {
+            skipSpace();
+            if (peek() != '"') {
+                throw error("Expected a field name");
+            }
+            String key = string();
+            skipSpace();
+            expect(':');
+            map.put(key, value());
+            skipSpace();
+            if (peek() == ',') {
+                pos++;
+            } else {
+                expect('}');
+                return map;
+            }
+        }
+    }
+
+    private List<Object> array() {
+        List<Object> list = new ArrayList<>();
+        pos++;
+        skipSpace();
+        if (peek() == ']') {
+            pos++;
+            return list;
+        }
+        while (true) {
+            list.add(value());
+            skipSpace();
+            if (peek() == ',') {
+                pos++;
+            } else {
+                expect(']');
+                return list;
+            }
+        }
+    }
+
+    private String string() {
+        pos++;  // Opening quote
+        StringBuilder out = new StringBuilder();
+        while (true) {
+            if (pos >= in.length()) {
+                throw error("Unterminated string");
+            }
+            char c = in.charAt(pos++);
+            if (c == '"') {
+                return out.toString();
+            }
+            if (c != '\\') {
+                out.append(c);
+                continue;
+            }
+            char e = pos < in.length() ? in.charAt(pos++) : ' ';
+            switch (e) {
+                case '"': case '\\': case '/': out.append(e); break;
+                case 'b': out.append('\b'); break;
+                case 'f': out.append('\f'); break;
+                case 'n': out.append('\n'); break;
+                case 'r': out.append('\r'); break;
+                case 't': out.append('\t'); break;
+                case 'u':
+                    if (pos + 4 > in.length()) {
+                        throw error("Bad unicode escape");
+                    }
+                    out.append((char) Integer.parseInt(in.subSequence(pos, pos + 4).toString(), 16));
+                    pos += 4;
+                    break;
+                default: throw error("Bad escape");
+            }
+        }
+    }
+
+    private BigDecimal number() {
+        int start = pos;
+        while (pos < in.length() && "+-0123456789.eE".indexOf(in.charAt(pos)) >= 0) {
+            pos++;
+        }
+        try {
+            return new BigDecimal(in.subSequence(start, pos).toString());
+        } catch (NumberFormatException e) {
+            throw error("Bad value");
+        }
+    }
+
+    private Object literal(String word, Object value) {
+        if (pos + word.length() > in.length() || !in.subSequence(pos, pos + word.length()).toString().equals(word)) {
+            throw error("Bad value");
+        }
+        pos += word.length();
+        return value;
+    }
+
+    private void skipSpace() {
+        while (pos < in.length() && Character.isWhitespace(in.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private char peek() {
+        return pos < in.length() ? in.charAt(pos) : 0;
+    }
+
+    private void expect(char c) {
+        if (peek() != c) {
+            throw error("Expected '" + c + "'");
+        }
+        pos++;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at offset " + pos);
+    }
+
+    // Append a JSON string literal
+    public static StringBuilder quote(StringBuilder out, String s) {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        return out.append('"');
+    }
+
+    // Field access for the objects parse returns, failing with IllegalArgumentException on a wrong type
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> asObject(Object json, int item) {
+        if (!(json instanceof Map)) {
+            throw new IllegalArgumentException(item < 0 ? "Expected a JSON object" : "Item " + item + ": expected a JSON object");
+        }
+        return (Map<String, Object>) json;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static List<Object> asArray(Object json) {
+        if (!(json instanceof List)) {
+            throw new IllegalArgumentException("Expected a JSON array");
+        }
+        return (List<Object>) json;
+    }
+
+    public static String string(Map<String, Object> json, String field) {
+        Object value = json.get(field);
+        if (value != null && !(value instanceof String)) {
+            throw new IllegalArgumentException("Field " + field + " must be a string");
+        }
+        return (String) value;
+    }
+
+    // Optional decimal given as a number or a string, as plain text. Numbers are range-checked before
+    // toPlainString, which would build a billion-digit string for 1e999999999
+    public static String decimal(Map<String, Object> json, String field) {
+        Object value = json.get(field);
+        if (value == null || value instanceof String) {
+            return (String) value;
+        }
+        if (!(value instanceof BigDecimal)) {
+            throw new IllegalArgumentException("Field " + field + " must be a number or a string");
+        }
+        return bounded((BigDecimal) value, "Field " + field).toPlainString();
+    }
+
+    // Whole number within int range, e.g. an element of an array
+    public static int integer(Object value, String what) {
+        if (!(value instanceof BigDecimal)) {
+            throw new IllegalArgumentException(what + " must be a number");
+        }
+        try {
+            return bounded((BigDecimal) value, what).intValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(what + " must be a whole number");
+        }
+    }
+
+    private static BigDecimal bounded(BigDecimal number, String what) {
+        if (number.scale() < -MAX_DIGITS || number.scale() > MAX_DIGITS || number.precision() - number.scale() > MAX_DIGITS) {
+            throw new IllegalArgumentException(what + " is out of range");
+        }
+        return number;
+    }
+
+    // Optional yyyy-MM-dd date; null if absent or empty
+    public static LocalDate date(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Bad date, expected yyyy-MM-dd: " + value);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package expenses.core;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+// Stores for many users and ledgers under one root, one directory each: root/<shard>/<user>/<ledger>,
+// where the two hex digit shard spreads users over 256 directories. A store is opened on first use
+// and kept in a bounded LRU; callers pin it with a Lease while they use it, and idle stores beyond
+// the bound are checkpointed and closed. The manager's lock only covers its maps: loading and closing
+// run outside it, so a slow ledger never holds up the others
+public class LedgerManager implements Closeable {
+    private static final int MAX_NAME = 64;  // Longest user or ledger name
+    private static final int CHECKPOINT_SEGMENTS = 8;  // Snapshot an evicted ledger with this many journal segments
+
+    private final Path root;
+    private final int maxOpen;
+    private final LinkedHashMap<String, Handle> open = new LinkedHashMap<>(16, 0.75f, true);  // LRU order
+    private final Map<String, Handle> closing = new HashMap<>();  // Evicted, not yet closed
+    private boolean closed;  // Guarded by this, as are both maps and every pin count
+
+    public LedgerManager(Path root, int maxOpen) {
+        this.root = root;
+        this.maxOpen = maxOpen;
+        Metrics.REGISTRY.gauge("ledgers_open", this::openCount);
+    }
+
+    // One ledger's store. A handle for a ledger that is still closing waits for it before loading,
+    // so two stores never share a journal
+    private static final class Handle {
+        final String key;
+        final Path dir;
+        final Handle predecessor;  // Evicted handle of the same ledger, or null
+        final CountDownLatch closed = new CountDownLatch(1);
+        ExpenseStore store;        // Set once loaded, guarded by the handle
+        int pins;                  // Open leases, guarded by the manager
+
+        Handle(String key, Path dir, Handle predecessor) {
+            this.key = key;
+            this.dir = dir;
+            this.predecessor = predecessor;
+        }
+
+        synchronized void load() throws IOException {
+            if (store != null) {
+                return;
+            }
+            if (predecessor != null) {
+                try {
+                    predecessor.closed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for ledger " + key);
+                }
+            }
+            ExpenseStore loading = new ExpenseStore(dir);
+            try {
+                loading.load();
+            } catch (IOException | RuntimeException e) {
+                loading.close();
+                throw e;
+            }
+            store = loading;
+        }
+    }
+
+    // A loaded store, kept open until the lease is closed
+    public final class Lease implements Closeable {
+        private final Handle handle;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(Handle handle) {
+            this.handle = handle;
+        }
+
+        public ExpenseStore store() {
+            return handle.store;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release(handle);
+            }
+        }
+    }
+
+    // Open (or reuse) a ledger's store, creating the ledger if it doesn't exist
+    public Lease open(String user, String ledger) throws IOException {
+        Path dir = directory(root, user, ledger);
+        String key = user + '/' + ledger;
+        Handle handle;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Ledger manager is closed");
+            }
+            handle = open.get(key);
+            if (handle == null) {
+                handle = new Handle(key, dir, closing.get(key));
+                open.put(key, handle);
+            }
+            handle.pins++;
+        }
+        try {
+            handle.load();  // Only callers of this ledger wait here
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                if (--handle.pins == 0 && open.get(key) == handle) {
+                    open.remove(key);  // Let the next caller try again with a fresh handle
+                }
+            }
+            throw e;
+        }
+        evictIdle();
+        return new Lease(handle);
+    }
+
+    private void release(Handle handle) {
+        synchronized (this) {
+            handle.pins--;
+        }
+        evictIdle();
+    }
+
+    // Close least recently used stores that nobody holds until at most maxOpen remain
+    private void evictIdle() {
+        List<Handle> evicted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Handle> lru = open.values().iterator();
+            while (open.size() > maxOpen && lru.hasNext()) {
+                Handle handle = lru.next();
+                if (handle.pins == 0) {
+                    lru.remove();
+                    closing.put(handle.key, handle);
+                    evicted.add(handle);
+                }
+            }
+        }
+        for (Handle handle : evicted) {
+            closeHandle(handle);
+        }
+    }
+
+    // Close an evicted store. Each session leaves a journal segment behind, so a ledger opened briefly
+    // and often is snapshotted once those add up, as autosave would only do after a quiet spell
+    private void closeHandle(Handle handle) {
+        try {
+            synchronized (handle) {
+                if (handle.store != null) {
+                    if (handle.store.journalSegments() >= CHECKPOINT_SEGMENTS) {
+                        handle.store.checkpoint();
+                    }
+                    handle.store.close();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();  // The journal still holds everything that wasn't snapshotted
+        } finally {
+            handle.closed.countDown();
+            synchronized (this) {
+                closing.remove(handle.key, handle);
+            }
+        }
+    }
+
+    synchronized int openCount() {
+        return open.size();
+    }
+
+    // Ledgers a user has, by name
+    public List<String> ledgers(String user) throws IOException {
+        Path dir = userDirectory(root, user);
+        List<String> names = new ArrayList<>();
+        if (Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, Files::isDirectory)) {
+                for (Path p : stream) {
+                    names.add(p.getFileName().toString());
+                }
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    // Directory of one ledger; names are restricted so they are safe as file names on any platform
+    public static Path directory(Path root, String user, String ledger) {
+        return userDirectory(root, user).resolve(checkName(ledger));
+    }
+
+    private static Path userDirectory(Path root, String user) {
+        CRC32 hash = new CRC32();
+        hash.update(checkName(user).getBytes(StandardCharsets.US_ASCII));
+        return root.resolve(String.format("%02x", hash.getValue() & 0xFF)).resolve(user);
+    }
+
+    private static String checkName(String name) {
+        if (name == null || name.isEmpty() || name.length() > MAX_NAME || name.charAt(0) == '.') {
+            throw new IllegalArgumentException("Invalid user or ledger name: " + name);
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '.' || c == '_' || c == '-')) {
+                throw new IllegalArgumentException("Invalid user or ledger name: " + name);
+            }
+        }
+        return name;
+    }
+
+    // Close every store, waiting for any that are still closing after an eviction
+    @Override
+    public void close() {
+        List<Handle> handles;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            handles = new ArrayList<>(open.values());
+            open.clear();
+            handles.forEach(h -> closing.put(h.key, h));
+        }
+        for (Handle handle : handles) {
+            closeHandle(handle);
+        }
+        List<Handle> pending;
+        synchronized (this) {
+            pending = new ArrayList<>(closing.values());
+        }
+        try {
+            for (Handle handle : pending) {
+                handle.closed.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package expenses.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// JFR events for the slow paths, in the "Expense Tracker" category of a recording. Free unless a
+// recording enables them, e.g. java -XX:StartFlightRecording:filename=app.jfr ...
+@Name("expenses.Load")
+@Label("Load Ledger")
+@Category("Expense Tracker")
+class LoadEvent extends Event {
+    @Label("Expenses")
+    int expenses;
+    @Label("Tasks")
+    int tasks;
+}
@@ -0,0 +1,250 @@
+package expenses.core;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+// Process-wide counters, gauges and histograms for the hot paths, cheap enough to leave on: a counter
+// is a LongAdder and a histogram sample is one atomic increment in a log-linear bucket (eight per
+// power of two, so quantiles are within 12.5%). Metrics are created once and kept in static fields
+// by the code that records them. Readable over JMX as the OOPS_CIA2:type=Metrics bean, from
+// GET /metrics on the API and as a file written on exit when -Dexpenses.metrics.file is set
+public final class Metrics {
+    public static final Metrics REGISTRY = new Metrics();
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] QUANTILE_NAMES = {"_p50", "_p90", "_p99", "_p999"};
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final AtomicBoolean registered = new AtomicBoolean();
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    // Read when metrics are read; a later registration under the same name replaces it
+    void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    // Latencies recorded in nanoseconds and shown in seconds
+    public Histogram timer(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram(1e-9));
+    }
+
+    // Sizes and counts shown as recorded
+    Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram(1));
+    }
+
+    public static final class Counter {
+        private final LongAdder adder = new LongAdder();
+
+        public void add(long n) {
+            adder.add(n);
+        }
+
+        long get() {
+            return adder.sum();
+        }
+    }
+
+    public static final class Histogram {
+        private static final int SUB_BITS = 3;
+        private static final int LINEAR = 1 << (SUB_BITS + 1);  // Values below this get a bucket each
+        private static final int BUCKETS = LINEAR + (63 - SUB_BITS - 1) * (1 << SUB_BITS);
+
+        private final double scale;  // Unit shown per unit recorded
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);  // The count is their sum
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        Histogram(double scale) {
+            this.scale = scale;
+        }
+
+        void record(long value) {
+            if (value < 0) {
+                value = 0;  // A clock step backwards
+            }
+            buckets.incrementAndGet(bucket(value));
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        // Record the time since a System.nanoTime() start
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        private static int bucket(long value) {
+            if (value < LINEAR) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);  // At least SUB_BITS + 1
+            int sub = (int) (value >>> (exponent - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+            return LINEAR + ((exponent - SUB_BITS - 1) << SUB_BITS) + sub;
+        }
+
+        // Largest value that lands in a bucket
+        private static long upperBound(int bucket) {
+            if (bucket < LINEAR) {
+                return bucket;
+            }
+            int exponent = ((bucket - LINEAR) >>> SUB_BITS) + SUB_BITS + 1;
+            long sub = (bucket - LINEAR) & ((1 << SUB_BITS) - 1);
+            long lower = (1L << exponent) | sub << (exponent - SUB_BITS);
+            return lower + (1L << (exponent - SUB_BITS)) - 1;
+        }
+
+        long count() {
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                count += buckets.get(i);
+            }
+            return count;
+        }
+
+        // Value at a quantile in recorded units, from the bucket bounds; 0 when empty
+        long quantile(double q) {
+            long total = 0;
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(upperBound(i), max.get());
+                }
+            }
+            return 0;
+        }
+    }
+
+    // Every value by name, histograms flattened to _count, _sum, _max and quantiles
+    SortedMap<String, Number> values() {
+        SortedMap<String, Number> values = new TreeMap<>();
+        counters.forEach((name, c) -> values.put(name, c.get()));
+        gauges.forEach((name, g) -> values.put(name, g.getAsLong()));
+        histograms.forEach((name, h) -> {
+            values.put(name + "_count", h.count());
+            values.put(name + "_sum", h.sum.sum() * h.scale);
+            values.put(name + "_max", h.max.get() * h.scale);
+            for (int i = 0; i < QUANTILES.length; i++) {
+                values.put(name + QUANTILE_NAMES[i], h.quantile(QUANTILES[i]) * h.scale);
+            }
+        });
+        return values;
+    }
+
+    // One "name value" line per value, the plain-text format metrics scrapers read
+    public void dump(Appendable out) throws IOException {
+        for (Map.Entry<String, Number> value : values().entrySet()) {
+            out.append(value.getKey()).append(' ').append(String.valueOf(value.getValue())).append('\n');
+        }
+    }
+
+    // Write the dump named by -Dexpenses.metrics.file, if set
+    public void dumpToConfiguredFile() {
+        String file = System.getProperty("expenses.metrics.file");
+        if (file == null) {
+            return;
+        }
+        StringBuilder out = new StringBuilder();
+        try {
+            dump(out);
+            Files.write(Paths.get(file), out.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Publish the registry to the platform MBean server once; values are read on each JMX request
+    public void registerMBean() {
+        if (!registered.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsBean(),
+                    new ObjectName("OOPS_CIA2:type=Metrics"));
+        } catch (JMException e) {
+            e.printStackTrace();  // Metrics still work without JMX
+        }
+    }
+
+    // Read-only bean with one attribute per value; the attribute set grows as metrics are created
+    private final class MetricsBean implements DynamicMBean {
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Number value = values().get(attribute);
+            if (value == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            SortedMap<String, Number> values = values();
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                if (values.containsKey(attribute)) {
+                    list.add(new Attribute(attribute, values.get(attribute)));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String action, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(action));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            SortedMap<String, Number> values = values();
+            MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[values.size()];
+            int i = 0;
+            for (Map.Entry<String, Number> value : values.entrySet()) {
+                attributes[i++] = new MBeanAttributeInfo(value.getKey(), value.getValue().getClass().getName(),
+                        value.getKey(), true, false, false);
+            }
+            return new MBeanInfo(getClass().getName(), "Expense tracker metrics", attributes, null, null, null);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package expenses.core;
+
+import java.util.Currency;
+import java.util.Locale;
+
+// Amounts are exact longs in hundredths. Every stored amount uses that scale, so only currencies
+// whose ISO 4217 minor unit is two decimals are accepted (see ExpenseStore.currencyCode): JPY or
+// BHD would need a per-currency scale, which existing journals and snapshots do not record
+public final class Money {
+    static final int FRACTION_DIGITS = 2;
+    static final int MINOR_PER_UNIT = 100;
+    public static final String DEFAULT_CURRENCY = defaultCurrency();
+    // Largest amount one expense may hold, either sign. A ledger has fewer than Integer.MAX_VALUE
+    // rows, so no total of such amounts can overflow a long: 42,949,672.98 in the currency's units
+    public static final long MAX_AMOUNT_MINOR = Long.MAX_VALUE / Integer.MAX_VALUE;
+
+    private Money() {
+    }
+
+    // Parse "123", "-4.5" or "0.99" into minor units without allocating; rejects more than two decimals
+    public static long parseMinor(CharSequence text) {
+        int length = text.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negative = text.charAt(0) == '-';
+            i++;
+        }
+        long units = 0;
+        int digits = 0;
+        try {
+            for (; i < length && text.charAt(i) != '.'; i++, digits++) {
+                units = Math.addExact(Math.multiplyExact(units, 10), digit(text, i));
+            }
+            long fraction = 0;
+            int fractionDigits = 0;
+            if (i < length) {
+                for (i++; i < length; i++, fractionDigits++) {
+                    if (fractionDigits == FRACTION_DIGITS) {
+                        throw new NumberFormatException("At most two decimal places: " + text);
+                    }
+                    fraction = fraction * 10 + digit(text, i);
+                }
+            }
+            if (digits + fractionDigits == 0) {
+                throw new NumberFormatException("No digits: " + text);
+            }
+            for (; fractionDigits < FRACTION_DIGITS; fractionDigits++) {
+                fraction *= 10;
+            }
+            long minor = Math.addExact(Math.multiplyExact(units, MINOR_PER_UNIT), fraction);
+            return negative ? -minor : minor;
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount too large: " + text);
+        }
+    }
+
+    private static int digit(CharSequence text, int i) {
+        char c = text.charAt(i);
+        if (c < '0' || c > '9') {
+            throw new NumberFormatException("Not a number: " + text);
+        }
+        return c - '0';
+    }
+
+    // Sum of two amounts in the same currency. Capped amounts never reach the long range, but rows
+    // journaled before the cap might: their totals are pinned at the range rather than throwing, so
+    // a replay can always finish
+    static long add(long a, long b) {
+        long sum = a + b;
+        if (((a ^ sum) & (b ^ sum)) < 0) {
+            return a < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+        return sum;
+    }
+
+    // The amount that undoes another in a total, pinned as add is
+    static long negate(long a) {
+        return a == Long.MIN_VALUE ? Long.MAX_VALUE : -a;
+    }
+
+    // Whether one expense may hold this amount
+    static boolean fits(long minor) {
+        return minor >= -MAX_AMOUNT_MINOR && minor <= MAX_AMOUNT_MINOR;
+    }
+
+    // Fixed-point text for an amount in minor units, e.g. 12345 -> "123.45"
+    public static String format(long minor) {
+        return appendTo(new StringBuilder(24), minor).toString();
+    }
+
+    // Append an amount in minor units as fixed-point text without going through Formatter
+    static StringBuilder appendTo(StringBuilder out, long minor) {
+        long units = minor / MINOR_PER_UNIT;
+        int cents = (int) Math.abs(minor % MINOR_PER_UNIT);
+        if (minor < 0) {
+            out.append('-');
+        }
+        out.append(Math.abs(units)).append('.');
+        return out.append((char) ('0' + cents / 10)).append((char) ('0' + cents % 10));
+    }
+
+    // Whether amounts in this currency fit the fixed two-decimal scale
+    public static boolean supports(Currency currency) {
+        return currency.getDefaultFractionDigits() == FRACTION_DIGITS;
+    }
+
+    private static String defaultCurrency() {
+        try {
+            Currency currency = Currency.getInstance(Locale.getDefault());
+            return supports(currency) ? currency.getCurrencyCode() : "USD";
+        } catch (IllegalArgumentException e) {
+            return "USD";  // Locale without a country
+        }
+    }
+}
@@ -0,0 +1,430 @@
+package expenses.core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+// Versioned binary format for expense and task lists, replacing Java serialization. Layout:
+//   "EXRC", byte version, byte kind ('E' or 'T'), varint generation, varint count,
+//   count records, int CRC32 of everything before it
+// Each record is a varint byte length followed by its fields, so a reader skips fields that newer
+// versions append, and the version byte tells it which fields an older file has (version 2 added
+// the done flag of tasks, version 3 their due day). Strings are
+// a varint length and UTF-8; currency, category and priority are interned per column (varint 0 then
+// the string the first time a value appears, its code + 1 after that); dates are zigzag varint
+// deltas from the previous record. Files from older builds written with ObjectOutputStream are
+// recognised by the serialization stream magic and read through the migration reader
+final class RecordCodec {
+    static final int MAGIC = 0x45585243;  // "EXRC"
+    static final int VERSION = 3;
+    private static final short SERIALIZATION_MAGIC = (short) 0xACED;
+    private static final int BUFFER_BYTES = 256 << 10;  // Larger than any record
+
+    private RecordCodec() {
+    }
+
+    // Convert or load old files: java -cp core/target/classes expenses.core.RecordCodec import [--dir data] expenses.ser|tasks.ser...
+    // Rows are added to the store (and journaled) like any other new entries
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || !args[0].equals("import")) {
+            System.err.println("Usage: import [--dir data] file...");
+            System.exit(2);
+        }
+        int first = args.length > 2 && args[1].equals("--dir") ? 3 : 1;
+        ExpenseStore store = new ExpenseStore(Paths.get(first == 3 ? args[2] : ""));
+        try {
+            store.load();
+            for (int i = first; i < args.length; i++) {
+                List<Object> rows = new ArrayList<>();
+                read(Paths.get(args[i]), rows);
+                List<Expense> expenses = new ArrayList<>();
+                List<Task> tasks = new ArrayList<>();
+                for (Object row : rows) {
+                    if (row instanceof Expense) {
+                        expenses.add((Expense) row);
+                    } else {
+                        tasks.add((Task) row);
+                    }
+                }
+                store.addExpenses(expenses);
+                store.addTasks(tasks);
+                System.out.printf("%s: %,d expenses, %,d tasks%n", args[i], expenses.size(), tasks.size());
+            }
+        } finally {
+            store.close();
+        }
+    }
+
+    // Write expenses, fsynced; generation is the journal segment the list covers
+    static void writeExpenses(Path file, long generation, List<Expense> rows) throws IOException {
+        try (Writer out = new Writer(file, 'E', generation, rows.size())) {
+            for (Expense e : rows) {
+                out.string(e.getTitle());
+                out.string(e.getDescription());
+                out.varlong(zigzag(e.getAmountMinor()));
+                out.interned(0, e.getCurrency());
+                out.interned(1, e.getCategory());
+                out.date(e.getDate());
+                out.endRecord();
+            }
+        }
+    }
+
+    // Write tasks, fsynced; generation is the journal segment the list covers
+    static void writeTasks(Path file, long generation, List<Task> rows) throws IOException {
+        try (Writer out = new Writer(file, 'T', generation, rows.size())) {
+            for (Task t : rows) {
+                out.string(t.getTitle());
+                out.string(t.getDescription());
+                out.interned(0, t.getPriority());
+                out.date(t.getDate());
+                out.varlong(t.isDone() ? 1 : 0);
+                out.varlong(t.hasDue() ? zigzag(t.getDueDay()) + 1 : 0);  // 0 for none
+                out.endRecord();
+            }
+        }
+    }
+
+    // Read a list written by this codec or by Java serialization (a bare list, as the original
+    // expenses.ser/tasks.ser, or a generation followed by a list, as later snapshots). Appends Expense
+    // or Task rows to into and returns the generation, 0 for files without one
+    @SuppressWarnings("unchecked")
+    static <T> long read(Path file, List<T> into) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.remaining() >= 4 && in.getInt(0) == MAGIC) {
+                return readRecords(in, (List<Object>) into);
+            }
+            if (in.remaining() >= 2 && in.getShort(0) == SERIALIZATION_MAGIC) {
+                return readSerialized(file, (List<Object>) into);
+            }
+            throw new IOException("Unrecognised data file: " + file);
+        }
+    }
+
+    private static long readRecords(ByteBuffer in, List<Object> into) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer body = in.duplicate();
+        body.limit(in.limit() - 4);
+        crc.update(body);
+        if (in.limit() < 10 || (int) crc.getValue() != in.getInt(in.limit() - 4)) {
+            throw new IOException("Data file is damaged (checksum mismatch)");
+        }
+        in.position(4);
+        int version = in.get();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Data file version " + version + " is newer than this build");
+        }
+        char kind = (char) in.get();
+        long generation = varlong(in);
+        long count = varlong(in);
+        Reader reader = new Reader(in, version);
+        for (long i = 0; i < count; i++) {
+            int end = (int) varlong(in);
+            end += in.position();
+            into.add(kind == 'E' ? reader.expense() : reader.task());
+            in.position(end);  // Skip fields added by newer versions
+        }
+        return generation;
+    }
+
+    // Migration reader for ObjectOutputStream files of older builds
+    private static long readSerialized(Path file, List<Object> into) throws IOException {
+        try (ObjectInputStream ois = new LegacyObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            long generation = 0;
+            Object list;
+            try {
+                list = ois.readObject();
+            } catch (OptionalDataException e) {
+                generation = ois.readLong();  // Snapshots wrote the generation first
+                list = ois.readObject();
+            }
+            for (Object item : (List<?>) list) {
+                into.add(item instanceof LegacyExpense ? ((LegacyExpense) item).upgrade() : ((LegacyTask) item).upgrade());
+            }
+            return generation;
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Unreadable serialized file: " + file, e);
+        }
+    }
+
+    static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    static long varlong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    // Buffered record writer: header, records, then the checksum, written to a temporary name that
+    // the caller moves into place
+    private static final class Writer implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer out = ByteBuffer.allocate(BUFFER_BYTES);
+        private final ByteBuffer record = ByteBuffer.allocate(BUFFER_BYTES);
+        private final CRC32 crc = new CRC32();
+        private final List<Map<String, Integer>> tables = new ArrayList<>();  // Interned values per column
+        private long lastMillis;
+
+        Writer(Path file, char kind, long generation, int count) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            out.putInt(MAGIC).put((byte) VERSION).put((byte) kind);
+            putVarlong(out, generation);
+            putVarlong(out, count);
+        }
+
+        void string(String s) {
+            int lengthAt = record.position();
+            int ascii = s.length();
+            if (ascii < 0x80) {
+                record.put((byte) ascii);  // Optimistic one-byte length
+                for (int i = 0; i < ascii; i++) {
+                    char c = s.charAt(i);
+                    if (c >= 0x80) {
+                        record.position(lengthAt);  // Not ASCII after all
+                        putBytes(s.getBytes(StandardCharsets.UTF_8));
+                        return;
+                    }
+                    record.put((byte) c);
+                }
+                return;
+            }
+            putBytes(s.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void putBytes(byte[] bytes) {
+            putVarlong(record, bytes.length);
+            record.put(bytes);
+        }
+
+        void varlong(long v) {
+            putVarlong(record, v);
+        }
+
+        void interned(int column, String value) {
+            while (tables.size() <= column) {
+                tables.add(new HashMap<>());
+            }
+            Map<String, Integer> table = tables.get(column);
+            Integer code = table.get(value);
+            if (code != null) {
+                putVarlong(record, code + 1);
+                return;
+            }
+            table.put(value, table.size());
+            record.put((byte) 0);
+            string(value);
+        }
+
+        void date(Date date) {
+            long millis = date.getTime();
+            putVarlong(record, zigzag(millis - lastMillis));
+            lastMillis = millis;
+        }
+
+        void endRecord() throws IOException {
+            if (out.remaining() < record.position() + 5) {
+                drain();
+            }
+            putVarlong(out, record.position());
+            record.flip();
+            out.put(record);
+            record.clear();
+        }
+
+        private void drain() throws IOException {
+            out.flip();
+            crc.update(out.duplicate());
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            out.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+                out.putInt((int) crc.getValue()).flip();
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        }
+
+        private static void putVarlong(ByteBuffer buffer, long v) {
+            while ((v & ~0x7FL) != 0) {
+                buffer.put((byte) (v & 0x7F | 0x80));
+                v >>>= 7;
+            }
+            buffer.put((byte) v);
+        }
+    }
+
+    // Record reader with the interning tables and date state of one file
+    private static final class Reader {
+        private final ByteBuffer in;
+        private final int version;
+        private final List<List<String>> tables = new ArrayList<>();
+        private byte[] scratch = new byte[256];
+        private long lastMillis;
+
+        Reader(ByteBuffer in, int version) {
+            this.in = in;
+            this.version = version;
+        }
+
+        Expense expense() {
+            String title = StringPool.TEXT.intern(string());
+            String description = StringPool.TEXT.intern(string());
+            long amount = unzigzag(varlong(in));
+            String currency = interned(0);
+            String category = interned(1);
+            Date date = date();
+            return new Expense(title, description, amount, currency, category, date);
+        }
+
+        Task task() {
+            String title = StringPool.TEXT.intern(string());
+            String description = StringPool.TEXT.intern(string());
+            String priority = interned(0);
+            Date date = date();
+            boolean done = version >= 2 && varlong(in) != 0;
+            long due = version >= 3 ? varlong(in) : 0;
+            return new Task(title, description, date, priority, done, due == 0 ? Task.NO_DUE : (int) unzigzag(due - 1));
+        }
+
+        private String string() {
+            int length = (int) varlong(in);
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            in.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private String interned(int column) {
+            while (tables.size() <= column) {
+                tables.add(new ArrayList<>());
+            }
+            List<String> table = tables.get(column);
+            int code = (int) varlong(in);
+            if (code > 0) {
+                return table.get(code - 1);
+            }
+            String value = StringPool.TEXT.intern(string());  // Rows of the file share this instance
+            table.add(value);
+            return value;
+        }
+
+        private Date date() {
+            lastMillis += unzigzag(varlong(in));
+            return new Date(lastMillis);
+        }
+    }
+
+    // Reads serialized lists written by older builds of the Expense and Task classes. Only the classes
+    // such a list held are let through: any other serializable class on the classpath could run code
+    // as it is read from a file someone handed over
+    private static class LegacyObjectInputStream extends ObjectInputStream {
+        private static final Set<Class<?>> ALLOWED = new HashSet<>(Arrays.asList(ArrayList.class,
+                Object[].class, Date.class, String.class, LegacyExpense.class, LegacyTask.class));  // ArrayList checks its Object[]
+
+        LegacyObjectInputStream(InputStream in) throws IOException {
+            super(in);
+            setObjectInputFilter(LegacyObjectInputStream::check);
+        }
+
+        private static ObjectInputFilter.Status check(ObjectInputFilter.FilterInfo info) {
+            Class<?> type = info.serialClass();
+            if (type == null) {
+                return ObjectInputFilter.Status.UNDECIDED;  // A depth or size check, not a class
+            }
+            return ALLOWED.contains(type) ? ObjectInputFilter.Status.ALLOWED : ObjectInputFilter.Status.REJECTED;
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+            ObjectStreamClass desc = super.readClassDescriptor();
+            if (desc.getName().equals(Expense.class.getName())) {
+                return ObjectStreamClass.lookup(LegacyExpense.class);  // Same field names and types as the old Expense
+            }
+            if (desc.getName().equals(Task.class.getName())) {
+                return ObjectStreamClass.lookup(LegacyTask.class);  // Same field names and types as the old Task
+            }
+            return desc;
+        }
+    }
+
+    // Field-for-field copy of the original serialized Expense
+    static class LegacyExpense implements Serializable {
+        private String title;
+        private String description;
+        private double amount;
+        private String category;
+        private Date date;
+
+        LegacyExpense(Expense e) {  // For writing old-format files in benchmarks and tests
+            title = e.getTitle();
+            description = e.getDescription();
+            amount = e.getAmountMinor() / (double) Money.MINOR_PER_UNIT;
+            category = e.getCategory();
+            date = e.getDate();
+        }
+
+        Expense upgrade() {
+            return new Expense(StringPool.TEXT.intern(title), StringPool.TEXT.intern(description),
+                    Math.round(amount * Money.MINOR_PER_UNIT), Money.DEFAULT_CURRENCY, StringPool.TEXT.intern(category), date);
+        }
+    }
+
+    // Field-for-field copy of the original serialized Task
+    static class LegacyTask implements Serializable {
+        private String title;
+        private String description;
+        private Date date;
+        private String priority;
+
+        LegacyTask(Task t) {  // For writing old-format files in benchmarks and tests
+            title = t.getTitle();
+            description = t.getDescription();
+            date = t.getDate();
+            priority = t.getPriority();
+        }
+
+        Task upgrade() {
+            return new Task(StringPool.TEXT.intern(title), StringPool.TEXT.intern(description), date,
+                    StringPool.TEXT.intern(priority));
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package expenses.core;
+
+// A recurring expense or task: a rule, the entry to copy at each occurrence and the next one due
+public final class Recurrence {
+    public final long id;
+    public final RecurrenceRule rule;
+    public final long start;     // Epoch millis the rule counts from
+    public final Expense expense;  // Copied for each occurrence, or null for a task
+    public final Task task;        // Copied for each occurrence, or null for an expense
+    public volatile long next;   // Epoch millis of the next occurrence, or ENDED; written under the scheduler's lock
+    boolean cancelled;    // Guarded by the scheduler; the wheel drops it when it comes due
+
+    public static final long ENDED = Long.MAX_VALUE;
+
+    Recurrence(long id, RecurrenceRule rule, long start, long next, Expense expense, Task task) {
+        this.id = id;
+        this.rule = rule;
+        this.start = start;
+        this.next = next;
+        this.expense = expense;
+        this.task = task;
+    }
+
+    String title() {
+        return expense != null ? expense.getTitle() : task.getTitle();
+    }
+}
@@ -0,0 +1,171 @@
+package expenses.core;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+
+// When a recurring entry happens: "daily", "weekly", "monthly", "yearly", "every <n> days|weeks|
+// months|years" counted from the rule's start, or "cron <minute> <hour> <day> <month> <weekday>" with
+// the usual *, lists, ranges and /steps, month and weekday names, and day/weekday ORed when both are
+// set. Times are local to the zone the scheduler runs in
+public final class RecurrenceRule {
+    private static final String[] MONTHS = {"JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC"};
+    private static final String[] WEEKDAYS = {"SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT"};
+    private static final int CRON_YEARS = 5;  // A cron rule with no match this far ahead has ended
+
+    private final String text;
+    private final ChronoUnit unit;  // Interval rules: DAYS or MONTHS, null for cron
+    private final long step;        // Units between occurrences
+    private long minutes;           // Cron fields as bit sets
+    private long hours;
+    private long days;
+    private long months;
+    private long weekdays;
+    private boolean anyDay;         // Day of month was *
+    private boolean anyWeekday;     // Weekday was *
+
+    private RecurrenceRule(String text, ChronoUnit unit, long step) {
+        this.text = text;
+        this.unit = unit;
+        this.step = step;
+    }
+
+    public static RecurrenceRule parse(String text) {
+        String rule = text == null ? "" : text.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+        switch (rule) {
+            case "daily": return new RecurrenceRule(rule, ChronoUnit.DAYS, 1);
+            case "weekly": return new RecurrenceRule(rule, ChronoUnit.DAYS, 7);
+            case "monthly": return new RecurrenceRule(rule, ChronoUnit.MONTHS, 1);
+            case "yearly": return new RecurrenceRule(rule, ChronoUnit.MONTHS, 12);
+            default: break;
+        }
+        String[] parts = rule.split(" ");
+        if (parts.length == 3 && parts[0].equals("every")) {
+            long n;
+            try {
+                n = Long.parseLong(parts[1]);
+            } catch (NumberFormatException e) {
+                n = 0;
+            }
+            String unit = parts[2].endsWith("s") ? parts[2].substring(0, parts[2].length() - 1) : parts[2];
+            long factor = unit.equals("day") || unit.equals("month") ? 1 : unit.equals("week") ? 7
+                    : unit.equals("year") ? 12 : 0;
+            if (n <= 0 || n > 10_000 || factor == 0) {
+                throw new IllegalArgumentException("Bad rule, expected every <n> days|weeks|months|years: " + text);
+            }
+            return new RecurrenceRule(rule, unit.equals("day") || unit.equals("week") ? ChronoUnit.DAYS : ChronoUnit.MONTHS,
+                    n * factor);
+        }
+        if (parts.length == 6 && parts[0].equals("cron")) {
+            RecurrenceRule cron = new RecurrenceRule(rule, null, 0);
+            cron.minutes = field(parts[1], 0, 59, null, text);
+            cron.hours = field(parts[2], 0, 23, null, text);
+            cron.days = field(parts[3], 1, 31, null, text);
+            cron.months = field(parts[4], 1, 12, MONTHS, text);
+            cron.weekdays = field(parts[5], 0, 7, WEEKDAYS, text);
+            if ((cron.weekdays & 1L << 7) != 0) {
+                cron.weekdays |= 1;  // 7 is Sunday too
+            }
+            cron.anyDay = parts[3].equals("*");
+            cron.anyWeekday = parts[5].equals("*");
+            return cron;
+        }
+        throw new IllegalArgumentException("Bad rule, expected daily, weekly, monthly, yearly, every <n> <unit> or cron: "
+                + text);
+    }
+
+    // One cron field as a bit set: *, n, a-b, with an optional /step, comma separated
+    private static long field(String spec, int min, int max, String[] names, String rule) {
+        long bits = 0;
+        for (String part : spec.split(",")) {
+            int slash = part.indexOf('/');
+            int step = slash < 0 ? 1 : number(part.substring(slash + 1), 1, max, null, min, rule);
+            String range = slash < 0 ? part : part.substring(0, slash);
+            int from;
+            int to;
+            if (range.equals("*")) {
+                from = min;
+                to = max;
+            } else {
+                int dash = range.indexOf('-');
+                from = number(dash < 0 ? range : range.substring(0, dash), min, max, names, min, rule);
+                to = dash < 0 ? (slash < 0 ? from : max) : number(range.substring(dash + 1), min, max, names, min, rule);
+            }
+            if (from > to) {
+                throw new IllegalArgumentException("Bad cron range " + range + " in " + rule);
+            }
+            for (int v = from; v <= to; v += step) {
+                bits |= 1L << v;
+            }
+        }
+        return bits;
+    }
+
+    private static int number(String text, int min, int max, String[] names, int first, String rule) {
+        if (names != null) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equalsIgnoreCase(text)) {
+                    return first + i;
+                }
+            }
+        }
+        try {
+            int n = Integer.parseInt(text);
+            if (n >= min && n <= max) {
+                return n;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Bad cron value " + text + " in " + rule);
+    }
+
+    // First occurrence at or after start
+    LocalDateTime first(LocalDateTime start) {
+        return next(start, start.minusNanos(1));
+    }
+
+    // Next occurrence strictly after a time, or null when there is none; interval rules count from start
+    LocalDateTime next(LocalDateTime start, LocalDateTime after) {
+        if (unit != null) {
+            if (after.isBefore(start)) {
+                return start;
+            }
+            long k = unit.between(start, after) / step;  // Close below the answer
+            LocalDateTime candidate = start.plus(k * step, unit);
+            while (!candidate.isAfter(after)) {
+                k++;
+                candidate = start.plus(k * step, unit);  // From start each time, so Jan 31 goes to Feb 28 then Mar 31
+            }
+            return candidate;
+        }
+        LocalDateTime t = after.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        LocalDateTime limit = t.plusYears(CRON_YEARS);
+        while (t.isBefore(limit)) {
+            if ((months & 1L << t.getMonthValue()) == 0) {
+                t = t.toLocalDate().withDayOfMonth(1).plusMonths(1).atStartOfDay();
+            } else if (!dayMatches(t.toLocalDate())) {
+                t = t.toLocalDate().plusDays(1).atStartOfDay();
+            } else if ((hours & 1L << t.getHour()) == 0) {
+                t = t.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+            } else if ((minutes & 1L << t.getMinute()) == 0) {
+                t = t.plusMinutes(1);
+            } else {
+                return t;
+            }
+        }
+        return null;
+    }
+
+    private boolean dayMatches(LocalDate date) {
+        boolean day = (days & 1L << date.getDayOfMonth()) != 0;
+        boolean weekday = (weekdays & 1L << (date.getDayOfWeek().getValue() % 7)) != 0;
+        return anyDay || anyWeekday ? day && weekday : day || weekday;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
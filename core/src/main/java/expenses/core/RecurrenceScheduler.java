@@ -0,0 +1,305 @@
+package expenses.core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Materializes a store's recurring expenses and tasks. Each rule waits in a timing wheel for its
+// next occurrence; one thread shared by all stores ticks every wheel once a minute and adds what fell
+// due as one batch per store, then tells reminder listeners about the tasks. On start, occurrences
+// missed while the store was closed are caught up in batches, with one reminder per rule. Rules and
+// their progress are rewritten to recurrences.dat after each batch; a crash between the batch
+// reaching the journal and that rewrite repeats the batch on the next start
+public class RecurrenceScheduler implements Closeable {
+    private static final int MAGIC = 0x52454352;  // "RECR"
+    private static final int VERSION = 1;
+    private static final String FILE = "recurrences.dat";
+    private static final long TICK_MILLIS = 60_000;   // Cron resolution
+    private static final int BATCH = 1_000;           // Rows per add call
+    private static final int MAX_CATCH_UP = 10_000;   // Occurrences per rule at once; a rule further behind skips to now
+    private static final ScheduledExecutorService TICKER =
+            Executors.newSingleThreadScheduledExecutor(Journal.daemon("recurrences"));
+
+    // Told about each task occurrence on the ticker thread, or the loading thread when catching up
+    public interface ReminderListener {
+        void remind(Task task, int occurrences);  // More than one when occurrences were missed
+    }
+
+    private final ExpenseStore store;
+    private final Path file;
+    private final long tickMillis;
+    private final LongSupplier clock;
+    private final ZoneId zone;
+    private final Map<Long, Recurrence> rules = new LinkedHashMap<>();  // Guarded by this, as is the rest
+    private final List<ReminderListener> listeners = new CopyOnWriteArrayList<>();
+    private TimingWheel<Recurrence> wheel;
+    private long nextId = 1;
+    private ScheduledFuture<?> ticking;
+    private boolean closed;
+
+    RecurrenceScheduler(ExpenseStore store, Path dir) {
+        this(store, dir, TICK_MILLIS, System::currentTimeMillis, ZoneId.systemDefault());
+    }
+
+    RecurrenceScheduler(ExpenseStore store, Path dir, long tickMillis, LongSupplier clock, ZoneId zone) {
+        this.store = store;
+        this.file = dir.resolve(FILE);
+        this.tickMillis = tickMillis;
+        this.clock = clock;
+        this.zone = zone;
+    }
+
+    public void addReminderListener(ReminderListener listener) {
+        listeners.add(listener);
+    }
+
+    // Read the rules, catch up on what was missed and start ticking; called once the store has loaded
+    void start() throws IOException {
+        long now = clock.getAsLong();
+        List<Recurrence> due = new ArrayList<>();
+        synchronized (this) {
+            if (Files.exists(file)) {
+                read();
+            }
+            wheel = new TimingWheel<>(tickMillis, now);
+            for (Recurrence r : rules.values()) {
+                if (r.next <= now) {
+                    due.add(r);
+                } else if (r.next != Recurrence.ENDED) {
+                    wheel.schedule(r, r.next);
+                }
+            }
+        }
+        fire(due, now);
+        synchronized (this) {
+            if (!closed) {
+                long delay = tickMillis - Math.floorMod(clock.getAsLong(), tickMillis);  // On tick boundaries
+                ticking = TICKER.scheduleAtFixedRate(this::tick, delay, tickMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void tick() {
+        try {
+            long now = clock.getAsLong();
+            List<Recurrence> due;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                due = wheel.advance(now);
+            }
+            fire(due, now);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();  // Progress is written again with the next batch
+        }
+    }
+
+    // Materialize every occurrence of these rules up to now, reschedule them and save progress
+    private void fire(List<Recurrence> due, long now) throws IOException {
+        if (due.isEmpty()) {
+            return;
+        }
+        List<Expense> expenses = new ArrayList<>();
+        List<Task> tasks = new ArrayList<>();
+        List<Task> remind = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        synchronized (this) {
+            for (Recurrence r : due) {
+                if (r.cancelled) {
+                    continue;
+                }
+                int n = 0;
+                Task last = null;
+                while (r.next <= now && n < MAX_CATCH_UP) {
+                    Date date = new Date(r.next);
+                    if (r.expense != null) {
+                        Expense e = r.expense;
+                        expenses.add(new Expense(e.getTitle(), e.getDescription(), e.getAmountMinor(), e.getCurrency(),
+                                e.getCategory(), date));
+                    } else {
+                        last = new Task(r.task.getTitle(), r.task.getDescription(), date, r.task.getPriority());
+                        tasks.add(last);
+                    }
+                    r.next = next(r, r.next);
+                    n++;
+                }
+                if (r.next <= now) {
+                    r.next = next(r, now);  // Skip what is past the catch-up limit
+                }
+                if (r.next != Recurrence.ENDED) {
+                    wheel.schedule(r, r.next);
+                }
+                if (last != null) {
+                    remind.add(last);
+                    counts.add(n);
+                }
+            }
+        }
+        for (int i = 0; i < expenses.size(); i += BATCH) {
+            store.addExpenses(expenses.subList(i, Math.min(expenses.size(), i + BATCH)));
+        }
+        for (int i = 0; i < tasks.size(); i += BATCH) {
+            store.addTasks(tasks.subList(i, Math.min(tasks.size(), i + BATCH)));
+        }
+        synchronized (this) {
+            write();
+        }
+        for (int i = 0; i < remind.size(); i++) {
+            for (ReminderListener listener : listeners) {
+                listener.remind(remind.get(i), counts.get(i));
+            }
+        }
+    }
+
+    private long next(Recurrence r, long afterMillis) {
+        LocalDateTime next = r.rule.next(local(r.start), local(afterMillis));
+        return next == null ? Recurrence.ENDED : next.atZone(zone).toInstant().toEpochMilli();
+    }
+
+    private LocalDateTime local(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), zone);
+    }
+
+    // Repeat an expense from start on; the first occurrence is start itself if the rule allows it,
+    // unless skipStart because the caller already added that one
+    public synchronized Recurrence addExpense(RecurrenceRule rule, long start, Expense expense, boolean skipStart) throws IOException {
+        return add(rule, start, expense, null, skipStart);
+    }
+
+    public synchronized Recurrence addTask(RecurrenceRule rule, long start, Task task, boolean skipStart) throws IOException {
+        return add(rule, start, null, task, skipStart);
+    }
+
+    private Recurrence add(RecurrenceRule rule, long start, Expense expense, Task task, boolean skipStart) throws IOException {
+        checkStarted();
+        LocalDateTime from = local(start);
+        LocalDateTime first = skipStart ? rule.next(from, from) : rule.first(from);
+        Recurrence r = new Recurrence(nextId++, rule, start,
+                first == null ? Recurrence.ENDED : first.atZone(zone).toInstant().toEpochMilli(), expense, task);
+        rules.put(r.id, r);
+        if (r.next != Recurrence.ENDED) {
+            wheel.schedule(r, r.next);  // Picked up by the next tick even if already due
+        }
+        write();
+        return r;
+    }
+
+    // Stop a rule; false if there was none with this id
+    public synchronized boolean cancel(long id) throws IOException {
+        checkStarted();
+        Recurrence r = rules.remove(id);
+        if (r == null) {
+            return false;
+        }
+        r.cancelled = true;  // Its wheel entry is dropped when it comes due
+        write();
+        return true;
+    }
+
+    public synchronized List<Recurrence> list() {
+        return new ArrayList<>(rules.values());
+    }
+
+    synchronized int pending() {
+        return wheel == null ? 0 : wheel.size();
+    }
+
+    private void checkStarted() {
+        if (wheel == null || closed) {
+            throw new IllegalStateException(closed ? "Store is closed" : "Saved data is still loading");
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (ticking != null) {
+            ticking.cancel(false);
+        }
+    }
+
+    // Write every rule with its progress: temp file, fsync, atomic rename
+    private void write() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(nextId);
+        out.writeInt(rules.size());
+        for (Recurrence r : rules.values()) {
+            out.writeLong(r.id);
+            out.writeUTF(r.rule.toString());
+            out.writeLong(r.start);
+            out.writeLong(r.next);
+            out.writeBoolean(r.expense != null);
+            if (r.expense != null) {
+                out.writeUTF(r.expense.getTitle());
+                out.writeUTF(r.expense.getDescription());
+                out.writeLong(r.expense.getAmountMinor());
+                out.writeUTF(r.expense.getCurrency());
+                out.writeUTF(r.expense.getCategory());
+            } else {
+                out.writeUTF(r.task.getTitle());
+                out.writeUTF(r.task.getDescription());
+                out.writeUTF(r.task.getPriority());
+            }
+        }
+        Path tmp = file.resolveSibling(FILE + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                ch.write(buffer);
+            }
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void read() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unsupported recurrences file: " + file);
+            }
+            nextId = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long id = in.readLong();
+                RecurrenceRule rule = RecurrenceRule.parse(in.readUTF());
+                long start = in.readLong();
+                long next = in.readLong();
+                Recurrence r;
+                if (in.readBoolean()) {
+                    Expense expense = new Expense(in.readUTF(), in.readUTF(), in.readLong(), in.readUTF(), in.readUTF(),
+                            new Date(start));
+                    r = new Recurrence(id, rule, start, next, expense, null);
+                } else {
+                    Task task = new Task(in.readUTF(), in.readUTF(), new Date(start), in.readUTF());
+                    r = new Recurrence(id, rule, start, next, null, task);
+                }
+                rules.put(id, r);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Damaged recurrences file: " + file, e);
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package expenses.core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Pre-aggregated spend: count and exact sum per (epoch day, currency, category) and per
+// (epoch month, currency, category), plus an all-categories series for each currency. Cells live in
+// open-addressing tables of primitive arrays keyed by period and series code, so an insert is a
+// few probes and a report cell is one lookup, whatever the number of rows
+public class RollupCube {
+    private static final int MAGIC = 0x52435542;  // "RCUB"
+    private static final int VERSION = 1;
+    private static final int ALL_CATEGORIES = 0xFFFF;  // Name length written for the all-categories series
+
+    private final List<String> seriesCurrencies = new ArrayList<>();  // Currency of each series code
+    private final List<String> seriesCategories = new ArrayList<>();  // Category of each series, null for all
+    private final Map<String, Map<String, Integer>> seriesCodes = new HashMap<>();  // Currency, then category
+    private final List<String> currencies = new ArrayList<>();  // In order of first appearance
+    private final List<String> categories = new ArrayList<>();
+    private CellTable days = new CellTable(1024);
+    private CellTable months = new CellTable(64);
+    private int rows;
+    private int firstDay = Integer.MAX_VALUE;
+    private int lastDay = Integer.MIN_VALUE;
+    private int cachedDay = Integer.MIN_VALUE;  // Rows tend to arrive in date order, so remember
+    private int cachedMonth;                    // the last day-to-month conversion
+
+    // Currencies, categories and date range captured together, for laying out a report
+    public static class Shape {
+        public final List<String> currencies;
+        public final List<String> categories;
+        public final int firstDay;  // Integer.MAX_VALUE when there are no rows
+        public final int lastDay;
+
+        Shape(List<String> currencies, List<String> categories, int firstDay, int lastDay) {
+            this.currencies = currencies;
+            this.categories = categories;
+            this.firstDay = firstDay;
+            this.lastDay = lastDay;
+        }
+    }
+
+    void add(Expense expense) {
+        add(expense.getCurrency(), expense.getCategory(), ColumnarExpenseList.epochDay(expense.getDate()),
+                expense.getAmountMinor());
+    }
+
+    void add(String currency, String category, int epochDay, long amountMinor) {
+        adjust(currency, category, epochDay, amountMinor, 1);
+        rows++;
+        firstDay = Math.min(firstDay, epochDay);
+        lastDay = Math.max(lastDay, epochDay);
+    }
+
+    // Take a hidden row out of its cells (count -1 and the negated amount) or put it back (count 1).
+    // The row still counts toward rows(), which tracks the rows the cube has seen
+    void adjust(String currency, String category, int epochDay, long amountMinor, int count) {
+        if (epochDay != cachedDay) {
+            cachedMonth = epochMonth(epochDay);
+            cachedDay = epochDay;
+        }
+        int series = series(currency, category);
+        int all = series(currency, null);
+        days.add(key(epochDay, series), count, amountMinor);
+        days.add(key(epochDay, all), count, amountMinor);
+        months.add(key(cachedMonth, series), count, amountMinor);
+        months.add(key(cachedMonth, all), count, amountMinor);
+    }
+
+    private int series(String currency, String category) {
+        Map<String, Integer> byCategory = seriesCodes.get(currency);
+        if (byCategory == null) {
+            byCategory = new HashMap<>();
+            seriesCodes.put(currency, byCategory);
+            currencies.add(currency);
+        }
+        Integer code = byCategory.get(category);
+        if (code == null) {
+            code = seriesCurrencies.size();
+            seriesCurrencies.add(currency);
+            seriesCategories.add(category);
+            byCategory.put(category, code);
+            if (category != null && !categories.contains(category)) {
+                categories.add(category);
+            }
+        }
+        return code;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    // Sum in minor units for a currency and category (null for all) on one epoch day or in one epoch month
+    long total(boolean monthly, String currency, String category, int period) {
+        int slot = find(monthly, currency, category, period);
+        return slot < 0 ? 0 : (monthly ? months : days).sums[slot];
+    }
+
+    long count(boolean monthly, String currency, String category, int period) {
+        int slot = find(monthly, currency, category, period);
+        return slot < 0 ? 0 : (monthly ? months : days).counts[slot];
+    }
+
+    private int find(boolean monthly, String currency, String category, int period) {
+        Map<String, Integer> byCategory = seriesCodes.get(currency);
+        Integer series = byCategory == null ? null : byCategory.get(category);
+        return series == null ? -1 : (monthly ? months : days).find(key(period, series));
+    }
+
+    Shape shape() {
+        return new Shape(new ArrayList<>(currencies), new ArrayList<>(categories), firstDay, lastDay);
+    }
+
+    // Feed every day cell into the totals, so they can be restored without reading the rows
+    void aggregateInto(ExpenseAggregates aggregates) {
+        for (int slot = 0; slot < days.keys.length; slot++) {
+            long key = days.keys[slot];
+            int series = (int) key;
+            if (key != CellTable.EMPTY && seriesCategories.get(series) != null) {
+                aggregates.add(seriesCurrencies.get(series), days.sums[slot], days.counts[slot]);
+            }
+        }
+    }
+
+    // Months since January 1970 of a local epoch day
+    public static int epochMonth(int epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        return (date.getYear() - 1970) * 12 + date.getMonthValue() - 1;
+    }
+
+    // Epoch day of the first day of an epoch month
+    public static int firstDayOfMonth(int epochMonth) {
+        return (int) LocalDate.of(1970 + Math.floorDiv(epochMonth, 12), Math.floorMod(epochMonth, 12) + 1, 1).toEpochDay();
+    }
+
+    private static long key(int period, int series) {
+        return (long) period << 32 | (series & 0xFFFFFFFFL);
+    }
+
+    // Copy of the current state that a background writer can persist while rows keep arriving
+    RollupCube copy() {
+        RollupCube copy = new RollupCube();
+        copy.seriesCurrencies.addAll(seriesCurrencies);
+        copy.seriesCategories.addAll(seriesCategories);
+        seriesCodes.forEach((currency, codes) -> copy.seriesCodes.put(currency, new HashMap<>(codes)));
+        copy.currencies.addAll(currencies);
+        copy.categories.addAll(categories);
+        copy.days = days.copy();
+        copy.months = months.copy();
+        copy.rows = rows;
+        copy.firstDay = firstDay;
+        copy.lastDay = lastDay;
+        return copy;
+    }
+
+    // Rebuild from the mapped expense columns, leaving hidden rows out of the cells
+    static RollupCube build(ColumnarExpenseList expenses, Tombstones hidden) {
+        RollupCube cube = new RollupCube();
+        for (int i = 0; i < expenses.size(); i++) {
+            String currency = expenses.currencyCodeAt(i);
+            String category = expenses.categoryAt(i);
+            int day = expenses.epochDayAt(i);
+            long amount = expenses.amountMinorAt(i);
+            cube.add(currency, category, day, amount);
+            if (hidden.hidden(i)) {
+                cube.adjust(currency, category, day, Money.negate(amount), -1);
+            }
+        }
+        return cube;
+    }
+
+    // Write with temp file + atomic rename; generation ties the file to its snapshot
+    void write(Path file, long generation) throws IOException {
+        List<byte[]> names = new ArrayList<>();
+        int bytes = 32 + 8 + 24 * (days.size + months.size);  // Header, then a count and the cells of each table
+        for (int series = 0; series < seriesCurrencies.size(); series++) {
+            names.add(seriesCurrencies.get(series).getBytes(StandardCharsets.UTF_8));
+            String category = seriesCategories.get(series);
+            names.add(category == null ? null : category.getBytes(StandardCharsets.UTF_8));
+        }
+        for (byte[] name : names) {
+            bytes += 2 + (name == null ? 0 : name.length);
+        }
+        ByteBuffer out = ByteBuffer.allocate(bytes);
+        out.putInt(MAGIC).putInt(VERSION).putLong(generation).putInt(rows).putInt(firstDay).putInt(lastDay)
+                .putInt(seriesCurrencies.size());
+        for (byte[] name : names) {
+            if (name == null) {
+                out.putShort((short) ALL_CATEGORIES);
+            } else {
+                out.putShort((short) name.length).put(name);
+            }
+        }
+        days.writeTo(out);
+        months.writeTo(out);
+        out.flip();
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            while (out.hasRemaining()) {
+                ch.write(out);
+            }
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Read a cube written for the given snapshot, or null if it is missing, stale or damaged
+    static RollupCube read(Path file, long generation, int rows) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (in.getInt() != MAGIC || in.getInt() != VERSION || in.getLong() != generation || in.getInt() != rows) {
+                return null;
+            }
+            RollupCube cube = new RollupCube();
+            cube.rows = rows;
+            cube.firstDay = in.getInt();
+            cube.lastDay = in.getInt();
+            int seriesCount = in.getInt();
+            for (int series = 0; series < seriesCount; series++) {
+                byte[] currency = new byte[in.getShort() & 0xFFFF];
+                in.get(currency);
+                int length = in.getShort() & 0xFFFF;
+                String category = null;
+                if (length != ALL_CATEGORIES) {
+                    byte[] name = new byte[length];
+                    in.get(name);
+                    category = new String(name, StandardCharsets.UTF_8);
+                }
+                if (cube.series(new String(currency, StandardCharsets.UTF_8), category) != series) {
+                    return null;  // Duplicate series
+                }
+            }
+            cube.days = CellTable.readFrom(in);
+            cube.months = CellTable.readFrom(in);
+            return cube;
+        } catch (IOException | RuntimeException e) {
+            return null;  // Rebuilt by the caller
+        }
+    }
+
+    // Open-addressing table from a packed (period, series) key to a count and a sum. Linear probing
+    // over parallel arrays kept at most half full; cells are never removed
+    private static final class CellTable {
+        static final long EMPTY = Long.MIN_VALUE;  // Never a real key: no period is Integer.MIN_VALUE
+
+        long[] keys;
+        long[] counts;
+        long[] sums;
+        int size;
+
+        CellTable(int capacity) {
+            keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            counts = new long[capacity];
+            sums = new long[capacity];
+        }
+
+        void add(long key, long count, long sum) {
+            int slot = slot(key);
+            if (keys[slot] == EMPTY) {
+                if (2 * (size + 1) > keys.length) {
+                    grow();
+                    slot = slot(key);
+                }
+                keys[slot] = key;
+                size++;
+            }
+            counts[slot] += count;
+            sums[slot] = Money.add(sums[slot], sum);  // Never throws, as ExpenseAggregates
+        }
+
+        int find(long key) {
+            int slot = slot(key);
+            return keys[slot] == EMPTY ? -1 : slot;
+        }
+
+        // Slot holding the key, or the empty slot where it belongs
+        private int slot(long key) {
+            int mask = keys.length - 1;
+            long h = key * 0x9E3779B97F4A7C15L;
+            int slot = (int) (h ^ (h >>> 32)) & mask;
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            CellTable bigger = new CellTable(keys.length * 2);
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != EMPTY) {
+                    bigger.add(keys[slot], counts[slot], sums[slot]);
+                }
+            }
+            keys = bigger.keys;
+            counts = bigger.counts;
+            sums = bigger.sums;
+        }
+
+        CellTable copy() {
+            CellTable copy = new CellTable(0);
+            copy.keys = keys.clone();
+            copy.counts = counts.clone();
+            copy.sums = sums.clone();
+            copy.size = size;
+            return copy;
+        }
+
+        void writeTo(ByteBuffer out) {
+            out.putInt(size);
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != EMPTY) {
+                    out.putLong(keys[slot]).putLong(counts[slot]).putLong(sums[slot]);
+                }
+            }
+        }
+
+        static CellTable readFrom(ByteBuffer in) {
+            int cells = in.getInt();
+            CellTable table = new CellTable(Math.max(64, Integer.highestOneBit(Math.max(1, cells)) * 4));
+            for (int i = 0; i < cells; i++) {
+                table.add(in.getLong(), in.getLong(), in.getLong());
+            }
+            return table;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package expenses.core;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+// Formats expense and task rows into reusable buffers without SimpleDateFormat or String.format.
+// Not thread-safe: each thread uses its own instance through forThread()
+public final class RowFormatter {
+    private static final ThreadLocal<RowFormatter> PER_THREAD = ThreadLocal.withInitial(RowFormatter::new);
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private final StringBuilder row = new StringBuilder(128);  // Reused for every row
+    private final ZoneRules rules = ZoneId.systemDefault().getRules();
+    private long offsetValidFrom = Long.MAX_VALUE;  // Window in which offsetMillis applies
+    private long offsetValidUntil = Long.MIN_VALUE;
+    private long offsetMillis;
+
+    public static RowFormatter forThread() {
+        return PER_THREAD.get();
+    }
+
+    // Expense row in the shared buffer; the contents change on the next call
+    CharSequence expense(Expense expense) {
+        row.setLength(0);
+        return appendExpense(row, expense);
+    }
+
+    // Task row in the shared buffer; the contents change on the next call
+    CharSequence task(Task task) {
+        row.setLength(0);
+        return appendTask(row, task);
+    }
+
+    StringBuilder appendExpense(StringBuilder out, Expense e) {
+        out.append(e.getTitle()).append(" | ").append(e.getDescription()).append(" | ");
+        Money.appendTo(out, e.getAmountMinor()).append(' ').append(e.getCurrency()).append(" | ")
+                .append(e.getCategory()).append(" | ");
+        return appendDate(out, localEpochDay(e.getTime()));
+    }
+
+    StringBuilder appendTask(StringBuilder out, Task t) {
+        out.append(t.getTitle()).append(" | ").append(t.getDescription()).append(" | ")
+                .append(t.getPriority()).append(" | ");
+        appendDate(out, localEpochDay(t.getTime()));
+        if (t.hasDue()) {
+            appendDate(out.append(" | Due "), t.getDueDay());
+        }
+        return t.isDone() ? out.append(" | Done") : out;
+    }
+
+    // Local epoch day of an instant; the zone offset is cached until the next DST transition
+    public int localEpochDay(long millis) {
+        if (millis < offsetValidFrom || millis >= offsetValidUntil) {
+            Instant instant = Instant.ofEpochMilli(millis);
+            offsetMillis = rules.getOffset(instant).getTotalSeconds() * 1000L;
+            ZoneOffsetTransition previous = rules.previousTransition(instant.plusMillis(1));
+            ZoneOffsetTransition next = rules.nextTransition(instant);
+            offsetValidFrom = previous == null ? Long.MIN_VALUE : previous.toEpochSecond() * 1000;
+            offsetValidUntil = next == null ? Long.MAX_VALUE : next.toEpochSecond() * 1000;
+        }
+        return (int) Math.floorDiv(millis + offsetMillis, MILLIS_PER_DAY);
+    }
+
+    // Append an epoch day as dd/MM/yyyy (proleptic Gregorian calendar, as LocalDate)
+    public static StringBuilder appendDate(StringBuilder out, int epochDay) {
+        long z = epochDay + 719_468L;  // Shift the epoch to 0000-03-01
+        long era = Math.floorDiv(z, 146_097);
+        long dayOfEra = z - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;  // March = 0
+        int day = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+        int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        appendTwoDigits(out, day).append('/');
+        appendTwoDigits(out, month).append('/');
+        if (year >= 0 && year < 1000) {
+            out.append(year < 10 ? "000" : year < 100 ? "00" : "0");
+        }
+        return out.append(year);
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder out, int value) {
+        return out.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+}
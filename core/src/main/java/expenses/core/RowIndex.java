@@ -0,0 +1,325 @@
+package expenses.core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+// Secondary indexes over list rows: a posting list per key (expense category or task priority)
+// and an epoch-day index, both kept in row order and maintained incrementally on insert
+class RowIndex {
+    private static final int MAGIC = 0x52494458;  // "RIDX"
+    private static final int VERSION = 1;
+
+    private final List<String> keys = new ArrayList<>();          // Key names by code
+    private final Map<String, Integer> keyCodes = new HashMap<>();
+    private final List<IntList> postings = new ArrayList<>();     // Rows by key code
+    private final TreeMap<Integer, IntList> byDay = new TreeMap<>();
+    private IntList rowKeys = new IntList(1024);  // Key code of every row
+    private IntList rowDays = new IntList(1024);  // Epoch day of every row
+
+    // Index the next row
+    void add(String key, int epochDay) {
+        int row = rowKeys.size();
+        Integer code = keyCodes.get(key);
+        if (code == null) {
+            code = keys.size();
+            keys.add(key);
+            keyCodes.put(key, code);
+            postings.add(new IntList());
+        }
+        postings.get(code).add(row);
+        byDay.computeIfAbsent(epochDay, d -> new IntList()).add(row);
+        rowKeys.add(code);
+        rowDays.add(epochDay);
+    }
+
+    void add(Expense expense) {
+        add(expense.getCategory(), ColumnarExpenseList.epochDay(expense.getDate()));
+    }
+
+    void add(Task task) {
+        add(task.getPriority(), RowFormatter.forThread().localEpochDay(task.getTime()));
+    }
+
+    int rows() {
+        return rowKeys.size();
+    }
+
+    // Rows with the given key (null for any) whose epoch day lies in [fromDay, toDay], in row order
+    int[] query(String key, int fromDay, int toDay) {
+        return query(key, fromDay, toDay, null, 0, Integer.MAX_VALUE);
+    }
+
+    // Rows within a range of local dates, e.g. all Travel expenses in March
+    int[] query(String key, LocalDate from, LocalDate to) {
+        return query(key, (int) from.toEpochDay(), (int) to.toEpochDay());
+    }
+
+    // One page of the rows above that are not hidden (hidden may be null): skip offset of them and
+    // return at most limit. Walks whichever of the posting list and the day range is smaller, in row
+    // order, and stops once the page is full, so the cost follows offset + limit rather than the
+    // number of rows
+    int[] query(String key, int fromDay, int toDay, Tombstones hidden, int offset, int limit) {
+        IntList posting = null;
+        if (key != null) {
+            Integer code = keyCodes.get(key);
+            if (code == null) {
+                return new int[0];
+            }
+            posting = postings.get(code);
+        }
+        NavigableMap<Integer, IntList> range = byDay.subMap(fromDay, true, toDay, true);
+        long inRange = 0;
+        for (IntList rows : range.values()) {
+            inRange += rows.size();
+        }
+
+        Page page = new Page(hidden, offset, limit);
+        if (posting != null && posting.size() < inRange) {
+            for (int i = 0; i < posting.size() && !page.full(); i++) {  // Posting lists are already in row order
+                int row = posting.get(i);
+                int day = rowDays.get(row);
+                if (day >= fromDay && day <= toDay) {
+                    page.offer(row);
+                }
+            }
+            return page.rows();
+        }
+        int code = posting == null ? -1 : keyCodes.get(key);
+        DayMerge merge = new DayMerge(range.values());
+        while (!page.full() && merge.hasNext()) {
+            int row = merge.next();
+            if (code < 0 || rowKeys.get(row) == code) {
+                page.offer(row);
+            }
+        }
+        return page.rows();
+    }
+
+    // Collects the visible rows offered in order, after skipping the first offset of them
+    private static final class Page {
+        private final Tombstones hidden;
+        private final int limit;
+        private int skip;
+        private final IntList rows = new IntList();
+
+        Page(Tombstones hidden, int offset, int limit) {
+            this.hidden = hidden;
+            this.skip = offset;
+            this.limit = limit;
+        }
+
+        boolean full() {
+            return rows.size() >= limit;
+        }
+
+        void offer(int row) {
+            if (hidden != null && hidden.hidden(row)) {
+                return;
+            }
+            if (skip > 0) {
+                skip--;
+            } else {
+                rows.add(row);
+            }
+        }
+
+        int[] rows() {
+            return rows.toArray();
+        }
+    }
+
+    // The rows of several day lists, each in row order, merged into one ascending sequence with a
+    // binary heap of list cursors
+    private static final class DayMerge {
+        private final IntList[] lists;
+        private final int[] positions;
+        private final int[] heap;  // List numbers, ordered by the row each cursor is on
+        private int size;
+
+        DayMerge(Collection<IntList> days) {
+            lists = days.toArray(new IntList[0]);
+            positions = new int[lists.length];
+            heap = new int[lists.length];
+            for (int i = 0; i < lists.length; i++) {
+                if (lists[i].size() > 0) {
+                    heap[size++] = i;
+                }
+            }
+            for (int i = size / 2 - 1; i >= 0; i--) {
+                down(i);
+            }
+        }
+
+        boolean hasNext() {
+            return size > 0;
+        }
+
+        int next() {
+            int list = heap[0];
+            int row = current(list);
+            if (++positions[list] == lists[list].size()) {
+                heap[0] = heap[--size];
+            }
+            down(0);
+            return row;
+        }
+
+        private int current(int list) {
+            return lists[list].get(positions[list]);
+        }
+
+        private void down(int i) {
+            while (true) {
+                int least = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && current(heap[left]) < current(heap[least])) {
+                    least = left;
+                }
+                if (right < size && current(heap[right]) < current(heap[least])) {
+                    least = right;
+                }
+                if (least == i) {
+                    return;
+                }
+                int t = heap[i];
+                heap[i] = heap[least];
+                heap[least] = t;
+                i = least;
+            }
+        }
+    }
+
+    // Copy of the current state that a background writer can persist while rows keep arriving
+    RowIndex frozen() {
+        RowIndex copy = new RowIndex();
+        copy.keys.addAll(keys);
+        copy.keyCodes.putAll(keyCodes);
+        for (IntList posting : postings) {
+            copy.postings.add(posting.frozen());
+        }
+        byDay.forEach((day, rows) -> copy.byDay.put(day, rows.frozen()));
+        copy.rowKeys = rowKeys.frozen();
+        copy.rowDays = rowDays.frozen();
+        return copy;
+    }
+
+    // Rebuild from the mapped expense columns
+    static RowIndex build(ColumnarExpenseList expenses) {
+        RowIndex index = new RowIndex();
+        for (int i = 0; i < expenses.size(); i++) {
+            index.add(expenses.categoryAt(i), expenses.epochDayAt(i));
+        }
+        return index;
+    }
+
+    // Rebuild from a list of tasks
+    static RowIndex build(List<Task> tasks) {
+        RowIndex index = new RowIndex();
+        for (Task task : tasks) {
+            index.add(task);
+        }
+        return index;
+    }
+
+    // Write with temp file + atomic rename; generation ties the file to its snapshot
+    void write(Path file, long generation) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(24);
+            header.putInt(MAGIC).putInt(VERSION).putLong(generation).putInt(rows()).putInt(keys.size()).flip();
+            writeFully(ch, header);
+            for (int code = 0; code < keys.size(); code++) {
+                byte[] name = keys.get(code).getBytes(StandardCharsets.UTF_8);
+                ByteBuffer entry = ByteBuffer.allocate(2 + name.length);
+                entry.putShort((short) name.length).put(name).flip();
+                writeFully(ch, entry);
+                writeInts(ch, postings.get(code));
+            }
+            ByteBuffer dayCount = ByteBuffer.allocate(4);
+            dayCount.putInt(byDay.size()).flip();
+            writeFully(ch, dayCount);
+            for (Map.Entry<Integer, IntList> day : byDay.entrySet()) {
+                ByteBuffer key = ByteBuffer.allocate(4);
+                key.putInt(day.getKey()).flip();
+                writeFully(ch, key);
+                writeInts(ch, day.getValue());
+            }
+            writeInts(ch, rowKeys);
+            writeInts(ch, rowDays);
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Read an index written for the given snapshot, or null if it is missing, stale or damaged
+    static RowIndex read(Path file, long generation, int rows) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (in.getInt() != MAGIC || in.getInt() != VERSION || in.getLong() != generation || in.getInt() != rows) {
+                return null;
+            }
+            RowIndex index = new RowIndex();
+            int keyCount = in.getInt();
+            for (int code = 0; code < keyCount; code++) {
+                byte[] name = new byte[in.getShort() & 0xFFFF];
+                in.get(name);
+                String key = new String(name, StandardCharsets.UTF_8);
+                index.keys.add(key);
+                index.keyCodes.put(key, code);
+                index.postings.add(readInts(in));
+            }
+            int days = in.getInt();
+            for (int i = 0; i < days; i++) {
+                int day = in.getInt();
+                index.byDay.put(day, readInts(in));
+            }
+            index.rowKeys = readInts(in);
+            index.rowDays = readInts(in);
+            return index;
+        } catch (IOException | RuntimeException e) {
+            return null;  // Rebuilt by the caller
+        }
+    }
+
+    private static void writeInts(FileChannel ch, IntList list) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(4 + 4 * list.size());
+        out.putInt(list.size());
+        out.asIntBuffer().put(list.values, 0, list.size());
+        out.position(out.limit());
+        out.flip();
+        writeFully(ch, out);
+    }
+
+    private static IntList readInts(ByteBuffer in) {
+        int size = in.getInt();
+        int[] values = new int[size];
+        in.asIntBuffer().get(values, 0, size);
+        in.position(in.position() + 4 * size);
+        return new IntList(values, size);
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            ch.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package expenses.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("expenses.Save")
+@Label("Save Snapshot")
+@Category("Expense Tracker")
+class SaveEvent extends Event {
+    @Label("Generation")
+    long generation;
+    @Label("Expenses")
+    int expenses;
+    @Label("Tasks")
+    int tasks;
+    @Label("Bytes Written")
+    @DataAmount
+    long bytes;
+}
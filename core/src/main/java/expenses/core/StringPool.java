@@ -0,0 +1,30 @@
+package expenses.core;
+
+// Bounded pool that lets rows read from disk or imported share one String per repeated title or
+// description. Direct-mapped and lossy: a slot keeps the last string hashed to it, so memory stays
+// fixed and lookups never lock. Strings are immutable, so a racing reader sees the old or the new
+// one and at worst misses a chance to share
+final class StringPool {
+    static final StringPool TEXT = new StringPool(1 << 16);
+    private static final int MAX_LENGTH = 64;  // Longer texts rarely repeat exactly
+
+    private final String[] slots;
+
+    StringPool(int size) {
+        slots = new String[Integer.highestOneBit(size)];
+    }
+
+    String intern(String s) {
+        if (s == null || s.length() > MAX_LENGTH) {
+            return s;
+        }
+        int hash = s.hashCode();
+        int slot = (hash ^ hash >>> 16) & (slots.length - 1);
+        String pooled = slots[slot];
+        if (s.equals(pooled)) {
+            return pooled;
+        }
+        slots[slot] = s;
+        return s;
+    }
+}
@@ -0,0 +1,73 @@
+package expenses.core;
+
+import java.util.Date;
+
+// Task class to store task data
+public class Task {
+    static final int NO_DUE = Integer.MAX_VALUE;  // Due day of a task without one, so it sorts last
+
+    private final String title;
+    private final String description;
+    private final long time;       // Date as epoch milliseconds
+    private final String priority; // One of the ledger's names, see CodeRegistry; shared, not a copy per row
+    private final boolean done;
+    private final int dueDay;      // Local epoch day, or NO_DUE
+
+    public Task(String title, String description, Date date, String priority) {
+        this(title, description, date, priority, false, NO_DUE);
+    }
+
+    public Task(String title, String description, Date date, String priority, boolean done) {
+        this(title, description, date, priority, done, NO_DUE);
+    }
+
+    public Task(String title, String description, Date date, String priority, boolean done, int dueDay) {
+        this.title = title;
+        this.description = description;
+        this.time = date.getTime();
+        this.priority = priority;
+        this.done = done;
+        this.dueDay = dueDay;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public Date getDate() {
+        return new Date(time);
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public String getPriority() {
+        return priority;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public int getDueDay() {
+        return dueDay;
+    }
+
+    public boolean hasDue() {
+        return dueDay != NO_DUE;
+    }
+
+    // Same task marked done or not done
+    public Task withDone(boolean done) {
+        return new Task(title, description, new Date(time), getPriority(), done, dueDay);
+    }
+
+    public String getDetails() {
+        return RowFormatter.forThread().task(this).toString();
+    }
+}
@@ -0,0 +1,183 @@
+package expenses.core;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Open tasks in an indexed binary min-heap, most urgent first: by priority (the ledger's highest
+// first, unregistered ones last), then due
+// day (earliest first, tasks without one last), then age (oldest first), then row. slots[row] is the
+// row's place in the heap or -1, so adding, completing or replacing a task is O(log n) with no search
+// and no sort. The ordering keys sit in arrays beside the heap, so sifting never touches the Task
+// objects. Guarded by the store lock
+final class TaskQueue {
+    private int[] heap = new int[16];     // Rows in heap order
+    private long[] keys = new long[16];   // Urgency and due day of heap[i], packed to compare as one long
+    private long[] times = new long[16];  // Creation time of heap[i]
+    private int[] slots = new int[0];     // Heap slot by row, -1 if the row is not queued
+    private int size;
+    private final CodeRegistry names;     // Ranks of the priorities
+
+    TaskQueue(CodeRegistry names) {
+        this.names = names;
+    }
+
+    // Urgency in the high half (lower for higher ranks, which only ever get added above the others,
+    // so keys already queued keep their order), the due day in the low half with its sign bit flipped
+    // so that the 32 bits compare in day order; the result is never negative, so plain < orders keys
+    long key(Task task) {
+        int urgency = Byte.MAX_VALUE - names.priorityRank(task.getPriority());
+        return (long) urgency << 32 | (task.getDueDay() ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+    }
+
+    // Replace the contents with the open, visible tasks, heapified bottom-up in O(n)
+    void build(List<Task> tasks, Tombstones hidden) {
+        int rows = tasks.size();
+        slots = new int[Math.max(16, rows)];
+        Arrays.fill(slots, -1);
+        heap = new int[Math.max(16, rows)];
+        keys = new long[heap.length];
+        times = new long[heap.length];
+        size = 0;
+        for (int row = 0; row < rows; row++) {
+            Task task = tasks.get(row);
+            if (!task.isDone() && !hidden.hidden(row)) {
+                put(size, row, key(task), task.getTime());
+                size++;
+            }
+        }
+        for (int i = (size >>> 1) - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    // Queue a row; false if it already is
+    boolean add(int row, Task task) {
+        if (contains(row)) {
+            return false;
+        }
+        if (row >= slots.length) {
+            int length = slots.length;
+            slots = Arrays.copyOf(slots, Math.max(row + 1, length * 2));
+            Arrays.fill(slots, length, slots.length, -1);
+        }
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+            keys = Arrays.copyOf(keys, size * 2);
+            times = Arrays.copyOf(times, size * 2);
+        }
+        put(size, row, key(task), task.getTime());
+        siftUp(size++);
+        return true;
+    }
+
+    // Take a row out, wherever it is in the heap; false if it was not queued
+    boolean remove(int row) {
+        if (!contains(row)) {
+            return false;
+        }
+        int slot = slots[row];
+        slots[row] = -1;
+        if (slot != --size) {
+            put(slot, heap[size], keys[size], times[size]);  // The last leaf fills the hole
+            siftDown(slot);
+            siftUp(slot);
+        }
+        return true;
+    }
+
+    boolean contains(int row) {
+        return row < slots.length && slots[row] >= 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // The most urgent rows in order, without changing the heap: a best-first walk that keeps the
+    // candidate slots in a second small heap, O(limit log limit) at any queue size
+    int[] top(int limit) {
+        int n = Math.min(limit, size);
+        int[] rows = new int[n];
+        int[] frontier = new int[n + 1];  // Each step takes one slot and offers at most its two children
+        int open = 0;
+        if (n > 0) {
+            frontier[open++] = 0;
+        }
+        for (int i = 0; i < n; i++) {
+            int slot = frontier[0];
+            rows[i] = heap[slot];
+            frontier[0] = frontier[--open];
+            for (int parent = 0, child; (child = 2 * parent + 1) < open; parent = child) {
+                if (child + 1 < open && before(frontier[child + 1], frontier[child])) {
+                    child++;
+                }
+                if (!before(frontier[child], frontier[parent])) {
+                    break;
+                }
+                swap(frontier, parent, child);
+            }
+            for (int child = 2 * slot + 1; child <= 2 * slot + 2 && child < size; child++) {
+                frontier[open] = child;
+                for (int at = open++, parent; at > 0 && before(frontier[at], frontier[parent = (at - 1) >>> 1]); at = parent) {
+                    swap(frontier, at, parent);
+                }
+            }
+        }
+        return rows;
+    }
+
+    private void put(int slot, int row, long key, long time) {
+        heap[slot] = row;
+        keys[slot] = key;
+        times[slot] = time;
+        slots[row] = slot;
+    }
+
+    // Whether heap slot a holds a more urgent task than slot b
+    private boolean before(int a, int b) {
+        if (keys[a] != keys[b]) {
+            return keys[a] < keys[b];
+        }
+        if (times[a] != times[b]) {
+            return times[a] < times[b];
+        }
+        return heap[a] < heap[b];
+    }
+
+    private void siftUp(int slot) {
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if (!before(slot, parent)) {
+                return;
+            }
+            exchange(slot, parent);
+            slot = parent;
+        }
+    }
+
+    private void siftDown(int slot) {
+        for (int child; (child = 2 * slot + 1) < size; slot = child) {
+            if (child + 1 < size && before(child + 1, child)) {
+                child++;
+            }
+            if (!before(child, slot)) {
+                return;
+            }
+            exchange(slot, child);
+        }
+    }
+
+    private void exchange(int a, int b) {
+        int row = heap[a];
+        long key = keys[a];
+        long time = times[a];
+        put(a, heap[b], keys[b], times[b]);
+        put(b, row, key, time);
+    }
+
+    private static void swap(int[] values, int a, int b) {
+        int value = values[a];
+        values[a] = values[b];
+        values[b] = value;
+    }
+}
@@ -0,0 +1,460 @@
+package expenses.core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Inverted index over titles and descriptions. Text is split into lower-case runs of letters and
+// digits; each term's posting list is a byte array of (row delta, weight) varint pairs in row order,
+// where a title hit weighs three description hits. A search intersects the postings of the query's
+// words (the last word also as a prefix, so results follow typing), scores rows by idf-weighted hits
+// and keeps the best with a bounded heap
+class TextIndex {
+    private static final int MAGIC = 0x54494458;  // "TIDX"
+    private static final int VERSION = 1;
+    private static final int MAX_TERM = 32;           // Longer runs are cut to this many chars
+    private static final int MAX_PREFIX_TERMS = 256;  // Most frequent terms one prefix expands to
+    private static final int TITLE_WEIGHT = 3;
+
+    private final TreeMap<String, Posting> terms = new TreeMap<>();
+    private int rows;
+
+    // Terms of one row with their weights, worked out before taking the store lock
+    static final class Document {
+        final String[] terms;
+        final int[] weights;
+
+        Document(String[] terms, int[] weights) {
+            this.terms = terms;
+            this.weights = weights;
+        }
+    }
+
+    static Document analyze(String title, String description) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String term : tokens(title)) {
+            weights.merge(term, TITLE_WEIGHT, Integer::sum);
+        }
+        for (String term : tokens(description)) {
+            weights.merge(term, 1, Integer::sum);
+        }
+        String[] names = weights.keySet().toArray(new String[0]);
+        int[] counts = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            counts[i] = weights.get(names[i]);
+        }
+        return new Document(names, counts);
+    }
+
+    static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder term = new StringBuilder(MAX_TERM);
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (term.length() < MAX_TERM) {
+                    term.append(Character.toLowerCase(c));
+                }
+            } else if (term.length() > 0) {
+                tokens.add(term.toString());
+                term.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    // Index the next row
+    void add(Document document) {
+        int row = rows++;
+        for (int i = 0; i < document.terms.length; i++) {
+            terms.computeIfAbsent(document.terms[i], t -> new Posting()).add(row, document.weights[i]);
+        }
+    }
+
+    void add(Expense expense) {
+        add(analyze(expense.getTitle(), expense.getDescription()));
+    }
+
+    void add(Task task) {
+        add(analyze(task.getTitle(), task.getDescription()));
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    int termCount() {
+        return terms.size();
+    }
+
+    // Rows containing every word of the query, best first; at most limit of them
+    int[] search(String query, int limit) {
+        return search(query, limit, null);
+    }
+
+    // The same, skipping hidden rows (none if null) before the best are picked
+    int[] search(String query, int limit, Tombstones hidden) {
+        List<String> words = tokens(query);
+        if (words.isEmpty() || limit <= 0) {
+            return new int[0];
+        }
+        boolean prefix = Character.isLetterOrDigit(query.charAt(query.length() - 1));  // Still typing the last word
+        List<List<Posting>> matches = new ArrayList<>();
+        for (int w = 0; w < words.size(); w++) {
+            List<Posting> postings = w == words.size() - 1 && prefix ? prefixed(words.get(w)) : exact(words.get(w));
+            if (postings.isEmpty()) {
+                return new int[0];
+            }
+            matches.add(postings);
+        }
+        matches.sort(Comparator.comparingLong(TextIndex::total));  // Rarest word first keeps the candidates small
+        Hits candidates = union(matches.get(0));
+        for (int w = 1; w < matches.size() && candidates.size > 0; w++) {
+            candidates = candidates.intersect(union(matches.get(w)));
+        }
+        if (hidden != null && hidden.count() > 0) {
+            candidates.retainVisible(hidden);
+        }
+        return candidates.best(limit);
+    }
+
+    private List<Posting> exact(String word) {
+        Posting posting = terms.get(word);
+        return posting == null ? Collections.emptyList() : Collections.singletonList(posting);
+    }
+
+    private List<Posting> prefixed(String word) {
+        List<Posting> postings = new ArrayList<>(terms.subMap(word, true, word + Character.MAX_VALUE, false).values());
+        if (postings.size() > MAX_PREFIX_TERMS) {
+            postings.sort((a, b) -> Integer.compare(b.count, a.count));
+            postings = new ArrayList<>(postings.subList(0, MAX_PREFIX_TERMS));
+        }
+        return postings;
+    }
+
+    private static long total(List<Posting> postings) {
+        long total = 0;
+        for (Posting p : postings) {
+            total += p.count;
+        }
+        return total;
+    }
+
+    // Rows of any of the postings with their scores, merged pairwise into row order
+    private Hits union(List<Posting> postings) {
+        List<Hits> level = new ArrayList<>(postings.size());
+        for (Posting p : postings) {
+            level.add(p.decode((float) Math.log(1 + (double) rows / p.count)));
+        }
+        while (level.size() > 1) {
+            List<Hits> next = new ArrayList<>((level.size() + 1) / 2);
+            for (int i = 0; i < level.size(); i += 2) {
+                next.add(i + 1 < level.size() ? level.get(i).union(level.get(i + 1)) : level.get(i));
+            }
+            level = next;
+        }
+        return level.get(0);
+    }
+
+    // Fixed copy of the current postings for a background writer; the byte arrays are shared, as
+    // appends only write past the lengths captured here
+    Image image() {
+        Image image = new Image(rows, terms.size());
+        int i = 0;
+        for (Map.Entry<String, Posting> term : terms.entrySet()) {
+            Posting p = term.getValue();
+            image.names[i] = term.getKey();
+            image.bytes[i] = p.bytes;
+            image.lengths[i] = p.length;
+            image.counts[i] = p.count;
+            image.lastRows[i] = p.lastRow;
+            i++;
+        }
+        return image;
+    }
+
+    // Rebuild from the expense columns
+    static TextIndex build(ColumnarExpenseList expenses) {
+        TextIndex index = new TextIndex();
+        for (int i = 0; i < expenses.size(); i++) {
+            index.add(analyze(expenses.titleAt(i), expenses.descriptionAt(i)));
+        }
+        return index;
+    }
+
+    // Rebuild from a list of tasks
+    static TextIndex build(List<Task> tasks) {
+        TextIndex index = new TextIndex();
+        for (Task task : tasks) {
+            index.add(task);
+        }
+        return index;
+    }
+
+    // Read an index written for the given snapshot, or null if it is missing, stale or damaged
+    static TextIndex read(Path file, long generation, int rows) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (in.getInt() != MAGIC || in.getInt() != VERSION || in.getLong() != generation || in.getInt() != rows) {
+                return null;
+            }
+            TextIndex index = new TextIndex();
+            index.rows = rows;
+            int count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                byte[] name = new byte[in.get() & 0xFF];
+                in.get(name);
+                Posting p = new Posting();
+                p.count = in.getInt();
+                p.lastRow = in.getInt();
+                p.length = in.getInt();
+                p.bytes = new byte[p.length + 8];  // Room for the next append
+                in.get(p.bytes, 0, p.length);
+                index.terms.put(new String(name, StandardCharsets.UTF_8), p);
+            }
+            return index;
+        } catch (IOException | RuntimeException e) {
+            return null;  // Rebuilt by the caller
+        }
+    }
+
+    // Postings captured under the store lock, written on the autosave thread
+    static final class Image {
+        final int rows;
+        final String[] names;
+        final byte[][] bytes;
+        final int[] lengths;
+        final int[] counts;
+        final int[] lastRows;
+
+        Image(int rows, int terms) {
+            this.rows = rows;
+            names = new String[terms];
+            bytes = new byte[terms][];
+            lengths = new int[terms];
+            counts = new int[terms];
+            lastRows = new int[terms];
+        }
+
+        // Write with temp file + atomic rename; generation ties the file to its snapshot
+        void write(Path file, long generation) throws IOException {
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                ByteBuffer out = ByteBuffer.allocate(1 << 20);
+                out.putInt(MAGIC).putInt(VERSION).putLong(generation).putInt(rows).putInt(names.length);
+                for (int i = 0; i < names.length; i++) {
+                    byte[] name = names[i].getBytes(StandardCharsets.UTF_8);  // At most 32 chars, so under 256 bytes
+                    if (out.remaining() < 13 + name.length + lengths[i]) {
+                        drain(ch, out);
+                    }
+                    out.put((byte) name.length).put(name).putInt(counts[i]).putInt(lastRows[i]).putInt(lengths[i]);
+                    if (out.remaining() >= lengths[i]) {
+                        out.put(bytes[i], 0, lengths[i]);
+                    } else {
+                        drain(ch, out);
+                        ByteBuffer large = ByteBuffer.wrap(bytes[i], 0, lengths[i]);
+                        while (large.hasRemaining()) {
+                            ch.write(large);
+                        }
+                    }
+                }
+                drain(ch, out);
+                ch.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private static void drain(FileChannel ch, ByteBuffer out) throws IOException {
+            out.flip();
+            while (out.hasRemaining()) {
+                ch.write(out);
+            }
+            out.clear();
+        }
+    }
+
+    // Posting list of one term: varint row delta from the previous row, then varint weight
+    private static final class Posting {
+        byte[] bytes = new byte[4];
+        int length;
+        int count;
+        int lastRow = -1;
+
+        void add(int row, int weight) {
+            if (length + 10 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(length + 10, bytes.length * 2));
+            }
+            put(row - lastRow);
+            put(weight);
+            lastRow = row;
+            count++;
+        }
+
+        private void put(int value) {
+            while ((value & ~0x7F) != 0) {
+                bytes[length++] = (byte) (value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        Hits decode(float idf) {
+            Hits hits = new Hits(count);
+            int row = -1;
+            int at = 0;
+            for (int i = 0; i < count; i++) {
+                int delta = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = bytes[at++];
+                    delta |= (b & 0x7F) << shift;
+                    if (b >= 0) {
+                        break;
+                    }
+                }
+                int weight = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = bytes[at++];
+                    weight |= (b & 0x7F) << shift;
+                    if (b >= 0) {
+                        break;
+                    }
+                }
+                row += delta;
+                hits.rows[i] = row;
+                hits.scores[i] = idf * weight;
+            }
+            hits.size = count;
+            return hits;
+        }
+    }
+
+    // Matching rows in row order with their scores so far
+    private static final class Hits {
+        final int[] rows;
+        final float[] scores;
+        int size;
+
+        Hits(int capacity) {
+            rows = new int[capacity];
+            scores = new float[capacity];
+        }
+
+        // Rows in either, scores added where both have the row
+        Hits union(Hits other) {
+            Hits out = new Hits(size + other.size);
+            int i = 0;
+            int j = 0;
+            while (i < size || j < other.size) {
+                int a = i < size ? rows[i] : Integer.MAX_VALUE;
+                int b = j < other.size ? other.rows[j] : Integer.MAX_VALUE;
+                int row = Math.min(a, b);
+                float score = (a == row ? scores[i++] : 0) + (b == row ? other.scores[j++] : 0);
+                out.rows[out.size] = row;
+                out.scores[out.size++] = score;
+            }
+            return out;
+        }
+
+        // Rows in both, with both scores
+        Hits intersect(Hits other) {
+            Hits out = new Hits(Math.min(size, other.size));
+            int i = 0;
+            int j = 0;
+            while (i < size && j < other.size) {
+                if (rows[i] < other.rows[j]) {
+                    i++;
+                } else if (rows[i] > other.rows[j]) {
+                    j++;
+                } else {
+                    out.rows[out.size] = rows[i];
+                    out.scores[out.size++] = scores[i++] + other.scores[j++];
+                }
+            }
+            return out;
+        }
+
+        // Drop hidden rows, in place
+        void retainVisible(Tombstones hidden) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!hidden.hidden(rows[i])) {
+                    rows[kept] = rows[i];
+                    scores[kept++] = scores[i];
+                }
+            }
+            size = kept;
+        }
+
+        // Up to limit rows, highest score first and newer rows first among equals. A min-heap of
+        // (score, row) keys packed into longs holds the best seen so far; walking from the newest row
+        // means an equal score never displaces anything, so common words cost one compare per row
+        int[] best(int limit) {
+            int k = Math.min(limit, size);
+            long[] heap = new long[k];
+            int filled = 0;
+            for (int i = size - 1; i >= 0; i--) {
+                long key = (long) Float.floatToIntBits(scores[i]) << 32 | rows[i];  // Scores are positive
+                if (filled < k) {
+                    heap[filled] = key;
+                    siftUp(heap, filled++);
+                } else if (key > heap[0]) {
+                    heap[0] = key;
+                    siftDown(heap, k);
+                }
+            }
+            Arrays.sort(heap);
+            int[] result = new int[k];
+            for (int i = 0; i < k; i++) {
+                result[i] = (int) heap[k - 1 - i];
+            }
+            return result;
+        }
+
+        private static void siftUp(long[] heap, int i) {
+            while (i > 0 && heap[(i - 1) / 2] > heap[i]) {
+                long t = heap[i];
+                heap[i] = heap[(i - 1) / 2];
+                heap[(i - 1) / 2] = t;
+                i = (i - 1) / 2;
+            }
+        }
+
+        private static void siftDown(long[] heap, int size) {
+            int i = 0;
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                if (left < size && heap[left] < heap[smallest]) {
+                    smallest = left;
+                }
+                if (left + 1 < size && heap[left + 1] < heap[smallest]) {
+                    smallest = left + 1;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                long t = heap[i];
+                heap[i] = heap[smallest];
+                heap[smallest] = t;
+                i = smallest;
+            }
+        }
+    }
+}
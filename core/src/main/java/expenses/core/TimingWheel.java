@@ -0,0 +1,99 @@
+package expenses.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Hierarchical timing wheel (Varghese and Lauck): four levels of 64 slots, each slot of a level
+// spanning one turn of the level below. Scheduling is O(1) and each entry moves down a level at most
+// three times before it expires, however many entries are pending. An entry due past the top level
+// waits in the top level's last slot and is placed again when that slot comes round. Not thread-safe
+final class TimingWheel<T> {
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int LEVELS = 4;
+
+    private final long tickMillis;
+    private final List<List<Entry<T>>> slots = new ArrayList<>(LEVELS * SLOTS);  // Level-major
+    private final List<T> ready = new ArrayList<>();  // Scheduled at or before the current tick
+    private long tick;  // Last tick processed, counted from the epoch
+    private int size;
+
+    private static final class Entry<T> {
+        final T item;
+        final long deadline;  // Tick it expires at
+
+        Entry(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+    }
+
+    TimingWheel(long tickMillis, long nowMillis) {
+        this.tickMillis = tickMillis;
+        tick = nowMillis / tickMillis;
+        for (int i = 0; i < LEVELS * SLOTS; i++) {
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    // Expire an item at the first tick at or after a time; never early
+    void schedule(T item, long atMillis) {
+        long deadline = Math.floorDiv(atMillis + tickMillis - 1, tickMillis);
+        size++;
+        if (deadline <= tick) {
+            ready.add(item);
+        } else {
+            place(new Entry<>(item, deadline));
+        }
+    }
+
+    private void place(Entry<T> entry) {
+        long delta = entry.deadline - tick;
+        for (int level = 0; level < LEVELS; level++) {
+            if (delta < 1L << BITS * (level + 1)) {
+                slots.get(level * SLOTS + (int) (entry.deadline >>> BITS * level & SLOTS - 1)).add(entry);
+                return;
+            }
+        }
+        int top = LEVELS - 1;
+        slots.get(top * SLOTS + (int) (tick >>> BITS * top & SLOTS - 1)).add(entry);  // Comes round last
+    }
+
+    // Move the wheel up to a time and return the items that expired, in tick order
+    List<T> advance(long nowMillis) {
+        List<T> expired = new ArrayList<>(ready);
+        ready.clear();
+        long target = nowMillis / tickMillis;
+        if (size == expired.size()) {
+            tick = Math.max(tick, target);  // Nothing in the slots, skip the idle ticks
+        }
+        while (tick < target) {
+            tick++;
+            int top = 0;
+            while (top + 1 < LEVELS && (tick & (1L << BITS * (top + 1)) - 1) == 0) {
+                top++;
+            }
+            for (int level = top; level >= 1; level--) {  // Higher levels first, they may fill lower slots
+                List<Entry<T>> slot = slots.get(level * SLOTS + (int) (tick >>> BITS * level & SLOTS - 1));
+                if (!slot.isEmpty()) {
+                    List<Entry<T>> moving = new ArrayList<>(slot);
+                    slot.clear();
+                    for (Entry<T> entry : moving) {
+                        place(entry);
+                    }
+                }
+            }
+            List<Entry<T>> due = slots.get((int) (tick & SLOTS - 1));
+            for (Entry<T> entry : due) {
+                expired.add(entry.item);
+            }
+            due.clear();
+        }
+        size -= expired.size();
+        return expired;
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,222 @@
+package expenses.core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+// Rows hidden by a delete or replaced by an edit. Rows are never removed from their lists, so hiding
+// one sets a bit here and the indexes keep their postings; queries and views skip the set bits. A
+// count of hidden rows per block of 4096 lets a table find the n-th visible row by walking the block
+// counts and then the 64 words of one block, with no per-row array to rebuild after each change.
+// Changed under the store lock; the methods synchronize so the EDT can read without it
+public final class Tombstones {
+    private static final int MAGIC = 0x544F4D42;  // "TOMB"
+    private static final int VERSION = 1;
+    private static final int BLOCK_SHIFT = 12;    // 4096 rows per block count
+    private static final int BLOCK_WORDS = 1 << BLOCK_SHIFT >> 6;
+
+    private long[] words = new long[0];
+    private int[] blockCounts = new int[0];  // Hidden rows per block
+    private int count;
+    private long version;     // Bumped on every change, so a view can tell it is out of date
+    private long generation;  // Journal segment the file read covered; 0 when nothing was read
+
+    synchronized boolean hidden(int row) {
+        int word = row >>> 6;
+        return word < words.length && (words[word] & 1L << row) != 0;
+    }
+
+    // Hide or show a row; returns false if it already was
+    synchronized boolean set(int row, boolean hidden) {
+        int word = row >>> 6;
+        if (word >= words.length) {
+            if (!hidden) {
+                return false;
+            }
+            int blocks = Math.max((word >>> 6) + 1, blockCounts.length * 2);  // Whole blocks, doubling
+            words = Arrays.copyOf(words, blocks * BLOCK_WORDS);
+            blockCounts = Arrays.copyOf(blockCounts, blocks);
+        }
+        long bit = 1L << row;
+        if ((words[word] & bit) != 0 == hidden) {
+            return false;
+        }
+        words[word] ^= bit;
+        int delta = hidden ? 1 : -1;
+        blockCounts[row >>> BLOCK_SHIFT] += delta;
+        count += delta;
+        version++;
+        return true;
+    }
+
+    synchronized int count() {
+        return count;
+    }
+
+    public synchronized long version() {
+        return version;
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    // Hidden rows among the first rows
+    public synchronized int rank(int rows) {
+        int block = Math.min(rows >>> BLOCK_SHIFT, blockCounts.length);
+        int hidden = 0;
+        for (int b = 0; b < block; b++) {
+            hidden += blockCounts[b];
+        }
+        int word = block * BLOCK_WORDS;
+        for (int end = Math.min(rows >>> 6, words.length); word < end; word++) {
+            hidden += Long.bitCount(words[word]);
+        }
+        if (word < words.length && (rows & 63) != 0) {
+            hidden += Long.bitCount(words[word] & (1L << rows) - 1);
+        }
+        return hidden;
+    }
+
+    // Row of the n-th visible row, counting from 0
+    public synchronized int select(int n) {
+        int block = 0;
+        while (block < blockCounts.length && n >= (1 << BLOCK_SHIFT) - blockCounts[block]) {
+            n -= (1 << BLOCK_SHIFT) - blockCounts[block];
+            block++;
+        }
+        if (block == blockCounts.length) {
+            return (block << BLOCK_SHIFT) + n;  // Past the last block, every row is visible
+        }
+        for (int word = block * BLOCK_WORDS; ; word++) {
+            int visible = 64 - Long.bitCount(words[word]);
+            if (n < visible) {
+                long free = ~words[word];
+                for (; n > 0; n--) {
+                    free &= free - 1;  // Skip the visible rows before the one wanted
+                }
+                return (word << 6) + Long.numberOfTrailingZeros(free);
+            }
+            n -= visible;
+        }
+    }
+
+    // Visible rows below size, in order
+    public synchronized int[] visible(int size) {
+        int[] rows = new int[size - rank(size)];
+        int n = 0;
+        for (int row = 0; row < size; row++) {
+            int word = row >>> 6;
+            if (word >= words.length || (words[word] & 1L << row) == 0) {
+                rows[n++] = row;
+            }
+        }
+        return rows;
+    }
+
+    // One page of the visible rows below size: from the offset-th on, at most limit of them, in order.
+    // Found with select, so no row before the page is visited
+    synchronized int[] page(int size, int offset, int limit) {
+        int visible = size - rank(size);
+        if (offset >= visible || limit <= 0) {
+            return new int[0];
+        }
+        int[] rows = new int[Math.min(limit, visible - offset)];
+        int n = 0;
+        for (int row = select(offset); n < rows.length; row++) {
+            int word = row >>> 6;
+            if (word >= words.length || (words[word] & 1L << row) == 0) {
+                rows[n++] = row;
+            }
+        }
+        return rows;
+    }
+
+    // Copy for a background writer or exporter
+    synchronized Tombstones copy() {
+        Tombstones copy = new Tombstones();
+        copy.words = words.clone();
+        copy.blockCounts = blockCounts.clone();
+        copy.count = count;
+        copy.generation = generation;
+        return copy;
+    }
+
+    // Take over the rows hidden in a set read at load
+    void setAll(Tombstones loaded) {
+        Tombstones copy = loaded.copy();
+        synchronized (this) {
+            words = copy.words;
+            blockCounts = copy.blockCounts;
+            count = copy.count;
+            generation = copy.generation;
+            version++;
+        }
+    }
+
+    // Write with temp file + atomic rename. Unlike the indexes this is primary data, so it carries a
+    // checksum; generation is the journal segment whose hide and show events it includes
+    synchronized void write(Path file, long generation) throws IOException {
+        int used = words.length;
+        while (used > 0 && words[used - 1] == 0) {
+            used--;
+        }
+        ByteBuffer out = ByteBuffer.allocate(28 + 8 * used);
+        out.putInt(MAGIC).putInt(VERSION).putLong(generation).putInt(count).putInt(used);
+        for (int i = 0; i < used; i++) {
+            out.putLong(words[i]);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(out.array(), 0, out.position());
+        out.putInt((int) crc.getValue());
+        out.flip();
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            while (out.hasRemaining()) {
+                ch.write(out);
+            }
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Read a file written by write(), or null if there is none
+    static Tombstones read(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+        CRC32 crc = new CRC32();
+        crc.update(in.array(), 0, Math.max(0, in.limit() - 4));
+        if (in.limit() < 28 || in.getInt() != MAGIC || (int) crc.getValue() != in.getInt(in.limit() - 4)) {
+            throw new IOException("Deleted rows file is damaged: " + file);
+        }
+        if (in.getInt() != VERSION) {
+            throw new IOException("Unsupported deleted rows file version: " + file);
+        }
+        Tombstones read = new Tombstones();
+        read.generation = in.getLong();
+        int count = in.getInt();
+        int used = in.getInt();
+        int blocks = (used + BLOCK_WORDS - 1) / BLOCK_WORDS;
+        read.words = new long[blocks * BLOCK_WORDS];
+        read.blockCounts = new int[blocks];
+        for (int i = 0; i < used; i++) {
+            read.words[i] = in.getLong();
+            read.blockCounts[i / BLOCK_WORDS] += Long.bitCount(read.words[i]);
+            read.count += Long.bitCount(read.words[i]);
+        }
+        if (read.count != count) {
+            throw new IOException("Deleted rows file is damaged: " + file);
+        }
+        return read;
+    }
+}
@@ -0,0 +1,123 @@
+package expenses.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BackupRepositoryTest {
+    @TempDir
+    Path dir;
+
+    private static void add(ExpenseStore store, int from, int to) {
+        List<Expense> batch = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            batch.add(new Expense("Row " + i, "Backed up " + i % 17, 100L + i, "USD", i % 2 == 0 ? "Food" : "Travel",
+                    ColumnarExpenseList.dateOf(19_800 + i % 30)));
+        }
+        store.addExpenses(batch);
+    }
+
+    private static List<String> rows(ExpenseStore store) {
+        List<String> rows = new ArrayList<>();
+        for (int row = 0; row < store.expenseView().size(); row++) {
+            Expense e = store.expense(row);
+            rows.add(e.getTitle() + "|" + e.getDescription() + "|" + e.getAmountMinor() + "|" + e.getCategory());
+        }
+        return rows;
+    }
+
+    private List<String> restored(BackupRepository repository, BackupRepository.Manifest manifest, String into)
+            throws IOException {
+        Path target = dir.resolve(into);
+        repository.restore(manifest, target);
+        ExpenseStore store = new ExpenseStore(target);
+        store.load();
+        List<String> rows = rows(store);
+        store.close();
+        return rows;
+    }
+
+    private Set<Path> segments(Path repository) throws IOException {
+        try (Stream<Path> files = Files.walk(repository.resolve("segments"))) {
+            return files.filter(Files::isRegularFile).collect(Collectors.toSet());
+        }
+    }
+
+    @Test
+    void backupsShareSegmentsAndRestoreByNameAndTime() throws IOException {
+        Path repositoryDir = dir.resolve("repository");
+        BackupRepository repository = new BackupRepository(repositoryDir);
+        ExpenseStore store = new ExpenseStore(dir.resolve("ledger"));
+        store.load();
+        add(store, 0, 5_000);
+        store.checkpoint();
+        add(store, 5_000, 5_100);  // Journal tail on top of the snapshot
+        BackupRepository.Result first = store.backup(repository);
+        List<String> firstRows = rows(store);
+        Set<Path> firstSegments = segments(repositoryDir);
+        assertEquals(first.segmentsWritten, firstSegments.size());
+
+        add(store, 5_100, 5_200);
+        BackupRepository.Result second = store.backup(repository);
+        List<String> secondRows = rows(store);
+        store.close();
+
+        // Only the changed journal was read again, and only its new chunks were stored
+        Set<Path> secondSegments = segments(repositoryDir);
+        assertTrue(secondSegments.containsAll(firstSegments));
+        assertEquals(firstSegments.size() + second.segmentsWritten, secondSegments.size());
+        assertTrue(second.segmentsWritten > 0 && second.segmentsWritten < first.segmentsWritten, second.summary());
+        assertTrue(second.filesRead < second.manifest.files.size(), second.summary());
+        assertTrue(second.bytesRead < first.bytesRead, second.summary());
+
+        assertEquals(2, repository.manifests().size());
+        BackupRepository.Manifest byName = repository.find(first.manifest.name);
+        assertEquals(first.manifest.name, byName.name);
+        assertEquals(firstRows, restored(repository, byName, "by-name"));
+        assertEquals(first.manifest.name, repository.at(first.manifest.createdMillis).name);
+        String later = LocalDateTime.ofInstant(Instant.ofEpochMilli(second.manifest.createdMillis), ZoneId.systemDefault())
+                .plusMinutes(1).truncatedTo(ChronoUnit.SECONDS).toString();
+        BackupRepository.Manifest byTime = repository.find(later);
+        assertEquals(second.manifest.name, byTime.name);
+        assertEquals(secondRows, restored(repository, byTime, "by-time"));
+        assertEquals(5_200, secondRows.size());
+        assertThrows(IllegalArgumentException.class, () -> repository.find("2000-01-01T00:00"));
+    }
+
+    @Test
+    void damagedSegmentIsRejectedOnRestore() throws IOException {
+        Path repositoryDir = dir.resolve("repository");
+        BackupRepository repository = new BackupRepository(repositoryDir);
+        ExpenseStore store = new ExpenseStore(dir.resolve("ledger"));
+        store.load();
+        add(store, 0, 2_000);
+        BackupRepository.Result result = store.backup(repository);
+        store.close();
+
+        Path segment = segments(repositoryDir).iterator().next();
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[bytes.length / 2] ^= 0x10;
+        Files.write(segment, bytes);
+        BackupRepository.Manifest latest = repository.latest();
+        assertEquals(result.manifest.name, latest.name);
+        IOException e = assertThrows(IOException.class, () -> repository.restore(latest, dir.resolve("restore")));
+        assertTrue(e.getMessage().startsWith("Damaged segment"), e.getMessage());
+    }
+}
@@ -0,0 +1,159 @@
+package expenses.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CodeRegistryTest {
+    private static final String CURRENCY = Money.DEFAULT_CURRENCY.equals("EUR") ? "GBP" : "EUR";  // Not a default name
+
+    @TempDir
+    Path dir;
+
+    private static ExpenseStore open(Path dir) throws IOException {
+        ExpenseStore store = new ExpenseStore(dir);
+        store.load();
+        return store;
+    }
+
+    private static Expense expense(String category) {
+        return ExpenseStore.newExpense("Lunch", "Soup", "12.50", CURRENCY, category, new Date());
+    }
+
+    @Test
+    void ledgersKeepTheirOwnNames() throws IOException {
+        ExpenseStore first = open(dir.resolve("first"));
+        ExpenseStore second = open(dir.resolve("second"));
+        first.addExpense(expense("Gym"));
+        first.names().addPriority("Urgent");
+        assertTrue(first.names().categories().contains("Gym"));
+        assertTrue(first.names().currencies().contains(CURRENCY));
+        assertEquals(CodeRegistry.CATEGORIES, second.names().categories());
+        assertEquals(CodeRegistry.PRIORITIES, second.names().priorities());
+        assertFalse(second.names().currencies().contains(CURRENCY));
+        first.close();
+        second.close();
+    }
+
+    @Test
+    void newTaskTakesRegisteredPrioritiesOnly() throws IOException {
+        ExpenseStore store = open(dir);
+        assertThrows(IllegalArgumentException.class, () -> store.newTask("Call", "Bank", "Urgent", new Date()));
+        assertTrue(store.names().addPriority(" Urgent "));
+        assertFalse(store.names().addPriority("Urgent"));
+        assertEquals("Urgent", store.newTask("Call", "Bank", "Urgent", new Date()).getPriority());
+        assertThrows(IllegalArgumentException.class, () -> store.names().addPriority(" "));
+        store.close();
+    }
+
+    @Test
+    void draftTaskChecksTheFormWithoutRegistering() throws IOException {
+        ExpenseStore store = open(dir);
+        assertThrows(IllegalArgumentException.class, () -> ExpenseStore.draftTask(" ", "Bank", "Urgnet", new Date(), null));
+        assertEquals("Urgent", ExpenseStore.draftTask("Call", "Bank", " Urgent ", new Date(), null).getPriority());
+        assertEquals(CodeRegistry.PRIORITIES, store.names().priorities());
+        store.close();
+    }
+
+    @Test
+    void newPriorityRanksFirstInNextTasks() throws IOException {
+        ExpenseStore store = open(dir);
+        store.names().addPriority("Urgent");
+        Date date = new Date();
+        store.addTask(store.newTask("High", "Soon", "High", date));
+        store.addTask(store.newTask("Urgent", "Now", "Urgent", date));
+        store.addTask(store.newTask("Low", "Later", "Low", date));
+        assertArrayEquals(new int[]{1, 0, 2}, store.nextTasks(3));
+        store.close();
+    }
+
+    @Test
+    void namesSurviveReopening() throws IOException {
+        ExpenseStore store = open(dir);
+        store.names().addPriority("Urgent");
+        store.names().addCategory("Gifts");
+        store.addExpense(expense("Gym"));  // Journaled only, no snapshot yet
+        store.close();
+
+        ExpenseStore reopened = open(dir);
+        assertEquals(Arrays.asList("Low", "Medium", "High", "Urgent"), reopened.names().priorities());
+        assertTrue(reopened.names().categories().containsAll(Arrays.asList("Gifts", "Gym")));
+        assertEquals("Urgent", reopened.newTask("Call", "Bank", "Urgent", new Date()).getPriority());
+        reopened.addExpense(expense("Books"));
+        reopened.checkpoint();  // Rows now come from the mapped file, names from its dictionary and names.dat
+        reopened.close();
+
+        ExpenseStore again = open(dir);
+        assertEquals(Arrays.asList("Food", "Travel", "Entertainment", "Other", "Gifts", "Gym", "Books"),
+                again.names().categories());
+        assertEquals(Arrays.asList(Money.DEFAULT_CURRENCY, CURRENCY), again.names().currencies());
+        again.close();
+    }
+
+    @Test
+    void limitIsPerLedger() throws IOException {
+        ExpenseStore full = open(dir.resolve("full"));
+        for (int i = full.names().priorities().size(); i < Byte.MAX_VALUE; i++) {
+            full.names().addPriority("P" + i);
+        }
+        assertThrows(IllegalArgumentException.class, () -> full.names().addPriority("One more"));
+        ExpenseStore other = open(dir.resolve("other"));
+        assertTrue(other.names().addPriority("One more"));
+        full.close();
+        other.close();
+    }
+
+    @Test
+    void longNamesAreRefusedBeforeTheyAreKept() throws IOException {
+        ExpenseStore store = open(dir);
+        StringBuilder emoji = new StringBuilder();
+        for (int i = 0; i < 15_000; i++) {
+            emoji.append("\uD83D\uDE00");  // 4 UTF-8 bytes, 6 in modified UTF-8
+        }
+        String tooLong = emoji.toString();
+        assertThrows(IllegalArgumentException.class, () -> store.names().addCategory(tooLong));
+        assertThrows(IllegalArgumentException.class, () -> store.names().addPriority(tooLong));
+        assertThrows(IllegalArgumentException.class, () -> expense(tooLong));
+        Expense built = new Expense("Lunch", "Soup", 1250, CURRENCY, tooLong, new Date());
+        assertThrows(IllegalArgumentException.class, () -> store.addExpense(built));
+        assertFalse(store.names().categories().contains(tooLong));
+
+        String longest = tooLong.substring(0, 2 * (CodeRegistry.MAX_NAME_BYTES / 4));  // Whole emoji, within the limit
+        assertTrue(store.names().addCategory(longest));
+        store.addExpense(expense("Gym"));
+        store.checkpoint();  // Snapshots still write the names
+        store.close();
+        ExpenseStore reopened = open(dir);
+        assertTrue(reopened.names().categories().contains(longest));
+        reopened.close();
+    }
+
+    @Test
+    void categoriesStopWhereColumnCodesDo() throws IOException {
+        ExpenseStore store = open(dir);
+        List<Expense> batch = new ArrayList<>();
+        for (int i = store.names().categories().size(); i <= Short.MAX_VALUE; i++) {
+            batch.add(expense("C" + i));
+        }
+        store.addExpenses(batch);
+        assertThrows(IllegalArgumentException.class, () -> store.addExpense(expense("One more")));
+        store.checkpoint();  // Every category has a column code
+        store.close();
+        ExpenseStore reopened = open(dir);
+        assertEquals(Short.MAX_VALUE + 1, reopened.names().categories().size());
+        assertEquals("C" + Short.MAX_VALUE, reopened.expenseSnapshot().get(batch.size() - 1).getCategory());
+        reopened.close();
+    }
+}
@@ -0,0 +1,115 @@
+package expenses.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommandHistoryTest {
+    private static final int DAY = 19_800;
+
+    @TempDir
+    Path dir;
+
+    private static ExpenseStore open(Path dir) throws IOException {
+        ExpenseStore store = new ExpenseStore(dir);
+        store.load();
+        return store;
+    }
+
+    private static Expense expense(int i, long amount) {
+        return new Expense("Row " + i, "Note " + i, amount, "USD", i % 2 == 0 ? "Food" : "Travel",
+                ColumnarExpenseList.dateOf(DAY + i));
+    }
+
+    private static int[] visible(ExpenseStore store, boolean tasks) {
+        return tasks ? store.taskRows(null, null, null, 0, Integer.MAX_VALUE)
+                : store.expenseRows(null, null, null, 0, Integer.MAX_VALUE);
+    }
+
+    // Everything a reload must give back: visible rows, totals, index and rollup answers, open tasks
+    private static String state(ExpenseStore store) {
+        ExpenseStore.Summary summary = store.summary();
+        return Arrays.toString(visible(store, false))
+                + " total " + summary.totals.get("USD") + " rows " + summary.expenses
+                + " travel " + Arrays.toString(store.expenseRows("Travel", null, null, 0, Integer.MAX_VALUE))
+                + " rollup " + store.rollupTotal(true, "USD", "Food", RollupCube.epochMonth(DAY))
+                + " tasks " + Arrays.toString(visible(store, true)) + " open " + Arrays.toString(store.nextTasks(10))
+                + " done " + doneTasks(store);
+    }
+
+    private static List<Integer> doneTasks(ExpenseStore store) {
+        List<Integer> done = new ArrayList<>();
+        for (int row : visible(store, true)) {
+            if (store.task(row).isDone()) {
+                done.add(row);
+            }
+        }
+        return done;
+    }
+
+    @Test
+    void undoAndRedoSurviveAReload() throws IOException {
+        ExpenseStore store = open(dir);
+        CommandHistory history = new CommandHistory(store);
+        for (int i = 0; i < 6; i++) {
+            store.addExpense(expense(i, 100 * (i + 1)));  // 100..600, total 2100
+        }
+        for (int i = 0; i < 3; i++) {
+            store.addTask(new Task("Task " + i, "Soon", new Date(), CodeRegistry.PRIORITIES.get(i)));
+        }
+        assertNull(history.undoLabel());
+
+        assertTrue(history.editExpense(1, expense(1, 5_000)));  // Row 6 replaces row 1
+        assertArrayEquals(new int[]{0, 2, 3, 4, 5, 6}, visible(store, false));
+        assertEquals(2_100 - 200 + 5_000, store.summary().totals.get("USD"));
+        assertArrayEquals(new int[]{3, 5, 6}, store.expenseRows("Travel", null, null, 0, 10));
+        assertFalse(history.editExpense(1, expense(1, 1)));  // Already replaced
+
+        assertTrue(history.delete(false, new int[]{0, 2, 2}));  // Food rows; the repeat is skipped
+        assertArrayEquals(new int[]{3, 4, 5, 6}, visible(store, false));
+        assertEquals(400 + 500 + 600 + 5_000, store.summary().totals.get("USD"));
+        assertEquals(4, store.summary().expenses);
+        assertEquals(500, store.rollupTotal(true, "USD", "Food", RollupCube.epochMonth(DAY)));  // Row 4 only
+
+        assertTrue(history.complete(2, true));  // Task row 3 replaces task row 2
+        assertArrayEquals(new int[]{0, 1, 3}, visible(store, true));
+        assertArrayEquals(new int[]{1, 0}, store.nextTasks(10));  // The done one is not open
+
+        store.checkpoint();  // What follows is only in the journal
+        assertEquals("Complete", history.undoLabel());
+        assertTrue(history.undo());
+        assertArrayEquals(new int[]{0, 1, 2}, visible(store, true));
+        assertArrayEquals(new int[]{2, 1, 0}, store.nextTasks(10));
+        assertTrue(history.undo());  // The delete
+        assertArrayEquals(new int[]{0, 2, 3, 4, 5, 6}, visible(store, false));
+        assertEquals("Delete", history.redoLabel());
+        assertTrue(history.redo());
+        assertArrayEquals(new int[]{3, 4, 5, 6}, visible(store, false));
+        assertTrue(history.undo());
+        assertTrue(history.undo());  // The edit
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4, 5}, visible(store, false));
+        assertEquals(2_100, store.summary().totals.get("USD"));
+        assertArrayEquals(new int[]{1, 3, 5}, store.expenseRows("Travel", null, null, 0, 10));
+        assertFalse(history.undo());
+        assertTrue(history.redo());  // The edit again
+        String before = state(store);
+        store.close();
+
+        ExpenseStore reopened = open(dir);  // Snapshot plus journal tail
+        assertEquals(before, state(reopened));
+        assertArrayEquals(new int[]{0, 2, 3, 4, 5, 6}, visible(reopened, false));
+        reopened.close();
+    }
+}
@@ -0,0 +1,144 @@
+package expenses.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Writers, readers and a checkpointer on one store. The memory-model side of the row lists is
+// covered by the jcstress tests in stress/; this checks what the store builds on top of them
+class ExpenseStoreConcurrencyTest {
+    private static final int WRITERS = 4;
+    private static final int READERS = 2;
+    private static final int ROWS = 20_000;  // Per writer
+    private static final String[] CATEGORIES = {"Food", "Travel", "Rent", "Other"};
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void concurrentWritersKeepOrderTotalsAndRecovery() throws Exception {
+        ExpenseStore store = new ExpenseStore(dir);
+        store.load();
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicLong observations = new AtomicLong();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            int id = w;
+            writers.add(new Thread(() -> {
+                Random random = new Random(id);
+                Date date = new Date();
+                for (long seq = 0; seq < ROWS; ) {
+                    int n = (int) Math.min(ROWS - seq, 1 + random.nextInt(64));
+                    List<Expense> batch = new ArrayList<>(n);
+                    for (int i = 0; i < n; i++) {
+                        batch.add(new Expense("w" + id, "Stress", seq++, "USD", CATEGORIES[i & 3], date));
+                    }
+                    store.addExpenses(batch);
+                    if (random.nextInt(8) == 0) {
+                        store.addTask(new Task("w" + id, Long.toString(seq), date, CodeRegistry.PRIORITIES.get(id % 3)));
+                    }
+                }
+            }, "stress-writer-" + w));
+        }
+        threads.addAll(writers);
+        for (int r = 0; r < READERS; r++) {
+            threads.add(new Thread(() -> {
+                while (!stop.get()) {
+                    ColumnarExpenseList snapshot = store.expenseSnapshot();
+                    int size = snapshot.size();
+                    assertTrue(inWriterOrder(snapshot, Math.max(0, size - 4096), size), "Rows out of writer order");
+                    assertTrue(store.expenseView().size() >= size, "Live view behind a snapshot");
+                    observations.incrementAndGet();
+                }
+            }, "stress-reader-" + r));
+        }
+        threads.add(new Thread(() -> {
+            while (!stop.get()) {
+                try {
+                    store.checkpoint();
+                    Thread.sleep(20);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "stress-checkpoint"));
+        for (Thread t : threads) {
+            t.setUncaughtExceptionHandler((thread, e) -> failure.compareAndSet(null, e));
+            t.start();
+        }
+        for (Thread t : writers) {
+            t.join();
+        }
+        stop.set(true);
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertNull(failure.get(), () -> String.valueOf(failure.get()));
+        assertTrue(observations.get() > 0);
+
+        // Every writer's rows complete and in order, and totals equal to what was written
+        ColumnarExpenseList all = store.expenseSnapshot();
+        assertEquals((long) WRITERS * ROWS, all.size());
+        assertTrue(inWriterOrder(all, 0, all.size()));
+        ExpenseStore.Summary summary = store.summary();
+        assertEquals((long) WRITERS * ROWS, summary.expenses);
+        assertEquals(WRITERS * ((long) ROWS * (ROWS - 1) / 2), summary.totals.get("USD"));  // Amounts were 0..ROWS-1
+        List<Task> tasks = store.taskSnapshot();
+        store.close();
+
+        // Reopen: snapshot plus journal must give back the same rows in the same order
+        ExpenseStore reopened = new ExpenseStore(dir);
+        reopened.load();
+        ColumnarExpenseList recovered = reopened.expenseSnapshot();
+        List<Task> recoveredTasks = reopened.taskSnapshot();
+        assertEquals(all.size(), recovered.size());
+        for (int i = 0; i < all.size(); i++) {
+            assertEquals(all.titleAt(i), recovered.titleAt(i));
+            assertEquals(all.amountMinorAt(i), recovered.amountMinorAt(i));
+        }
+        assertEquals(tasks.size(), recoveredTasks.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            assertEquals(tasks.get(i).getDescription(), recoveredTasks.get(i).getDescription());
+        }
+        reopened.close();
+    }
+
+    // Each writer numbers its rows 0, 1, 2...; within [from, to) its rows must be consecutive
+    private static boolean inWriterOrder(ColumnarExpenseList rows, int from, int to) {
+        long[] last = new long[WRITERS];
+        Arrays.fill(last, -1);
+        boolean[] started = new boolean[WRITERS];
+        for (int i = from; i < to; i++) {
+            String title = rows.titleAt(i);
+            if (title == null) {
+                return false;
+            }
+            int writer = Integer.parseInt(title.substring(1));
+            long seq = rows.amountMinorAt(i);
+            if (from == 0 && !started[writer] && seq != 0 || started[writer] && seq != last[writer] + 1) {
+                return false;
+            }
+            started[writer] = true;
+            last[writer] = seq;
+        }
+        return true;
+    }
+}
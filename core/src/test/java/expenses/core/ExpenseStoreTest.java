@@ -0,0 +1,97 @@
+package expenses.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExpenseStoreTest {
+    @TempDir
+    Path dir;
+
+    private static Map<String, Object> object(String text) {
+        return Json.asObject(Json.parse(text), -1);
+    }
+
+    private static String expense(String amount) {
+        return "{\"title\":\"Lunch\",\"description\":\"Soup\",\"category\":\"Food\",\"currency\":\"USD\",\"amount\":" + amount + "}";
+    }
+
+    @Test
+    void readExpenseTakesNumberOrStringAmounts() {
+        assertEquals(1250, ExpenseStore.readExpense(object(expense("12.5")), -1).getAmountMinor());
+        assertEquals(1250, ExpenseStore.readExpense(object(expense("\"12.50\"")), -1).getAmountMinor());
+    }
+
+    @Test
+    void readExpenseRejectsBadAmountsWithIllegalArgument() {
+        for (String amount : new String[] {"true", "{}", "[]", "null", "1e999999999", "1e-999999999", "12.345"}) {
+            assertThrows(IllegalArgumentException.class, () -> ExpenseStore.readExpense(object(expense(amount)), -1), amount);
+        }
+    }
+
+    @Test
+    void readExpensePrefixesBatchItem() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> ExpenseStore.readExpense(object(expense("true")), 3));
+        assertTrue(e.getMessage().startsWith("Item 3: "), e.getMessage());
+    }
+
+    @Test
+    void amountsPastTheCapAreRefusedBeforeJournaling() throws IOException {
+        ExpenseStore store = new ExpenseStore(dir);
+        store.load();
+        assertThrows(IllegalArgumentException.class,
+                () -> ExpenseStore.newExpense("Yacht", "Big", "90000000000000000", "USD", "Other", new Date()));
+        Expense over = new Expense("Yacht", "Big", Money.MAX_AMOUNT_MINOR + 1, "USD", "Other", new Date());
+        assertThrows(IllegalArgumentException.class, () -> store.addExpense(over));
+        Expense max = ExpenseStore.newExpense("Yacht", "Big", Money.format(Money.MAX_AMOUNT_MINOR), "USD", "Other", new Date());
+        assertEquals(0, store.addExpense(max));
+        assertEquals(1, store.addExpense(max));
+        assertEquals(2, store.summary().expenses);
+        assertEquals(2 * Money.MAX_AMOUNT_MINOR, store.summary().totals.get("USD"));
+        store.close();
+    }
+
+    @Test
+    void journalWrittenBeforeTheCapStillLoads() throws IOException {
+        Journal journal = new Journal(dir);
+        journal.recover();
+        for (int i = 0; i < 2; i++) {
+            journal.append(new Expense("Yacht", "Big", 9_000_000_000_000_000_000L, "USD", "Other", new Date()));
+        }
+        journal.close();
+        ExpenseStore store = new ExpenseStore(dir);
+        store.load();
+        assertEquals(2, store.summary().expenses);
+        assertEquals(Long.MAX_VALUE, store.summary().totals.get("USD"));  // Pinned, not thrown
+        store.close();
+    }
+
+    @Test
+    void damagedTaskSnapshotFailsTheLoad() throws IOException {
+        ExpenseStore store = new ExpenseStore(dir);
+        store.load();
+        for (int i = 0; i < 100; i++) {
+            store.addTask(store.newTask("Task " + i, "Soon", "Medium", new Date()));
+        }
+        store.checkpoint();
+        store.close();
+        Path snapshot = dir.resolve("tasks.snap");
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(snapshot, bytes);
+
+        ExpenseStore reopened = new ExpenseStore(dir);
+        IOException e = assertThrows(IOException.class, reopened::load);
+        assertTrue(e.getMessage().contains("damaged"), e.getMessage());
+    }
+}
@@ -0,0 +1,72 @@
+package expenses.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ExporterTest {
+    private static final List<String> TEXTS = Arrays.asList(
+            "plain",
+            "comma, inside",
+            "say \"hi\"",
+            "\"quoted\", then more",
+            "two\nlines",
+            "crlf\r\nline, \"and\" all three",
+            "ünïcödé €");
+
+    @TempDir
+    Path dir;
+
+    private static void addRows(ExpenseStore store) {
+        int day = (int) LocalDate.of(2024, 2, 29).toEpochDay();
+        for (int i = 0; i < TEXTS.size(); i++) {
+            store.addExpense(ExpenseStore.newExpense(TEXTS.get(i), TEXTS.get(TEXTS.size() - 1 - i), (i + 1) + ".05",
+                    i % 2 == 0 ? "USD" : "EUR", "Food", ColumnarExpenseList.dateOf(day + i)));
+        }
+    }
+
+    // Export to CSV, import into an empty store and compare every field
+    private void assertRoundTrip(ExpenseStore store, String name) throws IOException {
+        Path csv = dir.resolve(name + ".csv");
+        assertEquals(TEXTS.size(), Exporter.export(store, false, Exporter.Filter.all(), csv));
+        try (ExpenseStore copy = new ExpenseStore(dir.resolve(name + "-copy"))) {
+            copy.load();
+            Importer.Report report = new Importer(copy).importFile(csv, (read, total, r) -> { });
+            assertEquals(0, report.rejected, () -> String.valueOf(report.messages));
+            List<Expense> expected = store.expenseSnapshot();
+            List<Expense> actual = copy.expenseSnapshot();
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Expense e = expected.get(i);
+                Expense a = actual.get(i);
+                assertEquals(e.getTitle(), a.getTitle());
+                assertEquals(e.getDescription(), a.getDescription());
+                assertEquals(e.getAmountMinor(), a.getAmountMinor());
+                assertEquals(e.getCurrency(), a.getCurrency());
+                assertEquals(e.getCategory(), a.getCategory());
+                assertEquals(ColumnarExpenseList.epochDay(e.getDate()), ColumnarExpenseList.epochDay(a.getDate()));
+            }
+        }
+    }
+
+    @Test
+    void csvRoundTripKeepsQuotesCommasAndNewlines() throws IOException {
+        try (ExpenseStore store = new ExpenseStore(dir.resolve("data"))) {
+            store.load();
+            addRows(store);
+            assertRoundTrip(store, "memory");
+        }
+        // Reopened, the rows come from the columnar snapshot and their text is copied as raw UTF-8
+        try (ExpenseStore store = new ExpenseStore(dir.resolve("data"))) {
+            store.load();
+            assertRoundTrip(store, "mapped");
+        }
+    }
+}
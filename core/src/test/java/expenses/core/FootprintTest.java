@@ -0,0 +1,162 @@
+package expenses.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openjdk.jol.info.ClassLayout;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Heap retained per row once loaded, measured with JOL over the rows themselves: repeated titles and
+// descriptions read back from disk share one copy each, and so do the category, currency and
+// priority names
+class FootprintTest {
+    private static final int ROWS = 20_000;
+    private static final String[] TITLES = {"Coffee", "Lunch", "Groceries", "Bus fare", "Rent", "Cinema", "Books", "Taxi"};
+    private static final int DESCRIPTIONS = 97;
+    private static final String[] CATEGORIES = {"Food", "Travel", "Entertainment", "Other"};
+    private static final Date DATE = ColumnarExpenseList.dateOf(19_800);
+
+    @TempDir
+    Path dir;
+
+    private static Expense expense(int i) {
+        return new Expense(TITLES[i % TITLES.length], "Note " + i % DESCRIPTIONS, 100L + i % 5000, "USD",
+                CATEGORIES[i & 3], DATE);
+    }
+
+    private static Task task(int i) {
+        return new Task(TITLES[i % TITLES.length], "Note " + i % DESCRIPTIONS, DATE, CodeRegistry.PRIORITIES.get(i % 3));
+    }
+
+    // Bytes per row of everything the rows reach
+    private static double perRow(List<?> rows) {
+        return (double) GraphLayout.parseInstance(rows.toArray()).totalSize() / rows.size();
+    }
+
+    // Heap of the row objects alone; shared texts add well under a byte per row on top
+    private static long rowSize(Class<?> type) {
+        return ClassLayout.parseClass(type).instanceSize();
+    }
+
+    // Strings the rows reach; at most one per distinct text and name when they are shared
+    private static long strings(List<?> rows) {
+        return GraphLayout.parseInstance(rows.toArray()).getClassCounts().count(String.class);
+    }
+
+    // The same expenses each holding their own copies of the texts and names, as rows did before
+    private static List<Expense> unsharedExpenses(List<Expense> rows) {
+        List<Expense> copies = new ArrayList<>(rows.size());
+        for (Expense e : rows) {
+            copies.add(new Expense(new String(e.getTitle()), new String(e.getDescription()), e.getAmountMinor(),
+                    new String(e.getCurrency()), new String(e.getCategory()), e.getDate()));
+        }
+        return copies;
+    }
+
+    private static List<Task> unsharedTasks(List<Task> rows) {
+        List<Task> copies = new ArrayList<>(rows.size());
+        for (Task t : rows) {
+            copies.add(new Task(new String(t.getTitle()), new String(t.getDescription()), t.getDate(),
+                    new String(t.getPriority())));
+        }
+        return copies;
+    }
+
+    private void writeJournal() throws IOException {
+        Journal journal = new Journal(dir);
+        journal.recover();
+        for (int i = 0; i < ROWS; i++) {
+            journal.append(expense(i));
+            journal.append(task(i));
+        }
+        journal.close();
+    }
+
+    // Rows of one kind replayed from the journal segments
+    private <T> List<T> replay(boolean tasks) throws IOException {
+        List<Object> rows = new ArrayList<>();
+        Journal journal = new Journal(dir);
+        journal.recover(new Journal.RecoveryListener() {
+            @Override
+            public void expenseFile(ColumnarExpenseList file, RowIndex index, RollupCube rollups, TextIndex text,
+                                    Tombstones hidden) {
+            }
+
+            @Override
+            public void expenses(List<Expense> batch) {
+                if (!tasks) {
+                    rows.addAll(batch);
+                }
+            }
+
+            @Override
+            public void taskSnapshot(List<Task> snapshot, RowIndex index, TextIndex text, Tombstones hidden) {
+            }
+
+            @Override
+            public void tasks(List<Task> batch) {
+                if (tasks) {
+                    rows.addAll(batch);
+                }
+            }
+
+            @Override
+            public void visibility(boolean task, int row, boolean hidden) {
+            }
+        });
+        journal.close();
+        @SuppressWarnings("unchecked")
+        List<T> typed = (List<T>) rows;
+        return typed;
+    }
+
+    @Test
+    void replayedExpensesShareTextsAndNames() throws IOException {
+        writeJournal();
+        List<Expense> rows = replay(false);
+        assertEquals(ROWS, rows.size());
+        assertTrue(strings(rows) <= TITLES.length + DESCRIPTIONS + CATEGORIES.length + 1, () -> strings(rows) + " strings");
+        double shared = perRow(rows);
+        double unshared = perRow(unsharedExpenses(rows));
+        assertTrue(shared < rowSize(Expense.class) + 1, () -> shared + " bytes per row");
+        assertTrue(shared < unshared / 2, () -> shared + " bytes per row, " + unshared + " unshared");
+    }
+
+    @Test
+    void replayedTasksShareTextsAndNames() throws IOException {
+        writeJournal();
+        List<Task> rows = replay(true);
+        assertEquals(ROWS, rows.size());
+        assertTrue(strings(rows) <= TITLES.length + DESCRIPTIONS + CodeRegistry.PRIORITIES.size(), () -> strings(rows) + " strings");
+        double shared = perRow(rows);
+        double unshared = perRow(unsharedTasks(rows));
+        assertTrue(shared < rowSize(Task.class) + 1, () -> shared + " bytes per row");
+        assertTrue(shared < unshared / 2, () -> shared + " bytes per row, " + unshared + " unshared");
+    }
+
+    @Test
+    void taskSnapshotRowsShareTextsAndNames() throws IOException {
+        List<Task> tasks = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            tasks.add(task(i));
+        }
+        Path file = dir.resolve("tasks.bin");
+        RecordCodec.writeTasks(file, 1, tasks);
+        List<Task> rows = new ArrayList<>(ROWS);
+        RecordCodec.read(file, rows);
+        assertEquals(ROWS, rows.size());
+        assertTrue(strings(rows) <= TITLES.length + DESCRIPTIONS + CodeRegistry.PRIORITIES.size(), () -> strings(rows) + " strings");
+        double shared = perRow(rows);
+        double unshared = perRow(unsharedTasks(rows));
+        assertTrue(shared < rowSize(Task.class) + 1, () -> shared + " bytes per row");
+        assertTrue(shared < unshared / 2, () -> shared + " bytes per row, " + unshared + " unshared");
+    }
+}
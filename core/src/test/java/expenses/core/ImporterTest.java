@@ -0,0 +1,94 @@
+package expenses.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImporterTest {
+    @TempDir
+    Path dir;
+    private ExpenseStore store;
+
+    @BeforeEach
+    void open() throws IOException {
+        store = new ExpenseStore(dir.resolve("data"));
+        store.load();
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        store.close();
+    }
+
+    private Importer.Report importText(String name, String text) throws IOException {
+        Path file = dir.resolve(name);
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        return new Importer(store).importFile(file, (read, total, report) -> { });
+    }
+
+    @Test
+    void badJsonRowsAreRejectedAndCounted() throws IOException {
+        Importer.Report report = importText("rows.jsonl", String.join("\n",
+                "{\"title\":\"a\",\"description\":\"d\",\"amount\":\"1.00\",\"category\":\"Food\"}",
+                "{\"title\":\"b\",\"description\":\"d\",\"amount\":true,\"category\":\"Food\"}",
+                "{\"title\":\"c\",\"description\":\"d\",\"amount\":1e999999999,\"category\":\"Food\"}",
+                "{\"title\":\"d\",\"description\":\"d\",\"amount\":[],\"category\":\"Food\"}",
+                "not json",
+                "{\"title\":\"e\",\"description\":\"d\",\"amount\":2.5,\"category\":\"Food\"}"));
+        assertEquals(2, report.imported);
+        assertEquals(4, report.rejected);
+        assertEquals(2, store.expenseSnapshot().size());
+        assertTrue(report.messages.get(0).startsWith("Line 2: "), report.messages.get(0));
+    }
+
+    @Test
+    void recordEndSkipsNewlinesInQuotedFields() {
+        String text = "a,\"x\ny\",1\nb,\"say \"\"hi\"\"\nthere\",2\nc,d\"e,3\n";
+        int first = Importer.recordEnd(text, 0, text.length(), false);
+        assertEquals("a,\"x\ny\",1", text.substring(0, first));
+        int second = Importer.recordEnd(text, first + 1, text.length(), false);
+        assertEquals("b,\"say \"\"hi\"\"\nthere\",2", text.substring(first + 1, second));
+        int third = Importer.recordEnd(text, second + 1, text.length(), false);
+        assertEquals("c,d\"e,3", text.substring(second + 1, third));  // A quote inside a field is literal
+        assertEquals(3, Importer.recordEnd("{\"a\n", 0, 4, true));  // JSON records are lines
+    }
+
+    @Test
+    void quotedNewlinesAcrossChunksAndSplits() throws IOException {
+        int rows = 120_000;  // Over 8 MB, so several chunks and many parse splits
+        StringBuilder csv = new StringBuilder("title,description,amount,category,date\r\n");
+        for (int i = 0; i < rows; i++) {
+            csv.append("Row ").append(i).append(",\"first line ").append(i)
+                    .append("\r\nsecond, with \"\"quotes\"\" and padding to make the row longer than usual\",")
+                    .append(i % 1000).append(".25,Food,01/02/2024\r\n");
+        }
+        Importer.Report report = importText("rows.csv", csv.toString());
+        assertEquals(0, report.rejected, () -> String.valueOf(report.messages));
+        assertEquals(rows, report.imported);
+        for (int i : new int[] {0, 1, rows / 2, rows - 1}) {
+            Expense e = store.expense(i);
+            assertEquals("Row " + i, e.getTitle());
+            assertEquals("first line " + i + "\r\nsecond, with \"quotes\" and padding to make the row longer than usual",
+                    e.getDescription());
+            assertEquals((i % 1000) * 100 + 25, e.getAmountMinor());
+        }
+    }
+
+    @Test
+    void lineNumbersCountQuotedNewlines() throws IOException {
+        Importer.Report report = importText("rows.csv", "title,description,amount,category\n"
+                + "a,\"two\nlines\",1,Food\n"
+                + "b,c,oops,Food\n");
+        assertEquals(1, report.imported);
+        assertTrue(report.messages.get(0).startsWith("Line 4: "), report.messages.get(0));
+    }
+}
@@ -0,0 +1,54 @@
+package expenses.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonTest {
+    private static Map<String, Object> object(String text) {
+        return Json.asObject(Json.parse(text), -1);
+    }
+
+    @Test
+    void decimalAcceptsNumbersAndStrings() {
+        assertEquals("12.50", Json.decimal(object("{\"a\":12.50}"), "a"));
+        assertEquals("1200", Json.decimal(object("{\"a\":1.2e3}"), "a"));
+        assertEquals("7.25", Json.decimal(object("{\"a\":\"7.25\"}"), "a"));
+        assertNull(Json.decimal(object("{}"), "a"));
+    }
+
+    @Test
+    void decimalRejectsOtherTypes() {
+        for (String value : new String[] {"true", "{}", "[]", "[1]"}) {
+            assertThrows(IllegalArgumentException.class, () -> Json.decimal(object("{\"a\":" + value + "}"), "a"), value);
+        }
+    }
+
+    @Test
+    void decimalRejectsNumbersOutOfRange() {
+        for (String value : new String[] {"1e999999999", "1e-999999999", "1e19", "1234567890123456789", "1e-19"}) {
+            assertThrows(IllegalArgumentException.class, () -> Json.decimal(object("{\"a\":" + value + "}"), "a"), value);
+        }
+        assertEquals("123456789012345678", Json.decimal(object("{\"a\":123456789012345678}"), "a"));
+    }
+
+    @Test
+    void integerIsWholeAndBounded() {
+        assertEquals(80, Json.integer(Json.parse("80"), "n"));
+        assertEquals(80, Json.integer(Json.parse("8e1"), "n"));
+        for (String value : new String[] {"\"80\"", "true", "80.5", "1e999999999", "1e-999999999", "3000000000"}) {
+            assertThrows(IllegalArgumentException.class, () -> Json.integer(Json.parse(value), "n"), value);
+        }
+    }
+
+    @Test
+    void stringRejectsNonStrings() {
+        assertThrows(IllegalArgumentException.class, () -> Json.string(object("{\"a\":1}"), "a"));
+        assertThrows(IllegalArgumentException.class, () -> Json.asObject(Json.parse("[]"), -1));
+        assertThrows(IllegalArgumentException.class, () -> Json.asArray(Json.parse("{}")));
+    }
+}
@@ -0,0 +1,58 @@
+package expenses.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Currency;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MoneyTest {
+    @Test
+    void parseMinor() {
+        assertEquals(12_345, Money.parseMinor("123.45"));
+        assertEquals(-450, Money.parseMinor("-4.5"));
+        assertEquals(99, Money.parseMinor("0.99"));
+        assertEquals(50, Money.parseMinor(".5"));
+        assertEquals(700, Money.parseMinor("+7"));
+        for (String bad : new String[] {"", "-", ".", "1.234", "1,00", "1e3", "92233720368547758.08"}) {
+            assertThrows(NumberFormatException.class, () -> Money.parseMinor(bad), bad);
+        }
+    }
+
+    @Test
+    void formatRoundTrips() {
+        for (long minor : new long[] {0, 5, 99, 100, 12_345, -5, -12_345, Long.MAX_VALUE, Long.MIN_VALUE + 1}) {
+            assertEquals(minor, Money.parseMinor(Money.format(minor)), Money.format(minor));
+        }
+        assertEquals("-0.05", Money.format(-5));
+    }
+
+    @Test
+    void totalsArePinnedInsteadOfOverflowing() {
+        assertEquals(3, Money.add(1, 2));
+        assertEquals(Long.MAX_VALUE, Money.add(Long.MAX_VALUE, 1));
+        assertEquals(Long.MIN_VALUE, Money.add(Long.MIN_VALUE, -1));
+        assertEquals(Long.MAX_VALUE, Money.negate(Long.MIN_VALUE));
+        assertTrue(Money.fits(-Money.MAX_AMOUNT_MINOR));
+        assertFalse(Money.fits(Money.MAX_AMOUNT_MINOR + 1));
+        assertTrue(Long.MAX_VALUE / Money.MAX_AMOUNT_MINOR >= Integer.MAX_VALUE);
+    }
+
+    @Test
+    void onlyTwoDecimalCurrencies() {
+        assertTrue(Money.supports(Currency.getInstance("EUR")));
+        assertTrue(Money.supports(Currency.getInstance(Money.DEFAULT_CURRENCY)));
+        assertFalse(Money.supports(Currency.getInstance("JPY")));
+        assertFalse(Money.supports(Currency.getInstance("BHD")));
+        assertEquals("INR", ExpenseStore.currencyCode(" inr "));
+        for (String code : new String[] {"JPY", "KRW", "BHD", "KWD", "XAU", "ABC"}) {
+            assertThrows(IllegalArgumentException.class, () -> ExpenseStore.currencyCode(code), code);
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> ExpenseStore.newExpense("Sushi", "Dinner", "1500", "JPY", "Food", new Date()));
+    }
+}
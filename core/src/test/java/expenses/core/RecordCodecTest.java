@@ -0,0 +1,118 @@
+package expenses.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RecordCodecTest {
+    @TempDir
+    Path dir;
+
+    private static final Date DATE = ColumnarExpenseList.dateOf(19_800);
+
+    private static List<Expense> expenses() {
+        return Arrays.asList(
+                new Expense("Lunch", "Soup, bread", 1_250, "USD", "Food", DATE),
+                new Expense("Refund", "Négatif €", -999, "EUR", "Other", ColumnarExpenseList.dateOf(-3)),
+                new Expense("", "", Long.MAX_VALUE, "GBP", "Travel", DATE));
+    }
+
+    private static List<Task> tasks() {
+        return Arrays.asList(
+                new Task("Call", "Bank", DATE, "High"),
+                new Task("Done", "Already", DATE, "Low", true),
+                new Task("Due", "Soon", DATE, "Medium", false, 19_801));
+    }
+
+    private static void assertSameExpenses(List<Expense> expected, List<Expense> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getDetails(), actual.get(i).getDetails());
+            assertEquals(expected.get(i).getAmountMinor(), actual.get(i).getAmountMinor());
+            assertEquals(expected.get(i).getDate(), actual.get(i).getDate());
+        }
+    }
+
+    private static void assertSameTasks(List<Task> expected, List<Task> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Task e = expected.get(i);
+            Task a = actual.get(i);
+            assertEquals(e.getDetails(), a.getDetails());
+            assertEquals(e.isDone(), a.isDone());
+            assertEquals(e.hasDue(), a.hasDue());
+            assertEquals(e.getDueDay(), a.getDueDay());
+            assertEquals(e.getDate(), a.getDate());
+        }
+    }
+
+    @Test
+    void expensesRoundTrip() throws IOException {
+        Path file = dir.resolve("expenses.snap");
+        RecordCodec.writeExpenses(file, 42, expenses());
+        List<Expense> read = new ArrayList<>();
+        assertEquals(42, RecordCodec.read(file, read));
+        assertSameExpenses(expenses(), read);
+    }
+
+    @Test
+    void tasksRoundTrip() throws IOException {
+        Path file = dir.resolve("tasks.snap");
+        RecordCodec.writeTasks(file, 7, tasks());
+        List<Task> read = new ArrayList<>();
+        assertEquals(7, RecordCodec.read(file, read));
+        assertSameTasks(tasks(), read);
+    }
+
+    @Test
+    void readsSerializedLists() throws IOException {
+        List<Expense> expected = Arrays.asList(  // The original classes had no currency: the default is assumed
+                new Expense("Lunch", "Soup, bread", 1_250, Money.DEFAULT_CURRENCY, "Food", DATE),
+                new Expense("Refund", "Négatif €", -999, Money.DEFAULT_CURRENCY, "Other", DATE));
+        ArrayList<RecordCodec.LegacyExpense> legacy = new ArrayList<>();
+        expected.forEach(e -> legacy.add(new RecordCodec.LegacyExpense(e)));
+        Path file = dir.resolve("expenses.ser");
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeObject(legacy);
+        }
+        List<Expense> read = new ArrayList<>();
+        assertEquals(0, RecordCodec.read(file, read));
+        assertSameExpenses(expected, read);
+    }
+
+    @Test
+    void serializedFilesMayHoldOnlyListClasses() throws IOException {
+        ArrayList<Object> list = new ArrayList<>();
+        list.add(new RecordCodec.LegacyExpense(expenses().get(0)));
+        list.add(new HashMap<String, String>());  // Any class outside the old list's
+        Path file = dir.resolve("expenses.ser");
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeObject(list);
+        }
+        assertThrows(InvalidClassException.class, () -> RecordCodec.read(file, new ArrayList<Expense>()));
+    }
+
+    @Test
+    void damagedFileIsRejected() throws IOException {
+        Path file = dir.resolve("tasks.snap");
+        RecordCodec.writeTasks(file, 1, tasks());
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> RecordCodec.read(file, new ArrayList<Task>()));
+    }
+}
@@ -0,0 +1,91 @@
+package expenses.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RecurrenceRuleTest {
+    private static LocalDateTime at(String text) {
+        return LocalDateTime.parse(text);
+    }
+
+    // Next occurrence of a rule strictly after a time, counted from that time
+    private static LocalDateTime next(String rule, String after) {
+        return RecurrenceRule.parse(rule).next(at(after), at(after));
+    }
+
+    @Test
+    void intervalsCountFromTheStartAcrossMonthEnds() {
+        RecurrenceRule monthly = RecurrenceRule.parse("monthly");
+        LocalDateTime start = at("2025-01-31T10:00");
+        assertEquals(start, monthly.first(start));
+        assertEquals(at("2025-02-28T10:00"), monthly.next(start, start));
+        assertEquals(at("2025-03-31T10:00"), monthly.next(start, at("2025-02-28T10:00")));  // Not Mar 28
+        assertEquals(at("2025-04-30T10:00"), monthly.next(start, at("2025-04-01T00:00")));
+
+        RecurrenceRule leap = RecurrenceRule.parse("yearly");
+        LocalDateTime day = at("2024-02-29T08:00");
+        assertEquals(at("2025-02-28T08:00"), leap.next(day, day));
+        assertEquals(at("2028-02-29T08:00"), leap.next(day, at("2027-03-01T00:00")));
+
+        RecurrenceRule fortnight = RecurrenceRule.parse(" Every  2   WEEKS ");
+        assertEquals(at("2025-01-15T09:00"), fortnight.next(at("2025-01-01T09:00"), at("2025-01-08T00:00")));
+        assertEquals(at("2025-01-01T09:00"), fortnight.next(at("2025-01-01T09:00"), at("2024-12-01T00:00")));  // Before start
+        assertEquals(at("2025-01-02T00:00"), next("daily", "2025-01-01T00:00"));
+        assertEquals(at("2025-01-08T00:00"), next("weekly", "2025-01-01T00:00"));
+    }
+
+    @Test
+    void cronListsRangesAndSteps() {
+        assertEquals(at("2025-01-01T10:15"), next("cron */15 * * * *", "2025-01-01T10:07"));
+        assertEquals(at("2025-01-01T11:00"), next("cron */15 * * * *", "2025-01-01T10:45"));
+        assertEquals(at("2025-01-01T10:08"), next("cron * * * * *", "2025-01-01T10:07:30"));
+        assertEquals(at("2025-02-01T00:00"), next("cron 0 0 1,15 * *", "2025-01-15T00:00"));
+        assertEquals(at("2025-01-01T14:30"), next("cron 30 9-17/5 * * *", "2025-01-01T09:30"));  // 9, 14
+        assertEquals(at("2025-01-02T09:30"), next("cron 30 9-17/5 * * *", "2025-01-01T14:30"));
+        assertEquals(at("2025-01-01T00:50"), next("cron 10/20 * * * *", "2025-01-01T00:30"));  // 10, 30, 50
+    }
+
+    @Test
+    void cronNamesAndSunday() {
+        assertEquals(at("2025-07-01T00:00"), next("cron 0 0 1 jan,JUL *", "2025-02-01T00:00"));
+        assertEquals(at("2025-02-03T09:00"), next("cron 0 9 * * mon-fri", "2025-01-31T09:30"));  // Friday to Monday
+        LocalDateTime sunday = at("2025-01-05T12:00");  // The Wednesday before is Jan 1
+        assertEquals(sunday, next("cron 0 12 * * 7", "2025-01-01T00:00"));
+        assertEquals(sunday, next("cron 0 12 * * 0", "2025-01-01T00:00"));
+        assertEquals(sunday, next("cron 0 12 * * sun", "2025-01-01T00:00"));
+        assertEquals(at("2025-01-04T12:00"), next("cron 0 12 * * 5-7", "2025-01-03T12:00"));  // Fri, Sat, Sun
+    }
+
+    @Test
+    void cronDayOrWeekdayWhenBothAreSet() {
+        String rule = "cron 0 0 13 * fri";  // The 13th, or any Friday
+        assertEquals(at("2025-01-03T00:00"), next(rule, "2025-01-01T00:00"));
+        assertEquals(at("2025-01-13T00:00"), next(rule, "2025-01-10T00:00"));  // A Monday, but the 13th
+        assertEquals(at("2025-01-17T00:00"), next(rule, "2025-01-13T00:00"));
+        assertEquals(at("2025-01-13T00:00"), next("cron 0 0 13 * *", "2025-01-01T00:00"));  // Day alone
+        assertEquals(at("2025-01-03T00:00"), next("cron 0 0 * * fri", "2025-01-01T00:00"));  // Weekday alone
+    }
+
+    @Test
+    void cronAcrossMonthAndYearEnds() {
+        assertEquals(at("2025-03-31T00:00"), next("cron 0 0 31 * *", "2025-01-31T00:00"));  // No Feb 31
+        assertEquals(at("2025-05-31T00:00"), next("cron 0 0 31 * *", "2025-03-31T00:00"));  // No Apr 31
+        assertEquals(at("2026-01-01T00:00"), next("cron 0 0 1 1 *", "2025-12-31T23:59"));
+        assertEquals(at("2028-02-29T06:00"), next("cron 0 6 29 feb *", "2025-01-01T00:00"));
+        assertNull(next("cron 0 0 30 2 *", "2025-01-01T00:00"));  // Never: the rule has ended
+    }
+
+    @Test
+    void badRulesAreRefused() {
+        for (String bad : new String[]{"", "fortnightly", "every 0 days", "every 2 fortnights", "every x days",
+                "cron 60 * * * *", "cron * 24 * * *", "cron * * 0 * *", "cron * * * 13 *", "cron * * * * 8",
+                "cron 5-1 * * * *", "cron */0 * * * *", "cron * * * foo *", "cron * * * *"}) {
+            assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse(bad), bad);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package expenses.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Catch-up on start with a clock the test moves. The rules live beside the store, not in it, so the
+// store's own scheduler on the real clock never sees them
+class RecurrenceSchedulerTest {
+    private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+    private static final long HOUR = 3_600_000;
+
+    @TempDir
+    Path dir;
+
+    private ExpenseStore store;
+    private final AtomicLong clock = new AtomicLong();
+
+    @BeforeEach
+    void open() throws IOException {
+        store = new ExpenseStore(dir.resolve("ledger"));
+        store.load();
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        store.close();
+    }
+
+    private RecurrenceScheduler start() throws IOException {
+        RecurrenceScheduler scheduler = new RecurrenceScheduler(store, dir, HOUR, clock::get, NEW_YORK);
+        scheduler.start();
+        return scheduler;
+    }
+
+    private static long millis(String local) {
+        return LocalDateTime.parse(local).atZone(NEW_YORK).toInstant().toEpochMilli();
+    }
+
+    private List<String> expenseTimes() {
+        List<String> times = new ArrayList<>();
+        for (int row = 0; row < store.expenseView().size(); row++) {
+            times.add(LocalDateTime.ofInstant(Instant.ofEpochMilli(store.expense(row).getDate().getTime()), NEW_YORK).toString());
+        }
+        return times;
+    }
+
+    @Test
+    void missedOccurrencesAreAddedOnStart() throws IOException {
+        long start = millis("2025-01-30T08:00");
+        clock.set(start);
+        RecurrenceScheduler first = start();
+        Expense rent = new Expense("Rent", "Flat", 90_000, "USD", "Other", new Date(start));
+        first.addExpense(RecurrenceRule.parse("monthly"), start, rent, true);  // The caller added January's
+        first.close();
+        assertEquals(0, store.expenseView().size());
+
+        clock.set(millis("2025-05-01T00:00"));
+        RecurrenceScheduler second = start();
+        assertEquals(Arrays.asList("2025-02-28T08:00", "2025-03-30T08:00", "2025-04-30T08:00"), expenseTimes());
+        assertEquals(millis("2025-05-30T08:00"), second.list().get(0).next);
+        assertEquals(1, second.pending());
+        second.close();
+
+        RecurrenceScheduler third = start();  // Progress was saved: nothing is added twice
+        assertEquals(3, store.expenseView().size());
+        third.close();
+    }
+
+    @Test
+    void localTimesHoldAcrossDaylightSavingChanges() throws IOException {
+        long start = millis("2025-03-07T02:30");
+        clock.set(start);
+        RecurrenceScheduler first = start();
+        first.addExpense(RecurrenceRule.parse("daily"), start,
+                new Expense("Coffee", "Cart", 350, "USD", "Food", new Date(start)), false);
+        first.close();
+
+        clock.set(millis("2025-03-12T03:00"));
+        start().close();
+        // 02:30 does not exist on March 9 and is taken as 03:30; no day is skipped or doubled
+        assertEquals(Arrays.asList("2025-03-07T02:30", "2025-03-08T02:30", "2025-03-09T03:30", "2025-03-10T02:30",
+                "2025-03-11T02:30", "2025-03-12T02:30"), expenseTimes());
+    }
+
+    @Test
+    void fallBackRunsTheRepeatedHourOnce() throws IOException {
+        long start = millis("2025-11-01T01:30");
+        clock.set(start);
+        RecurrenceScheduler first = start();
+        first.addExpense(RecurrenceRule.parse("cron 30 1 * * *"), start,
+                new Expense("Backup", "Nightly", 100, "USD", "Other", new Date(start)), false);
+        first.close();
+
+        clock.set(millis("2025-11-03T12:00"));
+        start().close();
+        assertEquals(Arrays.asList("2025-11-01T01:30", "2025-11-02T01:30", "2025-11-03T01:30"), expenseTimes());
+    }
+
+    @Test
+    void catchUpIsCappedAndRemindsOncePerRule() throws IOException {
+        long start = millis("2025-01-01T00:00");
+        clock.set(start);
+        RecurrenceScheduler first = start();
+        first.addTask(RecurrenceRule.parse("cron * * * * *"), start,
+                new Task("Stretch", "Every minute", new Date(start), "Low"), true);
+        first.close();
+
+        long now = start + 20_000 * 60_000L;  // 20000 minutes later
+        clock.set(now);
+        List<Integer> reminders = new ArrayList<>();
+        RecurrenceScheduler second = new RecurrenceScheduler(store, dir, HOUR, clock::get, NEW_YORK);
+        second.addReminderListener((task, occurrences) -> reminders.add(occurrences));
+        second.start();
+        assertEquals(10_000, store.taskSnapshot().size());  // The rest are skipped
+        assertEquals(Arrays.asList(10_000), reminders);
+        assertEquals(now + 60_000, second.list().get(0).next);
+        second.close();
+    }
+}
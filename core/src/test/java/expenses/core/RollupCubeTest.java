@@ -0,0 +1,48 @@
+package expenses.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RollupCubeTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void emptyCubeWritesAndReadsBack() throws IOException {
+        Path file = dir.resolve("rollup.bin");
+        new RollupCube().write(file, 7);
+        RollupCube read = RollupCube.read(file, 7, 0);
+        assertNotNull(read);
+        assertEquals(0, read.rows());
+        RollupCube.Shape shape = read.shape();
+        assertEquals(Collections.emptyList(), shape.currencies);
+        assertEquals(Integer.MAX_VALUE, shape.firstDay);
+        assertNull(RollupCube.read(file, 8, 0));  // Another snapshot's generation
+    }
+
+    @Test
+    void cellsWriteAndReadBack() throws IOException {
+        RollupCube cube = new RollupCube();
+        cube.add("USD", "Food", 19_000, 250);
+        cube.add("USD", "Travel", 19_000, 1_000);
+        cube.add("EUR", "Food", 19_040, 75);
+        Path file = dir.resolve("rollup.bin");
+        cube.write(file, 1);
+        RollupCube read = RollupCube.read(file, 1, 3);
+        assertNotNull(read);
+        assertEquals(Arrays.asList("USD", "EUR"), read.shape().currencies);
+        assertEquals(1_250, read.total(false, "USD", null, 19_000));
+        assertEquals(2, read.count(false, "USD", null, 19_000));
+        assertEquals(75, read.total(true, "EUR", "Food", RollupCube.epochMonth(19_040)));
+        assertEquals(0, read.total(false, "EUR", "Travel", 19_040));
+    }
+}
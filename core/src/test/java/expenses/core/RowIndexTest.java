@@ -0,0 +1,56 @@
+package expenses.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class RowIndexTest {
+    private static final String[] KEYS = {"Food", "Travel", "Rent", "Other"};
+    private static final int ROWS = 20_000;
+
+    // Rows added out of day order, some hidden, paged with and without filters against a plain scan
+    @Test
+    void pagesMatchAScanOfEveryRow() {
+        Random random = new Random(7);
+        RowIndex index = new RowIndex();
+        Tombstones hidden = new Tombstones();
+        String[] keys = new String[ROWS];
+        int[] days = new int[ROWS];
+        for (int row = 0; row < ROWS; row++) {
+            keys[row] = KEYS[random.nextInt(random.nextBoolean() ? 1 : KEYS.length)];  // Food common, the rest rare
+            days[row] = 19_000 + random.nextInt(400);
+            index.add(keys[row], days[row]);
+            if (random.nextInt(5) == 0) {
+                hidden.set(row, true);
+            }
+        }
+        for (String key : new String[]{null, "Food", "Rent", "Missing"}) {
+            for (int[] range : new int[][]{{Integer.MIN_VALUE, Integer.MAX_VALUE}, {19_100, 19_130}, {19_390, 19_500}}) {
+                int[] all = scan(keys, days, hidden, key, range[0], range[1]);
+                assertArrayEquals(all, index.query(key, range[0], range[1], hidden, 0, Integer.MAX_VALUE));
+                for (int[] page : new int[][]{{0, 10}, {5, 100}, {all.length - 3, 10}, {all.length + 1, 10}}) {
+                    int from = Math.max(0, Math.min(all.length, page[0]));
+                    int to = Math.min(all.length, from + page[1]);
+                    assertArrayEquals(Arrays.copyOfRange(all, from, to),
+                            index.query(key, range[0], range[1], hidden, Math.max(0, page[0]), page[1]), key + " " + page[0]);
+                }
+            }
+        }
+        int[] visible = scan(keys, days, hidden, null, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        for (int offset : new int[]{0, 4095, 4096, 9000, visible.length - 1, visible.length}) {
+            int to = Math.min(visible.length, offset + 50);
+            assertArrayEquals(Arrays.copyOfRange(visible, offset, to), hidden.page(ROWS, offset, 50), "offset " + offset);
+        }
+    }
+
+    private static int[] scan(String[] keys, int[] days, Tombstones hidden, String key, int fromDay, int toDay) {
+        return IntStream.range(0, keys.length)
+                .filter(row -> (key == null || key.equals(keys[row])) && days[row] >= fromDay && days[row] <= toDay
+                        && !hidden.hidden(row))
+                .toArray();
+    }
+}
@@ -0,0 +1,78 @@
+package expenses.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+    private static final long START = 5 * 64 * 64 + 37;  // Not on a boundary of any level
+
+    // Ticks ahead of the start on both sides of every level boundary, and past the top level
+    private static final long[] DELAYS = {1, 2, 63, 64, 65, 127, 128, 4_095, 4_096, 4_097, 262_143, 262_144,
+            262_145, (1L << 24) - 1, 1L << 24, (1L << 24) + 1, (1L << 24) + 262_145, 3L << 24};
+
+    @Test
+    void everyEntryExpiresOnItsTickAcrossLevels() {
+        TimingWheel<Long> wheel = new TimingWheel<>(1, START);
+        for (long delay : DELAYS) {
+            wheel.schedule(delay, START + delay);
+        }
+        assertEquals(DELAYS.length, wheel.size());
+        long now = START;
+        for (long delay : DELAYS) {
+            assertEquals(Collections.emptyList(), wheel.advance(START + delay - 1), "early at " + delay);
+            assertEquals(Collections.singletonList(delay), wheel.advance(START + delay), "late at " + delay);
+            now = START + delay;
+        }
+        assertEquals(0, wheel.size());
+        assertEquals(Collections.emptyList(), wheel.advance(now + (4L << 24)));
+    }
+
+    @Test
+    void oneLongAdvanceReturnsEntriesInTickOrder() {
+        TimingWheel<Long> wheel = new TimingWheel<>(1, START);
+        List<Long> expected = new ArrayList<>();
+        for (int i = DELAYS.length - 1; i >= 0; i--) {  // Scheduled latest first
+            wheel.schedule(DELAYS[i], START + DELAYS[i]);
+            expected.add(0, DELAYS[i]);
+        }
+        assertEquals(expected, wheel.advance(START + (3L << 24)));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void ticksRoundUpAndPastDeadlinesExpireAtOnce() {
+        TimingWheel<String> wheel = new TimingWheel<>(60_000, 60_000 * START);
+        wheel.schedule("past", 60_000 * START - 1);
+        wheel.schedule("due now", 60_000 * START);
+        wheel.schedule("next minute", 60_000 * START + 1);  // Never early, so the tick after
+        assertEquals(Arrays.asList("past", "due now"), wheel.advance(60_000 * START + 59_999));
+        assertEquals(Collections.singletonList("next minute"), wheel.advance(60_000 * (START + 1)));
+    }
+
+    @Test
+    void entriesAddedAfterAnAdvanceCountFromThere() {
+        TimingWheel<Long> wheel = new TimingWheel<>(1, START);
+        wheel.schedule(0L, START + 100_000);
+        long now = START + 4_095 * 13;  // Mid-cascade for the first entry
+        assertEquals(Collections.emptyList(), wheel.advance(now));
+        for (long delay : DELAYS) {
+            wheel.schedule(delay, now + delay);
+        }
+        List<Long> got = new ArrayList<>();
+        for (long t = now + 1; got.size() < DELAYS.length + 1; t += 997) {  // Uneven steps
+            for (Long d : wheel.advance(t)) {
+                long deadline = d == 0 ? START + 100_000 : now + d;
+                assertTrue(deadline <= t && deadline > t - 997, "expired off its step: " + d);
+                got.add(d);
+            }
+        }
+        assertEquals(0, wheel.size());
+    }
+}
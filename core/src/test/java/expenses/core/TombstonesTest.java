@@ -0,0 +1,107 @@
+package expenses.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TombstonesTest {
+    private static final int BLOCK = 4096;
+    private static final int ROWS = 4 * BLOCK + 100;
+
+    @TempDir
+    Path dir;
+
+    // Rows hidden at random, a whole block hidden, and runs on both sides of each block boundary
+    private static boolean[] hide(Tombstones tombstones) {
+        boolean[] hidden = new boolean[ROWS];
+        Random random = new Random(11);
+        for (int row = 0; row < ROWS; row++) {
+            boolean boundary = row % BLOCK < 3 || row % BLOCK > BLOCK - 4;
+            hidden[row] = row / BLOCK == 2 || boundary || random.nextInt(3) == 0;
+            if (hidden[row]) {
+                assertTrue(tombstones.set(row, true));
+            }
+        }
+        return hidden;
+    }
+
+    private static int[] visible(boolean[] hidden) {
+        return IntStream.range(0, hidden.length).filter(row -> !hidden[row]).toArray();
+    }
+
+    @Test
+    void selectAndRankAcrossBlockBoundaries() {
+        Tombstones tombstones = new Tombstones();
+        boolean[] hidden = hide(tombstones);
+        int[] visible = visible(hidden);
+        assertEquals(ROWS - visible.length, tombstones.count());
+        for (int n = 0; n < visible.length; n++) {
+            assertEquals(visible[n], tombstones.select(n), "visible row " + n);
+        }
+        assertEquals(ROWS, tombstones.select(visible.length));  // Past the end, rows are visible
+        int hiddenBefore = 0;
+        for (int rows = 0; rows <= ROWS; rows++) {
+            assertEquals(hiddenBefore, tombstones.rank(rows), "rank " + rows);
+            if (rows < ROWS && hidden[rows]) {
+                hiddenBefore++;
+            }
+        }
+        assertArrayEquals(visible, tombstones.visible(ROWS));
+        for (int offset : new int[]{0, 1, BLOCK - 3, BLOCK, 2 * BLOCK - 7, visible.length - 1}) {
+            assertArrayEquals(Arrays.copyOfRange(visible, offset, Math.min(visible.length, offset + 100)),
+                    tombstones.page(ROWS, offset, 100), "page at " + offset);
+        }
+    }
+
+    @Test
+    void showingRowsAgainKeepsTheCounts() {
+        Tombstones tombstones = new Tombstones();
+        boolean[] hidden = hide(tombstones);
+        long version = tombstones.version();
+        for (int row = 2 * BLOCK; row < 3 * BLOCK; row += 2) {  // Half of the hidden block comes back
+            assertTrue(tombstones.set(row, false));
+            hidden[row] = false;
+        }
+        assertFalse(tombstones.set(2 * BLOCK, false));  // Already shown
+        assertFalse(tombstones.set(2 * BLOCK + 1, true));  // Already hidden
+        assertFalse(tombstones.set(ROWS + BLOCK, false));  // Beyond the words, never hidden
+        assertTrue(tombstones.version() > version);
+        int[] visible = visible(hidden);
+        for (int n = 0; n < visible.length; n += 7) {
+            assertEquals(visible[n], tombstones.select(n));
+        }
+        assertEquals(ROWS - visible.length, tombstones.rank(ROWS));
+    }
+
+    @Test
+    void writesAndReadsBackAndRejectsDamage() throws IOException {
+        Tombstones tombstones = new Tombstones();
+        boolean[] hidden = hide(tombstones);
+        Path file = dir.resolve("hidden.bin");
+        assertNull(Tombstones.read(file));
+        tombstones.write(file, 42);
+        Tombstones read = Tombstones.read(file);
+        assertEquals(42, read.generation());
+        assertEquals(tombstones.count(), read.count());
+        assertArrayEquals(visible(hidden), read.visible(ROWS));
+        assertEquals(tombstones.select(3 * BLOCK), read.select(3 * BLOCK));
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> Tombstones.read(file));
+    }
+}
@@ -0,0 +1,613 @@
+package expenses.server;
+
+import expenses.core.Budget;
+import expenses.core.CodeRegistry;
+import expenses.core.ColumnarExpenseList;
+import expenses.core.Expense;
+import expenses.core.ExpenseStore;
+import expenses.core.Journal;
+import expenses.core.Json;
+import expenses.core.LedgerManager;
+import expenses.core.Metrics;
+import expenses.core.Money;
+import expenses.core.Recurrence;
+import expenses.core.RecurrenceRule;
+import expenses.core.RowFormatter;
+import expenses.core.Task;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Embedded HTTP/JSON API over an ExpenseStore. The JDK server accepts connections on one selector
+// thread and runs handlers on a small fixed pool; a handler only holds the store lock for in-memory
+// work, so it never blocks on disk. Entries are durable within the journal's commit interval, the
+// same guarantee the form gets
+public class ApiServer {
+    private static final int MAX_BODY = 16 << 20;   // Largest accepted request body
+    private static final int MAX_PAGE = 10_000;     // Most rows returned by one query
+    private static final int NEXT_TASKS = 20;       // Default length of GET /tasks/next
+    private static final Metrics.Histogram REQUEST_TIME = Metrics.REGISTRY.timer("api_request_seconds");
+    private static final Metrics.Counter REQUESTS = Metrics.REGISTRY.counter("api_requests");
+    private static final Metrics.Counter ERRORS = Metrics.REGISTRY.counter("api_errors");  // Status 500 and up
+
+    static {
+        // Small JSON responses otherwise wait on Nagle's algorithm and the client's delayed ACK
+        System.getProperties().putIfAbsent("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService workers;
+
+    // Serve one store at /expenses, /tasks, /summary, /recurrences, /budgets and /names, or with a ledger manager
+    // the same endpoints for each ledger under /ledgers/<user>/<ledger>/
+    ApiServer(ExpenseStore store, LedgerManager ledgers, InetSocketAddress address, int threads) throws IOException {
+        server = HttpServer.create(address, 1024);
+        workers = Executors.newFixedThreadPool(threads, Journal.daemon("api"));
+        server.setExecutor(workers);
+        if (store != null) {
+            server.createContext("/expenses", exchange -> handle(exchange, (ex, path, out) -> expenses(store, ex, path, out)));
+            server.createContext("/tasks", exchange -> handle(exchange, (ex, path, out) -> tasks(store, ex, path, out)));
+            server.createContext("/summary", exchange -> handle(exchange, (ex, path, out) -> summary(store, ex, path, out)));
+            server.createContext("/recurrences",
+                    exchange -> handle(exchange, (ex, path, out) -> recurrences(store, ex, path, out)));
+            server.createContext("/budgets", exchange -> handle(exchange, (ex, path, out) -> budgets(store, ex, path, out)));
+            server.createContext("/names", exchange -> handle(exchange, (ex, path, out) -> names(store, ex, path, out)));
+        }
+        if (ledgers != null) {
+            server.createContext("/ledgers/", exchange -> handle(exchange, (ex, path, out) -> ledger(ledgers, ex, path, out)));
+        }
+        server.createContext("/metrics", ApiServer::metrics);
+        server.start();
+    }
+
+    // Serve on localhost only; the API has no authentication
+    public static ApiServer start(ExpenseStore store, int port) throws IOException {
+        return new ApiServer(store, null, new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public static ApiServer start(LedgerManager ledgers, int port) throws IOException {
+        return new ApiServer(null, ledgers, new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+        workers.shutdown();
+    }
+
+    // Run without the window: java -cp core/target/classes:server/target/classes expenses.server.ApiServer [port] [data directory] [--ledgers [max open]]
+    // With --ledgers the directory is the root of a ledger manager instead of a single store
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        Path dir = Paths.get(args.length > 1 ? args[1] : "");
+        Closeable data;
+        ApiServer api;
+        if (args.length > 2 && args[2].equals("--ledgers")) {
+            LedgerManager ledgers = new LedgerManager(dir, args.length > 3 ? Integer.parseInt(args[3]) : 64);
+            data = ledgers;
+            api = start(ledgers, port);
+        } else {
+            ExpenseStore store = new ExpenseStore(dir);
+            store.load();
+            store.publishGauges();
+            data = store;
+            api = start(store, port);
+        }
+        Metrics.REGISTRY.registerMBean();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            api.stop();
+            try {
+                data.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            Metrics.REGISTRY.dumpToConfiguredFile();
+        }, "shutdown"));
+        System.out.println("Listening on http://localhost:" + api.port());
+    }
+
+    // One endpoint; writes its JSON into out and returns the status code
+    interface Endpoint {
+        int serve(HttpExchange exchange, String path, StringBuilder out) throws IOException;
+    }
+
+    private void handle(HttpExchange exchange, Endpoint endpoint) throws IOException {
+        long start = System.nanoTime();
+        StringBuilder out = new StringBuilder(256);
+        int status;
+        try {
+            status = endpoint.serve(exchange, exchange.getRequestURI().getPath(), out);
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            error(out, e.getMessage());
+        } catch (IllegalStateException e) {
+            status = 503;  // Still loading
+            error(out, e.getMessage());
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            status = 500;
+            error(out, "Internal error");
+        }
+        byte[] body = out.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream response = exchange.getResponseBody()) {
+            response.write(body);
+        }
+        REQUEST_TIME.recordSince(start);
+        REQUESTS.add(1);
+        if (status >= 500) {
+            ERRORS.add(1);
+        }
+    }
+
+    // GET /metrics: every metric as a "name value" line
+    private static void metrics(HttpExchange exchange) throws IOException {
+        StringBuilder out = new StringBuilder(4096);
+        int status = 200;
+        if (exchange.getRequestMethod().equals("GET")) {
+            Metrics.REGISTRY.dump(out);
+        } else {
+            status = 405;
+        }
+        byte[] body = out.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream response = exchange.getResponseBody()) {
+            response.write(body);
+        }
+    }
+
+    private static void error(StringBuilder out, String message) {
+        out.setLength(0);
+        Json.quote(out.append("{\"error\":"), String.valueOf(message)).append('}');
+    }
+
+    // GET /ledgers/<user> lists a user's ledgers; /ledgers/<user>/<ledger>/... are that ledger's
+    // /expenses, /tasks, /summary, /recurrences, /budgets and /names. A ledger is created by its first request
+    private int ledger(LedgerManager ledgers, HttpExchange exchange, String path, StringBuilder out) throws IOException {
+        String[] parts = path.split("/", 5);  // "", "ledgers", user, ledger, rest
+        if (parts.length == 3 && exchange.getRequestMethod().equals("GET")) {
+            writeNames(out, ledgers.ledgers(parts[2]));
+            return 200;
+        }
+        String rest = parts.length == 5 ? "/" + parts[4] : "";
+        if (!rest.startsWith("/expenses") && !rest.startsWith("/tasks") && !rest.equals("/summary")
+                && !rest.startsWith("/recurrences") && !rest.startsWith("/budgets") && !rest.startsWith("/names")) {
+            return notFound(out);  // Before opening, so a bad path doesn't create a ledger
+        }
+        try (LedgerManager.Lease lease = ledgers.open(parts[2], parts[3])) {
+            if (rest.startsWith("/expenses")) {
+                return expenses(lease.store(), exchange, rest, out);
+            }
+            if (rest.startsWith("/tasks")) {
+                return tasks(lease.store(), exchange, rest, out);
+            }
+            if (rest.startsWith("/recurrences")) {
+                return recurrences(lease.store(), exchange, rest, out);
+            }
+            if (rest.startsWith("/budgets")) {
+                return budgets(lease.store(), exchange, rest, out);
+            }
+            if (rest.startsWith("/names")) {
+                return names(lease.store(), exchange, rest, out);
+            }
+            return summary(lease.store(), exchange, rest, out);
+        }
+    }
+
+    // GET /expenses?category=&from=&to=&offset=&limit=, GET /expenses?q=&offset=&limit= (ranked text
+    // search, other filters ignored), POST /expenses, POST /expenses/batch, PUT /expenses/<row> (a new
+    // row replaces it), DELETE /expenses/<row>. Rows are listed with their row number
+    private int expenses(ExpenseStore store, HttpExchange exchange, String path, StringBuilder out) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (path.equals("/expenses") && method.equals("GET")) {
+            Map<String, String> q = query(exchange);
+            int offset = intParam(q, "offset", 0);
+            int limit = Math.min(MAX_PAGE, intParam(q, "limit", MAX_PAGE));
+            int[] rows = q.containsKey("q") ? store.expenseRowsMatching(q.get("q"), offset, limit)
+                    : store.expenseRows(q.get("category"), Json.date(q.get("from")), Json.date(q.get("to")), offset, limit);
+            out.append('[');
+            for (int i = 0; i < rows.length; i++) {
+                writeExpense(i == 0 ? out : out.append(','), rows[i], store.expense(rows[i]));
+            }
+            out.append(']');
+            return 200;
+        }
+        int target = rowOf(path, "/expenses/");
+        if (target >= 0 && method.equals("PUT")) {
+            int replacement = store.editExpense(target, ExpenseStore.readExpense(Json.asObject(Json.parse(body(exchange)), -1), -1));
+            if (replacement < 0) {
+                return notFound(out);
+            }
+            out.append("{\"row\":").append(replacement).append('}');
+            return 200;
+        }
+        if (target >= 0 && method.equals("DELETE")) {
+            return store.deleteExpense(target) ? 204 : notFound(out);
+        }
+        if (path.equals("/expenses") && method.equals("POST")) {
+            int row = store.addExpense(ExpenseStore.readExpense(Json.asObject(Json.parse(body(exchange)), -1), -1));
+            out.append("{\"row\":").append(row).append('}');
+            return 201;
+        }
+        if (path.equals("/expenses/batch") && method.equals("POST")) {
+            List<Object> items = Json.asArray(Json.parse(body(exchange)));
+            List<Expense> batch = new ArrayList<>(items.size());
+            for (int i = 0; i < items.size(); i++) {  // Validate everything before adding anything
+                batch.add(ExpenseStore.readExpense(Json.asObject(items.get(i), i), i));
+            }
+            int first = store.addExpenses(batch);
+            out.append("{\"first\":").append(first).append(",\"added\":").append(batch.size()).append('}');
+            return 201;
+        }
+        return notFound(out);
+    }
+
+    // GET /tasks?priority=&from=&to=&offset=&limit=, GET /tasks?q=&offset=&limit=, GET /tasks/next?limit=
+    // (open tasks, most urgent first), POST /tasks, POST /tasks/batch, PUT /tasks/<row>,
+    // DELETE /tasks/<row>, POST /tasks/<row>/complete {"done" (true if absent)}
+    private int tasks(ExpenseStore store, HttpExchange exchange, String path, StringBuilder out) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (path.equals("/tasks/next") && method.equals("GET")) {
+            int[] rows = store.nextTasks(Math.min(MAX_PAGE, intParam(query(exchange), "limit", NEXT_TASKS)));
+            out.append('[');
+            for (int i = 0; i < rows.length; i++) {
+                writeTask(i == 0 ? out : out.append(','), rows[i], store.task(rows[i]));
+            }
+            out.append(']');
+            return 200;
+        }
+        if (path.equals("/tasks") && method.equals("GET")) {
+            Map<String, String> q = query(exchange);
+            int offset = intParam(q, "offset", 0);
+            int limit = Math.min(MAX_PAGE, intParam(q, "limit", MAX_PAGE));
+            int[] rows = q.containsKey("q") ? store.taskRowsMatching(q.get("q"), offset, limit)
+                    : store.taskRows(q.get("priority"), Json.date(q.get("from")), Json.date(q.get("to")), offset, limit);
+            out.append('[');
+            for (int i = 0; i < rows.length; i++) {
+                writeTask(i == 0 ? out : out.append(','), rows[i], store.task(rows[i]));
+            }
+            out.append(']');
+            return 200;
+        }
+        if (path.startsWith("/tasks/") && path.endsWith("/complete") && method.equals("POST")) {
+            int target = rowOf(path.substring(0, path.length() - "/complete".length()), "/tasks/");
+            String text = body(exchange);
+            Object done = text.trim().isEmpty() ? null : Json.asObject(Json.parse(text), -1).get("done");
+            if (done != null && !(done instanceof Boolean)) {
+                throw new IllegalArgumentException("\"done\" must be true or false");
+            }
+            int replacement = target < 0 ? -1 : store.completeTask(target, done == null || (Boolean) done);
+            if (replacement < 0) {
+                return notFound(out);
+            }
+            out.append("{\"row\":").append(replacement).append('}');
+            return 200;
+        }
+        int target = rowOf(path, "/tasks/");
+        if (target >= 0 && method.equals("PUT")) {
+            Map<String, Object> json = Json.asObject(Json.parse(body(exchange)), -1);
+            Task task = store.readTask(json, -1);
+            if (json.get("done") instanceof Boolean) {
+                task = task.withDone((Boolean) json.get("done"));
+            }
+            int replacement = store.editTask(target, task);
+            if (replacement < 0) {
+                return notFound(out);
+            }
+            out.append("{\"row\":").append(replacement).append('}');
+            return 200;
+        }
+        if (target >= 0 && method.equals("DELETE")) {
+            return store.deleteTask(target) ? 204 : notFound(out);
+        }
+        if (path.equals("/tasks") && method.equals("POST")) {
+            int row = store.addTask(store.readTask(Json.asObject(Json.parse(body(exchange)), -1), -1));
+            out.append("{\"row\":").append(row).append('}');
+            return 201;
+        }
+        if (path.equals("/tasks/batch") && method.equals("POST")) {
+            List<Object> items = Json.asArray(Json.parse(body(exchange)));
+            List<Task> batch = new ArrayList<>(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                batch.add(store.readTask(Json.asObject(items.get(i), i), i));
+            }
+            int first = store.addTasks(batch);
+            out.append("{\"first\":").append(first).append(",\"added\":").append(batch.size()).append('}');
+            return 201;
+        }
+        return notFound(out);
+    }
+
+    // GET /summary: counts and exact totals per currency
+    private int summary(ExpenseStore store, HttpExchange exchange, String path, StringBuilder out) {
+        if (!path.equals("/summary") || !exchange.getRequestMethod().equals("GET")) {
+            return notFound(out);
+        }
+        ExpenseStore.Summary summary = store.summary();
+        out.append("{\"expenses\":").append(summary.expenses).append(",\"tasks\":").append(summary.tasks)
+                .append(",\"totals\":{");
+        boolean first = true;
+        for (Map.Entry<String, Long> total : summary.totals.entrySet()) {
+            Json.quote(first ? out : out.append(','), total.getKey()).append(':');
+            Json.quote(out, Money.format(total.getValue()));
+            first = false;
+        }
+        out.append("}}");
+        return 200;
+    }
+
+    // GET /recurrences, POST /recurrences {"rule", "start" (yyyy-MM-dd, now if absent), "expense" or
+    // "task"}, DELETE /recurrences/<id>
+    private int recurrences(ExpenseStore store, HttpExchange exchange, String path, StringBuilder out) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (path.equals("/recurrences") && method.equals("GET")) {
+            out.append('[');
+            List<Recurrence> rules = store.recurrences().list();
+            for (int i = 0; i < rules.size(); i++) {
+                writeRecurrence(i == 0 ? out : out.append(','), rules.get(i));
+            }
+            out.append(']');
+            return 200;
+        }
+        if (path.equals("/recurrences") && method.equals("POST")) {
+            Map<String, Object> json = Json.asObject(Json.parse(body(exchange)), -1);
+            RecurrenceRule rule = RecurrenceRule.parse(Json.string(json, "rule"));
+            LocalDate day = Json.date(Json.string(json, "start"));
+            long start = day == null ? System.currentTimeMillis()
+                    : ColumnarExpenseList.dateOf((int) day.toEpochDay()).getTime();
+            Recurrence added;
+            if (json.get("expense") != null) {
+                added = store.recurrences().addExpense(rule, start, ExpenseStore.readExpense(Json.asObject(json.get("expense"), -1), -1), false);
+            } else if (json.get("task") != null) {
+                added = store.recurrences().addTask(rule, start, store.readTask(Json.asObject(json.get("task"), -1), -1), false);
+            } else {
+                throw new IllegalArgumentException("Expected an expense or a task");
+            }
+            writeRecurrence(out, added);
+            return 201;
+        }
+        if (path.startsWith("/recurrences/") && method.equals("DELETE")) {
+            long id;
+            try {
+                id = Long.parseLong(path.substring("/recurrences/".length()));
+            } catch (NumberFormatException e) {
+                return notFound(out);
+            }
+            return store.recurrences().cancel(id) ? 204 : notFound(out);
+        }
+        return notFound(out);
+    }
+
+    private static void writeRecurrence(StringBuilder out, Recurrence r) {
+        out.append("{\"id\":").append(r.id);
+        Json.quote(out.append(",\"rule\":"), r.rule.toString());
+        out.append(",\"start\":").append(r.start);
+        long next = r.next;
+        out.append(",\"next\":").append(next == Recurrence.ENDED ? "null" : String.valueOf(next));
+        if (r.expense != null) {
+            writeExpense(out.append(",\"expense\":"), r.expense);
+        } else {
+            writeTask(out.append(",\"task\":"), r.task);
+        }
+        out.append('}');
+    }
+
+    // GET /budgets (with spend in the current window), POST /budgets {"category" (all if absent),
+    // "currency", "period" (day, week, month or year), "limit", "thresholds" (percents, 80 and 100 if
+    // absent)}, DELETE /budgets/<id>
+    private int budgets(ExpenseStore store, HttpExchange exchange, String path, StringBuilder out) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (path.equals("/budgets") && method.equals("GET")) {
+            out.append('[');
+            List<Budget> budgets = store.budgets().list();
+            int today = ColumnarExpenseList.epochDay(new Date());
+            for (int i = 0; i < budgets.size(); i++) {
+                writeBudget(i == 0 ? out : out.append(','), budgets.get(i), store.spent(budgets.get(i), today));
+            }
+            out.append(']');
+            return 200;
+        }
+        if (path.equals("/budgets") && method.equals("POST")) {
+            Map<String, Object> json = Json.asObject(Json.parse(body(exchange)), -1);
+            String text = Json.decimal(json, "limit");
+            long minor;
+            try {
+                minor = Money.parseMinor(text == null ? "" : text);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid limit. Please enter a number with at most two decimals.");
+            }
+            int[] percents = Budget.DEFAULT_PERCENTS;
+            if (json.get("thresholds") != null) {
+                List<Object> list = Json.asArray(json.get("thresholds"));
+                percents = new int[list.size()];
+                for (int i = 0; i < percents.length; i++) {
+                    percents[i] = Json.integer(list.get(i), "Threshold");
+                }
+            }
+            Budget added = store.budgets().add(Json.string(json, "category"), Json.string(json, "currency"), Json.string(json, "period"),
+                    minor, percents);
+            writeBudget(out, added, store.spent(added, ColumnarExpenseList.epochDay(new Date())));
+            return 201;
+        }
+        if (path.startsWith("/budgets/") && method.equals("DELETE")) {
+            long id;
+            try {
+                id = Long.parseLong(path.substring("/budgets/".length()));
+            } catch (NumberFormatException e) {
+                return notFound(out);
+            }
+            return store.budgets().remove(id) ? 204 : notFound(out);
+        }
+        return notFound(out);
+    }
+
+    // GET /names lists the ledger's categories, currencies and priorities (least urgent first);
+    // POST /names/categories or /names/priorities {"name"} registers one, 201 if it is new and 200 if
+    // it already was. Tasks may only use registered priorities
+    private int names(ExpenseStore store, HttpExchange exchange, String path, StringBuilder out) throws IOException {
+        String method = exchange.getRequestMethod();
+        CodeRegistry names = store.names();
+        if (path.equals("/names") && method.equals("GET")) {
+            writeNames(out.append("{\"categories\":"), names.categories());
+            writeNames(out.append(",\"currencies\":"), names.currencies());
+            writeNames(out.append(",\"priorities\":"), names.priorities()).append('}');
+            return 200;
+        }
+        boolean category = path.equals("/names/categories");
+        if ((category || path.equals("/names/priorities")) && method.equals("POST")) {
+            String name = Json.string(Json.asObject(Json.parse(body(exchange)), -1), "name");
+            boolean added = category ? names.addCategory(name) : names.addPriority(name);
+            writeNames(out, category ? names.categories() : names.priorities());
+            return added ? 201 : 200;
+        }
+        return notFound(out);
+    }
+
+    private static StringBuilder writeNames(StringBuilder out, List<String> names) {
+        out.append('[');
+        for (int i = 0; i < names.size(); i++) {
+            Json.quote(i == 0 ? out : out.append(','), names.get(i));
+        }
+        return out.append(']');
+    }
+
+    private static void writeBudget(StringBuilder out, Budget b, long spentMinor) {
+        out.append("{\"id\":").append(b.id).append(",\"category\":");
+        if (b.category == null) {
+            out.append("null");
+        } else {
+            Json.quote(out, b.category);
+        }
+        Json.quote(out.append(",\"currency\":"), b.currency);
+        Json.quote(out.append(",\"period\":"), b.period);
+        Json.quote(out.append(",\"limit\":"), Money.format(b.limitMinor));
+        out.append(",\"thresholds\":[");
+        int[] percents = b.percents();
+        for (int i = 0; i < percents.length; i++) {
+            out.append(i == 0 ? "" : ",").append(percents[i]);
+        }
+        Json.quote(out.append("],\"spent\":"), Money.format(spentMinor)).append('}');
+    }
+
+    private static int notFound(StringBuilder out) {
+        error(out, "Not found");
+        return 404;
+    }
+
+    // Row number at the end of a path such as /expenses/12, or -1 if it doesn't name one
+    private static int rowOf(String path, String prefix) {
+        if (!path.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(path.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void writeExpense(StringBuilder out, Expense e) {
+        writeExpense(out, -1, e);
+    }
+
+    // With its row number first, unless row is negative
+    private static void writeExpense(StringBuilder out, int row, Expense e) {
+        out.append('{');
+        if (row >= 0) {
+            out.append("\"row\":").append(row).append(',');
+        }
+        Json.quote(out.append("\"title\":"), e.getTitle());
+        Json.quote(out.append(",\"description\":"), e.getDescription());
+        Json.quote(out.append(",\"amount\":"), Money.format(e.getAmountMinor()));
+        Json.quote(out.append(",\"currency\":"), e.getCurrency());
+        Json.quote(out.append(",\"category\":"), e.getCategory());
+        writeDate(out, e.getDate()).append('}');
+    }
+
+    private static void writeTask(StringBuilder out, Task t) {
+        writeTask(out, -1, t);
+    }
+
+    private static void writeTask(StringBuilder out, int row, Task t) {
+        out.append('{');
+        if (row >= 0) {
+            out.append("\"row\":").append(row).append(',');
+        }
+        Json.quote(out.append("\"title\":"), t.getTitle());
+        Json.quote(out.append(",\"description\":"), t.getDescription());
+        Json.quote(out.append(",\"priority\":"), t.getPriority());
+        out.append(",\"done\":").append(t.isDone());
+        if (t.hasDue()) {
+            RowFormatter.appendDate(out.append(",\"due\":\""), t.getDueDay()).append('"');
+        }
+        writeDate(out, t.getDate()).append('}');
+    }
+
+    private static StringBuilder writeDate(StringBuilder out, Date date) {
+        out.append(",\"date\":\"").append(LocalDate.ofEpochDay(ColumnarExpenseList.epochDay(date))).append('"');
+        return out.append(",\"time\":").append(date.getTime());
+    }
+
+    private static String body(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY + 1);
+            if (bytes.length > MAX_BODY) {
+                throw new IllegalArgumentException("Request body too large");
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw != null) {
+            for (String pair : raw.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                            URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return params;
+    }
+
+    private static int intParam(Map<String, String> params, String name, int fallback) {
+        String value = params.get(name);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            int n = Integer.parseInt(value);
+            if (n < 0) {
+                throw new NumberFormatException();
+            }
+            return n;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad " + name + ": " + value);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package expenses.server;
+
+import expenses.core.ExpenseStore;
+
+import java.io.*;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Load test for the HTTP API: java -cp core/target/classes:server/target/classes expenses.server.LoadTest [url|local] [clients] [seconds] [batch]
+// With "local" (the default) it starts a server over a temporary directory. Each client posts
+// expenses back to back; the report gives inserts per second and whole-request latency percentiles
+public class LoadTest {
+    private static final int WARMUP_SECONDS = 3;
+    private static final String[] CATEGORIES = {"Food", "Travel", "Entertainment", "Other"};
+
+    public static void main(String[] args) throws Exception {
+        String target = args.length > 0 ? args[0] : "local";
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int batch = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+
+        Path dir = null;
+        ExpenseStore store = null;
+        ApiServer api = null;
+        if (target.equals("local")) {
+            dir = Files.createTempDirectory("expense-load");
+            store = new ExpenseStore(dir);
+            store.load();
+            api = ApiServer.start(store, 0);
+            target = "http://localhost:" + api.port();
+        }
+        try {
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            URI uri = URI.create(target + (batch == 1 ? "/expenses" : "/expenses/batch"));
+            System.out.printf("%d clients, batch %d, %ds against %s%n", clients, batch, seconds, uri);
+            run(client, uri, clients, WARMUP_SECONDS, batch);  // Let the JIT and connection pool settle
+            run(client, uri, clients, seconds, batch).report(seconds, batch);
+        } finally {
+            if (api != null) {
+                api.stop();
+                store.close();
+                clear(dir);
+                Files.deleteIfExists(dir);
+            }
+        }
+    }
+
+    // Latencies and failures of one run
+    static class Result {
+        long[] nanos = new long[1 << 16];
+        int count;
+        int failures;
+
+        void add(long latency) {
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = latency;
+        }
+
+        void addAll(Result other) {
+            for (int i = 0; i < other.count; i++) {
+                add(other.nanos[i]);
+            }
+            failures += other.failures;
+        }
+
+        void report(int seconds, int batch) {
+            long[] sorted = Arrays.copyOf(nanos, count);
+            Arrays.sort(sorted);
+            System.out.printf("requests %,d  failures %,d  inserts/s %,.0f%n", count, failures,
+                    (double) count * batch / seconds);
+            for (double p : new double[]{50, 90, 99, 99.9}) {
+                System.out.printf("p%-5s %10.3f ms%n", p, percentile(sorted, p) / 1e6);
+            }
+            System.out.printf("max    %10.3f ms%n", (count == 0 ? 0 : sorted[count - 1]) / 1e6);
+        }
+
+        private static long percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p / 100 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+    }
+
+    private static Result run(HttpClient client, URI uri, int clients, int seconds, int batch)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        Result[] results = new Result[clients];
+        Thread[] threads = new Thread[clients];
+        for (int c = 0; c < clients; c++) {
+            Result result = results[c] = new Result();
+            int id = c;
+            threads[c] = new Thread(() -> {
+                Random random = new Random(id);
+                StringBuilder body = new StringBuilder(256 * batch);
+                while (System.nanoTime() < deadline) {
+                    body.setLength(0);
+                    if (batch > 1) {
+                        body.append('[');
+                    }
+                    for (int i = 0; i < batch; i++) {
+                        body.append(i == 0 ? "" : ",").append("{\"title\":\"Load ").append(id)
+                                .append("\",\"description\":\"Generated\",\"amount\":\"")
+                                .append(random.nextInt(10_000)).append('.').append(10 + random.nextInt(90))
+                                .append("\",\"category\":\"").append(CATEGORIES[random.nextInt(4)])
+                                .append("\"}");
+                    }
+                    if (batch > 1) {
+                        body.append(']');
+                    }
+                    HttpRequest request = HttpRequest.newBuilder(uri).header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(body.toString())).build();
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() != 201) {
+                            result.failures++;
+                            continue;
+                        }
+                    } catch (IOException e) {
+                        result.failures++;
+                        continue;
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    result.add(System.nanoTime() - start);
+                }
+            }, "load-" + c);
+            threads[c].start();
+        }
+        Result total = new Result();
+        for (int c = 0; c < clients; c++) {
+            threads[c].join();
+            total.addAll(results[c]);
+        }
+        return total;
+    }
+    private static void clear(Path dir) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path p : stream) {
+                Files.delete(p);
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package expenses.server;
+
+import expenses.core.ExpenseStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ApiServerTest {
+    @TempDir
+    Path dir;
+    private ExpenseStore store;
+    private ApiServer api;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void start() throws IOException {
+        store = new ExpenseStore(dir);
+        store.load();
+        api = ApiServer.start(store, 0);
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        api.stop();
+        store.close();
+    }
+
+    private int post(String path, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + api.port() + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private static String expense(String amount) {
+        return "{\"title\":\"Lunch\",\"description\":\"Soup\",\"category\":\"Food\",\"amount\":" + amount + "}";
+    }
+
+    @Test
+    void postExpense() throws Exception {
+        assertEquals(201, post("/expenses", expense("12.50")));
+        assertEquals(1, store.expenseSnapshot().size());
+    }
+
+    @Test
+    void badAmountsAreClientErrors() throws Exception {
+        for (String amount : new String[] {"true", "{}", "[]", "1e999999999"}) {
+            assertEquals(400, post("/expenses", expense(amount)), amount);
+            assertEquals(400, post("/expenses/batch", "[" + expense(amount) + "]"), amount);
+            assertEquals(400, post("/recurrences", "{\"rule\":\"monthly\",\"expense\":" + expense(amount) + "}"), amount);
+        }
+        assertEquals(0, store.expenseSnapshot().size());
+    }
+
+    @Test
+    void badBudgetLimitsAreClientErrors() throws Exception {
+        assertEquals(201, post("/budgets", "{\"category\":\"Food\",\"period\":\"month\",\"limit\":200}"));
+        for (String limit : new String[] {"true", "{}", "[]", "1e999999999", "\"abc\""}) {
+            assertEquals(400, post("/budgets", "{\"category\":\"Food\",\"period\":\"month\",\"limit\":" + limit + "}"), limit);
+        }
+        for (String threshold : new String[] {"\"50\"", "1e999999999", "1e-999999999", "50.5"}) {
+            assertEquals(400, post("/budgets", "{\"category\":\"Food\",\"period\":\"month\",\"limit\":200,"
+                    + "\"thresholds\":[" + threshold + "]}"), threshold);
+        }
+    }
+
+    @Test
+    void tasksTakeRegisteredPriorities() throws Exception {
+        String task = "{\"title\":\"Call\",\"description\":\"Bank\",\"priority\":\"Urgent\"}";
+        assertEquals(400, post("/tasks", task));
+        assertEquals(400, post("/names/priorities", "{}"));
+        assertEquals(201, post("/names/priorities", "{\"name\":\"Urgent\"}"));
+        assertEquals(200, post("/names/priorities", "{\"name\":\"Urgent\"}"));
+        assertEquals(201, post("/tasks", task));
+        assertEquals(1, store.taskSnapshot().size());
+    }
+}
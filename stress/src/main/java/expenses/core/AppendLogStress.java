@@ -0,0 +1,91 @@
+package expenses.core;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Description;
+import org.openjdk.jcstress.annotations.Expect;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.II_Result;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Publication of appends to lock-free readers. Each state starts one slot short of a full chunk in
+// a one-chunk directory, so the writer's batch of two both allocates a chunk and grows the directory.
+// r1 is how many of the batch the reader saw (0 or 2, never 1), r2 is 1 if the last row it saw held
+// the right element and 0 if it was null, wrong or out of reach
+public final class AppendLogStress {
+    private static final int FILLED = AppendLog.CHUNK_SIZE - 1;
+    private static final Integer[] VALUES = new Integer[FILLED + 2];
+    private static final List<Integer> BATCH = Arrays.asList(VALUES).subList(FILLED, FILLED + 2);
+
+    static {
+        for (int i = 0; i < VALUES.length; i++) {
+            VALUES[i] = i;
+        }
+    }
+
+    private AppendLogStress() {
+    }
+
+    private static AppendLog<Integer> filled() {
+        AppendLog<Integer> log = new AppendLog<>(1);
+        log.addAll(Arrays.asList(VALUES).subList(0, FILLED));
+        return log;
+    }
+
+    private static int check(AppendLog<Integer> log, int size) {
+        try {
+            Integer value = log.get(size - 1);
+            return value != null && value == size - 1 ? 1 : 0;
+        } catch (RuntimeException e) {
+            return 0;  // E.g. a chunk not yet visible: also a torn publish
+        }
+    }
+
+    @JCStressTest
+    @Description("A reader of the live log sees the whole batch or none of it, and every row it can see")
+    @Outcome(id = "0, 1", expect = Expect.ACCEPTABLE, desc = "Read before the batch was published")
+    @Outcome(id = "2, 1", expect = Expect.ACCEPTABLE, desc = "Read after the batch was published")
+    @Outcome(expect = Expect.FORBIDDEN, desc = "Torn batch, or a published row not visible")
+    @State
+    public static class Publish {
+        private final AppendLog<Integer> log = filled();
+
+        @Actor
+        public void writer() {
+            log.addAll(BATCH);
+        }
+
+        @Actor
+        public void reader(II_Result r) {
+            int size = log.size();
+            r.r1 = size - FILLED;
+            r.r2 = check(log, size);
+        }
+    }
+
+    @JCStressTest
+    @Description("A snapshot holds the whole batch or none of it, and keeps its size as the writer appends")
+    @Outcome(id = "0, 1", expect = Expect.ACCEPTABLE, desc = "Snapshot taken before the batch was published")
+    @Outcome(id = "2, 1", expect = Expect.ACCEPTABLE, desc = "Snapshot taken after the batch was published")
+    @Outcome(expect = Expect.FORBIDDEN, desc = "Torn batch, a row not visible, or a snapshot that grew")
+    @State
+    public static class Snapshot {
+        private final AppendLog<Integer> log = filled();
+
+        @Actor
+        public void writer() {
+            log.addAll(BATCH);
+        }
+
+        @Actor
+        public void reader(II_Result r) {
+            AppendLog<Integer> snapshot = log.snapshot();
+            int size = snapshot.size();
+            r.r1 = size - FILLED;
+            r.r2 = check(snapshot, size) == 1 && log.size() >= size && snapshot.size() == size ? 1 : 0;
+        }
+    }
+}